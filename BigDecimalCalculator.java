@@ -0,0 +1,180 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Класс BigDecimalCalculator - калькулятор произвольной точности на BigDecimal.
+ * Каждая операция округляется по заданному MathContext (по умолчанию DECIMAL128,
+ * 34 значащие цифры); сложение, вычитание и умножение целых чисел в пределах
+ * точности выполняются точно. Приближение значения в double (getMemory())
+ * вычисляется лениво: преобразование BigDecimal в double дороже самих операций.
+ *
+ * Наследует NumberSystemConverter ради системы счисления ввода и вывода,
+ * поэтому может использоваться везде, где ожидается основной калькулятор.
+ */
+public class BigDecimalCalculator extends NumberSystemConverter {
+    private final MathContext mathContext;
+    private BigDecimal value = BigDecimal.ZERO; // Точное значение памяти
+    private boolean memoryStale;                // Поле memory еще не обновлено по value
+
+    /**
+     * Создает калькулятор с точностью DECIMAL128.
+     */
+    public BigDecimalCalculator() {
+        this(MathContext.DECIMAL128);
+    }
+
+    /**
+     * Создает калькулятор с заданной точностью.
+     * @param mathContext точность и режим округления операций
+     */
+    public BigDecimalCalculator(MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+
+    /**
+     * @return точность и режим округления операций
+     */
+    public MathContext getMathContext() {
+        return mathContext;
+    }
+
+    /**
+     * @return значение памяти
+     */
+    public BigDecimal getValue() {
+        return value;
+    }
+
+    /**
+     * Устанавливает значение памяти (без округления).
+     * @param value новое значение
+     */
+    public void setValue(BigDecimal value) {
+        this.value = value;
+        isFirstOperation = false;
+        memoryStale = true;
+    }
+
+    /**
+     * @return приближение значения памяти в double
+     */
+    @Override
+    public double getMemory() {
+        if (memoryStale) {
+            memory = value.doubleValue();
+            memoryStale = false;
+        }
+        return memory;
+    }
+
+    /**
+     * @param num слагаемое
+     * @return результат
+     */
+    public BigDecimal add(BigDecimal num) {
+        return store(value.add(num, mathContext));
+    }
+
+    /**
+     * @param num вычитаемое
+     * @return результат
+     */
+    public BigDecimal subtract(BigDecimal num) {
+        return store(value.subtract(num, mathContext));
+    }
+
+    /**
+     * @param num множитель
+     * @return результат
+     */
+    public BigDecimal multiply(BigDecimal num) {
+        return store(value.multiply(num, mathContext));
+    }
+
+    /**
+     * @param num делитель
+     * @return результат
+     * @throws ArithmeticException при делении на ноль или если точный результат
+     *         требуется (MathContext.UNLIMITED), но не является конечной дробью
+     */
+    public BigDecimal divide(BigDecimal num) {
+        if (num.signum() == 0) {
+            throw new DivisionByZeroException();
+        }
+        return store(value.divide(num, mathContext));
+    }
+
+    @Override
+    public double add(double num) {
+        add(toBigDecimal(num));
+        return getMemory();
+    }
+
+    @Override
+    public double subtract(double num) {
+        subtract(toBigDecimal(num));
+        return getMemory();
+    }
+
+    @Override
+    public double multiply(double num) {
+        multiply(toBigDecimal(num));
+        return getMemory();
+    }
+
+    @Override
+    public double divide(double num) throws ArithmeticException {
+        divide(toBigDecimal(num));
+        return getMemory();
+    }
+
+    /**
+     * Устанавливает значение памяти.
+     * @param value новое значение (конечное)
+     * @throws ArithmeticException если значение - NaN или бесконечность
+     */
+    @Override
+    public void setMemory(double value) {
+        setValue(toBigDecimal(value));
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        value = BigDecimal.ZERO;
+        memoryStale = false;
+    }
+
+    /**
+     * Форматирует число в текущей системе счисления точно (см.
+     * {@link NumberSystemConverter#formatExact(BigDecimal, int)}).
+     * Если число равно текущей памяти, выводится ее точное значение.
+     * @param number число для форматирования
+     * @return отформатированное представление
+     */
+    @Override
+    public String formatResult(double number) {
+        if (number == getMemory()) {
+            return formatExact(value, getRadix());
+        }
+        return Double.isFinite(number) ? formatExact(new BigDecimal(number), getRadix()) : super.formatResult(number);
+    }
+
+    /**
+     * Преобразует double в BigDecimal по его кратчайшей десятичной записи
+     * (0.1 дает 0.1, а не двоичное приближение).
+     * @throws ArithmeticException если значение - NaN или бесконечность
+     */
+    static BigDecimal toBigDecimal(double num) {
+        if (!Double.isFinite(num)) {
+            throw new ArithmeticException("Значение не является конечным числом: " + num);
+        }
+        return BigDecimal.valueOf(num);
+    }
+
+    private BigDecimal store(BigDecimal result) {
+        value = result;
+        memoryStale = true;
+        return result;
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Класс BoundedCache - потокобезопасный кэш с ограничением по числу записей
+ * и по оценке занимаемой памяти, с вытеснением давно не использованных записей (LRU).
+ *
+ * Ключи распределяются по независимым сегментам со своей блокировкой, поэтому
+ * обращения из разных потоков редко конкурируют. Ограничения делятся между
+ * сегментами поровну, вытеснение выполняется внутри сегмента.
+ * Ведутся счетчики попаданий, промахов и вытеснений.
+ *
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class BoundedCache<K, V> {
+    private final Segment<K, V>[] segments;                         // Сегменты кэша
+    private final ToLongBiFunction<? super K, ? super V> weigher;   // Оценка размера записи в байтах
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Сегмент кэша: LinkedHashMap в порядке доступа под собственной блокировкой.
+     */
+    private static final class Segment<K, V> {
+        final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+        final int maxEntries;
+        final long maxWeight;
+        long weight;
+
+        Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    /**
+     * Создает кэш, ограниченный только числом записей.
+     * @param maxEntries максимальное число записей
+     */
+    public BoundedCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, (key, value) -> 0);
+    }
+
+    /**
+     * Создает кэш с ограничением по числу записей и по оценке памяти.
+     *
+     * @param maxEntries максимальное число записей
+     * @param maxBytes максимальный суммарный вес записей в байтах
+     * @param weigher оценка размера записи в байтах по ключу и значению
+     *                (вместе со служебными объектами записи)
+     * @throws IllegalArgumentException если ограничения не положительны
+     */
+    public BoundedCache(int maxEntries, long maxBytes, ToLongBiFunction<? super K, ? super V> weigher) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Ограничения кэша должны быть положительными");
+        }
+        int count = Integer.highestOneBit(Math.max(1, Math.min(16, maxEntries / 16)));
+        this.segments = newSegments(count);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(Math.max(1, maxEntries / count),
+                maxBytes == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(1, maxBytes / count));
+        }
+        this.weigher = weigher;
+    }
+
+    /**
+     * Возвращает значение из кэша или вычисляет и сохраняет его.
+     * Вычисление выполняется вне блокировки; при одновременном промахе
+     * значение может быть вычислено несколько раз. Исключение загрузчика
+     * пробрасывается вызывающему, и ничего не сохраняется.
+     *
+     * @param key ключ
+     * @param loader функция вычисления значения по ключу
+     * @return значение
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.map.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = loader.apply(key);
+        put(segment, key, value);
+        return value;
+    }
+
+    /**
+     * Возвращает значение из кэша без вычисления. Ключ используется только
+     * для поиска и не сохраняется, поэтому вызывающий может передавать
+     * изменяемый объект-образец, равный сохраненному ключу.
+     * @param key ключ
+     * @return значение или null, если его нет
+     */
+    public V getIfPresent(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.map.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Сохраняет значение в кэше.
+     * @param key ключ
+     * @param value значение (не null)
+     */
+    public void put(K key, V value) {
+        put(segmentFor(key), key, value);
+    }
+
+    /**
+     * Удаляет все записи. Счетчики не сбрасываются.
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * @return текущее число записей
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return текущий суммарный вес записей в байтах
+     */
+    public long weight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return число попаданий
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return число промахов
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return число вытесненных записей
+     */
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("записей: %d, попаданий: %d, промахов: %d, вытеснений: %d",
+            size(), hitCount(), missCount(), evictionCount());
+    }
+
+    // Массив обобщенного типа создать нельзя; все элементы массива - Segment<K, V>
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> Segment<K, V>[] newSegments(int count) {
+        return new Segment[count];
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[h & (segments.length - 1)];
+    }
+
+    private void put(Segment<K, V> segment, K key, V value) {
+        long entryWeight = weigher.applyAsLong(key, value);
+        synchronized (segment) {
+            V previous = segment.map.put(key, value);
+            if (previous != null) {
+                segment.weight -= weigher.applyAsLong(key, previous);
+            }
+            segment.weight += entryWeight;
+
+            // Вытесняем самые давние записи, пока сегмент превышает ограничения
+            Iterator<Map.Entry<K, V>> eldest = segment.map.entrySet().iterator();
+            while ((segment.map.size() > segment.maxEntries || segment.weight > segment.maxWeight)
+                    && eldest.hasNext()) {
+                Map.Entry<K, V> entry = eldest.next();
+                if (entry.getKey().equals(key) && segment.map.size() == 1) {
+                    break; // Единственную запись оставляем даже сверх лимита веса
+                }
+                segment.weight -= weigher.applyAsLong(entry.getKey(), entry.getValue());
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+}
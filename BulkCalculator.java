@@ -0,0 +1,312 @@
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * Класс BulkCalculator применяет одну и ту же последовательность операций
+ * калькулятора к каждому элементу массива double (или DoubleBuffer, в том числе
+ * вне кучи) - на месте или с записью в выходной массив.
+ *
+ * Операнд операции может быть общим числом (add(5)) или массивом значений
+ * по элементам (addEach(values), где values[i] относится к i-му элементу).
+ * Деление на ноль обрабатывается как в NumberSystemConverter.divide:
+ * операция для элемента не выполняется и его значение не меняется, но вместо
+ * исключения в маске ошибок устанавливается бит этого элемента; остальные
+ * операции цепочки применяются к нему как обычно.
+ *
+ * Данные обрабатываются блоками, помещающимися в кэш процессора: каждая
+ * операция проходит по блоку простым циклом без ветвлений, который JIT
+ * векторизует автоматически (SIMD).
+ */
+public class BulkCalculator {
+    private static final byte ADD = 0;
+    private static final byte SUBTRACT = 1;
+    private static final byte MULTIPLY = 2;
+    private static final byte DIVIDE = 3;
+
+    private static final int BLOCK = 1024; // Размер блока обработки в элементах
+
+    private byte[] opcodes = new byte[8];        // Коды операций цепочки
+    private double[] scalars = new double[8];    // Общие операнды
+    private double[][] operands = new double[8][]; // Операнды по элементам (null - общий операнд)
+    private int size;                            // Число операций в цепочке
+
+    /**
+     * Добавляет сложение с общим числом.
+     * @param num слагаемое
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator add(double num) {
+        return append(ADD, num, null);
+    }
+
+    /**
+     * Добавляет вычитание общего числа.
+     * @param num вычитаемое
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator subtract(double num) {
+        return append(SUBTRACT, num, null);
+    }
+
+    /**
+     * Добавляет умножение на общее число.
+     * @param num множитель
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator multiply(double num) {
+        return append(MULTIPLY, num, null);
+    }
+
+    /**
+     * Добавляет деление на общее число. При делителе 0 в маске отмечаются все элементы.
+     * @param num делитель
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator divide(double num) {
+        return append(DIVIDE, num, null);
+    }
+
+    /**
+     * Добавляет поэлементное сложение.
+     * @param values слагаемые по элементам
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator addEach(double[] values) {
+        return append(ADD, 0, values);
+    }
+
+    /**
+     * Добавляет поэлементное вычитание.
+     * @param values вычитаемые по элементам
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator subtractEach(double[] values) {
+        return append(SUBTRACT, 0, values);
+    }
+
+    /**
+     * Добавляет поэлементное умножение.
+     * @param values множители по элементам
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator multiplyEach(double[] values) {
+        return append(MULTIPLY, 0, values);
+    }
+
+    /**
+     * Добавляет поэлементное деление. Элементы с нулевым делителем отмечаются в маске.
+     * @param values делители по элементам
+     * @return этот объект для продолжения цепочки
+     */
+    public BulkCalculator divideEach(double[] values) {
+        return append(DIVIDE, 0, values);
+    }
+
+    /**
+     * Применяет цепочку к массиву на месте.
+     *
+     * @param data значения
+     * @return маска ошибок деления на ноль: бит i установлен для элемента data[i]
+     */
+    public long[] apply(double[] data) {
+        return apply(data, 0, data, 0, data.length);
+    }
+
+    /**
+     * Применяет цепочку к фрагменту массива с записью в выходной массив
+     * (выходной массив может совпадать с входным).
+     * Индекс операнда поэлементной операции отсчитывается от начала фрагмента.
+     *
+     * @param src входные значения
+     * @param srcOffset начало фрагмента во входном массиве
+     * @param dst выходной массив
+     * @param dstOffset начало записи в выходной массив
+     * @param length число элементов
+     * @return маска ошибок деления на ноль: бит i относится к элементу фрагмента с индексом i
+     * @throws IllegalArgumentException если массив операндов короче фрагмента
+     */
+    public long[] apply(double[] src, int srcOffset, double[] dst, int dstOffset, int length) {
+        checkOperands(length);
+        if (src != dst || srcOffset != dstOffset) {
+            System.arraycopy(src, srcOffset, dst, dstOffset, length);
+        }
+        long[] mask = new long[(length + 63) >>> 6];
+        for (int base = 0; base < length; base += BLOCK) {
+            applyBlock(dst, dstOffset + base, base, Math.min(BLOCK, length - base), mask);
+        }
+        return mask;
+    }
+
+    /**
+     * Применяет цепочку ко всем элементам буфера от position до limit на месте.
+     * Буферы вне кучи обрабатываются блоками через промежуточный массив.
+     *
+     * @param buffer значения
+     * @return маска ошибок деления на ноль: бит i относится к элементу position + i
+     */
+    public long[] apply(DoubleBuffer buffer) {
+        int start = buffer.position();
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + start;
+            return apply(buffer.array(), offset, buffer.array(), offset, length);
+        }
+        checkOperands(length);
+        long[] mask = new long[(length + 63) >>> 6];
+        double[] block = new double[Math.min(BLOCK, Math.max(length, 1))];
+        for (int base = 0; base < length; base += BLOCK) {
+            int count = Math.min(BLOCK, length - base);
+            buffer.get(start + base, block, 0, count);
+            applyBlock(block, 0, base, count, mask);
+            buffer.put(start + base, block, 0, count);
+        }
+        return mask;
+    }
+
+    /**
+     * Проверяет, отмечен ли элемент в маске ошибок.
+     * @param mask маска, возвращенная apply
+     * @param index индекс элемента
+     * @return true если для элемента было деление на ноль
+     */
+    public static boolean isError(long[] mask, int index) {
+        return (mask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Возвращает число элементов, отмеченных в маске ошибок.
+     * @param mask маска, возвращенная apply
+     * @return число элементов с делением на ноль
+     */
+    public static int errorCount(long[] mask) {
+        int count = 0;
+        for (long word : mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return число операций в цепочке
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Применяет все операции цепочки к одному блоку.
+     * @param data массив с блоком
+     * @param offset начало блока в data
+     * @param index индекс первого элемента блока во фрагменте (для операндов и маски)
+     * @param count размер блока
+     * @param mask маска ошибок
+     */
+    private void applyBlock(double[] data, int offset, int index, int count, long[] mask) {
+        for (int op = 0; op < size; op++) {
+            double[] each = operands[op];
+            if (each == null) {
+                double c = scalars[op];
+                switch (opcodes[op]) {
+                    case ADD:
+                        for (int i = 0; i < count; i++) {
+                            data[offset + i] += c;
+                        }
+                        break;
+                    case SUBTRACT:
+                        for (int i = 0; i < count; i++) {
+                            data[offset + i] -= c;
+                        }
+                        break;
+                    case MULTIPLY:
+                        for (int i = 0; i < count; i++) {
+                            data[offset + i] *= c;
+                        }
+                        break;
+                    default:
+                        if (c == 0) {
+                            markAll(mask, index, count);
+                        } else {
+                            for (int i = 0; i < count; i++) {
+                                data[offset + i] /= c;
+                            }
+                        }
+                        break;
+                }
+            } else {
+                switch (opcodes[op]) {
+                    case ADD:
+                        for (int i = 0; i < count; i++) {
+                            data[offset + i] += each[index + i];
+                        }
+                        break;
+                    case SUBTRACT:
+                        for (int i = 0; i < count; i++) {
+                            data[offset + i] -= each[index + i];
+                        }
+                        break;
+                    case MULTIPLY:
+                        for (int i = 0; i < count; i++) {
+                            data[offset + i] *= each[index + i];
+                        }
+                        break;
+                    default:
+                        divideEach(data, offset, each, index, count, mask);
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Поэлементное деление: при нулевом делителе значение не меняется, а элемент
+     * отмечается в маске. Деление выполняется на (d == 0 ? 1 : d), чтобы цикл
+     * оставался без ветвлений.
+     */
+    private static void divideEach(double[] data, int offset, double[] divisors, int index, int count, long[] mask) {
+        boolean anyZero = false;
+        for (int i = 0; i < count; i++) {
+            double d = divisors[index + i];
+            anyZero |= d == 0;
+            data[offset + i] /= d == 0 ? 1 : d;
+        }
+        if (anyZero) {
+            for (int i = 0; i < count; i++) {
+                if (divisors[index + i] == 0) {
+                    int bit = index + i;
+                    mask[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Отмечает в маске элементы [from, from + count).
+     */
+    private static void markAll(long[] mask, int from, int count) {
+        for (int bit = from; bit < from + count; bit++) {
+            mask[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private void checkOperands(int length) {
+        for (int op = 0; op < size; op++) {
+            if (operands[op] != null && operands[op].length < length) {
+                throw new IllegalArgumentException(
+                    "Массив операндов короче обрабатываемых данных: " + operands[op].length + " < " + length);
+            }
+        }
+    }
+
+    private BulkCalculator append(byte opcode, double scalar, double[] each) {
+        if (size == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, size * 2);
+            scalars = Arrays.copyOf(scalars, size * 2);
+            operands = Arrays.copyOf(operands, size * 2);
+        }
+        opcodes[size] = opcode;
+        scalars[size] = scalar;
+        operands[size] = each;
+        size++;
+        return this;
+    }
+}
@@ -75,7 +75,7 @@ public abstract class Calculator {
      * Абстрактный метод для выполнения операции деления.
      * @param num делитель
      * @return результат операции
-     * @throws ArithmeticException при попытке деления на ноль
+     * @throws DivisionByZeroException при попытке деления на ноль
      */
     public abstract double divide(double num) throws ArithmeticException;
 
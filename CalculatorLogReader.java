@@ -0,0 +1,651 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Класс CalculatorLogReader читает лог калькулятора (calculator_log.txt),
+ * отображая файл в память окнами через FileChannel.map, и разбирает записи вида
+ * <pre>
+ * Операция: сложение, Число: 16,00, Результат: 116,00 (BIN: 1110100, OCT: 164, DEC: 116, HEX: 74)
+ * </pre>
+ * прямо из отображенных байтов, без создания строки на каждую запись.
+ *
+ * Чтение потоковое: {@link #next()} переходит к следующей записи, поля текущей
+ * записи доступны через методы доступа и действительны до следующего вызова.
+ * Поддерживаются и старые формы записей: без блока систем счисления, с другим
+ * порядком блоков (DEC первым), с десятичной запятой или точкой. Строки, которые
+ * не удалось разобрать, пропускаются и подсчитываются.
+ *
+ * Читается содержимое файла на момент открытия; записи, добавленные позже,
+ * видны после повторного открытия. Класс не является потокобезопасным.
+ */
+public class CalculatorLogReader implements Closeable {
+    private static final long DEFAULT_WINDOW_SIZE = 256L << 20; // 256 МБ на окно отображения
+    private static final int ALL_OPERATIONS = -1;
+    private static final double HALF_CENT = 0.005; // Погрешность округления %.2f
+    private static final int MAX_REPORTED_MISMATCHES = 1000;
+
+    private static final char[] OPERATIONS = {'+', '-', '*', '/', '='};
+    private static final String[] OPERATION_NAMES = {"сложение", "вычитание", "умножение", "деление", "выражение"};
+    private static final byte[][] OPERATION_BYTES = new byte[OPERATION_NAMES.length][];
+    private static final int[] RADIXES = {2, 8, 10, 16};
+    private static final byte[][] RADIX_TAGS = {
+        ascii("BIN: "), ascii("OCT: "), ascii("DEC: "), ascii("HEX: ")
+    };
+    private static final byte[] OPERATION_PREFIX = "Операция: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NUMBER_PREFIX = ", Число: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESULT_PREFIX = ", Результат: ".getBytes(StandardCharsets.UTF_8);
+
+    static {
+        for (int i = 0; i < OPERATION_NAMES.length; i++) {
+            OPERATION_BYTES[i] = OPERATION_NAMES[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final NumberParser parser = new NumberParser();
+    private final DecimalView decimalView = new DecimalView();
+
+    private MappedByteBuffer window; // Текущее окно отображения
+    private long windowStart;        // Смещение окна в файле
+    private int position;            // Начало следующей строки в окне
+    private int filter = ALL_OPERATIONS;
+
+    // Текущая строка и запись
+    private long line;
+    private long malformed;
+    private int lineStart;
+    private int lineEnd;
+    private int operationIndex;
+    private double number;
+    private double result;
+    private double parsed;
+    private final int[] blockStart = new int[RADIXES.length];
+    private final int[] blockEnd = new int[RADIXES.length];
+
+    /**
+     * Расхождение между результатом в логе и пересчитанным значением.
+     */
+    public static final class Mismatch {
+        private final long line;
+        private final char operation;
+        private final double number;
+        private final double expected;
+        private final double logged;
+
+        Mismatch(long line, char operation, double number, double expected, double logged) {
+            this.line = line;
+            this.operation = operation;
+            this.number = number;
+            this.expected = expected;
+            this.logged = logged;
+        }
+
+        /**
+         * @return номер строки лога (с 1)
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * @return символ операции (+, -, *, /)
+         */
+        public char getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return число операции
+         */
+        public double getNumber() {
+            return number;
+        }
+
+        /**
+         * @return результат, пересчитанный по предыдущей записи
+         */
+        public double getExpected() {
+            return expected;
+        }
+
+        /**
+         * @return результат, записанный в логе
+         */
+        public double getLogged() {
+            return logged;
+        }
+
+        @Override
+        public String toString() {
+            return "Строка " + line + ": " + operation + " " + number
+                + " - ожидалось " + expected + ", в логе " + logged;
+        }
+    }
+
+    /**
+     * Итог проверки лога.
+     */
+    public static final class Verification {
+        private final long[] counts = new long[OPERATIONS.length];
+        private final List<Mismatch> mismatches = new ArrayList<>();
+        private long checked;
+        private long skipped;
+        private long mismatchCount;
+        private long malformed;
+
+        /**
+         * @param operation символ операции (+, -, *, / или = для выражения)
+         * @return число записей с этой операцией
+         */
+        public long getCount(char operation) {
+            return counts[operationIndex(operation)];
+        }
+
+        /**
+         * @return число записей, результат которых пересчитан и сравнен
+         */
+        public long getChecked() {
+            return checked;
+        }
+
+        /**
+         * @return число записей, которые нельзя пересчитать (первая запись, выражения)
+         */
+        public long getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return общее число расхождений
+         */
+        public long getMismatchCount() {
+            return mismatchCount;
+        }
+
+        /**
+         * @return первые расхождения (не более 1000)
+         */
+        public List<Mismatch> getMismatches() {
+            return Collections.unmodifiableList(mismatches);
+        }
+
+        /**
+         * @return число строк, которые не удалось разобрать
+         */
+        public long getMalformed() {
+            return malformed;
+        }
+    }
+
+    /**
+     * Открывает лог для чтения.
+     * @param file путь к файлу лога
+     * @throws IOException если файл не удалось открыть
+     */
+    public CalculatorLogReader(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Открывает лог для чтения с заданным размером окна отображения.
+     *
+     * @param file путь к файлу лога
+     * @param windowSize размер окна в байтах (не больше Integer.MAX_VALUE); должен
+     *        превышать длину самой длинной строки
+     * @throws IOException если файл не удалось открыть
+     * @throws IllegalArgumentException если размер окна вне допустимых пределов
+     */
+    public CalculatorLogReader(Path file, long windowSize) throws IOException {
+        if (windowSize <= 0 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Недопустимый размер окна: " + windowSize);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        map(0);
+    }
+
+    /**
+     * Ограничивает чтение записями с заданными операциями.
+     * @param operations символы операций (+, -, *, / или = для выражения); без аргументов - все записи
+     * @throws IllegalArgumentException если символ операции неизвестен
+     */
+    public void setFilter(char... operations) {
+        if (operations.length == 0) {
+            filter = ALL_OPERATIONS;
+            return;
+        }
+        int mask = 0;
+        for (char operation : operations) {
+            mask |= 1 << operationIndex(operation);
+        }
+        filter = mask;
+    }
+
+    /**
+     * Переходит к следующей записи, удовлетворяющей фильтру.
+     * @return false если записи закончились
+     * @throws IOException при ошибке отображения файла или строке длиннее окна
+     */
+    public boolean next() throws IOException {
+        while (nextLine()) {
+            if (lineStart == lineEnd) {
+                continue;
+            }
+            if (!parseRecord()) {
+                malformed++;
+                continue;
+            }
+            if ((filter & (1 << operationIndex)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращается к началу лога и сбрасывает счетчики строк.
+     * @throws IOException при ошибке отображения файла
+     */
+    public void rewind() throws IOException {
+        if (windowStart != 0) {
+            map(0);
+        }
+        position = 0;
+        line = 0;
+        malformed = 0;
+    }
+
+    /**
+     * @return номер строки текущей записи (с 1)
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * @return символ операции текущей записи (+, -, *, / или = для выражения)
+     */
+    public char getOperation() {
+        return OPERATIONS[operationIndex];
+    }
+
+    /**
+     * @return название операции текущей записи, как в логе
+     */
+    public String getOperationName() {
+        return OPERATION_NAMES[operationIndex];
+    }
+
+    /**
+     * @return число операции текущей записи
+     */
+    public double getNumber() {
+        return number;
+    }
+
+    /**
+     * @return результат текущей записи (с точностью двух знаков после запятой)
+     */
+    public double getResult() {
+        return result;
+    }
+
+    /**
+     * @return true если у текущей записи есть блок систем счисления
+     */
+    public boolean hasRadixBlock() {
+        for (int start : blockStart) {
+            if (start >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает запись результата в системе счисления из блока текущей записи.
+     * Создает строку, поэтому предназначен для вывода отдельных записей.
+     *
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @return текст из лога или null, если у записи нет такого блока
+     * @throws IllegalArgumentException если система счисления не поддерживается
+     */
+    public String getRadixText(int radix) {
+        int index = radixIndex(radix);
+        if (blockStart[index] < 0) {
+            return null;
+        }
+        return decode(blockStart[index], blockEnd[index]);
+    }
+
+    /**
+     * @return число непустых строк, которые не удалось разобрать с начала чтения
+     */
+    public long getMalformedCount() {
+        return malformed;
+    }
+
+    /**
+     * Проверяет лог целиком: для каждой записи пересчитывает результат по
+     * результату предыдущей записи и сравнивает с записанным с учетом округления
+     * до двух знаков. Расхождение означает ошибку вычисления либо разрыв цепочки
+     * (сброс памяти, новый запуск калькулятора); после него цепочка продолжается
+     * от записанного результата. Выражения пересчитать нельзя - их текст в лог
+     * не пишется. Фильтр при проверке не применяется, по окончании чтение
+     * начинается сначала.
+     *
+     * @return итог проверки
+     * @throws IOException при ошибке чтения
+     */
+    public Verification verify() throws IOException {
+        Verification verification = new Verification();
+        int savedFilter = filter;
+        filter = ALL_OPERATIONS;
+        rewind();
+        try {
+            boolean havePrevious = false;
+            double previous = 0;
+            while (next()) {
+                verification.counts[operationIndex]++;
+                char operation = OPERATIONS[operationIndex];
+                if (!havePrevious || operation == '=') {
+                    verification.skipped++;
+                } else {
+                    double expected = apply(operation, previous, number);
+                    verification.checked++;
+                    if (!matches(operation, expected, result, previous, number)) {
+                        verification.mismatchCount++;
+                        if (verification.mismatches.size() < MAX_REPORTED_MISMATCHES) {
+                            verification.mismatches.add(new Mismatch(line, operation, number, expected, result));
+                        }
+                    }
+                }
+                havePrevious = true;
+                previous = result;
+            }
+            verification.malformed = malformed;
+        } finally {
+            filter = savedFilter;
+            rewind();
+        }
+        return verification;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Выполняет операцию так же, как NumberSystemConverter.
+     */
+    private static double apply(char operation, double memory, double num) {
+        switch (operation) {
+            case '+':
+                return memory + num;
+            case '-':
+                return memory - num;
+            case '*':
+                return memory * num;
+            default:
+                return memory / num;
+        }
+    }
+
+    /**
+     * Сравнивает пересчитанный результат с записанным. Допуск складывается из
+     * округления записанного результата, округления предыдущего результата,
+     * умноженного на множитель операции, округления записанного операнда,
+     * умноженного на чувствительность к нему (|prev| для *, |prev|/num^2
+     * для /, 1 для + и -), и погрешности double. Истинный операнд отличается
+     * от записанного на HALF_CENT, поэтому множители берутся по худшему
+     * случаю: |num| + HALF_CENT и |num| - HALF_CENT для делителя; если
+     * делитель мог быть сколь угодно мал, результат не проверяется.
+     */
+    private static boolean matches(char operation, double expected, double logged, double previous, double num) {
+        if (Double.compare(expected, logged) == 0) {
+            return true;
+        }
+        double magnitude = Math.abs(num);
+        double factor;           // Влияние округления предыдущего результата
+        double operandError;     // Влияние округления операнда
+        switch (operation) {
+            case '*':
+                factor = magnitude + HALF_CENT;
+                operandError = HALF_CENT * Math.abs(previous);
+                break;
+            case '/':
+                double low = magnitude - HALF_CENT;
+                if (low <= 0) {
+                    return true;
+                }
+                factor = 1 / low;
+                operandError = HALF_CENT * Math.abs(previous) / (magnitude * low);
+                break;
+            default:
+                factor = 1;
+                operandError = HALF_CENT;
+                break;
+        }
+        double tolerance = HALF_CENT * (1 + factor) + operandError
+            + 1e-12 * Math.max(Math.abs(expected), Math.abs(logged));
+        return Math.abs(expected - logged) <= tolerance;
+    }
+
+    /**
+     * Находит границы следующей строки, при необходимости сдвигая окно отображения.
+     */
+    private boolean nextLine() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            if (position >= limit && windowStart + limit >= fileSize) {
+                return false;
+            }
+            int end = position;
+            while (end < limit && window.get(end) != '\n') {
+                end++;
+            }
+            if (end == limit && windowStart + limit < fileSize) {
+                // Строка продолжается за окном - отображаем файл с ее начала
+                if (position == 0) {
+                    throw new IOException("Строка " + (line + 1) + " длиннее окна отображения");
+                }
+                map(windowStart + position);
+                continue;
+            }
+            int start = position;
+            position = end + 1;
+            line++;
+            while (start < end && (window.get(start) & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (window.get(end - 1) & 0xFF) <= ' ') {
+                end--;
+            }
+            lineStart = start;
+            lineEnd = end;
+            return true;
+        }
+    }
+
+    /**
+     * Разбирает текущую строку как запись лога.
+     * @return false если строка не является записью
+     */
+    private boolean parseRecord() {
+        int pos = lineStart;
+        if (!matchAt(pos, OPERATION_PREFIX)) {
+            return false;
+        }
+        pos += OPERATION_PREFIX.length;
+
+        operationIndex = -1;
+        for (int i = 0; i < OPERATION_BYTES.length; i++) {
+            if (matchAt(pos, OPERATION_BYTES[i]) && matchAt(pos + OPERATION_BYTES[i].length, NUMBER_PREFIX)) {
+                operationIndex = i;
+                pos += OPERATION_BYTES[i].length + NUMBER_PREFIX.length;
+                break;
+            }
+        }
+        if (operationIndex < 0) {
+            return false;
+        }
+
+        int numberEnd = indexOf(pos, RESULT_PREFIX);
+        if (numberEnd < 0 || !parseDecimal(pos, numberEnd)) {
+            return false;
+        }
+        number = parsed;
+        pos = numberEnd + RESULT_PREFIX.length;
+
+        // Результат заканчивается перед " (" блока систем счисления или в конце строки
+        int resultEnd = pos;
+        while (resultEnd < lineEnd && window.get(resultEnd) != ' ') {
+            resultEnd++;
+        }
+        if (!parseDecimal(pos, resultEnd)) {
+            return false;
+        }
+        result = parsed;
+
+        for (int i = 0; i < RADIXES.length; i++) {
+            blockStart[i] = -1;
+            blockEnd[i] = -1;
+        }
+        if (resultEnd + 1 < lineEnd && window.get(resultEnd + 1) == '(') {
+            parseRadixBlocks(resultEnd + 2, window.get(lineEnd - 1) == ')' ? lineEnd - 1 : lineEnd);
+        }
+        return true;
+    }
+
+    /**
+     * Запоминает границы значений блоков "XXX: значение", разделенных ", ",
+     * в любом порядке. Неизвестные блоки пропускаются.
+     */
+    private void parseRadixBlocks(int from, int to) {
+        int pos = from;
+        while (pos < to) {
+            int end = pos;
+            while (end < to && !(window.get(end) == ',' && end + 1 < to && window.get(end + 1) == ' ')) {
+                end++;
+            }
+            for (int i = 0; i < RADIX_TAGS.length; i++) {
+                if (end - pos >= RADIX_TAGS[i].length && matchAt(pos, RADIX_TAGS[i])) {
+                    blockStart[i] = pos + RADIX_TAGS[i].length;
+                    blockEnd[i] = end;
+                    break;
+                }
+            }
+            pos = end + 2;
+        }
+    }
+
+    /**
+     * Разбирает десятичное число с запятой или точкой в поле parsed.
+     * Обычные числа разбираются без выделения памяти, редкие формы
+     * (NaN, Infinity, символы локали) - через строку.
+     */
+    private boolean parseDecimal(int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        if (parser.parse(decimalView, from, to - from, 10) == NumberParser.OK) {
+            parsed = parser.value();
+            return true;
+        }
+        try {
+            parsed = Double.parseDouble(decode(from, to).replace(',', '.').replace("∞", "Infinity"));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private boolean matchAt(int pos, byte[] expected) {
+        if (pos + expected.length > lineEnd) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (window.get(pos + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int from, byte[] expected) {
+        for (int pos = from; pos + expected.length <= lineEnd; pos++) {
+            if (matchAt(pos, expected)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        window.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, fileSize - start));
+        position = 0;
+    }
+
+    private static int operationIndex(char operation) {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            if (OPERATIONS[i] == operation) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестная операция: " + operation);
+    }
+
+    private static int radixIndex(int radix) {
+        for (int i = 0; i < RADIXES.length; i++) {
+            if (RADIXES[i] == radix) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Поддерживаются только системы счисления 2, 8, 10 и 16");
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Байты текущего окна как символы, где десятичная запятая заменена точкой.
+     */
+    private final class DecimalView implements CharSequence {
+        @Override
+        public int length() {
+            return window.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            char c = (char) (window.get(index) & 0xFF);
+            return c == ',' ? '.' : c;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return decode(start, end).replace(',', '.');
+        }
+    }
+}
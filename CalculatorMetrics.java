@@ -0,0 +1,304 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Класс CalculatorMetrics собирает метрики горячего пути калькулятора:
+ * счетчики операций, гистограммы задержек разбора, арифметики, форматирования
+ * и записи в лог, счетчики ошибок и глубину очереди асинхронного лога.
+ *
+ * Метрики включаются системным свойством calculator.metrics=true до первого
+ * обращения к классу (Main делает это по аргументу --metrics). Флаг {@link #ENABLED}
+ * - static final, поэтому при выключенных метриках JIT удаляет проверки вместе
+ * с вызовами System.nanoTime(), и точки замера ничего не стоят.
+ *
+ * Точки замера используют пару {@link #start()} / {@link #record(LatencyHistogram, long)}:
+ * <pre>
+ * long start = CalculatorMetrics.start();
+ * ...
+ * CalculatorMetrics.record(CalculatorMetrics.PARSE, start);
+ * </pre>
+ * Метрики доступны через JMX (домен calculator) и в виде текстовой сводки,
+ * которую можно выводить периодически.
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMBean {
+    /**
+     * Системное свойство, включающее метрики.
+     */
+    public static final String PROPERTY = "calculator.metrics";
+
+    /**
+     * Включены ли метрики; определяется один раз при загрузке класса.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    public static final LatencyHistogram PARSE = new LatencyHistogram("parse");
+    public static final LatencyHistogram ARITHMETIC = new LatencyHistogram("arithmetic");
+    public static final LatencyHistogram FORMAT = new LatencyHistogram("format");
+    public static final LatencyHistogram LOG = new LatencyHistogram("log");
+    public static final LatencyHistogram LOG_ENQUEUE = new LatencyHistogram("log.enqueue");
+    public static final LatencyHistogram LOG_COMMIT = new LatencyHistogram("log.commit");
+
+    private static final LatencyHistogram[] HISTOGRAMS = {PARSE, ARITHMETIC, FORMAT, LOG, LOG_ENQUEUE, LOG_COMMIT};
+    private static final String OPERATIONS = "+-*/=";
+
+    private static final CalculatorMetrics INSTANCE = new CalculatorMetrics();
+
+    private final LongAdder[] operations = new LongAdder[OPERATIONS.length()];
+    private final LongAdder divisionByZero = new LongAdder();
+    private final LongAdder numberFormat = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+    private final AtomicLong logQueueMaxDepth = new AtomicLong();
+    private volatile CustomFileWriter logWriter;          // Лог, глубина очереди которого отображается
+    private ScheduledExecutorService dumpExecutor;        // Поток периодической сводки
+
+    private CalculatorMetrics() {
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Начинает замер.
+     * @return текущее время в наносекундах или 0, если метрики выключены
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Завершает замер, начатый {@link #start()}. Возвращенное значение можно
+     * использовать как начало следующего замера без повторного System.nanoTime().
+     * @param histogram гистограмма для задержки
+     * @param start значение, возвращенное start()
+     * @return текущее время в наносекундах или 0, если метрики выключены
+     */
+    public static long record(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            long now = System.nanoTime();
+            histogram.record(now - start);
+            return now;
+        }
+        return 0;
+    }
+
+    /**
+     * Учитывает выполненную операцию и время арифметики.
+     * @param operation символ операции (+, -, *, / или = для выражения)
+     * @param start значение, возвращенное start()
+     */
+    public static void operation(char operation, long start) {
+        if (ENABLED) {
+            ARITHMETIC.record(System.nanoTime() - start);
+            int index = OPERATIONS.indexOf(operation);
+            if (index >= 0) {
+                INSTANCE.operations[index].increment();
+            }
+        }
+    }
+
+    /**
+     * Учитывает попытку деления на ноль.
+     */
+    public static void divisionByZero() {
+        if (ENABLED) {
+            INSTANCE.divisionByZero.increment();
+        }
+    }
+
+    /**
+     * Учитывает некорректное число во вводе.
+     */
+    public static void numberFormatError() {
+        if (ENABLED) {
+            INSTANCE.numberFormat.increment();
+        }
+    }
+
+    /**
+     * Учитывает прочие ошибки ввода (неверное основание, выражение).
+     */
+    public static void otherError() {
+        if (ENABLED) {
+            INSTANCE.otherErrors.increment();
+        }
+    }
+
+    /**
+     * Учитывает глубину очереди лога в момент, когда фоновый поток забирает
+     * из нее очередной пакет (для максимума глубины).
+     * @param depth число строк в очереди
+     */
+    public static void logQueueDepth(int depth) {
+        if (ENABLED) {
+            AtomicLong max = INSTANCE.logQueueMaxDepth;
+            long current = max.get();
+            while (depth > current && !max.compareAndSet(current, depth)) {
+                current = max.get();
+            }
+        }
+    }
+
+    /**
+     * Задает лог, текущая глубина очереди которого показывается в метриках.
+     * @param writer объект записи лога
+     */
+    public static void watchLog(CustomFileWriter writer) {
+        INSTANCE.logWriter = writer;
+    }
+
+    /**
+     * @return объект метрик (он же MBean)
+     */
+    public static CalculatorMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Регистрирует метрики в платформенном MBean-сервере: calculator:type=Metrics
+     * и calculator:type=Latency,name=&lt;имя&gt; для каждой гистограммы.
+     * Повторная регистрация игнорируется.
+     * @throws JMException если регистрация не удалась
+     */
+    public static void registerMBeans() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("calculator:type=Metrics");
+        if (server.isRegistered(name)) {
+            return;
+        }
+        server.registerMBean(INSTANCE, name);
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            server.registerMBean(histogram, new ObjectName("calculator:type=Latency,name=" + histogram.getName()));
+        }
+    }
+
+    /**
+     * Запускает периодический вывод сводки в фоновом потоке.
+     * @param out поток для сводки
+     * @param periodMillis интервал вывода
+     * @throws IllegalArgumentException если интервал не положителен
+     */
+    public static synchronized void startDump(PrintStream out, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Интервал вывода метрик должен быть положительным");
+        }
+        stopDump();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "calculator-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> out.print(INSTANCE.dump()), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        INSTANCE.dumpExecutor = executor;
+    }
+
+    /**
+     * Останавливает периодический вывод сводки.
+     */
+    public static synchronized void stopDump() {
+        if (INSTANCE.dumpExecutor != null) {
+            INSTANCE.dumpExecutor.shutdownNow();
+            INSTANCE.dumpExecutor = null;
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public long getAdditions() {
+        return operations[0].sum();
+    }
+
+    @Override
+    public long getSubtractions() {
+        return operations[1].sum();
+    }
+
+    @Override
+    public long getMultiplications() {
+        return operations[2].sum();
+    }
+
+    @Override
+    public long getDivisions() {
+        return operations[3].sum();
+    }
+
+    @Override
+    public long getExpressions() {
+        return operations[4].sum();
+    }
+
+    @Override
+    public long getDivisionByZeroErrors() {
+        return divisionByZero.sum();
+    }
+
+    @Override
+    public long getNumberFormatErrors() {
+        return numberFormat.sum();
+    }
+
+    @Override
+    public long getOtherErrors() {
+        return otherErrors.sum();
+    }
+
+    @Override
+    public int getLogQueueDepth() {
+        CustomFileWriter writer = logWriter;
+        return writer == null ? 0 : writer.getQueueDepth();
+    }
+
+    @Override
+    public long getLogQueueMaxDepth() {
+        return logQueueMaxDepth.get();
+    }
+
+    /**
+     * Формирует текстовую сводку всех метрик.
+     * @return многострочная сводка
+     */
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder(1024);
+        String separator = System.lineSeparator();
+        out.append("--- метрики калькулятора ---").append(separator);
+        out.append(String.format("операции: + %d, - %d, * %d, / %d, = %d%n",
+            getAdditions(), getSubtractions(), getMultiplications(), getDivisions(), getExpressions()));
+        out.append(String.format("ошибки: деление на ноль %d, некорректное число %d, прочие %d%n",
+            getDivisionByZeroErrors(), getNumberFormatErrors(), getOtherErrors()));
+        out.append(String.format("очередь лога: %d (максимум %d)%n", getLogQueueDepth(), getLogQueueMaxDepth()));
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            out.append(histogram).append(separator);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Обнуляет все счетчики и гистограммы.
+     */
+    @Override
+    public void reset() {
+        for (LongAdder counter : operations) {
+            counter.reset();
+        }
+        divisionByZero.reset();
+        numberFormat.reset();
+        otherErrors.reset();
+        logQueueMaxDepth.set(0);
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+}
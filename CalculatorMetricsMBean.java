@@ -0,0 +1,30 @@
+/**
+ * Интерфейс JMX для счетчиков калькулятора {@link CalculatorMetrics}.
+ */
+public interface CalculatorMetricsMBean {
+    boolean isEnabled();
+
+    long getAdditions();
+
+    long getSubtractions();
+
+    long getMultiplications();
+
+    long getDivisions();
+
+    long getExpressions();
+
+    long getDivisionByZeroErrors();
+
+    long getNumberFormatErrors();
+
+    long getOtherErrors();
+
+    int getLogQueueDepth();
+
+    long getLogQueueMaxDepth();
+
+    String dump();
+
+    void reset();
+}
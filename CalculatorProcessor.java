@@ -0,0 +1,451 @@
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс CalculatorProcessor - потоковый интерфейс калькулятора на
+ * java.util.concurrent.Flow: подписывается на издателя строк операций
+ * (та же грамматика, что у {@link CalculatorSession}: начальное число,
+ * +5, -3, *2, /4, c, i&lt;основание&gt;, =выражение, q) и выдает подписчику
+ * по одному {@link Result} на каждую строку.
+ *
+ * Ошибки строк (деление на ноль, некорректное число) выдаются элементом
+ * с {@link Result#isError()}, а не завершением потока; onError передается
+ * только от издателя. Строка q завершает поток: подписка на издателя
+ * отменяется, подписчик получает onComplete. Исключение при вычислении строки
+ * завершает поток этой ошибкой; исключение из onNext подписчика (нарушение
+ * правила 2.13) считается отменой подписки. Сигналы с null отклоняются
+ * NullPointerException (правило 2.13).
+ *
+ * Обратное давление: у издателя запрашивается не больше batchSize строк
+ * вперед, и запросы идут пачками по 3/4 batchSize по мере обработки, а не
+ * по одному на элемент; подписчику выдается не больше запрошенного им.
+ * Строки вычисляются в цикле выдачи, который в каждый момент выполняет один
+ * поток (счетчик незавершенной работы), поэтому калькулятор не требует
+ * синхронизации, а сигналы издателя и запросы подписчика могут приходить
+ * из разных потоков. Подписчик допускается один.
+ */
+public class CalculatorProcessor implements Flow.Processor<CharSequence, CalculatorProcessor.Result> {
+    /**
+     * Число строк, запрашиваемых у издателя вперед, по умолчанию.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Результат обработки одной строки.
+     */
+    public static final class Result {
+        private final long index;
+        private final int status;
+        private final char operation;
+        private final double operand;
+        private final double value;
+        private final String formatted;
+        private final String error;
+
+        Result(long index, int status, char operation, double operand, double value, String formatted, String error) {
+            this.index = index;
+            this.status = status;
+            this.operation = operation;
+            this.operand = operand;
+            this.value = value;
+            this.formatted = formatted;
+            this.error = error;
+        }
+
+        /**
+         * @return номер строки в потоке, начиная с 1
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * @return код состояния {@link CalculatorSession} (EMPTY, INITIAL, OPERATION, COMMAND или ERROR)
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return символ выполненной операции (+, -, *, /, = для выражения) или 0
+         */
+        public char getOperation() {
+            return operation;
+        }
+
+        /**
+         * @return число операции или начальное число
+         */
+        public double getOperand() {
+            return operand;
+        }
+
+        /**
+         * @return значение памяти после строки
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * @return значение в текущей системе счисления или null, если форматирование выключено
+         */
+        public String getFormatted() {
+            return formatted;
+        }
+
+        /**
+         * @return текст ошибки или null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return true если строка не выполнена из-за ошибки
+         */
+        public boolean isError() {
+            return error != null;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) {
+                return index + ": ошибка: " + error;
+            }
+            return index + ": " + (formatted != null ? formatted : Double.toString(value));
+        }
+    }
+
+    private final CalculatorSession session;
+    private final boolean format;           // Форматировать ли значения в системе счисления
+    private final int batchSize;
+    private final int replenish;            // Сколько строк обработать до следующего запроса
+    private final CharSequence[] queue;     // Кольцевой буфер строк от издателя
+    private final int mask;
+
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super Result> downstream;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicInteger wip = new AtomicInteger();    // Запросы на выполнение цикла выдачи
+    private final AtomicLong demand = new AtomicLong();       // Неудовлетворенный запрос подписчика
+    private volatile long produced;         // Строк помещено в буфер (пишет только onNext)
+    private volatile long consumed;         // Строк взято из буфера (пишет только цикл выдачи)
+    private volatile boolean done;          // Издатель завершил поток
+    private volatile boolean cancelled;     // Подписчик отменил подписку
+    private Throwable failure;              // Ошибка издателя (видна после записи done)
+    private volatile Throwable rejection;   // Некорректный запрос подписчика (правило 3.9)
+    private boolean terminated;             // Подписчику отправлен завершающий сигнал
+    private int sinceRequest;               // Строк обработано после последнего запроса
+    private long index;                     // Номер последней обработанной строки
+
+    /**
+     * Создает процессор над новым калькулятором в десятичной системе
+     * с форматированием результатов.
+     */
+    public CalculatorProcessor() {
+        this(new NumberSystemConverter(), 10, true, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Создает процессор.
+     * @param calculator калькулятор, над которым выполняются операции
+     * @param radix система счисления ввода (2, 8, 10 или 16)
+     * @param format выдавать ли значение, отформатированное в текущей системе счисления
+     * @param batchSize число строк, запрашиваемых у издателя вперед
+     * @throws IllegalArgumentException если batchSize не положителен или
+     *         система счисления не поддерживается
+     */
+    public CalculatorProcessor(NumberSystemConverter calculator, int radix, boolean format, int batchSize) {
+        if (batchSize <= 0 || batchSize > 1 << 24) {
+            throw new IllegalArgumentException("Размер пачки должен быть от 1 до 2^24");
+        }
+        this.session = new CalculatorSession(calculator, radix);
+        this.format = format;
+        this.batchSize = batchSize;
+        this.replenish = batchSize - (batchSize >> 2);
+        int capacity = Integer.highestOneBit(batchSize);
+        if (capacity < batchSize) {
+            capacity <<= 1;
+        }
+        this.queue = new CharSequence[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return сессия, выполняющая строки (например, для задания истории)
+     */
+    public CalculatorSession getSession() {
+        return session;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Result> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (downstream != null) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("У процессора калькулятора может быть один подписчик"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    // Нарушение правила 3.9: ошибка выдается сразу, не дожидаясь
+                    // выдачи накопленных строк, для которых нет запроса
+                    rejection = new IllegalArgumentException("Запрос должен быть положительным: " + n);
+                    done = true;
+                    cancelUpstream();
+                } else {
+                    long current;
+                    do {
+                        current = demand.get();
+                    } while (current != Long.MAX_VALUE
+                        && !demand.compareAndSet(current, current + n < 0 ? Long.MAX_VALUE : current + n));
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        start();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription");
+        }
+        if (upstream != null) {
+            subscription.cancel(); // Процессор подписывается на одного издателя
+            return;
+        }
+        upstream = subscription;
+        start();
+    }
+
+    @Override
+    public void onNext(CharSequence line) {
+        if (line == null) {
+            throw new NullPointerException("line");
+        }
+        if (done) {
+            return;
+        }
+        long position = produced;
+        if (position - consumed == queue.length) {
+            // Издатель прислал больше запрошенного
+            failure = new IllegalStateException("Издатель нарушил обратное давление");
+            done = true;
+            cancelUpstream();
+        } else {
+            queue[(int) position & mask] = line;
+            produced = position + 1;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (throwable == null) {
+            throw new NullPointerException("throwable");
+        }
+        failure = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    /**
+     * Запрашивает первую пачку, когда есть и издатель, и подписчик.
+     */
+    private void start() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null && downstream != null && started.compareAndSet(false, true)) {
+            subscription.request(batchSize);
+            drain();
+        }
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Цикл выдачи: вычисляет строки из буфера в пределах запроса подписчика
+     * и передает завершающий сигнал; некорректный запрос завершает поток
+     * ошибкой сразу, оставшиеся строки отбрасываются. Выполняется одним потоком одновременно;
+     * вызовы во время работы цикла заставляют его пройти еще раз. Если цикл
+     * прерван исключением (Error из вычисления или подписчика, исключение
+     * из onError или onComplete подписчика), поток завершается, а счетчик
+     * сбрасывается: иначе цикл выдачи больше не запустился бы.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        boolean completed = false;
+        try {
+            drainLoop();
+            completed = true;
+        } finally {
+            if (!completed) {
+                abort();
+                wip.set(0);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super Result> subscriber = downstream;
+            Throwable rejected = rejection;
+            if (subscriber != null && !terminated && rejected != null) {
+                clear();
+                terminated = true;
+                subscriber.onError(rejected);
+            }
+            if (subscriber != null && !terminated) {
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (cancelled) {
+                        clear();
+                        break;
+                    }
+                    boolean finished = done;
+                    long position = consumed;
+                    if (position == produced) {
+                        if (finished) {
+                            terminate(subscriber);
+                        }
+                        break;
+                    }
+                    int slot = (int) position & mask;
+                    CharSequence line = queue[slot];
+                    queue[slot] = null;
+                    consumed = position + 1;
+                    Result result;
+                    try {
+                        result = execute(line);
+                    } catch (RuntimeException e) {
+                        // Сбой вычисления, а не ошибка строки: поток завершается этой ошибкой
+                        done = true;
+                        cancelUpstream();
+                        clear();
+                        failure = e;
+                        terminate(subscriber);
+                        break;
+                    }
+                    if (result == null) {
+                        // Команда q: поток завершается, оставшиеся строки не нужны
+                        cancelUpstream();
+                        clear();
+                        failure = null;
+                        terminate(subscriber);
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(result);
+                    } catch (RuntimeException e) {
+                        abort(); // Правило 2.13: подписчик нарушил контракт - подписка отменена
+                        break;
+                    }
+                    emitted++;
+                    if (++sinceRequest == replenish) {
+                        sinceRequest = 0;
+                        upstream.request(replenish);
+                    }
+                }
+                if (emitted == requested && !terminated && !cancelled && done && consumed == produced) {
+                    terminate(subscriber); // Запрос исчерпан вместе с потоком
+                }
+                if (emitted != 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Выполняет строку.
+     * @return результат или null для команды q
+     */
+    private Result execute(CharSequence line) {
+        index++;
+        int status = session.execute(line);
+        switch (status) {
+            case CalculatorSession.QUIT:
+                return null;
+            case CalculatorSession.ERROR:
+                return new Result(index, status, (char) 0, 0, session.getResult(), null, session.getError());
+            case CalculatorSession.OPERATION:
+            case CalculatorSession.INITIAL:
+                double value = session.getResult();
+                char operation = status == CalculatorSession.OPERATION ? session.getOperation() : '=';
+                return new Result(index, status, operation, session.getOperand(), value,
+                    format ? session.getCalculator().formatResult(value) : null, null);
+            default:
+                double memory = session.getResult();
+                return new Result(index, status, (char) 0, 0, memory,
+                    format ? session.getCalculator().formatResult(memory) : null, null);
+        }
+    }
+
+    private void terminate(Flow.Subscriber<? super Result> subscriber) {
+        terminated = true;
+        Throwable error = failure;
+        if (error != null) {
+            subscriber.onError(error);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    /**
+     * Завершает поток без сигналов подписчику: отменяет подписку на издателя
+     * и отбрасывает строки буфера.
+     */
+    private void abort() {
+        terminated = true;
+        cancelled = true;
+        done = true;
+        cancelUpstream();
+        clear();
+    }
+
+    private void clear() {
+        for (long i = consumed; i != produced; i++) {
+            queue[(int) i & mask] = null;
+        }
+        consumed = produced;
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Класс CalculatorServer обслуживает множество клиентов калькулятора через
+ * локальный TCP-порт или Unix-сокет. У каждого подключения своя сессия
+ * (CalculatorSession со своим NumberSystemConverter).
+ *
+ * Протокол строковый, в кодировке UTF-8, с той же грамматикой, что и консоль:
+ * первая строка - начальное число, далее операции +5, -3, *2, /4 и команды
+ * c (сброс), i&lt;основание&gt; (система счисления), =выражение, q (отключение).
+ * На каждую строку сервер отвечает одной строкой:
+ * "OK &lt;результат в текущей системе счисления&gt;", "OK" для команд
+ * или "ERR &lt;сообщение&gt;". Строки, пришедшие одним чтением из сокета,
+ * выполняются подряд, и ответы на них отправляются одним пакетом; неполная
+ * последняя строка ждет продолжения, не задерживая ответы на полные.
+ * Строка вместе с переводом строки не может быть длиннее MAX_LINE_LENGTH
+ * байт: на более длинную сервер отвечает "ERR" и закрывает подключение,
+ * чтобы клиент без перевода строки не занял всю память.
+ *
+ * Каждое подключение обслуживается в отдельном потоке. В Java 21+ это
+ * виртуальный поток, и простаивающее подключение почти ничего не стоит.
+ * В Java 17, на которую рассчитан проект, виртуальных потоков нет, и
+ * используется пул обычных потоков: каждое открытое подключение, в том числе
+ * простаивающее, занимает поток платформы. Поэтому потокам задан уменьшенный
+ * стек (SESSION_STACK_SIZE), но число одновременных подключений все равно
+ * ограничено числом потоков, которое выдерживает система.
+ */
+public class CalculatorServer {
+    private static final int BUFFER_SIZE = 4096;               // Начальный размер буфера чтения
+    private static final int MAX_LINE_LENGTH = 64 * 1024;      // Предельный размер буфера чтения (одной строки)
+    private static final String ERROR_LINE_TOO_LONG = "ERR строка длиннее " + MAX_LINE_LENGTH + " байт\n";
+    private static final long SESSION_STACK_SIZE = 256 * 1024; // Стек потока сессии без виртуальных потоков
+
+    private final SocketAddress address;                 // Адрес прослушивания
+    private final ExecutorService executor;              // Потоки обслуживания подключений
+    private final AtomicInteger activeSessions = new AtomicInteger(); // Число открытых сессий
+    private ServerSocketChannel serverChannel;           // Канал приема подключений
+
+    /**
+     * Создает сервер.
+     * @param address адрес: InetSocketAddress или UnixDomainSocketAddress
+     */
+    public CalculatorServer(SocketAddress address) {
+        this.address = address;
+        this.executor = newSessionExecutor();
+    }
+
+    /**
+     * Разбирает адрес сервера из аргумента командной строки:
+     * номер порта на localhost или unix:путь для Unix-сокета.
+     *
+     * @param spec описание адреса
+     * @return адрес сокета
+     * @throws IllegalArgumentException если адрес некорректен
+     */
+    public static SocketAddress parseAddress(String spec) {
+        if (spec.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(spec.substring("unix:".length()));
+        }
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(spec));
+    }
+
+    /**
+     * Открывает сокет и принимает подключения до закрытия сервера.
+     * @throws IOException если сокет не удалось открыть
+     */
+    public void run() throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            Path path = ((UnixDomainSocketAddress) address).getPath();
+            Files.deleteIfExists(path); // Файл сокета мог остаться от прошлого запуска
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address, 1024);
+        System.out.println("Сервер калькулятора ожидает подключений: " + address);
+
+        try {
+            while (serverChannel.isOpen()) {
+                SocketChannel client;
+                try {
+                    client = serverChannel.accept();
+                } catch (IOException e) {
+                    if (!serverChannel.isOpen()) {
+                        break; // Сервер закрыт
+                    }
+                    System.out.println("Ошибка при приеме подключения: " + e.getMessage());
+                    continue;
+                }
+                executor.execute(() -> serve(client));
+            }
+        } finally {
+            executor.shutdown();
+            if (address instanceof UnixDomainSocketAddress) {
+                Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+            }
+        }
+    }
+
+    /**
+     * Прекращает прием новых подключений.
+     * @throws IOException если при закрытии сокета произошла ошибка
+     */
+    public void close() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * @return число открытых в данный момент сессий
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Обслуживает одно подключение: читает строки команд и отвечает на каждую.
+     * Ответы на все полные строки, полученные одним чтением, отправляются
+     * вместе сразу после их выполнения.
+     * @param client канал подключения
+     */
+    private void serve(SocketChannel client) {
+        activeSessions.incrementAndGet();
+        CalculatorSession session = new CalculatorSession();
+        StringBuilder response = new StringBuilder(64);
+        ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        try (SocketChannel channel = client;
+             Writer writer = new BufferedWriter(
+                 new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            while (true) {
+                if (!input.hasRemaining()) {
+                    if (input.capacity() >= MAX_LINE_LENGTH) {
+                        writer.write(ERROR_LINE_TOO_LONG); // Буфер занят одной неполной строкой
+                        break;
+                    }
+                    input = grow(input); // Строка длиннее буфера
+                }
+                boolean eof = channel.read(input) < 0;
+                input.flip();
+                boolean quit = executeLines(session, input, eof, response, writer);
+                input.compact();
+                writer.flush(); // Ответы на всю прочитанную порцию
+                if (quit || eof) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Клиент отключился без команды q - сессия просто завершается
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Выполняет все полные строки из буфера и записывает ответы. Неполная
+     * последняя строка остается в буфере, если канал не закрыт.
+     * @param session сессия подключения
+     * @param input прочитанные байты (после flip)
+     * @param eof true если клиент закрыл канал и продолжения не будет
+     * @param response рабочий буфер ответа
+     * @param writer поток ответов
+     * @return true если получена команда завершения
+     * @throws IOException если ответ не удалось записать
+     */
+    private static boolean executeLines(CalculatorSession session, ByteBuffer input, boolean eof,
+                                        StringBuilder response, Writer writer) throws IOException {
+        byte[] bytes = input.array();
+        int start = input.position();
+        int limit = input.limit();
+        for (int i = start; i < limit; i++) {
+            if (bytes[i] == '\n') {
+                boolean quit = executeLine(session, bytes, start, i, response, writer);
+                start = i + 1;
+                if (quit) {
+                    input.position(start);
+                    return true;
+                }
+            }
+        }
+        if (eof && start < limit) {
+            executeLine(session, bytes, start, limit, response, writer); // Последняя строка без перевода строки
+            start = limit;
+        }
+        input.position(start);
+        return false;
+    }
+
+    /**
+     * Выполняет одну строку и записывает ответ на нее.
+     * @return true если получена команда завершения
+     */
+    private static boolean executeLine(CalculatorSession session, byte[] bytes, int start, int end,
+                                       StringBuilder response, Writer writer) throws IOException {
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        int status = session.execute(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+        if (status == CalculatorSession.QUIT) {
+            return true;
+        }
+        response.setLength(0);
+        switch (status) {
+            case CalculatorSession.INITIAL:
+            case CalculatorSession.OPERATION:
+                response.append("OK ");
+                NumberSystemConverter.formatNumber(session.getResult(), session.getRadix(), response);
+                break;
+            case CalculatorSession.ERROR:
+                response.append("ERR ").append(session.getError());
+                break;
+            default:
+                response.append("OK");
+                break;
+        }
+        response.append('\n');
+        writer.append(response);
+        return false;
+    }
+
+    /**
+     * Увеличивает буфер чтения вдвое (не больше MAX_LINE_LENGTH), сохраняя непрочитанные байты.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_LINE_LENGTH));
+        buffer.flip();
+        return larger.put(buffer);
+    }
+
+    /**
+     * Создает исполнителя "виртуальный поток на подключение", если он доступен
+     * в среде выполнения (Java 21+), иначе - пул потоков-демонов платформы,
+     * по одному на открытое подключение.
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "calculator-session", SESSION_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
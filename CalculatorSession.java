@@ -0,0 +1,531 @@
+import java.math.BigDecimal;
+
+/**
+ * Класс CalculatorSession выполняет строки команд калькулятора без консольного
+ * диалога: начальное число, операции вида +5, -3, *2, /4, команды c, q и
+ * i&lt;основание&gt;, а также =выражение, которое вычисляет инфиксное выражение
+ * (переменная m - текущая память) и записывает результат в память.
+ * Операции определяются таблицей {@link OperatorRegistry} по первому символу
+ * строки; по умолчанию доступны также %3, ^2, &amp;F, |1, x5, &lt;2, &gt;1 и sqrt.
+ * Результат дополнительных операций записывается в историю и хранилище
+ * как установка значения (=), как и результат выражения.
+ * Используется пакетным режимом и сервером; каждой сессии (клиенту) нужен
+ * свой экземпляр, класс не является потокобезопасным.
+ *
+ * Результат выполнения сообщается кодом состояния, подробности доступны
+ * через методы доступа; сообщения об ошибках - заранее созданные строки.
+ *
+ * Для {@link ExactCalculator} числа передаются без округления до double:
+ * целые в диапазоне long - напрямую, остальные - как BigDecimal.
+ *
+ * Если задана история операций ({@link #setHistory(OperationHistory)}),
+ * доступны команды u (отмена), r (повтор), k имя (контрольная точка)
+ * и g имя (возврат к контрольной точке); для ExactCalculator история
+ * получает точные операнды.
+ *
+ * Если задано хранилище сессии ({@link #setStore(SessionStore)}), каждое
+ * изменение состояния записывается в него с точным операндом.
+ */
+public class CalculatorSession {
+    public static final int EMPTY = 0;     // Пустая строка
+    public static final int INITIAL = 1;   // Установлено начальное число
+    public static final int OPERATION = 2; // Выполнена арифметическая операция
+    public static final int COMMAND = 3;   // Выполнена команда c или i
+    public static final int QUIT = 4;      // Команда завершения q
+    public static final int ERROR = 5;     // Ошибка, текст доступен через getError()
+
+    public static final String ERROR_NUMBER = "введите корректное число!";
+    public static final String ERROR_DIVISION_BY_ZERO = "деление на ноль невозможно!";
+    public static final String ERROR_RADIX = "неверное основание системы счисления!";
+    public static final String ERROR_EXPRESSION = "некорректное выражение!";
+    public static final String ERROR_NO_HISTORY = "история операций не ведется!";
+    public static final String ERROR_UNDO = "нечего отменять!";
+    public static final String ERROR_REDO = "нечего повторять!";
+    public static final String ERROR_CHECKPOINT = "контрольная точка не найдена!";
+    public static final String ERROR_OPERATION = "неизвестная операция!";
+    public static final String ERROR_INTEGER = "операция определена только для целых чисел!";
+    public static final String ERROR_SHIFT = "сдвиг должен быть от 0 до 63!";
+    public static final String ERROR_NEGATIVE_ROOT = "корень из отрицательного числа невозможен!";
+
+    private final NumberSystemConverter calculator; // Основная логика вычислений
+    private final ExactCalculator exact;            // Тот же калькулятор в точном режиме или null
+    private final NumberParser parser = new NumberParser(); // Разбор чисел без выделения подстрок
+    private int radix;          // Текущая система счисления ввода
+    private char operation;     // Последняя выполненная операция
+    private double operand;     // Число последней операции
+    private long exactLong;     // Точное значение операнда для ExactCalculator, если exactBig == null
+    private BigDecimal exactBig; // Точное значение операнда вне диапазона long
+    private String error;       // Текст последней ошибки
+    private OperationHistory history; // История для отмены и повтора или null
+    private SessionStore store;       // Долговременное хранилище сессии или null
+    private OperatorRegistry operators = OperatorRegistry.standard(); // Таблица операций
+
+    /**
+     * Создает сессию с собственным калькулятором в десятичной системе.
+     */
+    public CalculatorSession() {
+        this(new NumberSystemConverter(), 10);
+    }
+
+    /**
+     * Создает сессию над существующим калькулятором.
+     * @param calculator калькулятор, над которым выполняются операции
+     * @param radix система счисления ввода (2, 8, 10 или 16)
+     */
+    public CalculatorSession(NumberSystemConverter calculator, int radix) {
+        this.calculator = calculator;
+        this.exact = calculator instanceof ExactCalculator ? (ExactCalculator) calculator : null;
+        setRadix(radix);
+    }
+
+    /**
+     * Выполняет одну строку команды.
+     * @param line строка команды
+     * @return код состояния (EMPTY, INITIAL, OPERATION, COMMAND, QUIT или ERROR)
+     */
+    public int execute(CharSequence line) {
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return EMPTY;
+        }
+
+        char first = line.charAt(start);
+        if (end - start == 1 && (first == 'q' || first == 'Q')) {
+            return QUIT;
+        }
+        if (end - start == 1 && (first == 'c' || first == 'C')) {
+            calculator.reset();
+            if (history != null) {
+                history.record('c', 0);
+            }
+            if (store != null) {
+                store.recordReset();
+            }
+            return COMMAND;
+        }
+        if (first == 'u' || first == 'U' || first == 'r' || first == 'R'
+                || first == 'k' || first == 'K' || first == 'g' || first == 'G') {
+            return executeHistory(Character.toLowerCase(first), line, start, end);
+        }
+        if (first == 'i' || first == 'I') {
+            if (parser.parse(line, start + 1, end - start - 1, 10) != NumberParser.OK) {
+                return fail(ERROR_RADIX);
+            }
+            double value = parser.value();
+            if (value != 2 && value != 8 && value != 10 && value != 16) {
+                return fail(ERROR_RADIX);
+            }
+            setRadix((int) value);
+            if (store != null) {
+                store.recordRadix((int) value);
+            }
+            return COMMAND;
+        }
+
+        if (first == '=') {
+            return evaluate(line.subSequence(start + 1, end).toString());
+        }
+
+        if (calculator.isFirstOperation()) {
+            // Первая строка - начальное число
+            if (!parseOperand(line, start, end)) {
+                return failNumber();
+            }
+            if (exact == null) {
+                calculator.setMemory(operand);
+            } else if (exactBig == null) {
+                exact.setMemory(exactLong);
+            } else {
+                exact.setMemory(exactBig);
+            }
+            record('=');
+            persist('=');
+            return INITIAL;
+        }
+
+        OperatorRegistry.Operator operator = operators.get(first);
+        int numberStart = start + 1;
+        if (operator == null) {
+            operator = operators.get('+'); // Число без знака операции прибавляется
+            numberStart = start;
+        }
+        long started = CalculatorMetrics.start();
+        if (operator.isUnary()) {
+            if (!operator.matchesWord(line, start, end)) {
+                return fail(ERROR_OPERATION);
+            }
+            operand = 0;
+        } else if (!parseOperand(line, numberStart, end)) {
+            return failNumber();
+        }
+        started = CalculatorMetrics.record(CalculatorMetrics.PARSE, started);
+        char op = operator.getSymbol();
+        if (exact != null && operator.isBasic()) {
+            return executeExact(op, started);
+        }
+        double result;
+        try {
+            if (exact == null) {
+                result = operator.apply(calculator, operand);
+            } else {
+                BigDecimal number = operator.isUnary() ? BigDecimal.ZERO
+                    : exactBig != null ? exactBig : BigDecimal.valueOf(exactLong);
+                result = operator.apply(exact, number);
+            }
+        } catch (ArithmeticException e) {
+            return fail(e);
+        }
+        CalculatorMetrics.operation(op, started);
+        if (!operator.isBasic()) {
+            op = '='; // Записывается результат, как у выражения
+            operand = result;
+            if (exact != null) {
+                exactBig = exact.getValue(); // Результат - точное значение памяти
+            }
+        }
+        record(op);
+        persist(op);
+        operation = op;
+        return OPERATION;
+    }
+
+    /**
+     * @return текущее значение памяти калькулятора
+     */
+    public double getResult() {
+        return calculator.getMemory();
+    }
+
+    /**
+     * @return символ последней выполненной операции (+, -, *, / или = для выражения
+     *         и дополнительных операций)
+     */
+    public char getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return число последней операции, начальное число или результат выражения
+     *         и дополнительной операции
+     */
+    public double getOperand() {
+        return operand;
+    }
+
+    /**
+     * @return текст последней ошибки
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return текущая система счисления ввода
+     */
+    public int getRadix() {
+        return radix;
+    }
+
+    /**
+     * Устанавливает систему счисления ввода.
+     * @param radix основание системы счисления (2, 8, 10 или 16)
+     * @throws IllegalArgumentException если система счисления не поддерживается
+     */
+    public void setRadix(int radix) {
+        calculator.setRadix(radix);
+        this.radix = radix;
+    }
+
+    /**
+     * Задает историю операций сессии: выполняемые операции записываются в нее,
+     * становятся доступны команды u, r, k и g.
+     * @param history история над калькулятором этой сессии или null
+     * @throws IllegalArgumentException если история ведется для другого калькулятора
+     */
+    public void setHistory(OperationHistory history) {
+        if (history != null && history.getCalculator() != calculator) {
+            throw new IllegalArgumentException("История ведется для другого калькулятора");
+        }
+        this.history = history;
+    }
+
+    /**
+     * @return история операций или null
+     */
+    public OperationHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Задает хранилище, в которое записываются изменения состояния сессии.
+     * @param store хранилище над калькулятором и историей этой сессии или null
+     */
+    public void setStore(SessionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * @return хранилище сессии или null
+     */
+    public SessionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Задает таблицу операций сессии.
+     * @param operators таблица операций
+     */
+    public void setOperators(OperatorRegistry operators) {
+        this.operators = operators;
+    }
+
+    /**
+     * @return таблица операций (в нее можно добавить операции)
+     */
+    public OperatorRegistry getOperators() {
+        return operators;
+    }
+
+    /**
+     * @return калькулятор сессии
+     */
+    public NumberSystemConverter getCalculator() {
+        return calculator;
+    }
+
+    /**
+     * Вычисляет выражение (скомпилированное один раз и взятое из кэша)
+     * и записывает результат в память.
+     */
+    private int evaluate(String source) {
+        long started = CalculatorMetrics.start();
+        Expression expression;
+        try {
+            expression = Expression.compileCached(source);
+        } catch (IllegalArgumentException e) {
+            return fail(ERROR_EXPRESSION);
+        }
+        int variables = expression.getVariableCount();
+        if (variables > 1 || (variables == 1 && expression.indexOf("m") != 0)) {
+            return fail(ERROR_EXPRESSION);
+        }
+        started = CalculatorMetrics.record(CalculatorMetrics.PARSE, started);
+        try {
+            operand = expression.evaluate(calculator.getMemory());
+        } catch (ArithmeticException e) {
+            return failDivisionByZero();
+        }
+        calculator.setMemory(operand);
+        CalculatorMetrics.operation('=', started);
+        if (history != null) {
+            history.record('=', operand);
+        }
+        if (store != null) {
+            store.recordOperation('=', operand); // Выражение вычисляется в double
+        }
+        operation = '=';
+        return OPERATION;
+    }
+
+    /**
+     * Выполняет операцию над ExactCalculator с точным операндом.
+     */
+    private int executeExact(char op, long started) {
+        if (op == '/' && (exactBig == null ? exactLong == 0 : exactBig.signum() == 0)) {
+            return failDivisionByZero(); // По точному делителю: 1e-400 в double - ноль
+        }
+        switch (op) {
+            case '+':
+                if (exactBig == null) {
+                    exact.add(exactLong);
+                } else {
+                    exact.add(exactBig);
+                }
+                break;
+            case '-':
+                if (exactBig == null) {
+                    exact.subtract(exactLong);
+                } else {
+                    exact.subtract(exactBig);
+                }
+                break;
+            case '*':
+                if (exactBig == null) {
+                    exact.multiply(exactLong);
+                } else {
+                    exact.multiply(exactBig);
+                }
+                break;
+            default:
+                if (exactBig == null) {
+                    exact.divide(exactLong);
+                } else {
+                    exact.divide(exactBig);
+                }
+                break;
+        }
+        CalculatorMetrics.operation(op, started);
+        record(op);
+        persist(op);
+        operation = op;
+        return OPERATION;
+    }
+
+    /**
+     * Записывает операцию в историю с точным значением операнда.
+     */
+    private void record(char op) {
+        if (history == null) {
+            return;
+        }
+        if (exact == null) {
+            history.record(op, operand);
+        } else if (exactBig == null) {
+            history.record(op, operand, exactLong);
+        } else {
+            history.record(op, operand, exactBig);
+        }
+    }
+
+    /**
+     * Записывает операцию в хранилище сессии с точным значением операнда.
+     */
+    private void persist(char op) {
+        if (store == null) {
+            return;
+        }
+        if (exact == null) {
+            store.recordOperation(op, operand);
+        } else if (exactBig == null) {
+            store.recordOperation(op, operand, exactLong);
+        } else {
+            store.recordOperation(op, operand, exactBig);
+        }
+    }
+
+    /**
+     * Разбирает число из фрагмента строки в поле operand
+     * (для ExactCalculator - также точное значение).
+     */
+    private boolean parseOperand(CharSequence line, int start, int end) {
+        if (parser.parse(line, start, end - start, radix) == NumberParser.OK) {
+            operand = parser.value();
+            if (exact != null) {
+                return parseExact(line, start, end);
+            }
+            return true;
+        }
+        if (exact != null) {
+            return false; // NaN и бесконечности в точном режиме не допускаются
+        }
+        try {
+            // Редкие формы (NaN, Infinity) - через общий разбор
+            operand = NumberSystemConverter.parseNumber(line.subSequence(start, end).toString().trim(), radix);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Запоминает точное значение операнда: long из разборщика или BigDecimal
+     * для дробных и больших чисел.
+     */
+    private boolean parseExact(CharSequence line, int start, int end) {
+        if (parser.isLong()) {
+            exactLong = parser.longValue();
+            exactBig = null;
+            return true;
+        }
+        try {
+            exactBig = NumberSystemConverter.parseExact(line.subSequence(start, end).toString(), radix);
+            return true;
+        } catch (NumberFormatException | ArithmeticException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Выполняет команды истории: u, r, k имя и g имя.
+     */
+    private int executeHistory(char command, CharSequence line, int start, int end) {
+        if (history == null) {
+            return fail(ERROR_NO_HISTORY);
+        }
+        String name = line.subSequence(start + 1, end).toString().trim();
+        switch (command) {
+            case 'u':
+                if (!name.isEmpty() || !history.undo()) {
+                    return fail(ERROR_UNDO);
+                }
+                if (store != null) {
+                    store.recordUndo();
+                }
+                return COMMAND;
+            case 'r':
+                if (!name.isEmpty() || !history.redo()) {
+                    return fail(ERROR_REDO);
+                }
+                if (store != null) {
+                    store.recordRedo();
+                }
+                return COMMAND;
+            case 'k':
+                if (name.isEmpty() || name.length() > OperationHistory.MAX_CHECKPOINT_NAME) {
+                    return fail(ERROR_CHECKPOINT);
+                }
+                history.checkpoint(name);
+                if (store != null) {
+                    store.recordCheckpoint(name);
+                }
+                return COMMAND;
+            default:
+                if (!history.restore(name)) {
+                    return fail(ERROR_CHECKPOINT);
+                }
+                if (store != null) {
+                    store.recordRestore(name);
+                }
+                return COMMAND;
+        }
+    }
+
+    /**
+     * Ошибка вычисления: деление на ноль учитывается по типу исключения,
+     * текст берется из исключения.
+     */
+    private int fail(ArithmeticException e) {
+        if (e instanceof DivisionByZeroException) {
+            CalculatorMetrics.divisionByZero();
+        } else {
+            CalculatorMetrics.otherError();
+        }
+        error = e.getMessage() != null ? e.getMessage() : ERROR_OPERATION;
+        return ERROR;
+    }
+
+    private int failDivisionByZero() {
+        CalculatorMetrics.divisionByZero();
+        error = ERROR_DIVISION_BY_ZERO;
+        return ERROR;
+    }
+
+    private int failNumber() {
+        CalculatorMetrics.numberFormatError();
+        error = ERROR_NUMBER;
+        return ERROR;
+    }
+
+    private int fail(String message) {
+        CalculatorMetrics.otherError();
+        error = message;
+        return ERROR;
+    }
+}
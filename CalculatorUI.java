@@ -3,40 +3,129 @@
  * Обеспечивает взаимодействие с пользователем через консоль, поддерживает
  * различные системы счисления и ведение лога операций.
  */
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Path;
 
 public class CalculatorUI {
     // Компоненты для работы калькулятора
     private final KeyboardInput input;        // Обработка пользовательского ввода
+    private final ConsoleOutput console;      // Буферизованный вывод интерактивного режима
     private final NumberSystemConverter calculator;      // Основная логика вычислений
-    private final CustomFileWriter logWriter; // Запись операций в лог
+    private final ExactCalculator exact;      // Тот же калькулятор в точном режиме или null
+    private final String logPath;             // Путь к файлу лога
+    private final LogRotation rotation;       // Политика ротации лога или null
+    private CustomFileWriter logWriter;       // Запись операций в лог (открывается при первой записи)
+    private final NumberCache numberCache;    // Кэш разбора и форматирования чисел
+    private final NumberParser parser = new NumberParser(); // Разбор числа операции без подстрок
+    private final OperatorRegistry operators = OperatorRegistry.standard(); // Таблица операций
+    private OperationJournal journal;         // Двоичный журнал вместо текстового лога (если задан)
+    private OperationHistory history;         // История для отмены и повтора (если задана)
+    private Path historyFile;                 // Файл, в который сохраняется история
+    private SessionStore store;               // Долговременное хранилище сессии (если задано)
     private int inputRadix;             // Текущая система счисления для ввода
 
+    private static final String OPERATION_PROMPT =
+        "\nВведите операцию и число (например: +5, -3, *2) или команду (c/i/q): ";
+
+    /**
+     * Имя файла лога по умолчанию.
+     */
+    public static final String DEFAULT_LOG_FILE = "calculator_log.txt";
+
     /**
      * Конструктор класса. Инициализирует основные компоненты калькулятора.
+     * Лог пишется в calculator_log.txt с ротацией сегментов по умолчанию.
      */
     public CalculatorUI() {
+        this(DEFAULT_LOG_FILE, LogRotation.defaults());
+    }
+
+    /**
+     * Конструктор с заданным файлом лога.
+     * @param logPath путь к файлу лога
+     * @param rotation политика ротации сегментов лога или null для записи в один файл
+     */
+    public CalculatorUI(String logPath, LogRotation rotation) {
+        this(logPath, rotation, new NumberSystemConverter());
+    }
+
+    /**
+     * Конструктор с заданным файлом лога и калькулятором (например, {@link ExactCalculator}).
+     * @param logPath путь к файлу лога
+     * @param rotation политика ротации сегментов лога или null для записи в один файл
+     * @param calculator калькулятор, выполняющий операции
+     */
+    public CalculatorUI(String logPath, LogRotation rotation, NumberSystemConverter calculator) {
         this.input = new KeyboardInput();
-        this.calculator = new NumberSystemConverter();
-        this.logWriter = new CustomFileWriter("calculator_log.txt");
+        this.console = input.getOutput();
+        this.calculator = calculator;
+        this.exact = calculator instanceof ExactCalculator ? (ExactCalculator) calculator : null;
+        this.logPath = logPath;
+        this.rotation = rotation;
+        this.numberCache = NumberCache.shared();
         this.inputRadix = 10; // По умолчанию десятичная система
     }
 
+    /**
+     * Возвращает журнал операций, открывая его при первой записи: без записи
+     * в лог (пакетный режим без --log, двоичный журнал) файл, фоновый поток
+     * и сжатие сегментов не создаются. Если файл не удалось открыть в
+     * асинхронном режиме, используется простой режим с открытием файла на каждую запись.
+     * @return объект записи журнала
+     */
+    private CustomFileWriter log() {
+        if (logWriter == null) {
+            try {
+                logWriter = rotation == null
+                    ? CustomFileWriter.openAsync(logPath) : CustomFileWriter.openRolling(logPath, rotation);
+            } catch (IOException e) {
+                System.out.println("Ошибка при открытии лога: " + e.getMessage());
+                logWriter = new CustomFileWriter(logPath);
+            }
+            CalculatorMetrics.watchLog(logWriter);
+        }
+        return logWriter;
+    }
+
+    /**
+     * Закрывает журнал операций, если он был открыт.
+     * @throws IOException если накопленные записи не удалось записать
+     */
+    private void closeLog() throws IOException {
+        if (logWriter != null) {
+            logWriter.close();
+        }
+    }
+
     /**
      * Отображает главное меню калькулятора с доступными операциями.
      */
     private void showMenu() {
-        System.out.println("\nДобро пожаловать в Калькулятор!");
-        System.out.println("Доступные операции:");
-        System.out.println("Введите операцию и число вместе, например:");
-        System.out.println("+5  : Прибавить 5");
-        System.out.println("-3  : Вычесть 3");
-        System.out.println("*2  : Умножить на 2");
-        System.out.println("/4  : Разделить на 4");
-        System.out.println("Также доступны команды:");
-        System.out.println("c   : Сброс результата");
-        System.out.println("i   : Изменить систему счисления ввода");
-        System.out.println("q   : Выход");
+        console.println("\nДобро пожаловать в Калькулятор!");
+        console.println("Доступные операции:");
+        console.println("Введите операцию и число вместе, например:");
+        console.println("+5  : Прибавить 5");
+        console.println("-3  : Вычесть 3");
+        console.println("*2  : Умножить на 2");
+        console.println("/4  : Разделить на 4");
+        console.println("%3  : Остаток от деления на 3");
+        console.println("^2  : Возвести в степень 2");
+        console.println("&F, |1, x5 : Битовые И, ИЛИ, исключающее ИЛИ (целые числа)");
+        console.println("<2, >1 : Сдвиг влево, вправо (целые числа)");
+        console.println("sqrt : Квадратный корень");
+        console.println("Также доступны команды:");
+        console.println("c   : Сброс результата");
+        console.println("i   : Изменить систему счисления ввода");
+        if (history != null) {
+            console.println("u   : Отменить операцию");
+            console.println("r   : Повторить отмененную операцию");
+            console.println("k имя : Запомнить контрольную точку");
+            console.println("g имя : Вернуться к контрольной точке");
+        }
+        console.println("q   : Выход");
     }
 
     /**
@@ -44,7 +133,7 @@ public class CalculatorUI {
      * @param result результат вычисления для отображения
      */
     private void displayResult(double result) {
-        System.out.println("\nРезультат в разных системах счисления:");
+        console.println("\nРезультат в разных системах счисления:");
         
         // Сначала выводим результат в текущей системе счисления
         String currentSystemName;
@@ -64,53 +153,67 @@ public class CalculatorUI {
             default:
                 currentSystemName = "Текущая";
         }
-        calculator.setRadix(inputRadix);
-        System.out.printf("%s: %s%n", currentSystemName, calculator.formatResult(result));
+        // Форматирование замеряется отдельно от вывода в консоль
+        long started = CalculatorMetrics.start();
+        String current = format(result, inputRadix);
+        String binary = format(result, 2);
+        String octal = format(result, 8);
+        String decimal = format(result, 10);
+        String hex = format(result, 16);
+        CalculatorMetrics.record(CalculatorMetrics.FORMAT, started);
+        // Строки собираются без Formatter: printf на каждой строке заметно дороже самого вывода
+        console.print(currentSystemName);
+        console.print(": ");
+        console.println(current);
 
         // Затем выводим остальные системы счисления
         if (inputRadix != 2) {
-            calculator.setRadix(2);
-            System.out.printf("Двоичная: %s%n", calculator.formatResult(result));
+            console.print("Двоичная: ");
+            console.println(binary);
         }
         if (inputRadix != 8) {
-            calculator.setRadix(8);
-            System.out.printf("Восьмеричная: %s%n", calculator.formatResult(result));
+            console.print("Восьмеричная: ");
+            console.println(octal);
         }
         if (inputRadix != 10) {
-            calculator.setRadix(10);
-            System.out.printf("Десятичная: %s%n", calculator.formatResult(result));
+            console.print("Десятичная: ");
+            console.println(decimal);
         }
         if (inputRadix != 16) {
-            calculator.setRadix(16);
-            System.out.printf("Шестнадцатеричная: %s%n", calculator.formatResult(result));
+            console.print("Шестнадцатеричная: ");
+            console.println(hex);
         }
-        
-        calculator.setRadix(inputRadix); // Возвращаем исходную систему счисления
     }
 
     /**
      * Позволяет пользователю выбрать систему счисления для ввода чисел.
      */
     private void selectNumberSystem() {
-        System.out.println("\nВыберите систему счисления для ввода:");
-        System.out.println("2 - Двоичная");
-        System.out.println("8 - Восьмеричная");
-        System.out.println("10 - Десятичная");
-        System.out.println("16 - Шестнадцатеричная");
+        console.println("\nВыберите систему счисления для ввода:");
+        console.println("2 - Двоичная");
+        console.println("8 - Восьмеричная");
+        console.println("10 - Десятичная");
+        console.println("16 - Шестнадцатеричная");
         
         while (true) {
             try {
                 int radix = input.readInt("Введите основание системы счисления: ");
+                if (radix == 0 && input.isEndOfInput()) {
+                    return; // Ввод закончился - основной цикл завершит работу
+                }
                 if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
-                    System.out.println("Ошибка: неверное основание системы счисления!");
+                    console.println("Ошибка: неверное основание системы счисления!");
                     continue;
                 }
                 inputRadix = radix;
                 calculator.setRadix(radix);
-                System.out.printf("Система счисления ввода установлена на %d-ичную%n", radix);
+                if (store != null) {
+                    store.recordRadix(radix);
+                }
+                console.printf("Система счисления ввода установлена на %d-ичную%n", radix);
                 break;
             } catch (NumberFormatException e) {
-                System.out.println("Ошибка: введите корректное число!");
+                console.println("Ошибка: введите корректное число!");
             }
         }
     }
@@ -121,50 +224,346 @@ public class CalculatorUI {
      * @param number введенное число
      * @param result результат операции
      */
-    private void logOperation(String operation, double number, double result) {
+    private void logOperation(char operation, double number, double result) {
+        long started = CalculatorMetrics.start();
         try {
-            calculator.setRadix(2);
-            String binResult = calculator.formatResult(result);
-            calculator.setRadix(8);
-            String octResult = calculator.formatResult(result);
-            calculator.setRadix(10);
-            String decResult = calculator.formatResult(result);
-            calculator.setRadix(16);
-            String hexResult = calculator.formatResult(result);
-            calculator.setRadix(inputRadix); // Возвращаем исходную систему счисления
-
-            logWriter.writeLine(String.format(
-                "Операция: %s, Число: %.2f, Результат: %.2f (BIN: %s, OCT: %s, DEC: %s, HEX: %s)", 
-                operation, 
-                number, 
-                result,
-                binResult,
-                octResult,
-                decResult,
-                hexResult
-            ));
+            if (journal != null) {
+                journal.append(operation, number, result);
+            } else {
+                log().writeLine(formatLogRecord(operationName(operation), number, result, numberCache));
+            }
         } catch (IOException e) {
-            System.out.println("Ошибка при записи в лог: " + e.getMessage());
+            console.println("Ошибка при записи в лог: " + e.getMessage());
+        }
+        CalculatorMetrics.record(CalculatorMetrics.LOG, started);
+    }
+
+    /**
+     * Формирует строку текстового лога для операции.
+     * @param operation название операции
+     * @param number введенное число
+     * @param result результат операции
+     * @param cache кэш форматирования чисел
+     * @return строка лога без перевода строки
+     */
+    static String formatLogRecord(String operation, double number, double result, NumberCache cache) {
+        // Те же значения затем выводит displayResult - повторно они берутся из кэша
+        return String.format(
+            "Операция: %s, Число: %.2f, Результат: %.2f (BIN: %s, OCT: %s, DEC: %s, HEX: %s)",
+            operation,
+            number,
+            result,
+            cache.format(result, 2),
+            cache.format(result, 8),
+            cache.format(result, 10),
+            cache.format(result, 16)
+        );
+    }
+
+    /**
+     * @return таблица операций; операции, добавленные в нее до запуска,
+     *         доступны в интерактивном и пакетном режимах
+     */
+    public OperatorRegistry getOperators() {
+        return operators;
+    }
+
+    /**
+     * Форматирует результат для вывода; в точном режиме значение памяти
+     * выводится точно, как в пакетном режиме ({@link ExactCalculator#formatResult}).
+     */
+    private String format(double result, int radix) {
+        if (exact != null && result == calculator.getMemory()) {
+            return NumberSystemConverter.formatExact(exact.getValue(), radix);
+        }
+        return numberCache.format(result, radix);
+    }
+
+    /**
+     * Разбирает точное значение числа для ExactCalculator тем же разбором,
+     * что и CalculatorSession; NaN и бесконечности в точном режиме не допускаются.
+     * @param text число
+     * @return точное значение
+     * @throws NumberFormatException если число некорректно
+     */
+    private BigDecimal parseExact(String text) {
+        try {
+            return NumberSystemConverter.parseExact(text, inputRadix);
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException(e.getMessage());
+        }
+    }
+
+    /**
+     * Выполняет основную операцию над ExactCalculator с точным операндом.
+     * @return приближение нового значения памяти
+     * @throws DivisionByZeroException при делении на ноль (по точному делителю)
+     */
+    private double applyExact(char operation, BigDecimal operand) {
+        switch (operation) {
+            case '+':
+                exact.add(operand);
+                break;
+            case '-':
+                exact.subtract(operand);
+                break;
+            case '*':
+                exact.multiply(operand);
+                break;
+            default:
+                if (operand.signum() == 0) {
+                    throw new DivisionByZeroException(CalculatorSession.ERROR_DIVISION_BY_ZERO);
+                }
+                exact.divide(operand);
+                break;
         }
+        return calculator.getMemory();
     }
 
     /**
-     * Разбирает строку ввода на операцию и число.
-     * @param input строка ввода
-     * @return массив из двух элементов: операция и число
+     * Записывает операцию в историю и хранилище сессии.
+     * @param operation код операции
+     * @param number число операции
+     * @param exactNumber точное значение числа в точном режиме или null
      */
-    private String[] parseInput(String input) {
-        input = input.trim();
-        String operation = "+";
-        String number = input;
+    private void record(char operation, double number, BigDecimal exactNumber) {
+        if (history != null) {
+            if (exactNumber != null) {
+                history.record(operation, number, exactNumber);
+            } else {
+                history.record(operation, number);
+            }
+        }
+        if (store != null) {
+            if (exactNumber != null) {
+                store.recordOperation(operation, number, exactNumber);
+            } else {
+                store.recordOperation(operation, number);
+            }
+        }
+    }
 
-        if (input.startsWith("+") || input.startsWith("-") || 
-            input.startsWith("*") || input.startsWith("/")) {
-            operation = input.substring(0, 1);
-            number = input.substring(1).trim();
+    /**
+     * Разбирает число операции из строки ввода начиная с позиции start.
+     * @param input строка ввода без начальных и конечных пробелов
+     * @param start начало числа
+     * @return число
+     * @throws NumberFormatException если число некорректно
+     */
+    private double parseOperand(String input, int start) {
+        if (parser.parse(input, start, input.length() - start, inputRadix) == NumberParser.OK) {
+            return parser.value();
         }
+        return numberCache.parse(input.substring(start).trim(), inputRadix); // NaN, Infinity или ошибка
+    }
 
-        return new String[]{operation, number};
+    /**
+     * Устанавливает систему счисления ввода без диалога с пользователем.
+     * @param radix основание системы счисления (2, 8, 10 или 16)
+     * @throws IllegalArgumentException если система счисления не поддерживается
+     */
+    public void setInputRadix(int radix) {
+        calculator.setRadix(radix);
+        inputRadix = radix;
+        if (store != null && store.getRadix() != radix) {
+            store.recordRadix(radix);
+        }
+    }
+
+    /**
+     * Включает двоичный журнал операций: записи пишутся в него вместо
+     * текстового лога. Журнал закрывается по завершении работы калькулятора.
+     * @param journal открытый журнал операций
+     */
+    public void setJournal(OperationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Включает историю операций с отменой, повтором и контрольными точками.
+     * По завершении работы калькулятора история сохраняется в файл.
+     * @param history история над калькулятором этого интерфейса
+     * @param file файл для сохранения истории или null
+     * @throws IllegalArgumentException если история ведется для другого калькулятора
+     */
+    public void setHistory(OperationHistory history, Path file) {
+        if (history.getCalculator() != calculator) {
+            throw new IllegalArgumentException("История ведется для другого калькулятора");
+        }
+        this.history = history;
+        this.historyFile = file;
+    }
+
+    /**
+     * Включает долговременное хранилище сессии: изменения состояния
+     * записываются в него, система счисления ввода берется из восстановленной
+     * сессии. Хранилище закрывается по завершении работы калькулятора.
+     * @param store хранилище, открытое над калькулятором и историей этого интерфейса
+     */
+    public void setSessionStore(SessionStore store) {
+        this.store = store;
+        this.inputRadix = store.getRadix();
+        calculator.setRadix(inputRadix);
+    }
+
+    /**
+     * Пакетный (неинтерактивный) режим работы калькулятора.
+     * Читает поток строк той же грамматики, что и интерактивный режим
+     * (первое число, затем операции вида +5, -3, *2, /4 и команды c/q,
+     * а также i&lt;основание&gt; для смены системы счисления), не выводит
+     * приглашения и промежуточные результаты во всех системах счисления.
+     * В выходной поток записывается только каждый N-й и итоговый результат
+     * в текущей системе счисления; ошибки с номером строки выводятся в System.err.
+     *
+     * @param reader источник строк операций
+     * @param out буферизованный поток для вывода результатов
+     * @param reportEvery выводить результат после каждой N-й операции (0 - только итоговый)
+     * @param logEnabled записывать ли операции в лог-файл
+     * @return число выполненных операций
+     * @throws IOException если произошла ошибка чтения или записи
+     */
+    public long runBatch(BufferedReader reader, Writer out, long reportEvery, boolean logEnabled) throws IOException {
+        CalculatorSession session = new CalculatorSession(calculator, inputRadix);
+        session.setHistory(history);
+        session.setStore(store);
+        session.setOperators(operators);
+        long lineNumber = 0;
+        long operations = 0;
+        String line;
+
+        loop:
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            switch (session.execute(line)) {
+                case CalculatorSession.QUIT:
+                    break loop;
+                case CalculatorSession.ERROR:
+                    System.err.println("Строка " + lineNumber + ": " + session.getError());
+                    break;
+                case CalculatorSession.COMMAND:
+                    inputRadix = session.getRadix();
+                    break;
+                case CalculatorSession.OPERATION:
+                    double result = session.getResult();
+                    if (logEnabled) {
+                        logOperation(session.getOperation(), session.getOperand(), result);
+                    }
+                    operations++;
+                    if (reportEvery > 0 && operations % reportEvery == 0) {
+                        long started = CalculatorMetrics.start();
+                        String formatted = calculator.formatResult(result);
+                        CalculatorMetrics.record(CalculatorMetrics.FORMAT, started);
+                        out.write(formatted);
+                        out.write(System.lineSeparator());
+                    }
+                    break;
+                default:
+                    break; // Пустая строка или начальное число
+            }
+        }
+
+        // Итоговый результат, если он еще не был выведен
+        if (reportEvery <= 0 || operations % reportEvery != 0 || operations == 0) {
+            out.write(calculator.formatResult(calculator.getMemory()));
+            out.write(System.lineSeparator());
+        }
+        out.flush();
+        closeLog();
+        if (journal != null) {
+            journal.close();
+        }
+        saveHistory();
+        if (store != null) {
+            store.close();
+        }
+        return operations;
+    }
+
+    /**
+     * Сохраняет историю операций в файл, если он задан.
+     * @throws IOException если файл не удалось записать
+     */
+    private void saveHistory() throws IOException {
+        if (history != null && historyFile != null) {
+            history.save(historyFile);
+        }
+    }
+
+    /**
+     * Выполняет команду истории интерактивного режима: u, r, k имя или g имя.
+     * @param userInput строка ввода
+     * @return false если строка не является командой истории
+     */
+    private boolean historyCommand(String userInput) {
+        if (history == null || userInput.isEmpty()) {
+            return false;
+        }
+        char command = Character.toLowerCase(userInput.charAt(0));
+        String name = userInput.substring(1).trim();
+        boolean single = userInput.length() == 1;
+        if (command == 'u' && single) {
+            if (!history.undo()) {
+                console.println("Ошибка: нечего отменять!");
+                return true;
+            }
+            if (store != null) {
+                store.recordUndo();
+            }
+        } else if (command == 'r' && single) {
+            if (!history.redo()) {
+                console.println("Ошибка: нечего повторять!");
+                return true;
+            }
+            if (store != null) {
+                store.recordRedo();
+            }
+        } else if (command == 'k' && !single && userInput.charAt(1) == ' ') {
+            if (name.length() > OperationHistory.MAX_CHECKPOINT_NAME) {
+                console.println("Ошибка: слишком длинное имя контрольной точки!");
+            } else {
+                history.checkpoint(name);
+                if (store != null) {
+                    store.recordCheckpoint(name);
+                }
+                console.printf("Контрольная точка \"%s\" сохранена%n", name);
+            }
+            return true;
+        } else if (command == 'g' && !single && userInput.charAt(1) == ' ') {
+            if (!history.restore(name)) {
+                console.println("Ошибка: контрольная точка не найдена!");
+                return true;
+            }
+            if (store != null) {
+                store.recordRestore(name);
+            }
+        } else {
+            return false;
+        }
+        if (!calculator.isFirstOperation()) {
+            console.println("Текущее значение:");
+            displayResult(calculator.getMemory());
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает название операции для лога.
+     * @param operation символ операции
+     * @return название операции
+     */
+    static String operationName(char operation) {
+        switch (operation) {
+            case '+':
+                return "сложение";
+            case '-':
+                return "вычитание";
+            case '*':
+                return "умножение";
+            case '=':
+                return "выражение";
+            default:
+                return "деление";
+        }
     }
 
     /**
@@ -174,21 +573,45 @@ public class CalculatorUI {
         boolean running = true;
         showMenu();
         selectNumberSystem();
+        if (store != null && !calculator.isFirstOperation()) {
+            console.println("\nСессия восстановлена. Текущее значение:");
+            displayResult(calculator.getMemory());
+        }
 
         while (running) {
             try {
                 if (calculator.isFirstOperation()) {
                     String inputPrompt = String.format("\nВведите первое число (в %d-ичной системе): ", inputRadix);
                     String numberStr = input.readLine(inputPrompt);
+                    if (numberStr == null) {
+                        running = false; // Ввод закончился
+                        continue;
+                    }
+                    if (historyCommand(numberStr.trim())) {
+                        continue;
+                    }
                     calculator.setRadix(inputRadix);
-                    double firstNumber = NumberSystemConverter.parseNumber(numberStr, inputRadix);
-                    calculator.setMemory(firstNumber);
-                    System.out.println("Начальное число:");
+                    double firstNumber;
+                    BigDecimal exactFirst = null; // Точное начальное число в точном режиме
+                    if (exact != null) {
+                        exactFirst = parseExact(numberStr);
+                        exact.setMemory(exactFirst);
+                        firstNumber = calculator.getMemory();
+                    } else {
+                        firstNumber = numberCache.parse(numberStr, inputRadix);
+                        calculator.setMemory(firstNumber);
+                    }
+                    record('=', firstNumber, exactFirst);
+                    console.println("Начальное число:");
                     displayResult(firstNumber);
                 }
 
-                String inputPrompt = String.format("\nВведите операцию и число (например: +5, -3, *2) или команду (c/i/q): ");
-                String userInput = input.readLine(inputPrompt).trim();
+                String userInput = input.readLine(OPERATION_PROMPT);
+                if (userInput == null) {
+                    running = false; // Ввод закончился - как команда q
+                    continue;
+                }
+                userInput = userInput.trim();
 
                 if (userInput.equalsIgnoreCase("q")) {
                     running = false;
@@ -197,6 +620,16 @@ public class CalculatorUI {
 
                 if (userInput.equalsIgnoreCase("c")) {
                     calculator.reset();
+                    if (history != null) {
+                        history.record('c', 0);
+                    }
+                    if (store != null) {
+                        store.recordReset();
+                    }
+                    continue;
+                }
+
+                if (historyCommand(userInput)) {
                     continue;
                 }
 
@@ -205,53 +638,92 @@ public class CalculatorUI {
                     continue;
                 }
 
-                String[] parts = parseInput(userInput);
-                String operation = parts[0];
-                String numberStr = parts[1];
+                OperatorRegistry.Operator operator = operators.get(userInput.isEmpty() ? 0 : userInput.charAt(0));
+                int numberStart = 1;
+                if (operator == null) {
+                    operator = operators.get('+'); // Число без знака операции прибавляется
+                    numberStart = 0;
+                }
 
                 try {
                     calculator.setRadix(inputRadix);
-                    double number = NumberSystemConverter.parseNumber(numberStr, inputRadix);
-                    double result = 0;
-
-                    switch (operation) {
-                        case "+":
-                            result = calculator.add(number);
-                            logOperation("сложение", number, result);
-                            break;
-                        case "-":
-                            result = calculator.subtract(number);
-                            logOperation("вычитание", number, result);
-                            break;
-                        case "*":
-                            result = calculator.multiply(number);
-                            logOperation("умножение", number, result);
-                            break;
-                        case "/":
-                            if (number == 0) {
-                                System.out.println("Ошибка: деление на ноль невозможно!");
-                                continue;
-                            }
-                            result = calculator.divide(number);
-                            logOperation("деление", number, result);
-                            break;
-                        default:
-                            System.out.println("Ошибка: неизвестная операция!");
+                    long started = CalculatorMetrics.start();
+                    double number = 0;
+                    BigDecimal exactNumber = BigDecimal.ZERO; // Точный операнд в точном режиме
+                    if (operator.isUnary()) {
+                        if (!operator.matchesWord(userInput, 0, userInput.length())) {
+                            console.println("Ошибка: неизвестная операция!");
                             continue;
+                        }
+                    } else if (exact != null) {
+                        exactNumber = parseExact(userInput.substring(numberStart));
+                        number = exactNumber.doubleValue();
+                    } else {
+                        number = parseOperand(userInput, numberStart);
+                    }
+                    started = CalculatorMetrics.record(CalculatorMetrics.PARSE, started);
+                    double result;
+                    try {
+                        if (exact == null) {
+                            result = operator.apply(calculator, number);
+                        } else if (operator.isBasic()) {
+                            result = applyExact(operator.getSymbol(), exactNumber);
+                        } else {
+                            result = operator.apply(exact, exactNumber);
+                        }
+                    } catch (ArithmeticException e) {
+                        if (e instanceof DivisionByZeroException) {
+                            CalculatorMetrics.divisionByZero();
+                        }
+                        console.println("Ошибка: " + e.getMessage());
+                        continue;
+                    }
+                    char operation = operator.getSymbol();
+                    CalculatorMetrics.operation(operation, started);
+                    if (!operator.isBasic()) {
+                        operation = '='; // Записывается результат, как у выражения
+                        number = result;
+                    }
+                    logOperation(operation, number, result);
+                    if (exact != null) {
+                        record(operation, number, operator.isBasic() ? exactNumber : exact.getValue());
+                    } else {
+                        record(operation, number, null);
                     }
 
                     displayResult(result);
 
                 } catch (NumberFormatException e) {
-                    System.out.println("Ошибка: введите корректное число!");
+                    CalculatorMetrics.numberFormatError();
+                    console.println("Ошибка: введите корректное число!");
                 }
 
             } catch (Exception e) {
-                System.out.println("Произошла ошибка: " + e.getMessage());
+                console.println("Произошла ошибка: " + e.getMessage());
             }
         }
 
-        System.out.println("Спасибо за использование калькулятора!");
+        console.println("Спасибо за использование калькулятора!");
+        try {
+            closeLog(); // Дописываем накопленные записи журнала
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException e) {
+            console.println("Ошибка при записи в лог: " + e.getMessage());
+        }
+        try {
+            saveHistory();
+        } catch (IOException e) {
+            console.println("Ошибка при сохранении истории: " + e.getMessage());
+        }
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                console.println("Ошибка при сохранении сессии: " + e.getMessage());
+            }
+        }
         input.close();
     }
 } 
\ No newline at end of file
@@ -0,0 +1,228 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Класс ConcurrentCalculator - потокобезопасная реализация калькулятора,
+ * которую можно разделять между потоками обработки запросов.
+ *
+ * Состояние (память и флаг первой операции) хранится в одном AtomicLong
+ * в виде битов double, поэтому каждая операция add/subtract/multiply/divide
+ * выполняется атомарно через CAS и линеаризуема: результат
+ * равен последовательному применению операций в некотором порядке, согласованном
+ * с реальным временем. Поля memory и isFirstOperation базового класса не используются.
+ *
+ * Для потоков, которым не нужен промежуточный результат, есть метод
+ * {@link #accumulate(double)}: слагаемые копятся в распределенном сумматоре
+ * (DoubleAdder) без конкуренции за одно слово памяти и вносятся в память при
+ * ближайшем чтении, умножении, делении, снимке или сбросе. Порядок сложения
+ * таких слагаемых не определен, поэтому результат может отличаться от
+ * последовательного в пределах погрешности округления double.
+ *
+ * Умножение и деление не коммутируют со сложением: они применяются к памяти
+ * с уже внесенными слагаемыми, а слагаемые, добавленные одновременно с ними,
+ * считаются выполненными после.
+ *
+ * Внесение слагаемых состоит из двух шагов (забрать сумму из сумматора и
+ * прибавить ее к памяти), поэтому оно, сброс и установка памяти выполняются
+ * под общей блокировкой foldLock: иначе внесение, начатое до сброса, вернуло бы
+ * уже забранную сумму в память после него и отменило сброс. Сложение и
+ * accumulate блокировку не берут, а внесение берет ее только при ненулевой сумме.
+ */
+public class ConcurrentCalculator extends Calculator {
+    // Битовый образ "памяти до первой операции" (значение 0). Это NaN с особой
+    // полезной нагрузкой, который не может получиться из Double.doubleToLongBits.
+    private static final long FIRST_OPERATION = 0x7ff8_dead_0000_0000L;
+
+    private final AtomicLong state = new AtomicLong(FIRST_OPERATION); // Память и флаг первой операции
+    private final DoubleAdder pending = new DoubleAdder();            // Невнесенные слагаемые accumulate
+    private final int radix;                                          // Система счисления для formatResult
+    private final Object foldLock = new Object();                     // Внесение слагаемых, сброс и установка памяти
+
+    /**
+     * Неизменяемый снимок состояния калькулятора.
+     */
+    public static final class Snapshot {
+        private final double memory;
+        private final boolean firstOperation;
+
+        Snapshot(double memory, boolean firstOperation) {
+            this.memory = memory;
+            this.firstOperation = firstOperation;
+        }
+
+        /**
+         * @return значение памяти на момент снимка
+         */
+        public double getMemory() {
+            return memory;
+        }
+
+        /**
+         * @return true если на момент снимка не было ни одной операции
+         */
+        public boolean isFirstOperation() {
+            return firstOperation;
+        }
+    }
+
+    /**
+     * Создает потокобезопасный калькулятор с десятичным форматированием результата.
+     */
+    public ConcurrentCalculator() {
+        this(10);
+    }
+
+    /**
+     * Создает потокобезопасный калькулятор.
+     * @param radix система счисления для formatResult (2, 8, 10 или 16)
+     * @throws IllegalArgumentException если система счисления не поддерживается
+     */
+    public ConcurrentCalculator(int radix) {
+        super();
+        if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+            throw new IllegalArgumentException("Поддерживаются только системы счисления 2, 8, 10 и 16");
+        }
+        this.radix = radix;
+    }
+
+    @Override
+    public double getMemory() {
+        return valueOf(foldPending());
+    }
+
+    @Override
+    public void setMemory(double value) {
+        synchronized (foldLock) {
+            pending.reset();
+            state.set(Double.doubleToLongBits(value));
+        }
+    }
+
+    @Override
+    public boolean isFirstOperation() {
+        return state.get() == FIRST_OPERATION && pending.sum() == 0;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (foldLock) {
+            pending.reset();
+            state.set(FIRST_OPERATION);
+        }
+    }
+
+    @Override
+    public double add(double num) {
+        while (true) {
+            long current = state.get();
+            double result = valueOf(current) + num;
+            if (state.compareAndSet(current, Double.doubleToLongBits(result))) {
+                return result;
+            }
+        }
+    }
+
+    @Override
+    public double subtract(double num) {
+        return add(-num);
+    }
+
+    @Override
+    public double multiply(double num) {
+        while (true) {
+            long current = foldPending();
+            double result = valueOf(current) * num;
+            if (state.compareAndSet(current, Double.doubleToLongBits(result))) {
+                return result;
+            }
+        }
+    }
+
+    @Override
+    public double divide(double num) throws ArithmeticException {
+        if (num == 0) {
+            throw new DivisionByZeroException();
+        }
+        while (true) {
+            long current = foldPending();
+            double result = valueOf(current) / num;
+            if (state.compareAndSet(current, Double.doubleToLongBits(result))) {
+                return result;
+            }
+        }
+    }
+
+    @Override
+    public String formatResult(double number) {
+        return NumberSystemConverter.formatNumber(number, radix);
+    }
+
+    /**
+     * Добавляет слагаемое без возврата результата. При большом числе потоков
+     * масштабируется лучше, чем add, так как не конкурирует за одно слово памяти.
+     * Отрицательное значение соответствует вычитанию.
+     *
+     * @param num слагаемое
+     */
+    public void accumulate(double num) {
+        pending.add(num);
+    }
+
+    /**
+     * Возвращает согласованный снимок памяти и флага первой операции.
+     * @return снимок состояния
+     */
+    public Snapshot snapshot() {
+        long bits = foldPending();
+        return new Snapshot(valueOf(bits), bits == FIRST_OPERATION);
+    }
+
+    /**
+     * Атомарно возвращает снимок состояния и сбрасывает калькулятор.
+     * Каждая операция попадает либо в возвращенный снимок, либо в новое состояние.
+     *
+     * @return снимок состояния до сброса
+     */
+    public Snapshot snapshotAndReset() {
+        double delta;
+        long bits;
+        synchronized (foldLock) {
+            delta = pending.sumThenReset();
+            bits = state.getAndSet(FIRST_OPERATION);
+        }
+        if (delta != 0) {
+            return new Snapshot(valueOf(bits) + delta, false);
+        }
+        return new Snapshot(valueOf(bits), bits == FIRST_OPERATION);
+    }
+
+    /**
+     * Вносит накопленные слагаемые в память.
+     * @return битовый образ памяти после внесения
+     */
+    private long foldPending() {
+        if (pending.sum() == 0) {
+            return state.get();
+        }
+        synchronized (foldLock) {
+            double delta = pending.sumThenReset();
+            if (delta == 0) {
+                return state.get();
+            }
+            while (true) { // Блокировка не защищает от add, поэтому по-прежнему CAS
+                long current = state.get();
+                long updated = Double.doubleToLongBits(valueOf(current) + delta);
+                if (state.compareAndSet(current, updated)) {
+                    return updated;
+                }
+            }
+        }
+    }
+
+    /**
+     * Преобразует битовый образ состояния в значение памяти.
+     */
+    private static double valueOf(long bits) {
+        return bits == FIRST_OPERATION ? 0 : Double.longBitsToDouble(bits);
+    }
+}
@@ -0,0 +1,151 @@
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Formatter;
+
+/**
+ * Класс ConsoleOutput - буферизованный вывод в консоль для интерактивного режима.
+ * Строки кодируются в UTF-8 прямо в собственный байтовый буфер, который
+ * передается в поток одним вызовом при заполнении, перед ожиданием ввода
+ * ({@link KeyboardInput} сбрасывает вывод перед блокирующим чтением) и при
+ * завершении. Так несколько printf на операцию не проходят каждый через
+ * синхронизированный PrintStream, а при вводе из канала вывод уходит
+ * крупными блоками.
+ *
+ * Как и PrintStream, класс не бросает IOException: ошибка записи
+ * запоминается и доступна через {@link #checkError()}.
+ * Класс не является потокобезопасным.
+ */
+public class ConsoleOutput implements Flushable {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;                 // Число байтов в буфере
+    private final StringBuilder formatted = new StringBuilder(128);
+    private final Formatter formatter = new Formatter(formatted); // Локаль по умолчанию, как у printf
+    private boolean error;
+
+    /**
+     * Создает вывод в System.out.
+     */
+    public ConsoleOutput() {
+        this(System.out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Создает вывод в заданный поток.
+     * @param out поток вывода
+     * @param bufferSize размер буфера в байтах (не меньше 16)
+     * @throws IllegalArgumentException если буфер меньше 16 байт
+     */
+    public ConsoleOutput(OutputStream out, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Размер буфера вывода должен быть не меньше 16 байт");
+        }
+        this.out = out;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Выводит текст без перевода строки.
+     * @param text текст
+     */
+    public void print(CharSequence text) {
+        encode(text);
+    }
+
+    /**
+     * Выводит текст и перевод строки.
+     * @param text текст
+     */
+    public void println(CharSequence text) {
+        encode(text);
+        println();
+    }
+
+    /**
+     * Выводит перевод строки.
+     */
+    public void println() {
+        encode(System.lineSeparator());
+    }
+
+    /**
+     * Выводит форматированную строку (как PrintStream.printf).
+     * @param format строка формата
+     * @param args аргументы
+     */
+    public void printf(String format, Object... args) {
+        formatted.setLength(0);
+        formatter.format(format, args);
+        encode(formatted);
+    }
+
+    /**
+     * Передает накопленный вывод в поток и сбрасывает его.
+     */
+    @Override
+    public void flush() {
+        writeBuffer();
+        try {
+            out.flush();
+        } catch (IOException e) {
+            error = true;
+        }
+    }
+
+    /**
+     * Сбрасывает вывод и сообщает, была ли ошибка записи.
+     * @return true если запись в поток завершалась ошибкой
+     */
+    public boolean checkError() {
+        flush();
+        return error;
+    }
+
+    /**
+     * Кодирует символы в UTF-8 в буфер; суррогатная пара дает 4 байта,
+     * одиночный суррогат заменяется на '?'.
+     */
+    private void encode(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (count + 4 > buffer.length) {
+                writeBuffer();
+            }
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xC0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, text.charAt(++i));
+                buffer[count++] = (byte) (0xF0 | (code >> 18));
+                buffer[count++] = (byte) (0x80 | ((code >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((code >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (code & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[count++] = '?';
+            } else {
+                buffer[count++] = (byte) (0xE0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void writeBuffer() {
+        if (count == 0) {
+            return;
+        }
+        try {
+            out.write(buffer, 0, count);
+        } catch (IOException e) {
+            error = true;
+        }
+        count = 0;
+    }
+}
@@ -2,33 +2,185 @@ import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Класс CustomFileWriter предоставляет функционал для записи текстовых данных в файл
  * с поддержкой кодировки UTF-8. Поддерживает как добавление отдельных строк,
  * так и запись списка строк с перезаписью файла.
+ *
+ * Помимо простого режима (файл открывается и закрывается на каждую строку)
+ * поддерживается асинхронный режим журнала: файл держится открытым,
+ * строки складываются в ограниченную очередь и записываются фоновым потоком
+ * пакетами (group commit) по достижении размера пакета или интервала времени.
+ * С политикой {@link LogRotation} асинхронный журнал пишется сегментами
+ * ограниченного размера или возраста; ротация выполняется фоновым потоком
+ * на границе пакета.
  */
 public class CustomFileWriter {
+    /**
+     * Политика надежности записи пакета в асинхронном режиме.
+     */
+    public enum Durability {
+        NONE,  // Пакеты копятся в буфере и уходят в файл только при его заполнении или закрытии
+        FLUSH, // Каждый пакет передается операционной системе
+        FSYNC  // Каждый пакет передается ОС и принудительно сбрасывается на диск
+    }
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024; // Размер буфера фонового потока
+
+    // Маркер в очереди, по которому фоновый поток фиксирует все накопленное
+    private static final String FLUSH_MARKER = new String("");
+    // Маркер, которым close() будит фоновый поток, не дожидаясь интервала опроса
+    private static final String CLOSE_MARKER = new String("");
+
     private String filePath; // Путь к файлу для записи
 
+    // Поля асинхронного режима (null/0 в простом режиме)
+    private final BlockingQueue<String> queue;   // Очередь строк для фонового потока
+    private final int batchSize;                 // Максимальное число строк в пакете
+    private final long flushIntervalNanos;       // Максимальное время накопления пакета
+    private final Durability durability;         // Политика надежности
+    private final LogRotation rotation;          // Политика ротации (null - один файл)
+    private final Object channelLock = new Object(); // Блокировка записи в канал и его замены
+    private FileChannel channel;                 // Постоянно открытый канал к файлу
+    private volatile long segmentBytes;          // Размер текущего сегмента (пишется под channelLock)
+    private Thread writerThread;                 // Фоновый поток записи
+    private volatile boolean closed;             // Признак закрытия журнала
+    private volatile IOException failure;        // Ошибка фонового потока
+    private long enqueuedMarkers;                // Число поставленных маркеров сброса
+    private long committedMarkers;               // Число обработанных маркеров сброса
+
     /**
      * Конструктор класса.
      * @param filePath путь к файлу, в который будет производиться запись
      */
     public CustomFileWriter(String filePath) {
         this.filePath = filePath;
+        this.queue = null;
+        this.batchSize = 0;
+        this.flushIntervalNanos = 0;
+        this.durability = null;
+        this.rotation = null;
+    }
+
+    /**
+     * Конструктор асинхронного журнала. Файл открывается один раз в режиме добавления,
+     * запись выполняет фоновый поток.
+     *
+     * @param filePath путь к файлу журнала
+     * @param queueCapacity емкость очереди строк; при ее заполнении writeLine блокируется
+     * @param batchSize число строк, по достижении которого пакет фиксируется
+     * @param flushIntervalMillis время, по истечении которого пакет фиксируется независимо от размера
+     * @param durability политика надежности записи пакета
+     * @throws IOException если файл не удалось открыть
+     */
+    public CustomFileWriter(String filePath, int queueCapacity, int batchSize,
+                            long flushIntervalMillis, Durability durability) throws IOException {
+        this(filePath, queueCapacity, batchSize, flushIntervalMillis, durability, null);
+    }
+
+    /**
+     * Конструктор асинхронного журнала с ротацией сегментов.
+     *
+     * @param filePath путь к файлу текущего сегмента журнала
+     * @param queueCapacity емкость очереди строк; при ее заполнении writeLine блокируется
+     * @param batchSize число строк, по достижении которого пакет фиксируется
+     * @param flushIntervalMillis время, по истечении которого пакет фиксируется независимо от размера
+     * @param durability политика надежности записи пакета
+     * @param rotation политика ротации или null для записи в один файл
+     * @throws IOException если файл или индекс сегментов не удалось открыть
+     */
+    public CustomFileWriter(String filePath, int queueCapacity, int batchSize, long flushIntervalMillis,
+                            Durability durability, LogRotation rotation) throws IOException {
+        if (queueCapacity <= 0 || batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Параметры журнала должны быть положительными");
+        }
+        this.filePath = filePath;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.durability = durability;
+        this.rotation = rotation;
+        Path path = Paths.get(filePath);
+        this.channel = openChannel(path);
+        if (rotation != null) {
+            segmentBytes = channel.size();
+            try {
+                rotation.open(path, segmentBytes);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        this.writerThread = new Thread(this::drainLoop, "calculator-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Создает асинхронный журнал с параметрами по умолчанию:
+     * очередь на 8192 строки, пакет до 256 строк или 200 мс, сброс пакета в ОС.
+     *
+     * @param filePath путь к файлу журнала
+     * @return асинхронный журнал
+     * @throws IOException если файл не удалось открыть
+     */
+    public static CustomFileWriter openAsync(String filePath) throws IOException {
+        return new CustomFileWriter(filePath, 8192, 256, 200, Durability.FLUSH);
+    }
+
+    /**
+     * Создает асинхронный журнал с ротацией сегментов и остальными
+     * параметрами по умолчанию (см. {@link #openAsync(String)}).
+     *
+     * @param filePath путь к файлу текущего сегмента журнала
+     * @param rotation политика ротации
+     * @return асинхронный журнал
+     * @throws IOException если файл или индекс сегментов не удалось открыть
+     */
+    public static CustomFileWriter openRolling(String filePath, LogRotation rotation) throws IOException {
+        return new CustomFileWriter(filePath, 8192, 256, 200, Durability.FLUSH, rotation);
+    }
+
+    /**
+     * Проверяет, работает ли запись в асинхронном режиме.
+     * @return true для асинхронного журнала
+     */
+    public boolean isAsync() {
+        return queue != null;
     }
 
     /**
      * Добавляет одну строку в конец файла.
      * Автоматически добавляет символ переноса строки после записи.
-     * 
+     * В асинхронном режиме строка только ставится в очередь; вызов блокируется,
+     * лишь если очередь заполнена.
+     *
      * @param text текст для записи
      * @throws IOException если произошла ошибка при записи в файл
      */
     public void writeLine(String text) throws IOException {
+        if (queue != null) {
+            long started = CalculatorMetrics.start();
+            enqueue(text);
+            CalculatorMetrics.record(CalculatorMetrics.LOG_ENQUEUE, started);
+            return;
+        }
+
         // Открываем файл для записи в кодировке UTF-8
         BufferedWriter writer = new BufferedWriter(
             new OutputStreamWriter(
@@ -36,7 +188,7 @@ public class CustomFileWriter {
                 StandardCharsets.UTF_8
             )
         );
-        
+
         try {
             // Записываем строку и добавляем перенос строки
             writer.write(text);
@@ -50,11 +202,31 @@ public class CustomFileWriter {
     /**
      * Записывает список строк в файл, перезаписывая его содержимое.
      * Каждая строка автоматически завершается символом переноса строки.
-     * 
+     * В асинхронном режиме сначала фиксируются все ранее поставленные строки;
+     * при ротации перезаписывается только текущий сегмент.
+     *
      * @param lines список строк для записи
      * @throws IOException если произошла ошибка при записи в файл
      */
     public void writeLines(List<String> lines) throws IOException {
+        if (queue != null) {
+            flush();
+            synchronized (channelLock) {
+                channel.truncate(0);
+                segmentBytes = 0;
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+                CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+                for (String line : lines) {
+                    encodeLine(line, buffer, encoder);
+                }
+                writeFully(buffer);
+                if (durability == Durability.FSYNC) {
+                    channel.force(false);
+                }
+            }
+            return;
+        }
+
         // Открываем файл для записи в кодировке UTF-8
         BufferedWriter writer = new BufferedWriter(
             new OutputStreamWriter(
@@ -62,7 +234,7 @@ public class CustomFileWriter {
                 StandardCharsets.UTF_8
             )
         );
-        
+
         try {
             // Записываем каждую строку из списка
             for (String line : lines) {
@@ -74,4 +246,254 @@ public class CustomFileWriter {
             writer.close();
         }
     }
-} 
\ No newline at end of file
+
+    /**
+     * Дожидается, пока все поставленные в очередь строки будут записаны в файл
+     * (с учетом политики надежности). В простом режиме ничего не делает.
+     *
+     * @throws IOException если фоновый поток завершился с ошибкой
+     */
+    public void flush() throws IOException {
+        if (queue == null) {
+            return;
+        }
+        long target;
+        synchronized (this) {
+            target = ++enqueuedMarkers;
+        }
+        enqueue(FLUSH_MARKER);
+        synchronized (this) {
+            while (committedMarkers < target && failure == null && writerThread.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Ожидание записи журнала прервано", e);
+                }
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Возвращает текущее число строк, ожидающих записи.
+     * @return глубина очереди (0 в простом режиме)
+     */
+    public int getQueueDepth() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Записывает все оставшиеся строки, останавливает фоновый поток и закрывает файл.
+     * В простом режиме ничего не делает.
+     *
+     * @throws IOException если при записи или закрытии произошла ошибка
+     */
+    public void close() throws IOException {
+        if (queue == null || closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true; // Фоновый поток завершится после очередного опроса очереди
+            queue.offer(CLOSE_MARKER); // Будим его сразу: иначе выход ждет до flushInterval
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+            if (rotation != null) {
+                rotation.close(); // Дожидаемся сжатия закрытых сегментов
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Ставит строку в очередь асинхронного журнала.
+     */
+    private void enqueue(String text) throws IOException {
+        checkFailure();
+        if (closed) {
+            throw new IOException("Журнал закрыт: " + filePath);
+        }
+        try {
+            while (!queue.offer(text, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure(); // Очередь заполнена: ждем, пока фоновый поток жив
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Запись в журнал прервана", e);
+        }
+    }
+
+    /**
+     * Пробрасывает вызывающему ошибку, возникшую в фоновом потоке.
+     */
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Ошибка фоновой записи журнала: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Основной цикл фонового потока: собирает строки в пакет и фиксирует его
+     * по размеру пакета, по истечении интервала или по маркеру сброса.
+     */
+    private void drainLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        List<String> batch = new ArrayList<>(batchSize);
+        int pendingLines = 0;
+        long batchStart = System.nanoTime();
+
+        try {
+            while (!closed || !queue.isEmpty()) {
+                String first;
+                try {
+                    first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                int markers = 0;
+                if (first != null) {
+                    batch.add(first);
+                    CalculatorMetrics.logQueueDepth(queue.size() + 1); // Глубина вместе с взятой строкой
+                    queue.drainTo(batch, batchSize - 1);
+                    for (String line : batch) {
+                        if (line == FLUSH_MARKER) {
+                            markers++;
+                            continue;
+                        }
+                        if (line == CLOSE_MARKER) {
+                            continue;
+                        }
+                        encodeLine(line, buffer, encoder);
+                        pendingLines++;
+                    }
+                    batch.clear();
+                }
+
+                boolean timeUp = System.nanoTime() - batchStart >= flushIntervalNanos;
+                if (markers > 0 || pendingLines >= batchSize || (timeUp && pendingLines > 0)) {
+                    commit(buffer, markers > 0 || durability != Durability.NONE);
+                    pendingLines = 0;
+                    batchStart = System.nanoTime();
+                } else if (pendingLines == 0) {
+                    batchStart = System.nanoTime();
+                }
+
+                if (rotation != null
+                        && rotation.shouldRoll(segmentBytes + buffer.position(), System.currentTimeMillis())) {
+                    commit(buffer, true);
+                    roll();
+                }
+
+                if (markers > 0) {
+                    synchronized (this) {
+                        committedMarkers += markers;
+                        notifyAll();
+                    }
+                }
+            }
+            commit(buffer, true);
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Фиксирует пакет согласно политике надежности.
+     * @param buffer буфер с закодированными строками
+     * @param force записать буфер в канал даже при политике NONE
+     */
+    private void commit(ByteBuffer buffer, boolean force) throws IOException {
+        if (!force) {
+            return; // Политика NONE: буфер будет записан при заполнении
+        }
+        long started = CalculatorMetrics.start();
+        synchronized (channelLock) {
+            writeFully(buffer);
+            if (durability == Durability.FSYNC) {
+                channel.force(false);
+            }
+        }
+        CalculatorMetrics.record(CalculatorMetrics.LOG_COMMIT, started);
+    }
+
+    /**
+     * Кодирует строку в UTF-8 с переносом строки, при заполнении буфера
+     * записывает его содержимое в канал.
+     */
+    private void encodeLine(String line, ByteBuffer buffer, CharsetEncoder encoder) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(line);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                writeFully(buffer);
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        encoder.flush(buffer);
+        String separator = System.lineSeparator();
+        if (buffer.remaining() < separator.length()) {
+            writeFully(buffer);
+        }
+        for (int i = 0; i < separator.length(); i++) {
+            buffer.put((byte) separator.charAt(i));
+        }
+    }
+
+    /**
+     * Записывает все содержимое буфера в канал и очищает буфер.
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        synchronized (channelLock) {
+            while (buffer.hasRemaining()) {
+                segmentBytes += channel.write(buffer);
+            }
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый. Вызывается фоновым потоком
+     * на границе пакета, когда все строки текущего сегмента уже записаны.
+     */
+    private void roll() throws IOException {
+        synchronized (channelLock) {
+            if (durability == Durability.FSYNC) {
+                channel.force(false);
+            }
+            channel.close();
+            try {
+                rotation.roll(segmentBytes);
+            } finally {
+                // Файл по исходному пути открывается в любом случае, чтобы close() мог завершиться:
+                // если переименование не удалось, это прежний сегмент, иначе - новый пустой файл
+                // (даже когда после переименования не удалось записать индекс)
+                channel = openChannel(Paths.get(filePath));
+                segmentBytes = channel.size();
+            }
+        }
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
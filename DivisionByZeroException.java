@@ -0,0 +1,24 @@
+/**
+ * Исключение DivisionByZeroException - деление (или остаток) на ноль.
+ * Подкласс ArithmeticException: прежние обработчики продолжают работать,
+ * а сессия и консоль отличают деление на ноль от прочих ошибок вычисления
+ * по типу исключения, а не по тексту сообщения, который у разных
+ * реализаций калькулятора различается.
+ */
+public class DivisionByZeroException extends ArithmeticException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Создает исключение с сообщением калькуляторов "Деление на ноль невозможно!".
+     */
+    public DivisionByZeroException() {
+        super("Деление на ноль невозможно!");
+    }
+
+    /**
+     * @param message сообщение для пользователя
+     */
+    public DivisionByZeroException(String message) {
+        super(message);
+    }
+}
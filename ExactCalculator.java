@@ -0,0 +1,305 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Класс ExactCalculator выполняет вычисления точно: пока значения целые и
+ * помещаются в long, работает {@link LongCalculator} без выделения памяти;
+ * при первом переполнении, нецелом операнде или делении с остатком значение
+ * переносится в {@link BigDecimalCalculator} с заданным MathContext, и дальше
+ * вычисления идут в нем. Обратно в режим long калькулятор возвращается только
+ * при сбросе или установке нового значения памяти.
+ *
+ * Операнды можно передавать как double (целые значения идут по быстрому пути),
+ * как long или как BigDecimal - последние два без потери точности и без
+ * вычисления результата в double: приближение доступно через getMemory()
+ * и в режиме BigDecimal вычисляется лениво.
+ */
+public class ExactCalculator extends NumberSystemConverter {
+    private final LongCalculator fast = new LongCalculator();
+    private final BigDecimalCalculator big;
+    private boolean bigMode; // Значение хранится в big
+
+    /**
+     * Создает калькулятор с точностью DECIMAL128 для режима BigDecimal.
+     */
+    public ExactCalculator() {
+        this(MathContext.DECIMAL128);
+    }
+
+    /**
+     * Создает калькулятор с заданной точностью для режима BigDecimal.
+     * @param mathContext точность и режим округления операций после переполнения long
+     */
+    public ExactCalculator(MathContext mathContext) {
+        this.big = new BigDecimalCalculator(mathContext);
+    }
+
+    /**
+     * @return true если вычисления уже переключились на BigDecimal
+     */
+    public boolean isBigMode() {
+        return bigMode;
+    }
+
+    /**
+     * Возвращает точное значение памяти (создает объект в режиме long).
+     * @return значение памяти
+     */
+    public BigDecimal getValue() {
+        return bigMode ? big.getValue() : BigDecimal.valueOf(fast.getValue());
+    }
+
+    /**
+     * @param num слагаемое
+     */
+    public void add(long num) {
+        apply('+', num);
+    }
+
+    /**
+     * @param num вычитаемое
+     */
+    public void subtract(long num) {
+        apply('-', num);
+    }
+
+    /**
+     * @param num множитель
+     */
+    public void multiply(long num) {
+        apply('*', num);
+    }
+
+    /**
+     * @param num делитель
+     * @throws ArithmeticException при делении на ноль
+     */
+    public void divide(long num) {
+        apply('/', num);
+    }
+
+    /**
+     * @param num слагаемое
+     */
+    public void add(BigDecimal num) {
+        apply('+', num);
+    }
+
+    /**
+     * @param num вычитаемое
+     */
+    public void subtract(BigDecimal num) {
+        apply('-', num);
+    }
+
+    /**
+     * @param num множитель
+     */
+    public void multiply(BigDecimal num) {
+        apply('*', num);
+    }
+
+    /**
+     * @param num делитель
+     * @throws ArithmeticException при делении на ноль
+     */
+    public void divide(BigDecimal num) {
+        apply('/', num);
+    }
+
+    @Override
+    public double add(double num) {
+        apply('+', num);
+        return getMemory();
+    }
+
+    @Override
+    public double subtract(double num) {
+        apply('-', num);
+        return getMemory();
+    }
+
+    @Override
+    public double multiply(double num) {
+        apply('*', num);
+        return getMemory();
+    }
+
+    @Override
+    public double divide(double num) throws ArithmeticException {
+        apply('/', num);
+        return getMemory();
+    }
+
+    /**
+     * Устанавливает значение памяти; целое значение возвращает калькулятор в режим long.
+     * @param value новое значение
+     */
+    public void setMemory(long value) {
+        fast.setValue(value);
+        bigMode = false;
+        super.setMemory(value);
+    }
+
+    /**
+     * Устанавливает значение памяти; целое значение в диапазоне long
+     * возвращает калькулятор в режим long.
+     * @param value новое значение
+     */
+    public void setMemory(BigDecimal value) {
+        long exact = longValueOrZero(value);
+        if (exact != 0 || value.signum() == 0) {
+            setMemory(exact);
+            return;
+        }
+        big.setValue(value);
+        bigMode = true;
+        isFirstOperation = false;
+    }
+
+    /**
+     * Устанавливает значение памяти.
+     * @param value новое значение (конечное)
+     * @throws ArithmeticException если значение - NaN или бесконечность
+     */
+    @Override
+    public void setMemory(double value) {
+        if (isLongValue(value)) {
+            setMemory((long) value);
+        } else {
+            setMemory(BigDecimalCalculator.toBigDecimal(value));
+        }
+    }
+
+    /**
+     * @return приближение значения памяти в double
+     */
+    @Override
+    public double getMemory() {
+        if (bigMode) {
+            memory = big.getMemory();
+        }
+        return memory;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        fast.reset();
+        big.reset();
+        bigMode = false;
+    }
+
+    /**
+     * Форматирует число в текущей системе счисления точно, со знаком и модулем.
+     * Если число равно текущей памяти, выводится ее точное значение.
+     * @param number число для форматирования
+     * @return отформатированное представление
+     */
+    @Override
+    public String formatResult(double number) {
+        int radix = getRadix();
+        if (number == getMemory()) {
+            return bigMode ? formatExact(big.getValue(), radix) : formatExact(fast.getValue(), radix);
+        }
+        return Double.isFinite(number) ? formatExact(new BigDecimal(number), radix) : super.formatResult(number);
+    }
+
+    private void apply(char operation, double num) {
+        if (isLongValue(num)) {
+            apply(operation, (long) num);
+        } else {
+            apply(operation, BigDecimalCalculator.toBigDecimal(num));
+        }
+    }
+
+    private void apply(char operation, long num) {
+        if (operation == '/' && num == 0) {
+            throw new DivisionByZeroException();
+        }
+        if (!bigMode) {
+            try {
+                switch (operation) {
+                    case '+':
+                        fast.add(num);
+                        break;
+                    case '-':
+                        fast.subtract(num);
+                        break;
+                    case '*':
+                        fast.multiply(num);
+                        break;
+                    default:
+                        fast.divide(num);
+                        break;
+                }
+                memory = fast.getMemory();
+                return;
+            } catch (ArithmeticException e) {
+                promote(); // Переполнение или нецелый результат: значение fast не изменилось
+            }
+        }
+        applyBig(operation, BigDecimal.valueOf(num));
+    }
+
+    private void apply(char operation, BigDecimal num) {
+        if (operation == '/' && num.signum() == 0) {
+            throw new DivisionByZeroException();
+        }
+        if (!bigMode) {
+            long exact = longValueOrZero(num);
+            if (exact != 0 || num.signum() == 0) {
+                apply(operation, exact);
+                return;
+            }
+            promote();
+        }
+        applyBig(operation, num);
+    }
+
+    private void applyBig(char operation, BigDecimal num) {
+        switch (operation) {
+            case '+':
+                big.add(num);
+                break;
+            case '-':
+                big.subtract(num);
+                break;
+            case '*':
+                big.multiply(num);
+                break;
+            default:
+                big.divide(num);
+                break;
+        }
+    }
+
+    /**
+     * Переносит значение из режима long в режим BigDecimal.
+     */
+    private void promote() {
+        big.setValue(BigDecimal.valueOf(fast.getValue()));
+        bigMode = true;
+    }
+
+    private static boolean isLongValue(double num) {
+        return num >= -0x1p63 && num < 0x1p63 && num == (long) num;
+    }
+
+    /**
+     * Возвращает значение как long, если оно целое и помещается в long, иначе 0.
+     */
+    private static long longValueOrZero(BigDecimal num) {
+        if (num.signum() == 0 || num.precision() - num.scale() > 19) {
+            return 0; // Ноль или заведомо больше long - без исключения
+        }
+        if (num.scale() > 0 && num.stripTrailingZeros().scale() > 0) {
+            return 0; // Есть дробная часть
+        }
+        try {
+            return num.longValueExact();
+        } catch (ArithmeticException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,438 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Класс Expression - скомпилированное инфиксное выражение калькулятора.
+ * Выражение разбирается один раз в компактный байт-код стековой машины
+ * и затем многократно вычисляется с разными значениями переменных.
+ *
+ * Поддерживаются операции + - * / с обычным приоритетом, унарные + и -,
+ * скобки, переменные (идентификаторы) и числа в системах счисления
+ * 10, 16 (префикс 0x), 2 (0b) и 8 (0o), в том числе с дробной частью.
+ * Подвыражения из одних констант вычисляются при компиляции.
+ * Деление на ноль при вычислении приводит к ArithmeticException, как в Calculator.divide.
+ *
+ * Скомпилированное выражение неизменяемо и может использоваться из нескольких потоков.
+ */
+public final class Expression {
+    // Коды операций байт-кода
+    private static final int CONST = 0; // Операнд: индекс константы
+    private static final int LOAD = 1;  // Операнд: индекс переменной
+    private static final int ADD = 2;
+    private static final int SUB = 3;
+    private static final int MUL = 4;
+    private static final int DIV = 5;
+    private static final int NEG = 6;
+
+    // Кэш скомпилированных выражений для compileCached
+    private static final BoundedCache<String, Expression> CACHE = new BoundedCache<>(1024);
+
+    // Стек вычисления для каждого потока
+    private static final ThreadLocal<double[]> STACK = ThreadLocal.withInitial(() -> new double[16]);
+
+    private final String source;      // Исходный текст выражения
+    private final int[] code;         // Байт-код
+    private final double[] constants; // Пул констант
+    private final String[] variables; // Имена переменных в порядке индексов
+    private final int maxDepth;       // Максимальная глубина стека
+
+    private Expression(String source, int[] code, double[] constants, String[] variables, int maxDepth) {
+        this.source = source;
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Компилирует выражение. Переменные получают индексы в порядке первого появления.
+     *
+     * @param source текст выражения, например "(a + 0x1F) * b / 2"
+     * @return скомпилированное выражение
+     * @throws IllegalArgumentException если выражение синтаксически некорректно
+     */
+    public static Expression compile(String source) {
+        return new Compiler(source, null).compile();
+    }
+
+    /**
+     * Компилирует выражение с заранее заданным порядком переменных.
+     *
+     * @param source текст выражения
+     * @param variables имена допустимых переменных; индекс в массиве - индекс при вычислении
+     * @return скомпилированное выражение
+     * @throws IllegalArgumentException если выражение некорректно или содержит неизвестную переменную
+     */
+    public static Expression compile(String source, String... variables) {
+        return new Compiler(source, variables).compile();
+    }
+
+    /**
+     * Возвращает скомпилированное выражение из ограниченного кэша,
+     * компилируя его при первом обращении.
+     *
+     * @param source текст выражения
+     * @return скомпилированное выражение
+     * @throws IllegalArgumentException если выражение синтаксически некорректно
+     */
+    public static Expression compileCached(String source) {
+        return CACHE.get(source, Expression::compile);
+    }
+
+    /**
+     * Возвращает кэш compileCached (не более 1024 выражений, вытеснение LRU).
+     * @return кэш скомпилированных выражений
+     */
+    public static BoundedCache<String, Expression> getCache() {
+        return CACHE;
+    }
+
+    /**
+     * Вычисляет выражение.
+     *
+     * @param values значения переменных по индексам {@link #getVariables()}
+     * @return результат вычисления
+     * @throws ArithmeticException при делении на ноль
+     * @throws IllegalArgumentException если передано меньше значений, чем переменных
+     */
+    public double evaluate(double... values) {
+        if (values.length < variables.length) {
+            throw new IllegalArgumentException("Ожидается значений переменных: " + variables.length);
+        }
+        double[] stack = STACK.get();
+        if (stack.length < maxDepth) {
+            stack = new double[maxDepth];
+            STACK.set(stack);
+        }
+
+        int sp = 0;
+        int[] code = this.code;
+        for (int pc = 0; pc < code.length; pc++) {
+            switch (code[pc]) {
+                case CONST:
+                    stack[sp++] = constants[code[++pc]];
+                    break;
+                case LOAD:
+                    stack[sp++] = values[code[++pc]];
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case MUL:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case DIV:
+                    sp--;
+                    if (stack[sp] == 0) {
+                        throw new DivisionByZeroException();
+                    }
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                default: // NEG
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+            }
+        }
+        return stack[0];
+    }
+
+    /**
+     * Вычисляет выражение и записывает результат в память калькулятора.
+     *
+     * @param calculator калькулятор
+     * @param values значения переменных
+     * @return результат вычисления
+     * @throws ArithmeticException при делении на ноль (память не изменяется)
+     */
+    public double evaluateInto(Calculator calculator, double... values) {
+        double result = evaluate(values);
+        calculator.setMemory(result);
+        return result;
+    }
+
+    /**
+     * @return имена переменных выражения в порядке их индексов
+     */
+    public String[] getVariables() {
+        return variables.clone();
+    }
+
+    /**
+     * @return число переменных выражения
+     */
+    public int getVariableCount() {
+        return variables.length;
+    }
+
+    /**
+     * Возвращает индекс переменной.
+     * @param name имя переменной
+     * @return индекс или -1, если такой переменной нет
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * Однопроходный компилятор: рекурсивный спуск по грамматике
+     * expr := term (('+'|'-') term)*, term := unary (('*'|'/') unary)*,
+     * unary := ('+'|'-') unary | primary, primary := число | имя | '(' expr ')'.
+     */
+    private static final class Compiler {
+        private final String source;
+        private final boolean fixedVariables;
+        private final List<String> variables = new ArrayList<>();
+        private final NumberParser parser = new NumberParser();
+        private int[] code = new int[16];
+        private int codeLength;
+        private double[] constants = new double[8];
+        private int constantCount;
+        private int depth;
+        private int maxDepth;
+        private int[] constantAt = new int[8]; // Для значений на стеке: адрес инструкции CONST или -1
+        private int pos;
+
+        Compiler(String source, String[] variables) {
+            this.source = source;
+            this.fixedVariables = variables != null;
+            if (variables != null) {
+                this.variables.addAll(Arrays.asList(variables));
+            }
+        }
+
+        Expression compile() {
+            skipSpaces();
+            expression();
+            if (pos < source.length()) {
+                throw error("лишние символы");
+            }
+            return new Expression(source, Arrays.copyOf(code, codeLength),
+                Arrays.copyOf(constants, constantCount), variables.toArray(new String[0]), maxDepth);
+        }
+
+        private void expression() {
+            term();
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (c != '+' && c != '-') {
+                    break;
+                }
+                pos++;
+                skipSpaces();
+                term();
+                binary(c == '+' ? ADD : SUB);
+            }
+        }
+
+        private void term() {
+            unary();
+            while (pos < source.length()) {
+                char c = source.charAt(pos);
+                if (c != '*' && c != '/') {
+                    break;
+                }
+                pos++;
+                skipSpaces();
+                unary();
+                binary(c == '*' ? MUL : DIV);
+            }
+        }
+
+        private void unary() {
+            if (pos < source.length() && (source.charAt(pos) == '-' || source.charAt(pos) == '+')) {
+                boolean negate = source.charAt(pos) == '-';
+                pos++;
+                skipSpaces();
+                unary();
+                if (negate) {
+                    int at = constantAt[depth - 1];
+                    if (at >= 0) {
+                        constants[code[at + 1]] = -constants[code[at + 1]];
+                    } else {
+                        emit(NEG);
+                        constantAt[depth - 1] = -1;
+                    }
+                }
+                return;
+            }
+            primary();
+        }
+
+        private void primary() {
+            if (pos >= source.length()) {
+                throw error("ожидается число, переменная или '('");
+            }
+            char c = source.charAt(pos);
+            if (c == '(') {
+                pos++;
+                skipSpaces();
+                expression();
+                if (pos >= source.length() || source.charAt(pos) != ')') {
+                    throw error("ожидается ')'");
+                }
+                pos++;
+            } else if ((c >= '0' && c <= '9') || c == '.') {
+                number();
+            } else if (Character.isLetter(c) || c == '_') {
+                variable();
+            } else {
+                throw error("неожиданный символ '" + c + "'");
+            }
+            skipSpaces();
+        }
+
+        private void number() {
+            int radix = 10;
+            int start = pos;
+            if (source.startsWith("0x", pos) || source.startsWith("0X", pos)) {
+                radix = 16;
+            } else if (source.startsWith("0b", pos) || source.startsWith("0B", pos)) {
+                radix = 2;
+            } else if (source.startsWith("0o", pos) || source.startsWith("0O", pos)) {
+                radix = 8;
+            }
+            if (radix != 10) {
+                start += 2;
+                pos = start;
+                while (pos < source.length() && (Character.digit(source.charAt(pos), 16) >= 0 || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+            } else {
+                while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+                // Порядок: e, необязательный знак, цифры
+                if (pos < source.length() && (source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+                    int exponent = pos + 1;
+                    if (exponent < source.length() && (source.charAt(exponent) == '+' || source.charAt(exponent) == '-')) {
+                        exponent++;
+                    }
+                    if (exponent < source.length() && Character.isDigit(source.charAt(exponent))) {
+                        pos = exponent;
+                        while (pos < source.length() && Character.isDigit(source.charAt(pos))) {
+                            pos++;
+                        }
+                    }
+                }
+            }
+            if (parser.parse(source, start, pos - start, radix) != NumberParser.OK) {
+                pos = start;
+                throw error("некорректное число");
+            }
+            emitConstant(parser.value());
+        }
+
+        private void variable() {
+            int start = pos;
+            while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+                pos++;
+            }
+            String name = source.substring(start, pos);
+            int index = variables.indexOf(name);
+            if (index < 0) {
+                if (fixedVariables) {
+                    pos = start;
+                    throw error("неизвестная переменная " + name);
+                }
+                index = variables.size();
+                variables.add(name);
+            }
+            emit(LOAD);
+            emit(index);
+            push();
+            constantAt[depth - 1] = -1;
+        }
+
+        /**
+         * Добавляет бинарную операцию; две константы сворачиваются в одну.
+         */
+        private void binary(int op) {
+            int leftAt = constantAt[depth - 2];
+            int rightAt = constantAt[depth - 1];
+            if (leftAt >= 0 && rightAt >= 0) {
+                // Обе константы - последние две инструкции и последние две записи пула
+                double left = constants[code[leftAt + 1]];
+                double right = constants[code[rightAt + 1]];
+                if (op != DIV || right != 0) { // Деление на ноль остается до вычисления
+                    double value;
+                    switch (op) {
+                        case ADD:
+                            value = left + right;
+                            break;
+                        case SUB:
+                            value = left - right;
+                            break;
+                        case MUL:
+                            value = left * right;
+                            break;
+                        default:
+                            value = left / right;
+                            break;
+                    }
+                    codeLength = leftAt;
+                    constantCount -= 2;
+                    depth -= 2;
+                    emitConstant(value);
+                    return;
+                }
+            }
+            emit(op);
+            depth--;
+            constantAt[depth - 1] = -1;
+        }
+
+        private void emitConstant(double value) {
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+            }
+            constants[constantCount] = value;
+            int at = codeLength;
+            emit(CONST);
+            emit(constantCount++);
+            push();
+            constantAt[depth - 1] = at;
+        }
+
+        private void emit(int value) {
+            if (codeLength == code.length) {
+                code = Arrays.copyOf(code, codeLength * 2);
+            }
+            code[codeLength++] = value;
+        }
+
+        private void push() {
+            depth++;
+            maxDepth = Math.max(maxDepth, depth);
+            if (depth > constantAt.length) {
+                constantAt = Arrays.copyOf(constantAt, depth * 2);
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Ошибка в выражении (позиция " + (pos + 1) + "): " + message);
+        }
+    }
+}
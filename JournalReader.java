@@ -0,0 +1,238 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Класс JournalReader читает двоичный журнал операций {@link OperationJournal}
+ * и преобразует его в формат текстового лога калькулятора.
+ *
+ * Чтение потоковое: {@link #next()} переходит к следующей записи, поля текущей
+ * записи доступны через методы доступа. Контрольная сумма проверяется для
+ * каждого блока до выдачи его записей; поврежденный блок пропускается целиком,
+ * а чтение продолжается со следующего маркера блока. Неполный блок в конце
+ * файла (обрыв записи) тоже считается поврежденным.
+ */
+public class JournalReader implements Closeable {
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer;       // Прочитанные из файла байты (позиция - начало непрочитанных)
+    private boolean endOfFile;
+    private int remaining;           // Непрочитанные записи текущего проверенного блока
+    private long corruptBlocks;
+    private boolean scanning;        // Идет поиск маркера после поврежденного участка
+
+    private char operation;
+    private double number;
+    private double result;
+    private long timestamp;
+
+    /**
+     * Открывает журнал для чтения.
+     * @param file путь к файлу журнала
+     * @throws IOException если файл не удалось открыть или он не является журналом
+     */
+    public JournalReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            OperationJournal.checkHeader(channel, file);
+            channel.position(OperationJournal.FILE_HEADER_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        buffer.limit(0);
+    }
+
+    /**
+     * Переходит к следующей записи.
+     * @return false если записи закончились
+     * @throws IOException при ошибке чтения
+     */
+    public boolean next() throws IOException {
+        while (remaining == 0) {
+            if (!nextBlock()) {
+                return false;
+            }
+        }
+        operation = (char) (buffer.get() & 0xFF);
+        number = buffer.getDouble();
+        result = buffer.getDouble();
+        timestamp = buffer.getLong();
+        remaining--;
+        return true;
+    }
+
+    /**
+     * @return символ операции текущей записи (+, -, *, / или = для выражения)
+     */
+    public char getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return число операции текущей записи
+     */
+    public double getNumber() {
+        return number;
+    }
+
+    /**
+     * @return результат текущей записи
+     */
+    public double getResult() {
+        return result;
+    }
+
+    /**
+     * @return время операции в мс от эпохи
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return число поврежденных участков (один или несколько подряд идущих
+     *         пропущенных блоков) с начала чтения
+     */
+    public long getCorruptBlocks() {
+        return corruptBlocks;
+    }
+
+    /**
+     * Преобразует оставшиеся записи журнала в строки текстового лога
+     * (тот же формат, что пишет калькулятор).
+     *
+     * @param out поток для строк лога
+     * @return число преобразованных записей
+     * @throws IOException при ошибке чтения или записи
+     */
+    public long convertToText(Writer out) throws IOException {
+        NumberCache cache = NumberCache.shared();
+        long converted = 0;
+        while (next()) {
+            out.write(CalculatorUI.formatLogRecord(CalculatorUI.operationName(operation), number, result, cache));
+            out.write(System.lineSeparator());
+            converted++;
+        }
+        out.flush();
+        return converted;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Находит и проверяет следующий блок. Поврежденный блок пропускается:
+     * поиск продолжается с байта, следующего за его маркером.
+     * @return false если целых блоков больше нет
+     */
+    private boolean nextBlock() throws IOException {
+        while (ensure(OperationJournal.BLOCK_HEADER_SIZE)) {
+            int start = buffer.position();
+            int count = buffer.getInt(start + 4);
+            if (buffer.getInt(start) != OperationJournal.BLOCK_MAGIC
+                    || count <= 0 || count > OperationJournal.MAX_RECORDS_PER_BLOCK) {
+                skipCorrupt(start);
+                continue;
+            }
+            int size = OperationJournal.BLOCK_HEADER_SIZE + count * OperationJournal.RECORD_SIZE;
+            if (!ensure(size)) {
+                markCorrupt(); // Обрыв записи в конце файла
+                buffer.position(buffer.limit());
+                return false;
+            }
+            start = buffer.position(); // ensure мог сдвинуть данные в буфере
+            if (OperationJournal.checksum(crc, buffer, start, start + size) != buffer.getInt(start + 8)) {
+                skipCorrupt(start);
+                continue;
+            }
+            buffer.position(start + OperationJournal.BLOCK_HEADER_SIZE);
+            remaining = count;
+            scanning = false;
+            return true;
+        }
+        if (buffer.hasRemaining()) {
+            markCorrupt(); // Хвост короче заголовка блока
+            buffer.position(buffer.limit());
+        }
+        return false;
+    }
+
+    /**
+     * Учитывает поврежденный участок; последовательные ошибки при поиске
+     * маркера относятся к одному участку.
+     */
+    private void markCorrupt() {
+        if (!scanning) {
+            corruptBlocks++;
+            scanning = true;
+        }
+    }
+
+    private void skipCorrupt(int start) {
+        markCorrupt();
+        resync(start + 1);
+    }
+
+    /**
+     * Сдвигает позицию на ближайший маркер блока начиная с from
+     * (или на последние байты, которые могут быть началом маркера).
+     */
+    private void resync(int from) {
+        int pos = from;
+        while (pos + 4 <= buffer.limit()) {
+            if (buffer.getInt(pos) == OperationJournal.BLOCK_MAGIC) {
+                buffer.position(pos);
+                return;
+            }
+            pos++;
+        }
+        buffer.position(Math.min(pos, buffer.limit()));
+        // Маркер может продолжаться в непрочитанной части файла - дочитываем
+        if (!endOfFile) {
+            buffer.position(Math.max(from, buffer.limit() - 3));
+        }
+    }
+
+    /**
+     * Гарантирует наличие в буфере не менее n непрочитанных байтов.
+     * @return false если файл закончился раньше
+     */
+    private boolean ensure(int n) throws IOException {
+        if (buffer.remaining() >= n) {
+            return true;
+        }
+        if (n > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(n, buffer.capacity() * 2));
+            larger.put(buffer).flip();
+            buffer = larger;
+        }
+        buffer.compact();
+        while (buffer.position() < n && !endOfFile) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+        }
+        // Дочитываем до заполнения буфера, чтобы реже обращаться к файлу
+        while (buffer.hasRemaining() && !endOfFile) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                endOfFile = true;
+            } else if (read == 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer.remaining() >= n;
+    }
+}
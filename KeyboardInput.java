@@ -1,52 +1,204 @@
-import java.util.Scanner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * Класс KeyboardInput обеспечивает безопасное чтение пользовательского ввода
  * с клавиатуры с поддержкой кодировки UTF-8 и обработкой ошибок ввода.
+ *
+ * Ввод читается блоками в байтовый буфер и делится на строки по байту '\n'
+ * (завершающий '\r' отбрасывается) без регулярных выражений Scanner.
+ * Байт '\n' не встречается внутри многобайтовых последовательностей UTF-8,
+ * поэтому каждая строка декодируется отдельно; строки только из ASCII
+ * копируются без декодера.
+ *
+ * Подсказки выводятся через {@link ConsoleOutput}; вывод сбрасывается только
+ * перед блокирующим чтением. Если следующая строка уже в буфере (ввод из
+ * канала или файла), вывод продолжает копиться и уходит крупными блоками.
  */
 public class KeyboardInput {
-    private Scanner scanner; // Сканер для чтения пользовательского ввода
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;      // Источник ввода
+    private final ConsoleOutput out;   // Вывод подсказок
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int start;                 // Начало непрочитанных байтов
+    private int end;                   // Конец прочитанных из потока байтов
+    private boolean endOfInput;        // Поток закончился
 
     /**
      * Конструктор класса.
-     * Инициализирует сканер с поддержкой UTF-8 для корректной работы с кириллицей.
+     * Читает System.in и выводит подсказки в System.out в кодировке UTF-8
+     * для корректной работы с кириллицей.
      */
     public KeyboardInput() {
-        // Создаем сканер с явным указанием кодировки UTF-8
-        scanner = new Scanner(System.in, StandardCharsets.UTF_8.name());
+        this(System.in, new ConsoleOutput());
+    }
+
+    /**
+     * Конструктор с заданными источником ввода и выводом подсказок.
+     * @param in поток ввода (байты в UTF-8)
+     * @param out вывод подсказок и сообщений
+     */
+    public KeyboardInput(InputStream in, ConsoleOutput out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * @return вывод, через который печатаются подсказки
+     */
+    public ConsoleOutput getOutput() {
+        return out;
     }
 
     /**
      * Читает строку пользовательского ввода.
      * @param prompt подсказка, выводимая пользователю перед вводом
-     * @return введенная пользователем строка
+     * @return введенная пользователем строка или null, если ввод закончился
+     * @throws UncheckedIOException при ошибке чтения
      */
     public String readLine(String prompt) {
-        System.out.print(prompt);
-        return scanner.nextLine();
+        out.print(prompt);
+        return nextLine();
     }
 
     /**
-     * Читает целое число от пользователя с проверкой корректности ввода.
+     * Читает целое число от пользователя с проверкой корректности ввода;
+     * при ошибке подсказка повторяется.
      * @param prompt подсказка, выводимая пользователю перед вводом
-     * @return введенное пользователем целое число
+     * @return введенное пользователем целое число или 0, если ввод закончился
+     *         (см. {@link #isEndOfInput()})
+     * @throws UncheckedIOException при ошибке чтения
      */
     public int readInt(String prompt) {
         while (true) {
-            try {
-                System.out.print(prompt);
-                return Integer.parseInt(scanner.nextLine());
-            } catch (NumberFormatException e) {
-                System.out.println("Ошибка: Введите число!");
+            out.print(prompt);
+            String line = nextLine();
+            if (line == null) {
+                return 0;
             }
+            long value = parseInt(line.trim());
+            if (value != Long.MIN_VALUE) {
+                return (int) value;
+            }
+            out.println("Ошибка: Введите число!");
         }
     }
 
     /**
-     * Закрывает сканер и освобождает связанные ресурсы.
+     * @return true если ввод закончился и непрочитанных строк не осталось
+     */
+    public boolean isEndOfInput() {
+        return endOfInput && start == end;
+    }
+
+    /**
+     * Сбрасывает вывод и закрывает поток ввода.
      */
     public void close() {
-        scanner.close();
+        out.flush();
+        try {
+            in.close();
+        } catch (IOException e) {
+            // Закрытие консольного ввода не влияет на результат работы
+        }
+    }
+
+    /**
+     * Возвращает следующую строку; перед блокирующим чтением сбрасывает вывод.
+     */
+    private String nextLine() {
+        int scanned = start; // Байты до scanned уже проверены на '\n'
+        while (true) {
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    String line = decode(start, i);
+                    start = i + 1;
+                    return line;
+                }
+            }
+            if (endOfInput) {
+                if (start == end) {
+                    return null;
+                }
+                String line = decode(start, end); // Последняя строка без '\n'
+                start = end;
+                return line;
+            }
+            scanned = end - start;
+            fill();
+            scanned += start;
+        }
+    }
+
+    /**
+     * Дочитывает данные в буфер, сдвигая непрочитанное в начало и расширяя
+     * буфер для длинных строк.
+     */
+    private void fill() {
+        out.flush(); // Подсказка должна быть видна до ожидания ввода
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        try {
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                end += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения ввода", e);
+        }
+    }
+
+    /**
+     * Декодирует строку из байтов UTF-8, отбрасывая завершающий '\r'.
+     */
+    private String decode(int from, int to) {
+        if (to > from && buffer[to - 1] == '\r') {
+            to--;
+        }
+        for (int i = from; i < to; i++) {
+            if (buffer[i] < 0) {
+                return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+            }
+        }
+        return new String(buffer, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Разбирает десятичное целое со знаком без исключений.
+     * @return значение или Long.MIN_VALUE, если строка не является числом в диапазоне int
+     */
+    private static long parseInt(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        if (i == length || length - i > 10) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < length; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Класс LatencyHistogram - гистограмма задержек в наносекундах с логарифмически-
+ * линейными интервалами (по образцу HdrHistogram). Значения до 64 хранятся точно,
+ * дальше каждая степень двойки делится на 32 равных интервала, так что
+ * относительная погрешность перцентилей не превышает 1/32 (около 3%).
+ *
+ * Запись не выделяет памяти и не блокирует: один атомарный инкремент счетчика
+ * интервала, сумма и максимум. Значения больше {@link #MAX_VALUE} (около 73 минут)
+ * попадают в последний интервал, отрицательные считаются нулем.
+ * Гистограмма доступна через JMX как {@link LatencyHistogramMBean}.
+ */
+public class LatencyHistogram implements LatencyHistogramMBean {
+    private static final int SUB_BUCKET_BITS = 5;                      // 32 интервала на степень двойки
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;          // Значения меньше 64 - точно
+    private static final int MAX_EXPONENT = 41;
+
+    /**
+     * Наибольшее различимое значение (2^42 - 1 нс); большие значения учитываются в нем.
+     */
+    public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name имя гистограммы (используется в выводе и имени MBean)
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return имя гистограммы
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Учитывает одно значение.
+     * @param nanos задержка в наносекундах
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        counts.incrementAndGet(index(value));
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return getValueAtPercentile(99.9);
+    }
+
+    /**
+     * Возвращает значение, которого не превышают percentile процентов
+     * записей (верхнюю границу соответствующего интервала, но не больше максимума).
+     * Запись во время подсчета может слегка исказить результат.
+     *
+     * @param percentile перцентиль от 0 до 100
+     * @return значение в наносекундах (0 для пустой гистограммы)
+     * @throws IllegalArgumentException если перцентиль вне диапазона
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Перцентиль должен быть от 0 до 100: " + percentile);
+        }
+        long[] snapshot = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= target) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Обнуляет гистограмму. Записи, идущие одновременно со сбросом, могут быть потеряны.
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Возвращает строку сводки: число записей, среднее, перцентили и максимум в микросекундах.
+     */
+    @Override
+    public String toString() {
+        return String.format("%-12s count=%d mean=%.2fus p50=%.2fus p90=%.2fus p99=%.2fus p99.9=%.2fus max=%.2fus",
+            name, getCount(), getMeanNanos() / 1e3, getP50Nanos() / 1e3, getP90Nanos() / 1e3,
+            getP99Nanos() / 1e3, getP999Nanos() / 1e3, getMaxNanos() / 1e3);
+    }
+
+    /**
+     * Номер интервала для значения: до 64 - само значение, дальше
+     * 32 интервала на каждую степень двойки.
+     */
+    private static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift); // От 32 до 63
+        return shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Наибольшее значение, попадающее в интервал.
+     */
+    private static long highestValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
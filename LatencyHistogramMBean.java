@@ -0,0 +1,23 @@
+/**
+ * Интерфейс JMX для гистограммы задержек {@link LatencyHistogram}.
+ * Значения в наносекундах.
+ */
+public interface LatencyHistogramMBean {
+    String getName();
+
+    long getCount();
+
+    double getMeanNanos();
+
+    long getMaxNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    void reset();
+}
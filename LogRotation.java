@@ -0,0 +1,432 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Класс LogRotation задает политику ротации журнала CustomFileWriter и ведет
+ * закрытые сегменты: нумерацию, сжатие, удаление старых и индекс.
+ *
+ * Текущий сегмент всегда пишется в исходный файл (например, calculator_log.txt).
+ * Когда его размер или возраст превышает предел, он переименовывается в
+ * пронумерованный сегмент calculator_log.txt.000001 и т.д., а запись продолжается
+ * в новый пустой файл. Закрытые сегменты сжимаются gzip в отдельном фоновом
+ * потоке (calculator_log.txt.000001.gz), поэтому сжатие не задерживает запись.
+ * Хранится не более заданного числа закрытых сегментов, более старые удаляются.
+ *
+ * Индекс calculator_log.txt.index - текстовый файл, строка на каждый хранимый
+ * сегмент: номер, смещение начала сегмента в общем потоке журнала, время начала
+ * и окончания (мс от эпохи), размер в байтах без сжатия. По нему читатель
+ * находит нужный сегмент по времени или смещению, не открывая остальные
+ * ({@link #readIndex}, {@link #findByTime}, {@link #findByOffset}).
+ *
+ * Файл сегмента переименовывается до записи индекса, поэтому после сбоя между
+ * этими шагами на диске может остаться сегмент, которого нет в индексе.
+ * Номер нового сегмента выбирается больше всех номеров в индексе и на диске,
+ * так что такой сегмент никогда не перезаписывается.
+ *
+ * Экземпляр хранит состояние ротации и используется одним журналом.
+ */
+public class LogRotation {
+    private static final String INDEX_SUFFIX = ".index";
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final long maxSegmentBytes;
+    private final long maxSegmentMillis;
+    private final int maxSegments;
+    private final boolean compress;
+
+    private Path active;                 // Файл текущего сегмента
+    private List<Segment> segments;      // Хранимые закрытые сегменты по возрастанию номера
+    private long lastNumber;             // Наибольший занятый номер сегмента (в индексе или на диске)
+    private long activeStartOffset;      // Смещение начала текущего сегмента в общем потоке
+    private long activeStartTime;        // Время начала текущего сегмента
+    private ExecutorService compressor;  // Фоновый поток сжатия
+
+    /**
+     * Закрытый сегмент журнала (строка индекса).
+     */
+    public static final class Segment {
+        private final Path active;
+        private final long number;
+        private final long startOffset;
+        private final long startTime;
+        private final long endTime;
+        private final long size;
+
+        Segment(Path active, long number, long startOffset, long startTime, long endTime, long size) {
+            this.active = active;
+            this.number = number;
+            this.startOffset = startOffset;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.size = size;
+        }
+
+        /**
+         * @return номер сегмента (с 1)
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        /**
+         * @return смещение начала сегмента в общем потоке журнала
+         */
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * @return время начала сегмента (мс от эпохи)
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+
+        /**
+         * @return время закрытия сегмента (мс от эпохи)
+         */
+        public long getEndTime() {
+            return endTime;
+        }
+
+        /**
+         * @return размер сегмента в байтах без сжатия
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Возвращает файл сегмента: сжатый, если сжатие уже выполнено.
+         * @return путь к файлу сегмента
+         */
+        public Path getPath() {
+            Path plain = segmentPath(active, number);
+            Path gzip = plain.resolveSibling(plain.getFileName() + GZIP_SUFFIX);
+            return Files.exists(gzip) ? gzip : plain;
+        }
+
+        /**
+         * @return true если файл сегмента сжат gzip
+         */
+        public boolean isCompressed() {
+            return getPath().getFileName().toString().endsWith(GZIP_SUFFIX);
+        }
+
+        String toIndexLine() {
+            return number + " " + startOffset + " " + startTime + " " + endTime + " " + size;
+        }
+    }
+
+    /**
+     * Создает политику ротации.
+     *
+     * @param maxSegmentBytes размер текущего сегмента, после которого начинается новый
+     * @param maxSegmentMillis возраст текущего сегмента, после которого начинается новый (0 - без ограничения)
+     * @param maxSegments число хранимых закрытых сегментов
+     * @param compress сжимать ли закрытые сегменты gzip
+     * @throws IllegalArgumentException если ограничения не положительны
+     */
+    public LogRotation(long maxSegmentBytes, long maxSegmentMillis, int maxSegments, boolean compress) {
+        if (maxSegmentBytes <= 0 || maxSegmentMillis < 0 || maxSegments <= 0) {
+            throw new IllegalArgumentException("Параметры ротации должны быть положительными");
+        }
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentMillis = maxSegmentMillis;
+        this.maxSegments = maxSegments;
+        this.compress = compress;
+    }
+
+    /**
+     * Создает политику по умолчанию: сегменты до 64 МБ или на сутки,
+     * хранятся 16 сжатых сегментов.
+     * @return политика ротации
+     */
+    public static LogRotation defaults() {
+        return new LogRotation(64L << 20, TimeUnit.DAYS.toMillis(1), 16, true);
+    }
+
+    /**
+     * Читает индекс закрытых сегментов журнала.
+     * @param activeFile путь к текущему файлу журнала
+     * @return сегменты по возрастанию номера (пустой список, если индекса нет)
+     * @throws IOException если индекс не удалось прочитать или он поврежден
+     */
+    public static List<Segment> readIndex(Path activeFile) throws IOException {
+        List<Segment> result = new ArrayList<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(indexPath(activeFile), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return result;
+        }
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.trim().split(" ");
+            try {
+                result.add(new Segment(activeFile, Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Поврежденная строка индекса журнала: " + line);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Находит сегмент, содержащий записи на момент времени (двоичный поиск).
+     * @param segments сегменты из индекса
+     * @param time время (мс от эпохи)
+     * @return первый сегмент, закрытый не раньше этого времени, или null,
+     *         если время позже всех закрытых сегментов (записи в текущем файле)
+     */
+    public static Segment findByTime(List<Segment> segments, long time) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).getEndTime() < time) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low < segments.size() ? segments.get(low) : null;
+    }
+
+    /**
+     * Находит сегмент, содержащий смещение общего потока журнала (двоичный поиск).
+     * @param segments сегменты из индекса
+     * @param offset смещение в общем потоке
+     * @return сегмент или null, если смещение вне хранимых закрытых сегментов
+     */
+    public static Segment findByOffset(List<Segment> segments, long offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Segment segment = segments.get(mid);
+            if (offset < segment.getStartOffset()) {
+                high = mid - 1;
+            } else if (offset >= segment.getStartOffset() + segment.getSize()) {
+                low = mid + 1;
+            } else {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Подготавливает ротацию для текущего файла журнала: читает индекс, находит
+     * наибольший номер сегмента на диске и сжимает сегменты, оставшиеся
+     * несжатыми после прошлого запуска.
+     *
+     * @param activeFile путь к текущему файлу журнала
+     * @param activeSize текущий размер файла
+     * @throws IOException если индекс или каталог журнала не удалось прочитать
+     */
+    void open(Path activeFile, long activeSize) throws IOException {
+        this.active = activeFile;
+        this.segments = readIndex(activeFile);
+        this.lastNumber = Math.max(segments.isEmpty() ? 0 : segments.get(segments.size() - 1).getNumber(),
+            lastNumberOnDisk(activeFile));
+        long now = System.currentTimeMillis();
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            activeStartOffset = last.getStartOffset() + last.getSize();
+            activeStartTime = last.getEndTime(); // Текущий сегмент начался при закрытии предыдущего
+        } else {
+            activeStartOffset = 0;
+            activeStartTime = activeSize > 0 ? Math.min(now, Files.getLastModifiedTime(activeFile).toMillis()) : now;
+        }
+        if (compress) {
+            compressor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "calculator-log-compressor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (Segment segment : segments) {
+                if (!segment.isCompressed()) {
+                    scheduleCompression(segment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, пора ли закрыть текущий сегмент.
+     * @param activeSize текущий размер сегмента в байтах
+     * @param now текущее время (мс от эпохи)
+     * @return true если нужно начать новый сегмент
+     */
+    boolean shouldRoll(long activeSize, long now) {
+        if (activeSize == 0) {
+            return false;
+        }
+        return activeSize >= maxSegmentBytes || (maxSegmentMillis > 0 && now - activeStartTime >= maxSegmentMillis);
+    }
+
+    /**
+     * Закрывает текущий сегмент: переименовывает файл в пронумерованный сегмент,
+     * добавляет его в индекс, ставит в очередь сжатия и удаляет лишние старые сегменты.
+     * Вызывается журналом после закрытия канала; затем журнал открывает новый файл.
+     *
+     * Если переименование удалось, а индекс записать не получилось, сегмент
+     * остается в списке и попадет в индекс при следующей ротации.
+     *
+     * @param activeSize размер закрываемого сегмента в байтах
+     * @throws IOException если файл не удалось переименовать или обновить индекс
+     */
+    void roll(long activeSize) throws IOException {
+        long now = System.currentTimeMillis();
+        long number = lastNumber + 1;
+        Path target = segmentPath(active, number);
+        while (Files.exists(target) || Files.exists(target.resolveSibling(target.getFileName() + GZIP_SUFFIX))) {
+            target = segmentPath(active, ++number); // Сегмент, созданный в обход этого экземпляра
+        }
+        Files.move(active, target, StandardCopyOption.ATOMIC_MOVE);
+        lastNumber = number;
+        Segment segment = new Segment(active, number, activeStartOffset, activeStartTime, now, activeSize);
+        segments.add(segment);
+        activeStartOffset += activeSize;
+        activeStartTime = now;
+
+        // Удаляем самые старые сегменты сверх предела
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.remove(0);
+            if (compressor != null) {
+                // В том же потоке, что и сжатие, - после возможного сжатия этого сегмента
+                compressor.execute(() -> deleteSegment(oldest));
+            } else {
+                deleteSegment(oldest);
+            }
+        }
+        writeIndex();
+
+        if (compressor != null) {
+            scheduleCompression(segment);
+        }
+    }
+
+    /**
+     * Дожидается завершения начатых сжатий и останавливает фоновый поток.
+     */
+    void close() {
+        if (compressor == null) {
+            return;
+        }
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return хранимые закрытые сегменты
+     */
+    List<Segment> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Переписывает индекс через временный файл, чтобы читатель не увидел его частично.
+     */
+    private void writeIndex() throws IOException {
+        Path index = indexPath(active);
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Segment segment : segments) {
+                writer.write(segment.toIndexLine());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Сжимает сегмент в фоновом потоке: gzip во временный файл, затем
+     * переименование и удаление исходного файла. Ошибка сжатия оставляет
+     * сегмент несжатым, он будет сжат при следующем запуске.
+     */
+    private void scheduleCompression(Segment segment) {
+        Path plain = segmentPath(active, segment.getNumber());
+        compressor.execute(() -> {
+            Path gzip = plain.resolveSibling(plain.getFileName() + GZIP_SUFFIX);
+            Path temp = plain.resolveSibling(plain.getFileName() + GZIP_SUFFIX + ".tmp");
+            try {
+                try (InputStream in = Files.newInputStream(plain);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 1 << 16)) {
+                    in.transferTo(out);
+                }
+                Files.move(temp, gzip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.delete(plain);
+            } catch (IOException e) {
+                System.err.println("Ошибка сжатия сегмента журнала " + plain + ": " + e.getMessage());
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Временный файл будет перезаписан при следующей попытке
+                }
+            }
+        });
+    }
+
+    private void deleteSegment(Segment segment) {
+        Path plain = segmentPath(active, segment.getNumber());
+        try {
+            Files.deleteIfExists(plain);
+            Files.deleteIfExists(plain.resolveSibling(plain.getFileName() + GZIP_SUFFIX));
+        } catch (IOException e) {
+            System.err.println("Ошибка удаления сегмента журнала " + plain + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Находит наибольший номер сегмента среди файлов каталога журнала
+     * (в том числе сегментов, не попавших в индекс).
+     */
+    private static long lastNumberOnDisk(Path activeFile) throws IOException {
+        Path directory = activeFile.toAbsolutePath().getParent();
+        String prefix = activeFile.getFileName() + ".";
+        long last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int end = name.endsWith(GZIP_SUFFIX) ? name.length() - GZIP_SUFFIX.length() : name.length();
+                String digits = name.substring(prefix.length(), end);
+                if (!digits.isEmpty() && digits.length() <= 18 && digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    last = Math.max(last, Long.parseLong(digits));
+                }
+            }
+        }
+        return last;
+    }
+
+    private static Path indexPath(Path activeFile) {
+        return activeFile.resolveSibling(activeFile.getFileName() + INDEX_SUFFIX);
+    }
+
+    private static Path segmentPath(Path activeFile, long number) {
+        return activeFile.resolveSibling(String.format("%s.%06d", activeFile.getFileName(), number));
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Класс LongCalculator - калькулятор точной целочисленной арифметики на long.
+ * Операции не создают объектов; переполнение и деление с остатком не округляются,
+ * а сообщаются исключением ArithmeticException, значение памяти при этом не меняется.
+ * Поле memory базового класса содержит приближение значения в double.
+ *
+ * Наследует NumberSystemConverter ради системы счисления ввода и вывода,
+ * поэтому может использоваться везде, где ожидается основной калькулятор.
+ */
+public class LongCalculator extends NumberSystemConverter {
+    public static final String OVERFLOW = "Переполнение: результат вне диапазона long";
+    public static final String NOT_INTEGER = "Результат не является целым числом";
+
+    private long value; // Точное значение памяти
+
+    /**
+     * @return точное значение памяти
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Устанавливает значение памяти.
+     * @param value новое значение
+     */
+    public void setValue(long value) {
+        this.value = value;
+        super.setMemory(value);
+    }
+
+    /**
+     * @param num слагаемое
+     * @return результат
+     * @throws ArithmeticException при переполнении
+     */
+    public long add(long num) {
+        try {
+            return store(Math.addExact(value, num));
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException(OVERFLOW);
+        }
+    }
+
+    /**
+     * @param num вычитаемое
+     * @return результат
+     * @throws ArithmeticException при переполнении
+     */
+    public long subtract(long num) {
+        try {
+            return store(Math.subtractExact(value, num));
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException(OVERFLOW);
+        }
+    }
+
+    /**
+     * @param num множитель
+     * @return результат
+     * @throws ArithmeticException при переполнении
+     */
+    public long multiply(long num) {
+        try {
+            return store(Math.multiplyExact(value, num));
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException(OVERFLOW);
+        }
+    }
+
+    /**
+     * @param num делитель
+     * @return результат
+     * @throws ArithmeticException при делении на ноль, переполнении (Long.MIN_VALUE / -1)
+     *         или если результат не целый
+     */
+    public long divide(long num) {
+        if (num == 0) {
+            throw new DivisionByZeroException();
+        }
+        if (value == Long.MIN_VALUE && num == -1) {
+            throw new ArithmeticException(OVERFLOW);
+        }
+        if (value % num != 0) {
+            throw new ArithmeticException(NOT_INTEGER);
+        }
+        return store(value / num);
+    }
+
+    @Override
+    public double add(double num) {
+        return add(toLong(num));
+    }
+
+    @Override
+    public double subtract(double num) {
+        return subtract(toLong(num));
+    }
+
+    @Override
+    public double multiply(double num) {
+        return multiply(toLong(num));
+    }
+
+    @Override
+    public double divide(double num) throws ArithmeticException {
+        return divide(toLong(num));
+    }
+
+    /**
+     * Устанавливает значение памяти.
+     * @param value новое значение (целое в диапазоне long)
+     * @throws ArithmeticException если значение не целое или вне диапазона long
+     */
+    @Override
+    public void setMemory(double value) {
+        setValue(toLong(value));
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        value = 0;
+    }
+
+    /**
+     * Форматирует число в текущей системе счисления точно, со знаком и модулем.
+     * Если число равно текущей памяти, выводится ее точное значение.
+     * @param number число для форматирования
+     * @return отформатированное представление
+     */
+    @Override
+    public String formatResult(double number) {
+        if (number == memory) {
+            return formatExact(value, getRadix());
+        }
+        return super.formatResult(number);
+    }
+
+    /**
+     * Преобразует целое значение double в long.
+     * @throws ArithmeticException если значение не целое или вне диапазона long
+     */
+    static long toLong(double num) {
+        if (!(num >= -0x1p63 && num < 0x1p63)) {
+            throw new ArithmeticException(OVERFLOW);
+        }
+        long result = (long) num;
+        if (result != num) {
+            throw new ArithmeticException(NOT_INTEGER);
+        }
+        return result;
+    }
+
+    private long store(long result) {
+        value = result;
+        memory = result;
+        return result;
+    }
+}
@@ -1,3 +1,19 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
 /**
  * Главный класс приложения калькулятора.
  * Инициализирует и запускает пользовательский интерфейс калькулятора.
@@ -6,11 +22,340 @@ public class Main {
     /**
      * Точка входа в приложение.
      * Создает экземпляр пользовательского интерфейса и запускает его.
-     * 
-     * @param args аргументы командной строки (не используются)
+     * Без аргументов запускается интерактивный режим. Пакетный режим:
+     * <pre>
+     * --batch [файл]  читать операции из файла (по умолчанию из stdin)
+     * --every N       выводить результат после каждой N-й операции
+     * --radix R       система счисления ввода (2, 8, 10 или 16)
+     * --log           записывать операции в лог-файл
+     * --log-file файл  файл лога (по умолчанию calculator_log.txt)
+     * --log-segment-mb N  размер сегмента лога в МБ (0 - без ротации, по умолчанию 64)
+     * --parallel      вычислить файл параллельно (требует --batch файл)
+     * --exact         точные вычисления: long, при переполнении - BigDecimal
+     * --journal файл  писать операции в двоичный журнал вместо текстового лога
+     *                 (без --batch - интерактивный режим)
+     * --history файл  вести историю операций с отменой (u, r) и контрольными
+     *                 точками (k имя, g имя), восстанавливать ее из файла при
+     *                 запуске и сохранять при завершении (без --batch - интерактивный режим)
+     * --session каталог  хранить сессию (память, систему счисления, историю
+     *                 с отменой) в журнале с периодическими снимками и
+     *                 восстанавливать ее после сбоя (без --batch - интерактивный режим)
+     * --metrics N     собирать метрики (JMX, домен calculator) и выводить сводку
+     *                 в stderr каждые N секунд (0 - только при завершении);
+     *                 без --batch - интерактивный режим, совместим с --server
+     * </pre>
+     * Режим сервера: --server порт | --server unix:путь
+     * Проверка лога: --audit файл
+     * Журнал в текстовый лог: --journal-to-text журнал (строки выводятся в stdout)
+     *
+     * @param args аргументы командной строки
      */
     public static void main(String[] args) {
-        CalculatorUI calculator = new CalculatorUI();
-        calculator.run();
+        if (args.length == 0) {
+            CalculatorUI calculator = new CalculatorUI();
+            calculator.run();
+            return;
+        }
+
+        String serverAddress = null;
+        boolean batch = false;
+        String inputFile = null;
+        long reportEvery = 0;
+        int radix = 10;
+        boolean logEnabled = false;
+        boolean parallel = false;
+        boolean exact = false;
+        String auditFile = null;
+        String journalFile = null;
+        String logFile = CalculatorUI.DEFAULT_LOG_FILE;
+        long logSegmentMb = -1;
+        String journalToText = null;
+        long metricsSeconds = -1;
+        String historyFile = null;
+        String sessionDir = null;
+        boolean radixGiven = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--batch":
+                        batch = true;
+                        if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                            inputFile = args[++i];
+                        }
+                        break;
+                    case "--every":
+                        reportEvery = Long.parseLong(args[++i]);
+                        break;
+                    case "--radix":
+                        radix = Integer.parseInt(args[++i]);
+                        radixGiven = true;
+                        break;
+                    case "--log":
+                        logEnabled = true;
+                        break;
+                    case "--parallel":
+                        parallel = true;
+                        break;
+                    case "--exact":
+                        exact = true;
+                        break;
+                    case "--server":
+                        serverAddress = args[++i];
+                        break;
+                    case "--audit":
+                        auditFile = args[++i];
+                        break;
+                    case "--log-file":
+                        logFile = args[++i];
+                        break;
+                    case "--log-segment-mb":
+                        logSegmentMb = Long.parseLong(args[++i]);
+                        break;
+                    case "--journal":
+                        journalFile = args[++i];
+                        break;
+                    case "--journal-to-text":
+                        journalToText = args[++i];
+                        break;
+                    case "--history":
+                        historyFile = args[++i];
+                        break;
+                    case "--session":
+                        sessionDir = args[++i];
+                        break;
+                    case "--metrics":
+                        metricsSeconds = Long.parseLong(args[++i]);
+                        if (metricsSeconds < 0) {
+                            throw new IllegalArgumentException("интервал метрик не может быть отрицательным");
+                        }
+                        // Флаг читается при загрузке CalculatorMetrics, поэтому задается до первого замера
+                        System.setProperty(CalculatorMetrics.PROPERTY, "true");
+                        break;
+                    default:
+                        throw new IllegalArgumentException("неизвестный аргумент " + args[i]);
+                }
+            }
+            if (sessionDir != null && historyFile != null) {
+                throw new IllegalArgumentException("--history не используется с --session: история хранится в сессии");
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            printUsage(e.getMessage());
+            System.exit(2);
+        }
+        if (metricsSeconds >= 0) {
+            startMetrics(metricsSeconds);
+        }
+        if (serverAddress != null) {
+            try {
+                new CalculatorServer(CalculatorServer.parseAddress(serverAddress)).run();
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Ошибка: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        if (auditFile != null) {
+            runAudit(auditFile);
+            return;
+        }
+        if (journalToText != null) {
+            convertJournal(journalToText);
+            return;
+        }
+        if (!batch && journalFile == null && !exact && metricsSeconds < 0 && historyFile == null
+                && sessionDir == null) {
+            printUsage("не указан режим");
+            System.exit(2);
+        }
+
+        if (parallel) {
+            if (inputFile == null) {
+                printUsage("для --parallel нужен файл операций");
+                System.exit(2);
+            }
+            runParallel(inputFile, radix);
+            return;
+        }
+
+        LogRotation rotation = LogRotation.defaults();
+        if (logSegmentMb == 0) {
+            rotation = null;
+        } else if (logSegmentMb > 0) {
+            rotation = new LogRotation(logSegmentMb << 20, TimeUnit.DAYS.toMillis(1), 16, true);
+        }
+        NumberSystemConverter converter = exact ? new ExactCalculator() : new NumberSystemConverter();
+        CalculatorUI calculator = new CalculatorUI(logFile, rotation, converter);
+        if (historyFile != null) {
+            calculator.setHistory(openHistory(converter, Paths.get(historyFile)), Paths.get(historyFile));
+        }
+        if (sessionDir != null) {
+            OperationHistory history = new OperationHistory(converter);
+            calculator.setHistory(history, null);
+            calculator.setSessionStore(openSession(converter, history, Paths.get(sessionDir)));
+        }
+        if (journalFile != null) {
+            try {
+                calculator.setJournal(new OperationJournal(Paths.get(journalFile)));
+            } catch (IOException e) {
+                System.err.println("Ошибка: " + e.getMessage());
+                System.exit(1);
+            }
+            logEnabled = true;
+        }
+        if (!batch) {
+            calculator.run();
+            return;
+        }
+        try (InputStream in = inputFile == null ? System.in : new FileInputStream(inputFile)) {
+            if (radixGiven || sessionDir == null) {
+                calculator.setInputRadix(radix);
+            }
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+            Writer out = new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            calculator.runBatch(reader, out, reportEvery, logEnabled);
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Регистрирует метрики в JMX, запускает периодическую сводку и выводит
+     * итоговую сводку при завершении программы.
+     * @param periodSeconds интервал сводки в секундах (0 - только итоговая)
+     */
+    private static void startMetrics(long periodSeconds) {
+        try {
+            CalculatorMetrics.registerMBeans();
+        } catch (JMException e) {
+            System.err.println("Ошибка регистрации метрик в JMX: " + e.getMessage());
+        }
+        if (periodSeconds > 0) {
+            CalculatorMetrics.startDump(System.err, TimeUnit.SECONDS.toMillis(periodSeconds));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            CalculatorMetrics.stopDump();
+            System.err.print(CalculatorMetrics.get().dump());
+        }, "calculator-metrics-final"));
+    }
+
+    /**
+     * Создает историю операций и восстанавливает ее из файла, если он есть.
+     * Поврежденный файл не мешает запуску: история начинается заново.
+     * @param calculator калькулятор, операции которого записываются
+     * @param file файл истории
+     * @return история операций
+     */
+    private static OperationHistory openHistory(NumberSystemConverter calculator, Path file) {
+        OperationHistory history = new OperationHistory(calculator);
+        if (Files.exists(file)) {
+            try {
+                history.load(file);
+                System.err.printf("История восстановлена (операций: %d)%n", history.getPosition());
+            } catch (IOException e) {
+                System.err.println("Ошибка загрузки истории, начата новая: " + e.getMessage());
+                calculator.reset();
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Открывает хранилище сессии и восстанавливает из него калькулятор и историю.
+     * В отличие от файла истории, поврежденное хранилище не сбрасывается:
+     * программа завершается, чтобы данные сессии можно было исследовать.
+     * @param calculator калькулятор сессии
+     * @param history история операций сессии
+     * @param directory каталог сессии
+     * @return открытое хранилище
+     */
+    private static SessionStore openSession(NumberSystemConverter calculator, OperationHistory history, Path directory) {
+        try {
+            SessionStore store = new SessionStore(directory, calculator, history);
+            if (store.getSequence() > 0) {
+                System.err.printf("Сессия восстановлена (записей: %d, из журнала: %d, %.1f мс)%n",
+                    store.getSequence(), store.getRecoveredRecords(), store.getRecoveryNanos() / 1e6);
+            }
+            return store;
+        } catch (IOException e) {
+            System.err.println("Ошибка восстановления сессии: " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+     * Вычисляет файл операций параллельно и выводит итоговый результат.
+     * @param inputFile файл операций
+     * @param radix начальная система счисления ввода
+     */
+    private static void runParallel(String inputFile, int radix) {
+        try {
+            ParallelLogEvaluator.Result result = new ParallelLogEvaluator().evaluate(Paths.get(inputFile), radix);
+            for (ParallelLogEvaluator.LineError error : result.getErrors()) {
+                System.err.println(error);
+            }
+            System.out.println(NumberSystemConverter.formatNumber(result.getMemory(), result.getRadix()));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Проверяет лог калькулятора и выводит сводку и найденные расхождения.
+     * @param logFile файл лога
+     */
+    private static void runAudit(String logFile) {
+        try (CalculatorLogReader reader = new CalculatorLogReader(Paths.get(logFile))) {
+            CalculatorLogReader.Verification verification = reader.verify();
+            for (CalculatorLogReader.Mismatch mismatch : verification.getMismatches()) {
+                System.out.println(mismatch);
+            }
+            System.out.printf("Записей: сложение %d, вычитание %d, умножение %d, деление %d, выражение %d%n",
+                verification.getCount('+'), verification.getCount('-'), verification.getCount('*'),
+                verification.getCount('/'), verification.getCount('='));
+            System.out.printf("Проверено: %d, пропущено: %d, расхождений: %d, некорректных строк: %d%n",
+                verification.getChecked(), verification.getSkipped(),
+                verification.getMismatchCount(), verification.getMalformed());
+        } catch (IOException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Выводит записи двоичного журнала в формате текстового лога.
+     * @param journalFile файл журнала
+     */
+    private static void convertJournal(String journalFile) {
+        try (JournalReader reader = new JournalReader(Paths.get(journalFile))) {
+            Writer out = new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            reader.convertToText(out);
+            if (reader.getCorruptBlocks() > 0) {
+                System.err.println("Пропущено поврежденных участков журнала: " + reader.getCorruptBlocks());
+            }
+        } catch (IOException e) {
+            System.err.println("Ошибка: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Выводит краткую справку по аргументам командной строки.
+     * @param reason причина вывода справки
+     */
+    private static void printUsage(String reason) {
+        System.err.println("Ошибка: " + reason);
+        System.err.println("Использование: java Main [--batch [файл]] [--every N] [--radix 2|8|10|16] [--log] [--parallel] [--exact]");
+        System.err.println("               [--log-file файл] [--log-segment-mb N]");
+        System.err.println("               [--journal файл] [--history файл] [--session каталог] [--metrics N]");
+        System.err.println("               java Main --server порт|unix:путь");
+        System.err.println("               java Main --audit файл_лога");
+        System.err.println("               java Main --journal-to-text журнал");
     }
 }
@@ -0,0 +1,178 @@
+/**
+ * Класс NumberCache кэширует результаты разбора и форматирования чисел
+ * NumberSystemConverter. Разбор кэшируется по паре (строка, основание),
+ * форматирование - по паре (биты double, основание); для каждого основания
+ * используется отдельный BoundedCache, поэтому составной ключ не создается.
+ * Поиск при форматировании выполняется по изменяемому образцу ключа, своему
+ * для каждого потока, так что попадание не упаковывает биты в объект Long;
+ * новый ключ создается только при сохранении результата.
+ *
+ * Общий экземпляр {@link #shared()} ограничен 4096 записями и примерно 1 МБ
+ * на каждый вид кэша; для других ограничений создайте собственный экземпляр.
+ */
+public class NumberCache {
+    private static final int[] RADIXES = {2, 8, 10, 16};
+    private static final NumberCache SHARED = new NumberCache(4096, 1 << 20);
+    private static final ThreadLocal<FormatKey> PROBE = ThreadLocal.withInitial(FormatKey::new);
+
+    private final BoundedCache<String, Double>[] parseCaches;    // По основанию: строка -> число
+    private final BoundedCache<FormatKey, String>[] formatCaches; // По основанию: биты числа -> строка
+
+    /**
+     * Ключ кэша форматирования - битовый образ числа. Образец для поиска
+     * изменяется на месте, сохраненные в кэше ключи не изменяются.
+     */
+    static final class FormatKey {
+        long bits;
+
+        FormatKey() {
+        }
+
+        FormatKey(long bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof FormatKey && ((FormatKey) other).bits == bits;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(bits);
+        }
+    }
+
+    /**
+     * Создает кэш.
+     * @param maxEntries максимальное число записей каждого вида (разбор и форматирование)
+     * @param maxBytes приблизительный предел памяти каждого вида в байтах
+     */
+    public NumberCache(int maxEntries, long maxBytes) {
+        parseCaches = newCaches();
+        formatCaches = newCaches();
+        int entries = Math.max(1, maxEntries / RADIXES.length);
+        long bytes = Math.max(1, maxBytes / RADIXES.length);
+        for (int i = 0; i < RADIXES.length; i++) {
+            // Оценка: запись LinkedHashMap (48 байт), строка (40 байт и до 2 байт на символ),
+            // объект Double или FormatKey (24 байта)
+            parseCaches[i] = new BoundedCache<>(entries, bytes, (key, value) -> 112 + 2L * key.length());
+            formatCaches[i] = new BoundedCache<>(entries, bytes, (key, value) -> 112 + 2L * value.length());
+        }
+    }
+
+    /**
+     * @return общий экземпляр кэша
+     */
+    public static NumberCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Разбирает число с использованием кэша (см. {@link NumberSystemConverter#parseNumber}).
+     *
+     * @param input строковое представление числа
+     * @param radix основание системы счисления (2, 8, 10 или 16)
+     * @return число в формате double
+     * @throws NumberFormatException если входная строка не может быть преобразована в число
+     */
+    public double parse(String input, int radix) {
+        if (input == null) {
+            return NumberSystemConverter.parseNumber(input, radix);
+        }
+        return parseCaches[index(radix)].get(input, s -> NumberSystemConverter.parseNumber(s, radix));
+    }
+
+    /**
+     * Форматирует число с использованием кэша (см. {@link NumberSystemConverter#formatNumber(double, int)}).
+     * Кэшированное значение зависит от локали на момент первого форматирования.
+     *
+     * @param number число для форматирования
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @return отформатированная строка
+     */
+    public String format(double number, int radix) {
+        BoundedCache<FormatKey, String> cache = formatCaches[index(radix)];
+        long bits = Double.doubleToRawLongBits(number);
+        FormatKey probe = PROBE.get();
+        probe.bits = bits;
+        String text = cache.getIfPresent(probe);
+        if (text == null) {
+            text = NumberSystemConverter.formatNumber(number, radix);
+            cache.put(new FormatKey(bits), text);
+        }
+        return text;
+    }
+
+    /**
+     * Возвращает кэш разбора для основания (для счетчиков и настройки).
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @return кэш разбора
+     */
+    public BoundedCache<String, Double> getParseCache(int radix) {
+        return parseCaches[index(radix)];
+    }
+
+    /**
+     * Возвращает кэш форматирования для основания (для счетчиков и настройки).
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @return кэш форматирования
+     */
+    public BoundedCache<?, String> getFormatCache(int radix) {
+        return formatCaches[index(radix)];
+    }
+
+    /**
+     * Очищает кэш (например, после смены локали).
+     */
+    public void clear() {
+        for (int i = 0; i < RADIXES.length; i++) {
+            parseCaches[i].clear();
+            formatCaches[i].clear();
+        }
+    }
+
+    /**
+     * @return суммарная статистика кэшей разбора и форматирования
+     */
+    @Override
+    public String toString() {
+        return "разбор: " + summary(parseCaches) + "; форматирование: " + summary(formatCaches);
+    }
+
+    private static String summary(BoundedCache<?, ?>[] caches) {
+        long size = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        for (BoundedCache<?, ?> cache : caches) {
+            size += cache.size();
+            hits += cache.hitCount();
+            misses += cache.missCount();
+            evictions += cache.evictionCount();
+        }
+        return String.format("записей: %d, попаданий: %d, промахов: %d, вытеснений: %d",
+            size, hits, misses, evictions);
+    }
+
+    // Массив обобщенного типа создать нельзя; элементы заполняет только конструктор
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> BoundedCache<K, V>[] newCaches() {
+        return new BoundedCache[RADIXES.length];
+    }
+
+    private static int index(int radix) {
+        switch (radix) {
+            case 2:
+                return 0;
+            case 8:
+                return 1;
+            case 10:
+                return 2;
+            case 16:
+                return 3;
+            default:
+                throw new IllegalArgumentException("Поддерживаются только системы счисления 2, 8, 10 и 16");
+        }
+    }
+}
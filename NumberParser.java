@@ -0,0 +1,285 @@
+/**
+ * Класс NumberParser выполняет разбор чисел в системах счисления 2, 8, 10 и 16
+ * непосредственно из фрагмента CharSequence или массива байтов (смещение и длина)
+ * без создания промежуточных строк. Поддерживаются знак, дробная часть во всех
+ * системах счисления и порядок (e/E) в десятичной системе.
+ *
+ * Ошибки сообщаются кодом состояния, а не исключением. Объект хранит результат
+ * последнего разбора и не является потокобезопасным: каждому потоку нужен свой экземпляр.
+ */
+public final class NumberParser {
+    public static final int OK = 0;            // Число успешно разобрано
+    public static final int EMPTY = 1;         // Пустой ввод (или только пробелы/знак)
+    public static final int INVALID_DIGIT = 2; // Недопустимый символ для данной системы счисления
+    public static final int BAD_RADIX = 3;     // Неподдерживаемая система счисления
+
+    // Степени десяти, точно представимые в double
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53; // Граница точных целых в double
+
+    private final AsciiBytes bytesView = new AsciiBytes(); // Переиспользуемое представление byte[]
+    private double value;   // Результат последнего успешного разбора
+    private long longValue; // Точное целое значение, если isLong()
+    private boolean isLong; // Последнее число - целое, точно представимое в long
+    private int errorIndex; // Позиция ошибки последнего разбора
+
+    /**
+     * Возвращает значение, полученное последним успешным вызовом parse.
+     * @return разобранное число
+     */
+    public double value() {
+        return value;
+    }
+
+    /**
+     * Проверяет, является ли последнее разобранное число целым без дробной части
+     * и порядка, точно представимым в long (в том числе больше 2^53).
+     * @return true если значение доступно через {@link #longValue()}
+     */
+    public boolean isLong() {
+        return isLong;
+    }
+
+    /**
+     * Возвращает точное целое значение последнего разобранного числа.
+     * @return значение; имеет смысл, только если {@link #isLong()} вернул true
+     */
+    public long longValue() {
+        return longValue;
+    }
+
+    /**
+     * Возвращает позицию символа, на котором остановился неудачный разбор.
+     * @return индекс в исходной последовательности
+     */
+    public int errorIndex() {
+        return errorIndex;
+    }
+
+    /**
+     * Разбирает число из фрагмента последовательности символов.
+     * Пробельные символы по краям фрагмента игнорируются.
+     *
+     * @param input исходная последовательность
+     * @param offset начало фрагмента
+     * @param length длина фрагмента
+     * @param radix основание системы счисления (2, 8, 10 или 16)
+     * @return код состояния: OK, EMPTY, INVALID_DIGIT или BAD_RADIX
+     */
+    public int parse(CharSequence input, int offset, int length, int radix) {
+        isLong = false;
+        int shift;
+        switch (radix) {
+            case 2:
+                shift = 1;
+                break;
+            case 8:
+                shift = 3;
+                break;
+            case 10:
+                shift = 0;
+                break;
+            case 16:
+                shift = 4;
+                break;
+            default:
+                return fail(BAD_RADIX, offset);
+        }
+
+        int i = offset;
+        int end = offset + length;
+        while (i < end && input.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i == end) {
+            return fail(EMPTY, i);
+        }
+        int start = i;
+
+        boolean negative = false;
+        char c = input.charAt(i);
+        if (c == '+' || c == '-') {
+            negative = c == '-';
+            i++;
+        }
+
+        long limit = (Long.MAX_VALUE - (radix - 1)) / radix;
+        long mantissa = 0;
+        int droppedDigits = 0;    // Цифры целой части, не поместившиеся в мантиссу
+        int fractionDigits = 0;   // Цифры дробной части, учтенные в мантиссе
+        boolean inexact = false;  // Были отброшены ненулевые цифры
+        boolean anyDigits = false;
+
+        // Целая часть
+        for (; i < end; i++) {
+            int d = digit(input.charAt(i), radix);
+            if (d < 0) {
+                break;
+            }
+            anyDigits = true;
+            if (mantissa <= limit) {
+                mantissa = mantissa * radix + d;
+            } else {
+                droppedDigits++;
+                inexact |= d != 0;
+            }
+        }
+
+        // Дробная часть
+        if (i < end && input.charAt(i) == '.') {
+            for (i++; i < end; i++) {
+                int d = digit(input.charAt(i), radix);
+                if (d < 0) {
+                    break;
+                }
+                anyDigits = true;
+                if (mantissa <= limit) {
+                    mantissa = mantissa * radix + d;
+                    fractionDigits++;
+                } else {
+                    inexact |= d != 0;
+                }
+            }
+        }
+        if (!anyDigits) {
+            return fail(i < end ? INVALID_DIGIT : EMPTY, i);
+        }
+
+        // Порядок (только для десятичной системы)
+        int exponent = 0;
+        if (radix == 10 && i < end && (input.charAt(i) == 'e' || input.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (input.charAt(i) == '+' || input.charAt(i) == '-')) {
+                negativeExponent = input.charAt(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            for (; i < end; i++) {
+                int d = input.charAt(i) - '0';
+                if (d < 0 || d > 9) {
+                    break;
+                }
+                if (exponent < 100_000) {
+                    exponent = exponent * 10 + d;
+                }
+            }
+            if (i == exponentStart) {
+                return fail(INVALID_DIGIT, i);
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (i != end) {
+            return fail(INVALID_DIGIT, i);
+        }
+
+        double result;
+        if (mantissa == 0) {
+            result = 0;
+        } else if (radix == 10) {
+            int scale = exponent + droppedDigits - fractionDigits;
+            if (!inexact && mantissa < MAX_EXACT_MANTISSA && scale >= -22 && scale <= 22) {
+                // Мантисса и степень десяти точны: одна операция дает корректное округление
+                result = scale >= 0 ? mantissa * POWERS_OF_TEN[scale] : mantissa / POWERS_OF_TEN[-scale];
+            } else {
+                // Редкий случай: точное округление выполняет JDK
+                return parseSlow(input, start, end);
+            }
+        } else {
+            // Для оснований 2^k масштабирование степенью двойки точно
+            result = Math.scalb((double) mantissa, (droppedDigits - fractionDigits) * shift);
+        }
+
+        value = negative ? -result : result;
+        if (droppedDigits == 0 && fractionDigits == 0 && exponent == 0 && !inexact) {
+            isLong = true;
+            longValue = negative ? -mantissa : mantissa;
+        }
+        errorIndex = -1;
+        return OK;
+    }
+
+    /**
+     * Разбирает число из фрагмента массива байтов в кодировке ASCII/UTF-8.
+     *
+     * @param input исходный массив байтов
+     * @param offset начало фрагмента
+     * @param length длина фрагмента
+     * @param radix основание системы счисления (2, 8, 10 или 16)
+     * @return код состояния: OK, EMPTY, INVALID_DIGIT или BAD_RADIX
+     */
+    public int parse(byte[] input, int offset, int length, int radix) {
+        bytesView.bytes = input;
+        try {
+            return parse(bytesView, offset, length, radix);
+        } finally {
+            bytesView.bytes = null;
+        }
+    }
+
+    /**
+     * Возвращает значение цифры или -1, если символ не является цифрой в данной системе.
+     */
+    private static int digit(char c, int radix) {
+        int d;
+        if (c >= '0' && c <= '9') {
+            d = c - '0';
+        } else if (c >= 'A' && c <= 'F') {
+            d = c - 'A' + 10;
+        } else if (c >= 'a' && c <= 'f') {
+            d = c - 'a' + 10;
+        } else {
+            return -1;
+        }
+        return d < radix ? d : -1;
+    }
+
+    /**
+     * Разбор десятичного числа через JDK для значений вне быстрого пути
+     * (более 19 значащих цифр или большой порядок).
+     */
+    private int parseSlow(CharSequence input, int start, int end) {
+        value = Double.parseDouble(input.subSequence(start, end).toString());
+        errorIndex = -1;
+        return OK;
+    }
+
+    /**
+     * Запоминает позицию ошибки и возвращает код состояния.
+     */
+    private int fail(int status, int index) {
+        errorIndex = index;
+        return status;
+    }
+
+    /**
+     * Представление массива байтов ASCII как последовательности символов.
+     */
+    private static final class AsciiBytes implements CharSequence {
+        byte[] bytes;
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start, java.nio.charset.StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -1,3 +1,10 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
 /**
  * Класс NumberSystemConverter предоставляет утилиты для конвертации чисел
  * между различными системами счисления (двоичной, восьмеричной, 
@@ -6,6 +13,32 @@
 public class NumberSystemConverter extends Calculator {
     private int currentRadix; // Текущая система счисления
 
+    /**
+     * Максимальная длина результата форматирования в символах.
+     */
+    public static final int MAX_FORMATTED_LENGTH = 1100;
+
+    // Граница значений, целая часть которых выводится как прежде через int
+    private static final double INT_RANGE_LIMIT = 2147483648.0;
+
+    // Число цифр дробной части в системах 2, 8 и 16 для точного форматирования (около 64 бит)
+    private static final int EXACT_FRACTION_BITS = 64;
+
+    // Таблица цифр для систем счисления до 16
+    private static final char[] DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    // Буфер форматирования для строковых и буферных вариантов API
+    private static final ThreadLocal<char[]> FORMAT_BUFFER =
+        ThreadLocal.withInitial(() -> new char[MAX_FORMATTED_LENGTH]);
+
+    // Разборщик чисел для строкового API parseNumber
+    private static final ThreadLocal<NumberParser> PARSER = ThreadLocal.withInitial(NumberParser::new);
+
+    // Символы текущей локали форматирования, обновляются при ее смене
+    private static volatile LocaleSymbols cachedSymbols;
+
     /**
      * Конструктор класса NumberSystemConverter.
      * Устанавливает десятичную систему счисления по умолчанию.
@@ -21,12 +54,17 @@ public class NumberSystemConverter extends Calculator {
      * @throws IllegalArgumentException если система счисления не поддерживается
      */
     public void setRadix(int radix) {
-        if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
-            throw new IllegalArgumentException("Поддерживаются только системы счисления 2, 8, 10 и 16");
-        }
+        checkRadix(radix);
         this.currentRadix = radix;
     }
 
+    /**
+     * @return текущая система счисления
+     */
+    public int getRadix() {
+        return currentRadix;
+    }
+
     @Override
     public double add(double num) {
         memory += num;
@@ -48,7 +86,7 @@ public class NumberSystemConverter extends Calculator {
     @Override
     public double divide(double num) throws ArithmeticException {
         if (num == 0) {
-            throw new ArithmeticException("Деление на ноль невозможно!");
+            throw new DivisionByZeroException();
         }
         memory /= num;
         return memory;
@@ -61,17 +99,28 @@ public class NumberSystemConverter extends Calculator {
 
     /**
      * Преобразует строковое представление числа в double с учетом системы счисления.
+     * Дробная часть допускается во всех системах счисления. Для высоконагруженного
+     * разбора фрагментов строк без исключений используйте {@link NumberParser}.
+     *
      * @param input строковое представление числа
      * @param radix основание системы счисления (2, 8, 10 или 16)
      * @return число в формате double
      * @throws NumberFormatException если входная строка не может быть преобразована в число
      */
     public static double parseNumber(String input, int radix) throws NumberFormatException {
+        if (input == null) {
+            throw new NumberFormatException("Пустая строка вместо числа");
+        }
+        NumberParser parser = PARSER.get();
+        if (parser.parse(input, 0, input.length(), radix) == NumberParser.OK) {
+            return parser.value();
+        }
         if (radix == 10) {
+            // Прочие формы, которые понимает JDK (NaN, Infinity, 0x1p3, суффиксы d/f)
             return Double.parseDouble(input);
         }
-        // Для целых чисел в других системах счисления
-        return Integer.parseInt(input, radix);
+        throw new NumberFormatException(
+            "Некорректное число \"" + input + "\" в системе счисления " + radix);
     }
 
     /**
@@ -83,30 +132,398 @@ public class NumberSystemConverter extends Calculator {
      * @return отформатированная строка в указанной системе счисления
      */
     public static String formatNumber(double number, int radix) {
+        char[] buffer = FORMAT_BUFFER.get();
+        int length = formatNumber(number, radix, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Дописывает представление числа в заданной системе счисления в StringBuilder.
+     * Результат совпадает с {@link #formatNumber(double, int)}, но без создания
+     * промежуточных строк.
+     *
+     * @param number число для форматирования
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @param out приемник символов
+     * @return переданный StringBuilder
+     */
+    public static StringBuilder formatNumber(double number, int radix, StringBuilder out) {
+        char[] buffer = FORMAT_BUFFER.get();
+        int length = formatNumber(number, radix, buffer, 0);
+        return out.append(buffer, 0, length);
+    }
+
+    /**
+     * Записывает представление числа в заданной системе счисления в ByteBuffer
+     * в кодировке UTF-8.
+     *
+     * @param number число для форматирования
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @param out приемник байтов
+     * @throws java.nio.BufferOverflowException если в буфере недостаточно места
+     */
+    public static void formatNumber(double number, int radix, ByteBuffer out) {
+        char[] buffer = FORMAT_BUFFER.get();
+        int length = formatNumber(number, radix, buffer, 0);
+        for (int i = 0; i < length; i++) {
+            char c = buffer[i];
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Записывает представление числа в заданной системе счисления в массив символов.
+     * Целая часть выводится по таблице цифр: в диапазоне int - как и раньше
+     * (отрицательные числа в дополнительном коде 32 бит), за его пределами -
+     * полностью, со знаком и модулем. Дробная часть - как ".%.4f" с десятичным
+     * разделителем текущей локали.
+     * В установившемся режиме метод не создает объектов; к {@link String#format}
+     * он обращается лишь для редких значений (неоднозначное округление,
+     * дробная часть вне диапазона int).
+     *
+     * @param number число для форматирования
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @param dst массив для записи, должен вмещать {@link #MAX_FORMATTED_LENGTH} символов
+     * @param offset позиция начала записи
+     * @return позиция за последним записанным символом
+     */
+    public static int formatNumber(double number, int radix, char[] dst, int offset) {
+        LocaleSymbols symbols = localeSymbols();
+        if (!symbols.asciiDigits) {
+            // Локаль с нелатинскими цифрами: сохраняем точное поведение Formatter
+            String text = formatNumberSlow(number, radix);
+            text.getChars(0, text.length(), dst, offset);
+            return offset + text.length();
+        }
+
+        if (Double.isFinite(number) && (number >= INT_RANGE_LIMIT || number <= -INT_RANGE_LIMIT - 1)) {
+            return writeLarge(number, radix, symbols.decimalSeparator, dst, offset);
+        }
+
         int intPart = (int) number;
         double fractionalPart = number - intPart;
-        
-        String result = "";
+
+        int pos;
         switch (radix) {
             case 2:
-                result = Integer.toBinaryString(intPart);  // Двоичная система
+                pos = writeUnsigned(intPart, 1, dst, offset);  // Двоичная система
                 break;
             case 8:
-                result = Integer.toOctalString(intPart);   // Восьмеричная система
+                pos = writeUnsigned(intPart, 3, dst, offset);  // Восьмеричная система
                 break;
             case 10:
-                result = String.format("%d", intPart);     // Десятичная система
+                pos = writeDecimal(intPart, dst, offset);      // Десятичная система
                 break;
             case 16:
-                result = Integer.toHexString(intPart).toUpperCase(); // Шестнадцатеричная система
+                pos = writeUnsigned(intPart, 4, dst, offset);  // Шестнадцатеричная система
                 break;
+            default:
+                pos = offset;
         }
-        
+
         // Добавляем дробную часть, если она есть
+        if (fractionalPart != 0) {
+            dst[pos++] = '.';
+            pos = writeFraction(fractionalPart, symbols.decimalSeparator, dst, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * Форматирует целое число в заданной системе счисления точно, со знаком
+     * и модулем (в том числе для отрицательных чисел в системах 2, 8 и 16).
+     * Метод не создает объектов, кроме результирующей строки.
+     *
+     * @param value число
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @return строковое представление
+     */
+    public static String formatExact(long value, int radix) {
+        checkRadix(radix);
+        char[] buffer = FORMAT_BUFFER.get();
+        return new String(buffer, 0, writeLong(value, radix, buffer, 0));
+    }
+
+    /**
+     * Форматирует число BigDecimal в заданной системе счисления точно: целая
+     * часть полностью, со знаком и модулем, дробная часть - цифрами той же
+     * системы счисления после точки (в виде, который принимает {@link #parseNumber}).
+     * Десятичная дробь выводится полностью; в системах 2, 8 и 16 дробная часть,
+     * которая может оказаться бесконечной, отбрасывается после 64 бит.
+     *
+     * @param value число
+     * @param radix система счисления (2, 8, 10 или 16)
+     * @return строковое представление
+     */
+    public static String formatExact(BigDecimal value, int radix) {
+        checkRadix(radix);
+        if (radix == 10) {
+            return value.stripTrailingZeros().toPlainString();
+        }
+        BigDecimal abs = value.abs();
+        BigInteger intPart = abs.toBigInteger();
+        StringBuilder out = new StringBuilder();
+        if (value.signum() < 0) {
+            out.append('-');
+        }
+        out.append(intPart.toString(radix).toUpperCase());
+        BigDecimal fraction = abs.subtract(new BigDecimal(intPart));
+        if (fraction.signum() != 0) {
+            out.append('.');
+            BigDecimal base = BigDecimal.valueOf(radix);
+            int bitsPerDigit = Integer.numberOfTrailingZeros(radix);
+            for (int bits = 0; bits < EXACT_FRACTION_BITS && fraction.signum() != 0; bits += bitsPerDigit) {
+                fraction = fraction.multiply(base);
+                int digit = fraction.intValue();
+                out.append(DIGITS[digit]);
+                fraction = fraction.subtract(BigDecimal.valueOf(digit));
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Разбирает число в заданной системе счисления точно, без округления до double.
+     * Дробная часть допускается во всех системах счисления (в системах 2, 8 и 16
+     * она всегда точно представима десятичной дробью); в десятичной системе
+     * допускается порядок (e/E).
+     *
+     * @param input строковое представление числа
+     * @param radix основание системы счисления (2, 8, 10 или 16)
+     * @return точное значение
+     * @throws NumberFormatException если входная строка не может быть преобразована в число
+     */
+    public static BigDecimal parseExact(String input, int radix) throws NumberFormatException {
+        if (input == null) {
+            throw new NumberFormatException("Пустая строка вместо числа");
+        }
+        checkRadix(radix);
+        String text = input.trim();
+        if (radix == 10) {
+            return new BigDecimal(text);
+        }
+        int point = text.indexOf('.');
+        String digits = point < 0 ? text : text.substring(0, point) + text.substring(point + 1);
+        int fractionDigits = point < 0 ? 0 : text.length() - point - 1;
+        if (digits.isEmpty() || digits.equals("+") || digits.equals("-")) {
+            throw new NumberFormatException(
+                "Некорректное число \"" + input + "\" в системе счисления " + radix);
+        }
+        BigInteger unscaled = new BigInteger(digits, radix);
+        if (fractionDigits == 0) {
+            return new BigDecimal(unscaled);
+        }
+        // Деление на степень двойки дает конечную десятичную дробь
+        BigDecimal divisor = new BigDecimal(BigInteger.valueOf(radix).pow(fractionDigits));
+        return new BigDecimal(unscaled).divide(divisor);
+    }
+
+    /**
+     * Записывает число вне диапазона int: целая часть полностью со знаком
+     * и модулем, дробная часть (есть только у чисел меньше 2^52) - как ".%.4f".
+     */
+    private static int writeLarge(double number, int radix, char separator, char[] dst, int offset) {
+        int pos;
+        double fractionalPart;
+        if (number > -0x1p63 && number < 0x1p63) {
+            long intPart = (long) number;
+            fractionalPart = number - intPart;
+            pos = writeLong(intPart, radix, dst, offset);
+        } else {
+            // Значения от 2^63 целые; цифры через BigInteger (редкий случай)
+            BigInteger intPart = new BigDecimal(number).toBigInteger();
+            String text = intPart.toString(radix).toUpperCase();
+            text.getChars(0, text.length(), dst, offset);
+            pos = offset + text.length();
+            fractionalPart = 0;
+        }
+        if (fractionalPart != 0) {
+            dst[pos++] = '.';
+            pos = writeFraction(fractionalPart, separator, dst, pos);
+        }
+        return pos;
+    }
+
+    /**
+     * Записывает long со знаком и модулем в заданной системе счисления.
+     * Цифры получаются из отрицательного значения, поэтому Long.MIN_VALUE обрабатывается корректно.
+     */
+    private static int writeLong(long value, int radix, char[] dst, int offset) {
+        int pos = offset;
+        if (value < 0) {
+            dst[pos++] = '-';
+        }
+        long n = value < 0 ? value : -value;
+        int start = pos;
+        do {
+            dst[pos++] = DIGITS[(int) -(n % radix)];
+            n /= radix;
+        } while (n != 0);
+        for (int i = start, j = pos - 1; i < j; i++, j--) {
+            char c = dst[i];
+            dst[i] = dst[j];
+            dst[j] = c;
+        }
+        return pos;
+    }
+
+    private static void checkRadix(int radix) {
+        if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+            throw new IllegalArgumentException("Поддерживаются только системы счисления 2, 8, 10 и 16");
+        }
+    }
+
+    /**
+     * Десятичный разделитель и признак латинских цифр для локали форматирования.
+     */
+    private static final class LocaleSymbols {
+        final Locale locale;
+        final char decimalSeparator;
+        final boolean asciiDigits;
+
+        LocaleSymbols(Locale locale) {
+            DecimalFormatSymbols dfs = DecimalFormatSymbols.getInstance(locale);
+            this.locale = locale;
+            this.decimalSeparator = dfs.getDecimalSeparator();
+            this.asciiDigits = dfs.getZeroDigit() == '0';
+        }
+    }
+
+    /**
+     * Возвращает символы локали, которую использует String.format по умолчанию.
+     */
+    private static LocaleSymbols localeSymbols() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        LocaleSymbols symbols = cachedSymbols;
+        if (symbols == null || symbols.locale != locale) {
+            symbols = new LocaleSymbols(locale);
+            cachedSymbols = symbols;
+        }
+        return symbols;
+    }
+
+    /**
+     * Записывает int как беззнаковое 32-битное число в системе 2^shift
+     * (аналог Integer.toBinaryString/toOctalString/toHexString).
+     */
+    private static int writeUnsigned(int value, int shift, char[] dst, int offset) {
+        int bits = Math.max(32 - Integer.numberOfLeadingZeros(value), 1);
+        int length = (bits + shift - 1) / shift;
+        int mask = (1 << shift) - 1;
+        int pos = offset + length;
+        do {
+            dst[--pos] = DIGITS[value & mask];
+            value >>>= shift;
+        } while (pos > offset);
+        return offset + length;
+    }
+
+    /**
+     * Записывает десятичное представление числа со знаком.
+     */
+    private static int writeDecimal(long value, char[] dst, int offset) {
+        int pos = offset;
+        if (value < 0) {
+            dst[pos++] = '-';
+            value = -value;
+        }
+        int length = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            length++;
+        }
+        int end = pos + length;
+        for (int i = end - 1; i >= pos; i--) {
+            dst[i] = DIGITS[(int) (value % 10)];
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Записывает дробную часть в формате "%.4f" (округление половины вверх).
+     */
+    private static int writeFraction(double value, char separator, char[] dst, int offset) {
+        double abs = Math.abs(value);
+        long scaled;
+        if (abs < 1) {
+            double x = abs * 10000;
+            long floor = (long) x;
+            double rest = x - floor;
+            if (Math.abs(rest - 0.5) < 1e-7) {
+                return writeFractionSlow(value, dst, offset); // Неоднозначное округление
+            }
+            scaled = rest > 0.5 ? floor + 1 : floor;
+        } else if (abs < Integer.MAX_VALUE && abs == Math.rint(abs)) {
+            scaled = (long) abs * 10000;
+        } else {
+            return writeFractionSlow(value, dst, offset); // NaN, бесконечности, большие значения
+        }
+
+        int pos = offset;
+        if (value < 0) {
+            dst[pos++] = '-';
+        }
+        pos = writeDecimal(scaled / 10000, dst, pos);
+        dst[pos++] = separator;
+        int digits = (int) (scaled % 10000);
+        for (int i = pos + 3; i >= pos; i--) {
+            dst[i] = DIGITS[digits % 10];
+            digits /= 10;
+        }
+        return pos + 4;
+    }
+
+    /**
+     * Записывает дробную часть через Formatter для случаев вне быстрого пути.
+     */
+    private static int writeFractionSlow(double value, char[] dst, int offset) {
+        String text = String.format("%.4f", value);
+        text.getChars(0, text.length(), dst, offset);
+        return offset + text.length();
+    }
+
+    /**
+     * Исходная реализация форматирования через Formatter.
+     * Используется для локалей с нелатинскими цифрами.
+     */
+    private static String formatNumberSlow(double number, int radix) {
+        if (Double.isFinite(number) && (number >= INT_RANGE_LIMIT || number <= -INT_RANGE_LIMIT - 1)) {
+            BigDecimal exact = new BigDecimal(number);
+            BigInteger whole = exact.setScale(0, RoundingMode.DOWN).toBigInteger();
+            double fraction = number - whole.doubleValue();
+            String text = radix == 10 ? String.format("%d", whole) : whole.toString(radix).toUpperCase();
+            return fraction != 0 ? text + String.format(".%.4f", fraction) : text;
+        }
+        int intPart = (int) number;
+        double fractionalPart = number - intPart;
+
+        String result = "";
+        switch (radix) {
+            case 2:
+                result = Integer.toBinaryString(intPart);
+                break;
+            case 8:
+                result = Integer.toOctalString(intPart);
+                break;
+            case 10:
+                result = String.format("%d", intPart);
+                break;
+            case 16:
+                result = Integer.toHexString(intPart).toUpperCase();
+                break;
+        }
         if (fractionalPart != 0) {
             result += String.format(".%.4f", fractionalPart);
         }
-        
         return result;
     }
 } 
\ No newline at end of file
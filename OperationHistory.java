@@ -0,0 +1,784 @@
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Класс OperationHistory хранит историю операций калькулятора с отменой
+ * и повтором, именованными контрольными точками и сохранением на диск.
+ *
+ * История хранится в примитивных массивах: код операции (byte) и число (double)
+ * на запись, без объектов на каждую операцию. Каждые snapshotInterval операций
+ * запоминается значение памяти (снимок), поэтому переход к любой позиции
+ * восстанавливает ближайший снимок и повторяет не более snapshotInterval - 1
+ * операций: отмена и повтор выполняются за O(1) независимо от длины истории.
+ * Новая операция после отмены отбрасывает отмененные записи (и контрольные
+ * точки за ними).
+ *
+ * Длина истории ограничена (по умолчанию {@link #DEFAULT_MAX_SIZE} записей):
+ * при переполнении отбрасывается самая старая восьмая часть записей, кратная
+ * интервалу снимков, и началом истории становится снимок на ее границе.
+ * Поэтому отмена возможна не дальше последних maxSize операций, зато память
+ * и размер файла истории не растут с длительностью сессии.
+ *
+ * Коды операций: '+', '-', '*', '/' - арифметика, '=' - установка значения
+ * (начальное число или результат выражения), 'c' - сброс.
+ * Операции повторяются через тот же калькулятор, поэтому результат совпадает
+ * с исходным.
+ *
+ * Для {@link ExactCalculator} история хранит также точные значения чисел
+ * и снимков, которые double не представляет (целые больше 2^53 по модулю,
+ * дробные, значения режима BigDecimal): отмена, повтор и возврат к
+ * контрольной точке восстанавливают их без округления. Целые до 2^53
+ * хранятся только в double, без объектов на запись.
+ *
+ * Формат файла (порядок байтов big-endian):
+ * <pre>
+ * заголовок:  "CHST" (4 байта), версия (1 байт), 3 резервных байта
+ * размеры:    число записей, текущая позиция, интервал снимков,
+ *             число контрольных точек (по 4 байта)
+ * начало:     1 байт (с версии 2): 0 - история начинается со сброса,
+ *             1 - со значения нулевого снимка (старые записи отброшены)
+ * данные:     коды операций (по 1 байту), числа (по 8), снимки (по 8),
+ *             контрольные точки: длина имени (2), имя в UTF-8, позиция (4)
+ * точные:     с версии 3: число точных чисел (4), затем для каждого номер
+ *             записи (4), длина (4) и строка BigDecimal.toString() в ASCII;
+ *             так же точные снимки (номер снимка вместо номера записи)
+ * CRC32C (4) по всем байтам после заголовка
+ * </pre>
+ * Файл записывается во временный и атомарно переименовывается, так что
+ * при сбое сохранения на диске остается предыдущая версия.
+ * Класс не является потокобезопасным.
+ */
+public class OperationHistory {
+    static final int FILE_MAGIC = 0x43485354; // "CHST"
+    static final byte VERSION = 3;
+    static final int FILE_HEADER_SIZE = 8;
+
+    /**
+     * Наибольшая длина имени контрольной точки.
+     */
+    public static final int MAX_CHECKPOINT_NAME = 1000;
+
+    /**
+     * Наибольшее число записей истории по умолчанию.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 64;
+    private static final int INITIAL_CAPACITY = 256;
+    private static final double EXACT_LIMIT = 0x1p53;  // Целые до 2^53 double хранит точно
+
+    private final Calculator calculator;
+    private final ExactCalculator exact;   // Тот же калькулятор в точном режиме или null
+    private final int maxSize;
+    private int snapshotInterval;
+    private byte[] operations = new byte[INITIAL_CAPACITY];
+    private double[] operands = new double[INITIAL_CAPACITY];
+    private double[] snapshots = new double[INITIAL_CAPACITY / DEFAULT_SNAPSHOT_INTERVAL + 1];
+    private BigDecimal[] exactOperands;    // Точные числа (null - число точно в operands), только для exact
+    private BigDecimal[] exactSnapshots;   // Точные снимки (null - снимок точно в snapshots), только для exact
+    private int size;      // Число записей (включая отмененные)
+    private int position;  // Число примененных записей
+    private boolean baseReset = true; // Позиция 0 - сброс (иначе - значение snapshots[0])
+    private final Map<String, Integer> checkpoints = new LinkedHashMap<>();
+
+    // Изменения с последнего переноса в копию (copyChangesTo)
+    private int changedFrom;   // Первая запись, измененная после переноса
+    private int dropped;       // Число отброшенных с начала записей
+    private boolean replaced;  // История заменена целиком (decode)
+
+    /**
+     * Создает пустую историю со снимком каждые 64 операции
+     * и не более чем {@link #DEFAULT_MAX_SIZE} записями.
+     * @param calculator калькулятор, операции которого записываются и повторяются
+     */
+    public OperationHistory(Calculator calculator) {
+        this(calculator, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Создает пустую историю не более чем с {@link #DEFAULT_MAX_SIZE} записями.
+     * @param calculator калькулятор, операции которого записываются и повторяются
+     * @param snapshotInterval число операций между снимками памяти
+     * @throws IllegalArgumentException если интервал не положителен
+     */
+    public OperationHistory(Calculator calculator, int snapshotInterval) {
+        this(calculator, snapshotInterval, Math.max(DEFAULT_MAX_SIZE, 2 * snapshotInterval));
+    }
+
+    /**
+     * Создает пустую историю.
+     * @param calculator калькулятор, операции которого записываются и повторяются
+     * @param snapshotInterval число операций между снимками памяти
+     * @param maxSize наибольшее число записей (не меньше двух интервалов снимков)
+     * @throws IllegalArgumentException если интервал не положителен или maxSize слишком мал
+     */
+    public OperationHistory(Calculator calculator, int snapshotInterval, int maxSize) {
+        if (snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Интервал снимков должен быть положительным");
+        }
+        if (maxSize < 2 * snapshotInterval) {
+            throw new IllegalArgumentException("Длина истории должна быть не меньше двух интервалов снимков");
+        }
+        this.calculator = calculator;
+        this.exact = calculator instanceof ExactCalculator ? (ExactCalculator) calculator : null;
+        this.snapshotInterval = snapshotInterval;
+        this.maxSize = maxSize;
+        if (exact != null) {
+            exactOperands = new BigDecimal[operands.length];
+            exactSnapshots = new BigDecimal[snapshots.length];
+        }
+    }
+
+    /**
+     * Записывает операцию, уже выполненную калькулятором. Отмененные записи
+     * после текущей позиции отбрасываются.
+     * @param operation код операции ('+', '-', '*', '/', '=' или 'c')
+     * @param operand число операции (для '=' - новое значение, для 'c' не используется)
+     * @throws IllegalArgumentException если код операции неизвестен
+     */
+    public void record(char operation, double operand) {
+        record(operation, operand, null);
+    }
+
+    /**
+     * Записывает операцию с точным целым операндом (для {@link ExactCalculator}).
+     * @param operation код операции ('+', '-', '*', '/' или '=')
+     * @param operand приближение числа в double
+     * @param exactOperand точное значение числа
+     * @throws IllegalArgumentException если код операции неизвестен
+     */
+    public void record(char operation, double operand, long exactOperand) {
+        record(operation, operand, exact == null || Math.abs((double) exactOperand) < EXACT_LIMIT
+            ? null : BigDecimal.valueOf(exactOperand));
+    }
+
+    /**
+     * Записывает операцию с точным операндом (для {@link ExactCalculator}).
+     * @param operation код операции ('+', '-', '*', '/' или '=')
+     * @param operand приближение числа в double
+     * @param exactOperand точное значение числа или null, если оно равно operand
+     * @throws IllegalArgumentException если код операции неизвестен
+     */
+    public void record(char operation, double operand, BigDecimal exactOperand) {
+        if ("+-*/=c".indexOf(operation) < 0) {
+            throw new IllegalArgumentException("Неизвестная операция: " + operation);
+        }
+        if (position < size) {
+            truncate(position);
+        }
+        if (size >= maxSize) {
+            dropOldest();
+        }
+        if (size == operations.length) {
+            int capacity = operations.length * 2;
+            operations = Arrays.copyOf(operations, capacity);
+            operands = Arrays.copyOf(operands, capacity);
+            if (exact != null) {
+                exactOperands = Arrays.copyOf(exactOperands, capacity);
+            }
+        }
+        operations[size] = (byte) operation;
+        operands[size] = operand;
+        if (exact != null) {
+            exactOperands[size] = exactOperand;
+        }
+        changedFrom = Math.min(changedFrom, size);
+        size++;
+        position = size;
+        if (size % snapshotInterval == 0) {
+            int index = size / snapshotInterval;
+            if (index == snapshots.length) {
+                snapshots = Arrays.copyOf(snapshots, snapshots.length * 2);
+                if (exact != null) {
+                    exactSnapshots = Arrays.copyOf(exactSnapshots, snapshots.length);
+                }
+            }
+            snapshots[index] = calculator.getMemory();
+            if (exact != null) {
+                exactSnapshots[index] = exact.isBigMode() || Math.abs(snapshots[index]) >= EXACT_LIMIT
+                    ? exact.getValue() : null;
+            }
+        }
+    }
+
+    /**
+     * @return калькулятор, операции которого записываются
+     */
+    public Calculator getCalculator() {
+        return calculator;
+    }
+
+    /**
+     * @return true если есть операция для отмены
+     */
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    /**
+     * @return true если есть отмененная операция для повтора
+     */
+    public boolean canRedo() {
+        return position < size;
+    }
+
+    /**
+     * Отменяет последнюю операцию: восстанавливает состояние калькулятора
+     * до нее.
+     * @return false если отменять нечего
+     */
+    public boolean undo() {
+        if (position == 0) {
+            return false;
+        }
+        moveTo(position - 1);
+        return true;
+    }
+
+    /**
+     * Повторяет отмененную операцию.
+     * @return false если повторять нечего
+     */
+    public boolean redo() {
+        if (position == size) {
+            return false;
+        }
+        apply(position);
+        position++;
+        return true;
+    }
+
+    /**
+     * Переводит калькулятор в состояние после заданного числа записей
+     * (отмененные записи сохраняются для повтора).
+     * @param target позиция от 0 до size()
+     * @throws IllegalArgumentException если позиция вне истории
+     */
+    public void moveTo(int target) {
+        if (target < 0 || target > size) {
+            throw new IllegalArgumentException("Позиция вне истории: " + target);
+        }
+        int from = target - target % snapshotInterval;
+        if (from == 0) {
+            if (baseReset) {
+                calculator.reset();
+            } else {
+                setMemory(0); // Начало истории после отбрасывания старых записей
+            }
+        } else if (operations[from - 1] == 'c') {
+            calculator.reset(); // Снимок после сброса - начальное состояние
+        } else {
+            setMemory(from / snapshotInterval);
+        }
+        for (int i = from; i < target; i++) {
+            apply(i);
+        }
+        position = target;
+    }
+
+    /**
+     * Запоминает текущую позицию под именем (существующая точка с тем же
+     * именем заменяется).
+     * @param name имя контрольной точки
+     * @throws IllegalArgumentException если имя пустое или длиннее MAX_CHECKPOINT_NAME символов
+     */
+    public void checkpoint(String name) {
+        if (name == null || name.isEmpty() || name.length() > MAX_CHECKPOINT_NAME) {
+            throw new IllegalArgumentException("Некорректное имя контрольной точки");
+        }
+        checkpoints.put(name, position);
+    }
+
+    /**
+     * Переводит калькулятор в состояние контрольной точки.
+     * @param name имя контрольной точки
+     * @return false если такой точки нет
+     */
+    public boolean restore(String name) {
+        Integer target = checkpoints.get(name);
+        if (target == null) {
+            return false;
+        }
+        moveTo(target);
+        return true;
+    }
+
+    /**
+     * @return имена контрольных точек в порядке создания
+     */
+    public List<String> getCheckpoints() {
+        return new ArrayList<>(checkpoints.keySet());
+    }
+
+    /**
+     * @return число записей, включая отмененные
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return число примененных записей
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * @param index номер записи
+     * @return код операции записи
+     */
+    public char getOperation(int index) {
+        checkIndex(index);
+        return (char) operations[index];
+    }
+
+    /**
+     * @param index номер записи
+     * @return число операции записи
+     */
+    public double getOperand(int index) {
+        checkIndex(index);
+        return operands[index];
+    }
+
+    /**
+     * @param index номер записи
+     * @return точное значение числа записи для {@link ExactCalculator}
+     *         или null, если оно равно {@link #getOperand(int)}
+     */
+    public BigDecimal getExactOperand(int index) {
+        checkIndex(index);
+        return exact != null ? exactOperands[index] : null;
+    }
+
+    /**
+     * Очищает историю и контрольные точки (состояние калькулятора не меняется).
+     */
+    public void clear() {
+        size = 0;
+        position = 0;
+        baseReset = true;
+        checkpoints.clear();
+    }
+
+    /**
+     * @return наибольшее число записей истории
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Сохраняет историю в файл (через временный файл и атомарное переименование).
+     * @param file путь к файлу истории
+     * @throws IOException если файл не удалось записать
+     */
+    public void save(Path file) throws IOException {
+        ByteBuffer buffer = encode();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Кодирует историю в формате файла истории.
+     * Используется также снимками {@link SessionStore}.
+     * @return буфер, готовый к чтению
+     * @throws IOException если история слишком велика для одного буфера
+     */
+    ByteBuffer encode() throws IOException {
+        List<byte[]> names = new ArrayList<>(checkpoints.size());
+        int checkpointBytes = 0;
+        for (String name : checkpoints.keySet()) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            names.add(bytes);
+            checkpointBytes += 2 + bytes.length + 4;
+        }
+        int snapshotCount = size / snapshotInterval + 1;
+        List<byte[]> exactOperandBytes = exactBytes(exactOperands, size);
+        List<byte[]> exactSnapshotBytes = exactBytes(exactSnapshots, snapshotCount);
+        long total = FILE_HEADER_SIZE + 17L + size + 8L * size + 8L * snapshotCount + checkpointBytes
+            + 8 + exactLength(exactOperandBytes) + exactLength(exactSnapshotBytes) + 4;
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("История слишком велика для сохранения: " + size + " записей");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) total);
+        buffer.putInt(FILE_MAGIC).put(VERSION).put(new byte[3]);
+        buffer.putInt(size).putInt(position).putInt(snapshotInterval).putInt(checkpoints.size());
+        buffer.put((byte) (baseReset ? 0 : 1));
+        buffer.put(operations, 0, size);
+        buffer.asDoubleBuffer().put(operands, 0, size);
+        buffer.position(buffer.position() + 8 * size);
+        buffer.asDoubleBuffer().put(snapshots, 0, snapshotCount);
+        buffer.position(buffer.position() + 8 * snapshotCount);
+        Iterator<Integer> positions = checkpoints.values().iterator();
+        for (byte[] name : names) {
+            buffer.putShort((short) name.length).put(name).putInt(positions.next());
+        }
+        putExact(buffer, exactOperands, size, exactOperandBytes);
+        putExact(buffer, exactSnapshots, snapshotCount, exactSnapshotBytes);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), FILE_HEADER_SIZE, buffer.position() - FILE_HEADER_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Загружает историю из файла, заменяя текущую, и переводит калькулятор
+     * в сохраненное состояние (по снимку, без повтора всей истории).
+     * @param file путь к файлу истории
+     * @throws IOException если файл не удалось прочитать, он поврежден
+     *         или не является файлом истории
+     */
+    public void load(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < FILE_HEADER_SIZE + 20 || length > Integer.MAX_VALUE) {
+                throw new IOException("Файл не является историей калькулятора: " + file);
+            }
+            buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Неожиданный конец файла истории: " + file);
+                }
+            }
+            buffer.flip();
+        }
+        decode(buffer, file.toString());
+    }
+
+    /**
+     * Восстанавливает историю из буфера в формате файла истории, заменяя
+     * текущую, и переводит калькулятор в сохраненное состояние.
+     * Используется также снимками {@link SessionStore}.
+     * @param buffer буфер на массиве целиком: от начала заголовка до конца CRC32C
+     * @param source имя источника для сообщений об ошибках
+     * @throws IOException если данные повреждены или не являются историей
+     */
+    void decode(ByteBuffer buffer, String source) throws IOException {
+        if (buffer.remaining() < FILE_HEADER_SIZE + 20 || buffer.getInt() != FILE_MAGIC) {
+            throw new IOException("Файл не является историей калькулятора: " + source);
+        }
+        byte version = buffer.get();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Неподдерживаемая версия истории: " + source);
+        }
+        int end = buffer.limit() - 4;
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), FILE_HEADER_SIZE, end - FILE_HEADER_SIZE);
+        if ((int) crc.getValue() != buffer.getInt(end)) {
+            throw new IOException("Файл истории поврежден: " + source);
+        }
+        buffer.limit(end);
+
+        try {
+            buffer.position(FILE_HEADER_SIZE);
+            int newSize = buffer.getInt();
+            int newPosition = buffer.getInt();
+            int newInterval = buffer.getInt();
+            int checkpointCount = buffer.getInt();
+            boolean newBaseReset = version == 1 || buffer.get() == 0; // В версии 1 история всегда начинается со сброса
+            if (newSize < 0 || newPosition < 0 || newPosition > newSize || newInterval <= 0 || checkpointCount < 0) {
+                throw new IOException("Файл истории поврежден: " + source);
+            }
+            int snapshotCount = newSize / newInterval + 1;
+            byte[] newOperations = new byte[Math.max(newSize, INITIAL_CAPACITY)];
+            double[] newOperands = new double[newOperations.length];
+            double[] newSnapshots = new double[newOperations.length / newInterval + 1];
+            buffer.get(newOperations, 0, newSize);
+            buffer.asDoubleBuffer().get(newOperands, 0, newSize);
+            buffer.position(buffer.position() + 8 * newSize);
+            buffer.asDoubleBuffer().get(newSnapshots, 0, snapshotCount);
+            buffer.position(buffer.position() + 8 * snapshotCount);
+            Map<String, Integer> newCheckpoints = new LinkedHashMap<>();
+            for (int i = 0; i < checkpointCount; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                int target = buffer.getInt();
+                if (target < 0 || target > newSize) {
+                    throw new IOException("Файл истории поврежден: " + source);
+                }
+                newCheckpoints.put(new String(name, StandardCharsets.UTF_8), target);
+            }
+            BigDecimal[] newExactOperands = exact == null ? null : new BigDecimal[newOperations.length];
+            BigDecimal[] newExactSnapshots = exact == null ? null : new BigDecimal[newSnapshots.length];
+            if (version >= 3) {
+                getExact(buffer, newExactOperands, newSize, source);
+                getExact(buffer, newExactSnapshots, snapshotCount, source);
+            }
+            for (int i = 0; i < newSize; i++) {
+                if ("+-*/=c".indexOf(newOperations[i]) < 0) {
+                    throw new IOException("Файл истории поврежден: " + source);
+                }
+            }
+
+            operations = newOperations;
+            operands = newOperands;
+            snapshots = newSnapshots;
+            exactOperands = newExactOperands;
+            exactSnapshots = newExactSnapshots;
+            snapshotInterval = newInterval;
+            size = newSize;
+            baseReset = newBaseReset;
+            checkpoints.clear();
+            checkpoints.putAll(newCheckpoints);
+            replaced = true;
+            changedFrom = 0;
+            dropped = 0;
+            moveTo(newPosition);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException и т.п.: размеры не сходятся с длиной файла
+            throw new IOException("Файл истории поврежден: " + source, e);
+        }
+    }
+
+    /**
+     * Переносит в копию изменения, сделанные с прошлого переноса, после чего
+     * копия совпадает с этой историей (копию только кодируют, ее калькулятор
+     * не используется). Стоимость пропорциональна числу записей, измененных
+     * с прошлого переноса, а не длине истории. Используется снимками
+     * {@link SessionStore}: копию кодирует фоновый поток, пока эта история
+     * продолжает меняться.
+     * @param copy копия, получавшая все предыдущие переносы из этой истории
+     */
+    void copyChangesTo(OperationHistory copy) {
+        if (replaced || copy.snapshotInterval != snapshotInterval) {
+            copy.snapshotInterval = snapshotInterval;
+            copy.size = 0;
+            changedFrom = 0;
+        } else if (dropped > 0) {
+            if (dropped < copy.size) {
+                copy.shift(dropped);
+            } else {
+                copy.size = 0; // Все записи копии отброшены; changedFrom уже 0
+            }
+        }
+        if (copy.operations.length < size) {
+            copy.operations = Arrays.copyOf(copy.operations, operations.length);
+            copy.operands = Arrays.copyOf(copy.operands, operations.length);
+            if (exact != null) {
+                copy.exactOperands = Arrays.copyOf(copy.exactOperands, operations.length);
+            }
+        }
+        if (copy.snapshots.length < snapshots.length) {
+            copy.snapshots = Arrays.copyOf(copy.snapshots, snapshots.length);
+            if (exact != null) {
+                copy.exactSnapshots = Arrays.copyOf(copy.exactSnapshots, snapshots.length);
+            }
+        }
+        int from = Math.min(changedFrom, size);
+        System.arraycopy(operations, from, copy.operations, from, size - from);
+        System.arraycopy(operands, from, copy.operands, from, size - from);
+        int firstSnapshot = from / snapshotInterval;
+        int lastSnapshot = Math.min(size / snapshotInterval, snapshots.length - 1);
+        System.arraycopy(snapshots, firstSnapshot, copy.snapshots, firstSnapshot, lastSnapshot - firstSnapshot + 1);
+        if (exact != null) {
+            System.arraycopy(exactOperands, from, copy.exactOperands, from, size - from);
+            System.arraycopy(exactSnapshots, firstSnapshot, copy.exactSnapshots, firstSnapshot,
+                lastSnapshot - firstSnapshot + 1);
+        }
+        copy.size = size;
+        copy.position = position;
+        copy.baseReset = baseReset;
+        copy.checkpoints.clear();
+        copy.checkpoints.putAll(checkpoints);
+        changedFrom = size;
+        dropped = 0;
+        replaced = false;
+    }
+
+    /**
+     * Отбрасывает самые старые записи при переполнении: не меньше восьмой
+     * части наибольшей длины, целыми интервалами снимков.
+     */
+    private void dropOldest() {
+        int count = Math.max(size + 1 - maxSize, maxSize / 8);
+        count = (count + snapshotInterval - 1) / snapshotInterval * snapshotInterval;
+        count = Math.min(count, size - size % snapshotInterval);
+        if (count == 0) {
+            return;
+        }
+        shift(count);
+        dropped += count;
+        changedFrom = Math.max(0, changedFrom - count);
+    }
+
+    /**
+     * Сдвигает историю к началу на count записей (кратно интервалу снимков):
+     * состояние после записи count - 1 становится началом истории.
+     */
+    private void shift(int count) {
+        baseReset = operations[count - 1] == 'c'; // Снимок после сброса - начальное состояние
+        int snapshotShift = count / snapshotInterval;
+        System.arraycopy(operations, count, operations, 0, size - count);
+        System.arraycopy(operands, count, operands, 0, size - count);
+        System.arraycopy(snapshots, snapshotShift, snapshots, 0, snapshots.length - snapshotShift);
+        if (exact != null) {
+            System.arraycopy(exactOperands, count, exactOperands, 0, size - count);
+            System.arraycopy(exactSnapshots, snapshotShift, exactSnapshots, 0, exactSnapshots.length - snapshotShift);
+        }
+        size -= count;
+        position = Math.max(0, position - count);
+        checkpoints.values().removeIf(target -> target < count);
+        checkpoints.replaceAll((name, target) -> target - count);
+    }
+
+    /**
+     * Повторяет запись через калькулятор.
+     */
+    private void apply(int index) {
+        if (exact != null && exactOperands[index] != null) {
+            applyExact((char) operations[index], exactOperands[index]);
+            return;
+        }
+        double operand = operands[index];
+        switch (operations[index]) {
+            case '+':
+                calculator.add(operand);
+                break;
+            case '-':
+                calculator.subtract(operand);
+                break;
+            case '*':
+                calculator.multiply(operand);
+                break;
+            case '/':
+                calculator.divide(operand);
+                break;
+            case '=':
+                calculator.setMemory(operand);
+                break;
+            default:
+                calculator.reset();
+                break;
+        }
+    }
+
+    /**
+     * Повторяет запись с точным числом через ExactCalculator.
+     */
+    private void applyExact(char operation, BigDecimal operand) {
+        switch (operation) {
+            case '+':
+                exact.add(operand);
+                break;
+            case '-':
+                exact.subtract(operand);
+                break;
+            case '*':
+                exact.multiply(operand);
+                break;
+            case '/':
+                exact.divide(operand);
+                break;
+            default:
+                exact.setMemory(operand);
+                break;
+        }
+    }
+
+    /**
+     * Восстанавливает память калькулятора по снимку (точному, если он есть).
+     */
+    private void setMemory(int snapshot) {
+        if (exact != null && exactSnapshots[snapshot] != null) {
+            exact.setMemory(exactSnapshots[snapshot]);
+        } else {
+            calculator.setMemory(snapshots[snapshot]);
+        }
+    }
+
+    /**
+     * Кодирует точные значения первых count элементов (null - точных нет).
+     */
+    private static List<byte[]> exactBytes(BigDecimal[] values, int count) {
+        List<byte[]> bytes = new ArrayList<>();
+        if (values != null) {
+            for (int i = 0; i < count; i++) {
+                if (values[i] != null) {
+                    bytes.add(values[i].toString().getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long exactLength(List<byte[]> bytes) {
+        long length = 0;
+        for (byte[] value : bytes) {
+            length += 8 + value.length;
+        }
+        return length;
+    }
+
+    private static void putExact(ByteBuffer buffer, BigDecimal[] values, int count, List<byte[]> bytes) {
+        buffer.putInt(bytes.size());
+        Iterator<byte[]> encoded = bytes.iterator();
+        for (int i = 0; values != null && i < count; i++) {
+            if (values[i] != null) {
+                byte[] value = encoded.next();
+                buffer.putInt(i).putInt(value.length).put(value);
+            }
+        }
+    }
+
+    /**
+     * Читает точные значения в values (для калькулятора без точного режима
+     * values - null, значения пропускаются: достаточно double).
+     */
+    private static void getExact(ByteBuffer buffer, BigDecimal[] values, int count, String source) throws IOException {
+        int entries = buffer.getInt();
+        if (entries < 0 || entries > count) {
+            throw new IOException("Файл истории поврежден: " + source);
+        }
+        for (int i = 0; i < entries; i++) {
+            int index = buffer.getInt();
+            byte[] text = new byte[buffer.getInt()];
+            buffer.get(text);
+            if (index < 0 || index >= count) {
+                throw new IOException("Файл истории поврежден: " + source);
+            }
+            if (values != null) {
+                values[index] = new BigDecimal(new String(text, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    /**
+     * Отбрасывает записи начиная с newSize и контрольные точки за ними.
+     */
+    private void truncate(int newSize) {
+        size = newSize;
+        checkpoints.values().removeIf(target -> target > newSize);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Номер записи вне истории: " + index);
+        }
+    }
+}
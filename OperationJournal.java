@@ -0,0 +1,210 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Класс OperationJournal записывает операции калькулятора в компактный
+ * двоичный журнал - альтернативу текстовому логу без форматирования чисел.
+ *
+ * Формат файла (порядок байтов big-endian):
+ * <pre>
+ * заголовок:  "CJRN" (4 байта), версия (1 байт), 3 резервных байта
+ * блок:       маркер "BLK1" (4), число записей (4), CRC32C (4), записи
+ * запись:     код операции (1: '+', '-', '*', '/' или '='), число (double),
+ *             результат (double), время в мс от эпохи (long) - всего 25 байт
+ * </pre>
+ * CRC32C блока считается по полю числа записей и самим записям, поэтому
+ * повреждение заголовка блока тоже обнаруживается; маркер позволяет читателю
+ * найти следующий целый блок после поврежденного.
+ *
+ * Записи копятся в прямом ByteBuffer и записываются в FileChannel целым блоком
+ * при его заполнении, при flush() и при закрытии; при аварийном завершении
+ * теряется не более одного незаписанного блока. Методы синхронизированы.
+ * Чтение и преобразование в текстовый лог - {@link JournalReader}.
+ */
+public class OperationJournal implements Closeable {
+    static final int FILE_MAGIC = 0x434A524E;  // "CJRN"
+    static final byte VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+    static final int BLOCK_HEADER_SIZE = 12;
+    static final int RECORD_SIZE = 25;
+    static final int MAX_RECORDS_PER_BLOCK = 1 << 16;
+
+    private static final int DEFAULT_RECORDS_PER_BLOCK = 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer block;     // Заголовок и записи текущего блока
+    private final int recordsPerBlock;
+    private final CRC32C crc = new CRC32C();
+    private int pending;                // Число записей в текущем блоке
+    private long records;               // Число записей, добавленных с открытия
+
+    /**
+     * Открывает журнал для дописывания (создает файл при необходимости).
+     * @param file путь к файлу журнала
+     * @throws IOException если файл не удалось открыть или он не является журналом
+     */
+    public OperationJournal(Path file) throws IOException {
+        this(file, DEFAULT_RECORDS_PER_BLOCK);
+    }
+
+    /**
+     * Открывает журнал для дописывания с заданным размером блока.
+     *
+     * @param file путь к файлу журнала
+     * @param recordsPerBlock число записей в блоке (1..65536)
+     * @throws IOException если файл не удалось открыть или он не является журналом
+     * @throws IllegalArgumentException если размер блока вне допустимых пределов
+     */
+    public OperationJournal(Path file, int recordsPerBlock) throws IOException {
+        if (recordsPerBlock <= 0 || recordsPerBlock > MAX_RECORDS_PER_BLOCK) {
+            throw new IllegalArgumentException("Недопустимое число записей в блоке: " + recordsPerBlock);
+        }
+        this.recordsPerBlock = recordsPerBlock;
+        this.block = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + recordsPerBlock * RECORD_SIZE);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+                header.putInt(FILE_MAGIC).put(VERSION).clear(); // Резервные байты - нули
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else {
+                checkHeader(channel, file);
+            }
+            channel.position(channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        block.position(BLOCK_HEADER_SIZE);
+    }
+
+    /**
+     * Добавляет запись с текущим временем.
+     *
+     * @param operation символ операции (+, -, *, / или = для выражения)
+     * @param number число операции
+     * @param result результат операции
+     * @throws IOException если не удалось записать заполненный блок
+     */
+    public void append(char operation, double number, double result) throws IOException {
+        append(operation, number, result, System.currentTimeMillis());
+    }
+
+    /**
+     * Добавляет запись.
+     *
+     * @param operation символ операции (+, -, *, / или = для выражения)
+     * @param number число операции
+     * @param result результат операции
+     * @param timestamp время операции в мс от эпохи
+     * @throws IOException если не удалось записать заполненный блок
+     * @throws IllegalArgumentException если символ операции неизвестен
+     */
+    public synchronized void append(char operation, double number, double result, long timestamp) throws IOException {
+        if (operation != '+' && operation != '-' && operation != '*' && operation != '/' && operation != '=') {
+            throw new IllegalArgumentException("Неизвестная операция: " + operation);
+        }
+        block.put((byte) operation).putDouble(number).putDouble(result).putLong(timestamp);
+        pending++;
+        records++;
+        if (pending == recordsPerBlock) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Записывает неполный текущий блок в файл (передает данные операционной системе).
+     * @throws IOException если произошла ошибка записи
+     */
+    public synchronized void flush() throws IOException {
+        if (pending > 0) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * @return число записей, добавленных с момента открытия
+     */
+    public synchronized long getRecordCount() {
+        return records;
+    }
+
+    /**
+     * Записывает оставшиеся записи и закрывает файл.
+     * @throws IOException если произошла ошибка записи
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Проверяет заголовок существующего файла журнала.
+     */
+    static void checkHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Читаем заголовок целиком
+        }
+        header.flip();
+        if (header.remaining() < FILE_HEADER_SIZE || header.getInt() != FILE_MAGIC) {
+            throw new IOException("Файл " + file + " не является журналом операций");
+        }
+        byte version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия журнала: " + version);
+        }
+    }
+
+    /**
+     * Считает CRC32C блока: поле числа записей и записи (без маркера и самой суммы).
+     * Позиция и предел буфера не меняются.
+     *
+     * @param crc объект подсчета (сбрасывается)
+     * @param buffer буфер с блоком
+     * @param start начало блока в буфере
+     * @param end конец последней записи блока в буфере
+     * @return контрольная сумма
+     */
+    static int checksum(CRC32C crc, ByteBuffer buffer, int start, int end) {
+        ByteBuffer view = buffer.duplicate();
+        crc.reset();
+        view.limit(start + 8).position(start + 4);
+        crc.update(view);
+        view.limit(end).position(start + BLOCK_HEADER_SIZE);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Дополняет заголовок блока контрольной суммой и записывает блок в файл.
+     */
+    private void writeBlock() throws IOException {
+        int end = block.position();
+        block.putInt(0, BLOCK_MAGIC);
+        block.putInt(4, pending);
+        block.putInt(8, checksum(crc, block, 0, end));
+        block.limit(end).position(0);
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+        block.clear().position(BLOCK_HEADER_SIZE);
+        pending = 0;
+    }
+}
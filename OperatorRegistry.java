@@ -0,0 +1,328 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Класс OperatorRegistry - таблица операций калькулятора, индексированная
+ * первым символом строки операции (+5, %3, ^2, sqrt). Поиск - обращение
+ * к плотному массиву по коду символа, без сравнения строк и выделения подстрок.
+ *
+ * Четыре основные операции (+, -, *, /) зарегистрированы всегда и вызывают
+ * методы калькулятора, поэтому точный режим и подклассы Calculator работают
+ * как прежде. Дополнительные операции задаются функциями над double
+ * ({@link DoubleBinaryOperator}, {@link DoubleUnaryOperator}) или над long
+ * для битовых операций и не требуют изменения цикла обработки ввода.
+ * Ошибки вычисления (деление на ноль, нецелый операнд битовой операции)
+ * функции сообщают исключением ArithmeticException с текстом для пользователя;
+ * деление на ноль - его подклассом {@link DivisionByZeroException}.
+ *
+ * В точном режиме ({@link ExactCalculator}) битовые операции, сдвиги и
+ * остаток выполняются над точными значениями памяти и числа
+ * ({@link Operator#apply(ExactCalculator, BigDecimal)}), поэтому целые
+ * больше 2^53 не округляются; степень и корень вычисляются в double.
+ *
+ * Символы команд (c, i, q, u, r, k, g), начала выражения (=), цифр
+ * и букв шестнадцатеричных цифр зарезервированы. Регистрация не
+ * синхронизирована: таблицу заполняют до начала работы.
+ */
+public final class OperatorRegistry {
+    private static final int TABLE_SIZE = 128;               // Символы ASCII
+    private static final String RESERVED = "cCiIqQuUrRkKgG=.,";
+    private static final double LONG_LIMIT = 0x1p63;         // Граница точных целых для битовых операций
+
+    /**
+     * Операция, применяемая к калькулятору.
+     */
+    @FunctionalInterface
+    public interface Action {
+        /**
+         * Применяет операцию к памяти калькулятора.
+         * @param calculator калькулятор
+         * @param operand число операции (для унарных операций - 0)
+         * @return новое значение памяти
+         * @throws ArithmeticException если операция не определена для аргументов
+         */
+        double apply(Calculator calculator, double operand);
+    }
+
+    /**
+     * Зарегистрированная операция.
+     */
+    public static final class Operator {
+        private final char symbol;
+        private final String word;     // Полное имя унарной операции (sqrt) или null
+        private final String name;     // Название для меню
+        private final boolean basic;   // Одна из операций +, -, *, /
+        private final Action action;
+        private final BinaryOperator<BigDecimal> exact; // Точный вариант (память, число) или null
+
+        Operator(char symbol, String word, String name, boolean basic, Action action) {
+            this(symbol, word, name, basic, action, null);
+        }
+
+        Operator(char symbol, String word, String name, boolean basic, Action action,
+                 BinaryOperator<BigDecimal> exact) {
+            this.symbol = symbol;
+            this.word = word;
+            this.name = name;
+            this.basic = basic;
+            this.action = action;
+            this.exact = exact;
+        }
+
+        /**
+         * Применяет операцию к памяти калькулятора.
+         * @param calculator калькулятор
+         * @param operand число операции (для унарных операций не используется)
+         * @return новое значение памяти
+         * @throws ArithmeticException если операция не определена для аргументов
+         */
+        public double apply(Calculator calculator, double operand) {
+            return action.apply(calculator, operand);
+        }
+
+        /**
+         * Применяет операцию к калькулятору точного режима: операции с точным
+         * вариантом (битовые, сдвиги, остаток) читают и записывают память без
+         * округления до double, остальные выполняются как {@link #apply(Calculator, double)}.
+         * Основные операции +, -, *, / вызываются через методы ExactCalculator напрямую.
+         * @param calculator калькулятор точного режима
+         * @param operand точное число операции (для унарных операций - 0)
+         * @return приближение нового значения памяти
+         * @throws ArithmeticException если операция не определена для аргументов
+         */
+        public double apply(ExactCalculator calculator, BigDecimal operand) {
+            if (exact == null) {
+                return apply(calculator, operand.doubleValue());
+            }
+            calculator.setMemory(exact.apply(calculator.getValue(), operand));
+            return calculator.getMemory();
+        }
+
+        /**
+         * @return символ операции
+         */
+        public char getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * @return полное имя унарной операции (например, sqrt) или null для операции с числом
+         */
+        public String getWord() {
+            return word;
+        }
+
+        /**
+         * @return название операции
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return true если операция записывается без числа (например, sqrt)
+         */
+        public boolean isUnary() {
+            return word != null;
+        }
+
+        /**
+         * Основные операции история, журнал и хранилище сессии записывают
+         * как есть; результат остальных записывается как установка значения (=).
+         * @return true для операций +, -, *, /
+         */
+        public boolean isBasic() {
+            return basic;
+        }
+
+        /**
+         * Проверяет, что фрагмент строки - полное имя унарной операции (без учета регистра).
+         * @param line строка
+         * @param start начало фрагмента (первый символ имени)
+         * @param end конец фрагмента
+         * @return true если фрагмент совпадает с именем
+         */
+        public boolean matchesWord(CharSequence line, int start, int end) {
+            if (end - start != word.length()) {
+                return false;
+            }
+            for (int i = 0; i < word.length(); i++) {
+                if (Character.toLowerCase(line.charAt(start + i)) != word.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return word != null ? word : String.valueOf(symbol);
+        }
+    }
+
+    private final Operator[] table = new Operator[TABLE_SIZE];
+    private final List<Operator> operators = new ArrayList<>();
+
+    /**
+     * Создает таблицу с основными операциями +, -, *, /.
+     */
+    public OperatorRegistry() {
+        add(new Operator('+', null, "сложение", true, Calculator::add));
+        add(new Operator('-', null, "вычитание", true, Calculator::subtract));
+        add(new Operator('*', null, "умножение", true, Calculator::multiply));
+        add(new Operator('/', null, "деление", true, (calculator, operand) -> {
+            if (operand == 0) {
+                throw new DivisionByZeroException(CalculatorSession.ERROR_DIVISION_BY_ZERO);
+            }
+            return calculator.divide(operand);
+        }));
+    }
+
+    /**
+     * Создает таблицу со всеми стандартными операциями: основными,
+     * остатком %, степенью ^, битовыми &amp;, |, x (исключающее или),
+     * сдвигами &lt; и &gt; и квадратным корнем sqrt.
+     * @return новая таблица
+     */
+    public static OperatorRegistry standard() {
+        OperatorRegistry registry = new OperatorRegistry();
+        registry.register('%', "остаток", (memory, operand) -> {
+            if (operand == 0) {
+                throw new DivisionByZeroException(CalculatorSession.ERROR_DIVISION_BY_ZERO);
+            }
+            return memory % operand;
+        }, (memory, operand) -> {
+            if (operand.signum() == 0) {
+                throw new DivisionByZeroException(CalculatorSession.ERROR_DIVISION_BY_ZERO);
+            }
+            return memory.remainder(operand); // Знак делимого, как у % над double
+        });
+        registry.register('^', "степень", Math::pow);
+        registry.registerInteger('&', "битовое И", (memory, operand) -> memory & operand);
+        registry.registerInteger('|', "битовое ИЛИ", (memory, operand) -> memory | operand);
+        registry.registerInteger('x', "исключающее ИЛИ", (memory, operand) -> memory ^ operand);
+        registry.registerInteger('<', "сдвиг влево", (memory, operand) -> memory << shift(operand));
+        registry.registerInteger('>', "сдвиг вправо", (memory, operand) -> memory >> shift(operand));
+        registry.register("sqrt", "квадратный корень", memory -> {
+            if (memory < 0) {
+                throw new ArithmeticException(CalculatorSession.ERROR_NEGATIVE_ROOT);
+            }
+            return Math.sqrt(memory);
+        });
+        return registry;
+    }
+
+    /**
+     * Регистрирует операцию с числом: новое значение памяти - function(память, число).
+     * @param symbol символ операции
+     * @param name название операции
+     * @param function функция над памятью и числом
+     * @throws IllegalArgumentException если символ зарезервирован или уже занят
+     */
+    public void register(char symbol, String name, DoubleBinaryOperator function) {
+        register(symbol, name, function, null);
+    }
+
+    private void register(char symbol, String name, DoubleBinaryOperator function, BinaryOperator<BigDecimal> exact) {
+        add(new Operator(symbol, null, name, false, (calculator, operand) -> {
+            double result = function.applyAsDouble(calculator.getMemory(), operand);
+            calculator.setMemory(result);
+            return result;
+        }, exact));
+    }
+
+    /**
+     * Регистрирует операцию над целыми числами (например, битовую): память
+     * и число должны быть целыми в диапазоне long, иначе выполнение завершается
+     * ArithmeticException с текстом {@link CalculatorSession#ERROR_INTEGER}.
+     * В точном режиме операция выполняется над точными значениями.
+     * @param symbol символ операции
+     * @param name название операции
+     * @param function функция над памятью и числом
+     * @throws IllegalArgumentException если символ зарезервирован или уже занят
+     */
+    public void registerInteger(char symbol, String name, LongBinaryOperator function) {
+        add(new Operator(symbol, null, name, false, (calculator, operand) -> {
+            double result = function.applyAsLong(toLong(calculator.getMemory()), toLong(operand));
+            calculator.setMemory(result);
+            return result;
+        }, (memory, operand) -> BigDecimal.valueOf(function.applyAsLong(toLong(memory), toLong(operand)))));
+    }
+
+    /**
+     * Регистрирует операцию без числа, записываемую словом (например, sqrt);
+     * ключ таблицы - первая буква слова в любом регистре.
+     * @param word имя операции
+     * @param name название операции
+     * @param function функция над памятью
+     * @throws IllegalArgumentException если первая буква зарезервирована или уже занята
+     */
+    public void register(String word, String name, DoubleUnaryOperator function) {
+        String lower = word.toLowerCase();
+        add(new Operator(lower.charAt(0), lower, name, false, (calculator, operand) -> {
+            double result = function.applyAsDouble(calculator.getMemory());
+            calculator.setMemory(result);
+            return result;
+        }));
+    }
+
+    /**
+     * Находит операцию по первому символу строки.
+     * @param symbol символ
+     * @return операция или null
+     */
+    public Operator get(char symbol) {
+        return symbol < TABLE_SIZE ? table[symbol] : null;
+    }
+
+    /**
+     * @return зарегистрированные операции в порядке регистрации
+     */
+    public List<Operator> getOperators() {
+        return Collections.unmodifiableList(operators);
+    }
+
+    private void add(Operator operator) {
+        char symbol = operator.getSymbol();
+        if (symbol >= TABLE_SIZE || symbol <= ' ' || Character.isDigit(symbol)
+                || RESERVED.indexOf(symbol) >= 0 || Character.digit(symbol, 16) >= 0) {
+            throw new IllegalArgumentException("Символ операции зарезервирован: " + symbol);
+        }
+        char lower = Character.toLowerCase(symbol);
+        char upper = Character.toUpperCase(symbol);
+        if (table[lower] != null || table[upper] != null) {
+            throw new IllegalArgumentException("Операция уже зарегистрирована: " + symbol);
+        }
+        table[lower] = operator; // Буквы - без учета регистра
+        table[upper] = operator;
+        operators.add(operator);
+    }
+
+    private static long toLong(double value) {
+        if (value != Math.rint(value) || value >= LONG_LIMIT || value < -LONG_LIMIT) {
+            throw new ArithmeticException(CalculatorSession.ERROR_INTEGER);
+        }
+        return (long) value;
+    }
+
+    private static long toLong(BigDecimal value) {
+        try {
+            return value.longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException(CalculatorSession.ERROR_INTEGER); // Дробная часть или вне long
+        }
+    }
+
+    private static int shift(long count) {
+        if (count < 0 || count > 63) {
+            throw new ArithmeticException(CalculatorSession.ERROR_SHIFT);
+        }
+        return (int) count;
+    }
+}
@@ -0,0 +1,658 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Класс ParallelLogEvaluator вычисляет большой файл операций калькулятора
+ * (грамматика пакетного режима: начальное число, +5, -3, *2, /4, c, i&lt;основание&gt;, q)
+ * параллельно на ForkJoinPool.
+ *
+ * Каждая операция - аффинное преобразование памяти m -> a*m + b
+ * (сложение: (1, c), умножение: (c, 0), деление: (1/c, 0), начальное число: (0, v)),
+ * а композиция аффинных преобразований ассоциативна. Файл делится на фрагменты
+ * по границам строк, каждый фрагмент сворачивается в одно преобразование, затем
+ * преобразования объединяются деревом fork-join. Поскольку смысл строки зависит
+ * от того, ожидается ли начальное число (после старта и команды c), для фрагмента
+ * вычисляются два варианта - для каждого начального состояния.
+ *
+ * Вычисление выполняется в два прохода: первый параллельно находит в каждом
+ * фрагменте число строк, последнюю смену системы счисления и команду q, что
+ * задает номер первой строки и систему счисления каждого фрагмента;
+ * второй выполняет свертку. Деление на ноль и некорректные числа сообщаются
+ * с номером строки и, как в пакетном режиме, пропускаются. Файлы со строками
+ * выражений (=...) вычисляются последовательно, так как выражения не аффинны.
+ *
+ * Точность: результат совпадает с последовательным вычислением с точностью до
+ * порядка округлений. Для n операций относительная погрешность не превышает
+ * примерно n * 2^-53 относительно суммы модулей промежуточных слагаемых; деление
+ * заменяется умножением на обратное (ошибка до 1 ulp на операцию). При сильном
+ * взаимном сокращении слагаемых относительная погрешность результата может быть больше.
+ * Если результат свертки выходит за пределы double, файл пересчитывается последовательно.
+ */
+public class ParallelLogEvaluator {
+    private static final int NORMAL = 0; // Начальное состояние: ожидается операция
+    private static final int FIRST = 1;  // Начальное состояние: ожидается начальное число
+
+    private static final long DEFAULT_CHUNK_SIZE = 4L << 20; // 4 МБ на фрагмент
+
+    private final ForkJoinPool pool;
+    private final long chunkSize;
+
+    /**
+     * Ошибка в строке файла операций.
+     */
+    public static final class LineError {
+        private final long line;
+        private final String message;
+
+        LineError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * @return номер строки (с 1)
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * @return текст ошибки
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Строка " + line + ": " + message;
+        }
+    }
+
+    /**
+     * Результат вычисления файла операций.
+     */
+    public static final class Result {
+        private final double memory;
+        private final boolean firstOperation;
+        private final int radix;
+        private final long operations;
+        private final List<LineError> errors;
+
+        Result(double memory, boolean firstOperation, int radix, long operations, List<LineError> errors) {
+            this.memory = memory;
+            this.firstOperation = firstOperation;
+            this.radix = radix;
+            this.operations = operations;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        /**
+         * @return итоговое значение памяти
+         */
+        public double getMemory() {
+            return memory;
+        }
+
+        /**
+         * @return true если после последней строки калькулятор ожидает начальное число
+         */
+        public boolean isFirstOperation() {
+            return firstOperation;
+        }
+
+        /**
+         * @return система счисления ввода после последней строки
+         */
+        public int getRadix() {
+            return radix;
+        }
+
+        /**
+         * @return число выполненных арифметических операций
+         */
+        public long getOperations() {
+            return operations;
+        }
+
+        /**
+         * @return ошибки в порядке строк
+         */
+        public List<LineError> getErrors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Создает вычислитель на общем пуле ForkJoinPool с фрагментами по 4 МБ.
+     */
+    public ParallelLogEvaluator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Создает вычислитель.
+     * @param pool пул для параллельных задач
+     * @param chunkSize примерный размер фрагмента в байтах
+     */
+    public ParallelLogEvaluator(ForkJoinPool pool, long chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Размер фрагмента должен быть положительным");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Вычисляет файл операций, начиная с нового калькулятора.
+     *
+     * @param file файл операций в кодировке UTF-8
+     * @param radix начальная система счисления ввода (2, 8, 10 или 16)
+     * @return результат вычисления
+     * @throws IOException если файл не удалось прочитать
+     */
+    public Result evaluate(Path file, int radix) throws IOException {
+        new NumberSystemConverter().setRadix(radix); // Проверка основания
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Chunk[] chunks = split(channel);
+
+            // Проход 1: число строк, смена системы счисления, q и выражения во фрагментах
+            pool.invoke(new ScanTask(channel, chunks, 0, chunks.length));
+            long line = 1;
+            int currentRadix = radix;
+            int last = chunks.length;
+            for (int i = 0; i < chunks.length; i++) {
+                Chunk chunk = chunks[i];
+                if (chunk.hasExpression) {
+                    return evaluateSequentially(file, radix);
+                }
+                chunk.firstLine = line;
+                chunk.radix = currentRadix;
+                line += chunk.lines;
+                if (chunk.lastRadix != 0) {
+                    currentRadix = chunk.lastRadix;
+                }
+                if (chunk.quit) {
+                    last = i + 1; // Фрагменты после команды q не вычисляются
+                    break;
+                }
+            }
+
+            // Проход 2: свертка аффинных преобразований деревом fork-join
+            Summary total = pool.invoke(new ReduceTask(channel, chunks, 0, last));
+            if (!Double.isFinite(total.b[FIRST])) {
+                // При переполнении коэффициенты теряют смысл (inf * 0 = NaN) - считаем точно
+                return evaluateSequentially(file, radix);
+            }
+            List<LineError> errors = new ArrayList<>();
+            ErrorNode.collect(total.errors[FIRST], errors);
+            return new Result(total.b[FIRST], total.endFirst[FIRST], currentRadix,
+                total.operations[FIRST], errors);
+        }
+    }
+
+    /**
+     * Последовательное вычисление через пакетный режим (для файлов с выражениями).
+     */
+    private static Result evaluateSequentially(Path file, int radix) throws IOException {
+        CalculatorSession session = new CalculatorSession(new NumberSystemConverter(), radix);
+        List<LineError> errors = new ArrayList<>();
+        long operations = 0;
+        long line = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String text;
+            loop:
+            while ((text = reader.readLine()) != null) {
+                line++;
+                switch (session.execute(text)) {
+                    case CalculatorSession.QUIT:
+                        break loop;
+                    case CalculatorSession.ERROR:
+                        errors.add(new LineError(line, session.getError()));
+                        break;
+                    case CalculatorSession.OPERATION:
+                        operations++;
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return new Result(session.getResult(), session.getCalculator().isFirstOperation(),
+            session.getRadix(), operations, errors);
+    }
+
+    /**
+     * Делит файл на фрагменты, границы которых приходятся на начало строки.
+     */
+    private Chunk[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            // Сдвигаем границу за ближайший перевод строки
+            while (end < size) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                int newline = -1;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        newline = i;
+                        break;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new Chunk(start, end - start));
+            start = end;
+        }
+        return chunks.toArray(new Chunk[0]);
+    }
+
+    /**
+     * Фрагмент файла и результаты первого прохода по нему.
+     */
+    private static final class Chunk {
+        final long position;
+        final long length;
+        long lines;            // Число строк во фрагменте
+        int lastRadix;         // Последняя установленная система счисления или 0
+        boolean quit;          // Фрагмент содержит команду q
+        boolean hasExpression; // Фрагмент содержит строку выражения
+        long firstLine;        // Номер первой строки фрагмента
+        int radix;             // Система счисления в начале фрагмента
+
+        Chunk(long position, long length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Свертка фрагмента для двух начальных состояний: преобразование m -> a*m + b,
+     * конечное состояние, число операций и ошибки.
+     */
+    private static final class Summary {
+        final double[] a = {1, 1};
+        final double[] b = {0, 0};
+        final boolean[] endFirst = {false, true};
+        final long[] operations = new long[2];
+        final ErrorNode[] errors = new ErrorNode[2];
+        private final List<LineError>[] ownErrors = newErrorLists();
+
+        /**
+         * Добавляет ошибку строки в список варианта.
+         */
+        void addError(int variant, long line, String message) {
+            if (ownErrors[variant] == null) {
+                ownErrors[variant] = new ArrayList<>();
+                errors[variant] = new ErrorNode(ownErrors[variant]);
+            }
+            ownErrors[variant].add(new LineError(line, message));
+        }
+
+        /**
+         * Композиция: сначала this, затем next.
+         */
+        Summary then(Summary next) {
+            Summary combined = new Summary();
+            for (int s = NORMAL; s <= FIRST; s++) {
+                int mid = endFirst[s] ? FIRST : NORMAL;
+                combined.a[s] = next.a[mid] * a[s];
+                combined.b[s] = next.a[mid] * b[s] + next.b[mid];
+                combined.endFirst[s] = next.endFirst[mid];
+                combined.operations[s] = operations[s] + next.operations[mid];
+                combined.errors[s] = ErrorNode.concat(errors[s], next.errors[mid]);
+            }
+            return combined;
+        }
+
+        // Массив обобщенного типа создать нельзя; элементы - только List<LineError>
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static List<LineError>[] newErrorLists() {
+            return new List[2];
+        }
+    }
+
+    /**
+     * Неизменяемое дерево списков ошибок: объединение двух сверток - O(1),
+     * развертывание в список выполняется один раз в конце.
+     */
+    private static final class ErrorNode {
+        final List<LineError> leaf;
+        final ErrorNode left;
+        final ErrorNode right;
+
+        ErrorNode(List<LineError> leaf) {
+            this.leaf = leaf;
+            this.left = null;
+            this.right = null;
+        }
+
+        ErrorNode(ErrorNode left, ErrorNode right) {
+            this.leaf = null;
+            this.left = left;
+            this.right = right;
+        }
+
+        static ErrorNode concat(ErrorNode first, ErrorNode second) {
+            if (first == null) {
+                return second;
+            }
+            return second == null ? first : new ErrorNode(first, second);
+        }
+
+        static void collect(ErrorNode node, List<LineError> out) {
+            if (node == null) {
+                return;
+            }
+            if (node.leaf != null) {
+                out.addAll(node.leaf);
+                return;
+            }
+            collect(node.left, out);
+            collect(node.right, out);
+        }
+    }
+
+    /**
+     * Первый проход по диапазону фрагментов.
+     */
+    private static final class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L; // ForkJoinTask сериализуем, задачи не сериализуются
+
+        private final FileChannel channel;
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+
+        ScanTask(FileChannel channel, Chunk[] chunks, int from, int to) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScanTask(channel, chunks, from, mid), new ScanTask(channel, chunks, mid, to));
+                return;
+            }
+            if (from == to) {
+                return;
+            }
+            Chunk chunk = chunks[from];
+            LineReader reader = new LineReader(map(channel, chunk));
+            NumberParser parser = new NumberParser();
+            while (reader.next()) {
+                chunk.lines++;
+                if (chunk.quit || reader.isBlank()) {
+                    continue;
+                }
+                char first = reader.charAt(reader.start);
+                if (reader.isSingle('q')) {
+                    chunk.quit = true;
+                } else if (first == '=') {
+                    chunk.hasExpression = true;
+                } else if ((first == 'i' || first == 'I')
+                        && parser.parse(reader, reader.start + 1, reader.end - reader.start - 1, 10) == NumberParser.OK
+                        && isRadix(parser.value())) {
+                    chunk.lastRadix = (int) parser.value();
+                }
+            }
+        }
+    }
+
+    /**
+     * Второй проход: свертка диапазона фрагментов.
+     */
+    private static final class ReduceTask extends RecursiveTask<Summary> {
+        private static final long serialVersionUID = 1L; // ForkJoinTask сериализуем, задачи не сериализуются
+
+        private final FileChannel channel;
+        private final Chunk[] chunks;
+        private final int from;
+        private final int to;
+        private double parsed; // Последнее разобранное число
+
+        ReduceTask(FileChannel channel, Chunk[] chunks, int from, int to) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Summary compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ReduceTask right = new ReduceTask(channel, chunks, mid, to);
+                right.fork();
+                Summary left = new ReduceTask(channel, chunks, from, mid).compute();
+                return left.then(right.join());
+            }
+            return from == to ? new Summary() : reduceChunk(chunks[from]);
+        }
+
+        /**
+         * Сворачивает строки фрагмента в преобразования для обоих начальных состояний.
+         */
+        private Summary reduceChunk(Chunk chunk) {
+            Summary summary = new Summary();
+            LineReader reader = new LineReader(map(channel, chunk));
+            NumberParser parser = new NumberParser();
+            int radix = chunk.radix;
+            long line = chunk.firstLine - 1;
+
+            while (reader.next()) {
+                line++;
+                if (reader.isBlank()) {
+                    continue;
+                }
+                if (reader.isSingle('q')) {
+                    break;
+                }
+                if (reader.isSingle('c')) {
+                    for (int s = NORMAL; s <= FIRST; s++) {
+                        summary.a[s] = 0;
+                        summary.b[s] = 0;
+                        summary.endFirst[s] = true;
+                    }
+                    continue;
+                }
+                char first = reader.charAt(reader.start);
+                if (first == 'i' || first == 'I') {
+                    if (parser.parse(reader, reader.start + 1, reader.end - reader.start - 1, 10) == NumberParser.OK
+                            && isRadix(parser.value())) {
+                        radix = (int) parser.value();
+                    } else {
+                        summary.addError(NORMAL, line, CalculatorSession.ERROR_RADIX);
+                        summary.addError(FIRST, line, CalculatorSession.ERROR_RADIX);
+                    }
+                    continue;
+                }
+
+                // Строка начального числа (только если какой-то вариант его ожидает)
+                boolean wholeParsed = false;
+                double whole = 0;
+                if (summary.endFirst[NORMAL] || summary.endFirst[FIRST]) {
+                    wholeParsed = parse(parser, reader, reader.start, radix);
+                    whole = parsed;
+                }
+
+                // Строка операции (для остальных вариантов)
+                char op = '+';
+                int numberStart = reader.start;
+                if (first == '+' || first == '-' || first == '*' || first == '/') {
+                    op = first;
+                    numberStart++;
+                }
+                boolean operandParsed = parse(parser, reader, numberStart, radix);
+                double operand = parsed;
+
+                for (int s = NORMAL; s <= FIRST; s++) {
+                    if (summary.endFirst[s]) {
+                        if (!wholeParsed) {
+                            summary.addError(s, line, CalculatorSession.ERROR_NUMBER);
+                            continue;
+                        }
+                        summary.a[s] = 0;
+                        summary.b[s] = whole;
+                        summary.endFirst[s] = false;
+                        continue;
+                    }
+                    if (!operandParsed) {
+                        summary.addError(s, line, CalculatorSession.ERROR_NUMBER);
+                        continue;
+                    }
+                    switch (op) {
+                        case '+':
+                            summary.b[s] += operand;
+                            break;
+                        case '-':
+                            summary.b[s] -= operand;
+                            break;
+                        case '*':
+                            summary.a[s] *= operand;
+                            summary.b[s] *= operand;
+                            break;
+                        default:
+                            if (operand == 0) {
+                                summary.addError(s, line, CalculatorSession.ERROR_DIVISION_BY_ZERO);
+                                continue;
+                            }
+                            summary.a[s] /= operand;
+                            summary.b[s] /= operand;
+                            break;
+                    }
+                    summary.operations[s]++;
+                }
+            }
+            return summary;
+        }
+
+        /**
+         * Разбирает число от позиции from до конца строки в поле parsed.
+         */
+        private boolean parse(NumberParser parser, LineReader reader, int from, int radix) {
+            if (parser.parse(reader, from, reader.end - from, radix) == NumberParser.OK) {
+                parsed = parser.value();
+                return true;
+            }
+            if (radix != 10) {
+                return false; // Другие формы допускаются только в десятичной системе
+            }
+            try {
+                // Редкие формы (NaN, Infinity) - через общий разбор, как в пакетном режиме
+                parsed = NumberSystemConverter.parseNumber(reader.subSequence(from, reader.end).toString().trim(), radix);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isRadix(double value) {
+        return value == 2 || value == 8 || value == 10 || value == 16;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, Chunk chunk) {
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, chunk.position, chunk.length);
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Построчное чтение отображенного в память фрагмента. Текущая строка
+     * (без пробелов по краям) доступна как CharSequence в границах [start, end)
+     * без создания объектов; символы вне ASCII в числах и командах не встречаются.
+     */
+    private static final class LineReader implements CharSequence {
+        private final ByteBuffer buffer;
+        private int next;
+        int start;
+        int end;
+
+        LineReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Переходит к следующей строке.
+         * @return false если строки закончились
+         */
+        boolean next() {
+            int limit = buffer.limit();
+            if (next >= limit) {
+                return false;
+            }
+            int lineStart = next;
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            next = lineEnd + 1;
+            while (lineStart < lineEnd && (buffer.get(lineStart) & 0xFF) <= ' ') {
+                lineStart++;
+            }
+            while (lineEnd > lineStart && (buffer.get(lineEnd - 1) & 0xFF) <= ' ') {
+                lineEnd--;
+            }
+            start = lineStart;
+            end = lineEnd;
+            return true;
+        }
+
+        boolean isBlank() {
+            return start == end;
+        }
+
+        boolean isSingle(char command) {
+            return end - start == 1 && Character.toLowerCase(charAt(start)) == command;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
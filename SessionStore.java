@@ -0,0 +1,912 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Класс SessionStore - долговременное хранилище сессии калькулятора: значения
+ * памяти, системы счисления ввода и истории операций. После аварийного
+ * завершения процесса сессия восстанавливается точно, в отличие от текстового
+ * лога, где числа округлены до двух знаков.
+ *
+ * Каждое изменение состояния записывается в журнал упреждающей записи (WAL)
+ * без округления: операнд - как double, а для {@link ExactCalculator} - также
+ * как long или BigDecimal. Каждые snapshotInterval записей состояние целиком
+ * сохраняется в снимок (временный файл и атомарное переименование), после
+ * чего журнал обрезается. Восстановление загружает снимок и повторяет только
+ * хвост журнала - около snapshotInterval записей, сколько бы ни длилась
+ * сессия.
+ *
+ * Снимок не задерживает ввод: пишущий поток лишь запоминает состояние
+ * калькулятора и переносит изменения истории с прошлого снимка в ее копию
+ * (стоимость пропорциональна числу новых записей, а не длине истории);
+ * кодирование, запись, force, переименование и обрезку журнала выполняет
+ * фоновый поток. Пока снимок пишется, новые записи копятся в памяти и
+ * попадают в уже обрезанный журнал, а следующий снимок откладывается до
+ * завершения текущего. Размер снимка ограничен длиной истории
+ * ({@link OperationHistory#getMaxSize()}), а не длительностью сессии.
+ *
+ * Записи копятся в памяти; фоновый поток раз в syncMillis миллисекунд
+ * дописывает накопленное одной группой и выполняет один force (групповая
+ * фиксация). При сбое теряется не больше последнего интервала, а ввод
+ * не ждет диска. Группа защищена CRC32C: недописанная группа в конце журнала
+ * при восстановлении отбрасывается.
+ *
+ * Формат журнала session.wal (порядок байтов big-endian):
+ * <pre>
+ * заголовок: "CWAL" (4 байта), версия (1 байт), 3 резервных байта
+ * группа:    "CWGR" (4), CRC32C (4) по остальной части группы, длина записей (4),
+ *            номер первой записи (8), число записей (4), записи
+ * запись:    код (1) и данные:
+ *            + - * / =  операнд: вид (1: 0 - double, 1 - long, 2 - BigDecimal),
+ *                       double (8), для long - long (8), для BigDecimal - длина (4)
+ *                       и строка BigDecimal.toString() в ASCII
+ *            c u r      без данных
+ *            i          основание (1)
+ *            k g        длина имени (2), имя в UTF-8
+ * </pre>
+ * Формат снимка session.snap: "CSNP" (4), версия (1), 3 резервных байта;
+ * номер последней учтенной записи журнала (8), основание (1), признак первой
+ * операции (1), память (в формате операнда), длина истории (4, -1 если
+ * истории нет), история в формате файла {@link OperationHistory}; CRC32C (4)
+ * по всем байтам после заголовка.
+ *
+ * Методы record* вызываются после того, как изменение применено к калькулятору
+ * (как {@link OperationHistory#record(char, double)}), одним пишущим потоком;
+ * фоновая фиксация синхронизирована с ним.
+ */
+public class SessionStore implements Closeable {
+    static final String WAL_FILE = "session.wal";
+    static final String SNAPSHOT_FILE = "session.snap";
+    static final int WAL_MAGIC = 0x4357414C;      // "CWAL"
+    static final int GROUP_MAGIC = 0x43574752;    // "CWGR"
+    static final int SNAPSHOT_MAGIC = 0x43534E50; // "CSNP"
+    static final byte VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int GROUP_HEADER_SIZE = 24;
+
+    /**
+     * Интервал групповой фиксации журнала по умолчанию, мс.
+     */
+    public static final long DEFAULT_SYNC_MILLIS = 50;
+
+    /**
+     * Число записей журнала между снимками по умолчанию.
+     */
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 10_000;
+
+    private static final byte OPERAND_DOUBLE = 0;
+    private static final byte OPERAND_LONG = 1;
+    private static final byte OPERAND_DECIMAL = 2;
+
+    private final Path snapshotFile;
+    private final NumberSystemConverter calculator;
+    private final ExactCalculator exact;          // Тот же калькулятор в точном режиме или null
+    private final OperationHistory history;       // История операций или null
+    private final OperationHistory historyCopy;   // Копия истории для снимков (кодируется под syncLock)
+    private final int snapshotInterval;
+    private final FileChannel wal;
+    private final CRC32C crc = new CRC32C();      // Только под syncLock
+    private final Object syncLock = new Object(); // Порядок записи групп, снимков и обрезки журнала
+    private final ScheduledExecutorService syncExecutor;
+
+    private ByteBuffer pending = ByteBuffer.allocate(4096); // Группа, еще не переданная в файл (под this)
+    private ByteBuffer spare = ByteBuffer.allocate(4096);   // Буфер для следующей группы (под syncLock)
+    private long pendingFirst;     // Номер первой записи в pending
+    private int pendingCount;      // Число записей в pending
+    private long sequence;         // Номер последней записи
+    private long walSize;          // Длина журнала в файле (под syncLock)
+    private ByteBuffer record = ByteBuffer.allocate(256); // Кодируемая запись (пишущий поток)
+    private int sinceSnapshot;     // Записей после последнего снимка
+    private int radix;             // Текущая система счисления ввода
+    private volatile IOException failure; // Первая ошибка записи
+    private volatile boolean snapshotInFlight; // Запрошенный снимок еще не записан
+    private boolean closed;
+
+    // Запрошенный, но еще не записанный снимок (под this)
+    private SnapshotState requested;
+    private ByteBuffer handoff;    // Записи до requested.covered, не переданные в журнал
+    private long handoffFirst;     // Номер первой записи в handoff
+    private int handoffCount;      // Число записей в handoff
+
+    private final long snapshotSequence;  // Номер записи, учтенной в снимке при открытии
+    private long recoveredRecords;        // Записей журнала, повторенных при открытии
+    private final long recoveryNanos;     // Время восстановления
+
+    // Операнд, прочитанный из журнала или снимка
+    private byte readKind;
+    private double readDouble;
+    private long readLong;
+    private BigDecimal readDecimal;
+
+    /**
+     * Состояние калькулятора на момент запроса снимка (история - в historyCopy).
+     */
+    private static final class SnapshotState {
+        final long covered;     // Номер последней учтенной записи
+        final int radix;
+        final boolean first;
+        final double memory;
+        final byte kind;        // Вид точного значения памяти
+        final long exactLong;
+        final byte[] decimal;
+
+        SnapshotState(long covered, int radix, boolean first, double memory, byte kind, long exactLong, byte[] decimal) {
+            this.covered = covered;
+            this.radix = radix;
+            this.first = first;
+            this.memory = memory;
+            this.kind = kind;
+            this.exactLong = exactLong;
+            this.decimal = decimal;
+        }
+    }
+
+    /**
+     * Открывает хранилище с фиксацией каждые 50 мс и снимком каждые 10 000 записей.
+     * @see #SessionStore(Path, NumberSystemConverter, OperationHistory, long, int)
+     */
+    public SessionStore(Path directory, NumberSystemConverter calculator, OperationHistory history) throws IOException {
+        this(directory, calculator, history, DEFAULT_SYNC_MILLIS, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Открывает хранилище в каталоге (создает его при необходимости) и
+     * восстанавливает сессию: загружает снимок в калькулятор и историю
+     * и повторяет хвост журнала. Недописанный хвост журнала обрезается.
+     * @param directory каталог сессии
+     * @param calculator калькулятор сессии (в начальном состоянии)
+     * @param history история над тем же калькулятором или null
+     * @param syncMillis интервал групповой фиксации журнала, мс
+     * @param snapshotInterval число записей журнала между снимками
+     * @throws IOException если файлы не удалось открыть или снимок поврежден
+     * @throws IllegalArgumentException если интервалы не положительны или
+     *         история ведется для другого калькулятора
+     */
+    public SessionStore(Path directory, NumberSystemConverter calculator, OperationHistory history,
+                        long syncMillis, int snapshotInterval) throws IOException {
+        if (syncMillis <= 0 || snapshotInterval <= 0) {
+            throw new IllegalArgumentException("Интервалы фиксации и снимков должны быть положительными");
+        }
+        if (history != null && history.getCalculator() != calculator) {
+            throw new IllegalArgumentException("История ведется для другого калькулятора");
+        }
+        this.calculator = calculator;
+        this.exact = calculator instanceof ExactCalculator ? (ExactCalculator) calculator : null;
+        this.history = history;
+        this.snapshotInterval = snapshotInterval;
+        this.radix = calculator.getRadix();
+
+        long started = System.nanoTime();
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.snapshotSequence = readSnapshot();
+        this.wal = FileChannel.open(directory.resolve(WAL_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            sequence = replay(directory.resolve(WAL_FILE));
+        } catch (IOException | RuntimeException e) {
+            wal.close();
+            throw e;
+        }
+        this.recoveryNanos = System.nanoTime() - started;
+        this.historyCopy = history == null ? null : new OperationHistory(calculator);
+        sinceSnapshot = (int) Math.min(recoveredRecords, snapshotInterval);
+        pending.position(GROUP_HEADER_SIZE);
+        spare.position(GROUP_HEADER_SIZE);
+
+        syncExecutor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "calculator-session-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncExecutor.scheduleWithFixedDelay(this::backgroundSync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записывает арифметическую операцию или установку значения.
+     * @param operation код операции ('+', '-', '*', '/' или '=')
+     * @param operand число операции
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordOperation(char operation, double operand) {
+        ByteBuffer out = startRecord(10);
+        out.put((byte) operation).put(OPERAND_DOUBLE).putDouble(operand);
+        append();
+    }
+
+    /**
+     * Записывает операцию {@link ExactCalculator} с точным целым операндом.
+     * @param operation код операции ('+', '-', '*', '/' или '=')
+     * @param operand приближение операнда, записанное в историю
+     * @param exactOperand точное значение операнда
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordOperation(char operation, double operand, long exactOperand) {
+        ByteBuffer out = startRecord(18);
+        out.put((byte) operation).put(OPERAND_LONG).putDouble(operand).putLong(exactOperand);
+        append();
+    }
+
+    /**
+     * Записывает операцию {@link ExactCalculator} с операндом BigDecimal.
+     * @param operation код операции ('+', '-', '*', '/' или '=')
+     * @param operand приближение операнда, записанное в историю
+     * @param exactOperand точное значение операнда
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordOperation(char operation, double operand, BigDecimal exactOperand) {
+        byte[] text = exactOperand.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer out = startRecord(14 + text.length);
+        out.put((byte) operation).put(OPERAND_DECIMAL).putDouble(operand).putInt(text.length).put(text);
+        append();
+    }
+
+    /**
+     * Записывает сброс калькулятора.
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordReset() {
+        startRecord(1).put((byte) 'c');
+        append();
+    }
+
+    /**
+     * Записывает смену системы счисления ввода.
+     * @param radix новое основание
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordRadix(int radix) {
+        this.radix = radix;
+        startRecord(2).put((byte) 'i').put((byte) radix);
+        append();
+    }
+
+    /**
+     * Записывает отмену операции в истории.
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordUndo() {
+        startRecord(1).put((byte) 'u');
+        append();
+    }
+
+    /**
+     * Записывает повтор отмененной операции.
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordRedo() {
+        startRecord(1).put((byte) 'r');
+        append();
+    }
+
+    /**
+     * Записывает создание контрольной точки.
+     * @param name имя контрольной точки
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordCheckpoint(String name) {
+        recordName('k', name);
+    }
+
+    /**
+     * Записывает возврат к контрольной точке.
+     * @param name имя контрольной точки
+     * @throws UncheckedIOException если запись сессии завершилась ошибкой
+     */
+    public void recordRestore(String name) {
+        recordName('g', name);
+    }
+
+    /**
+     * @return система счисления ввода сессии (после восстановления - сохраненная)
+     */
+    public int getRadix() {
+        return radix;
+    }
+
+    /**
+     * @return номер последней записи журнала за все время сессии
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return номер последней записи, учтенной в снимке при открытии (0 - снимка не было)
+     */
+    public long getSnapshotSequence() {
+        return snapshotSequence;
+    }
+
+    /**
+     * @return число записей журнала, повторенных при открытии поверх снимка
+     */
+    public long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    /**
+     * @return время восстановления при открытии, нс
+     */
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    /**
+     * Записывает запрошенный снимок, если он есть, затем дописывает накопленные
+     * записи одной группой и сбрасывает их на диск. Вызывается фоновым потоком;
+     * явный вызов гарантирует сохранность всех уже записанных изменений.
+     * @throws IOException если запись или сброс не удались
+     */
+    public void sync() throws IOException {
+        synchronized (syncLock) {
+            completeSnapshot();
+            ByteBuffer batch;
+            long first;
+            int count;
+            synchronized (this) {
+                if (pendingCount == 0) {
+                    return;
+                }
+                batch = pending;
+                first = pendingFirst;
+                count = pendingCount;
+                pending = spare;
+                pendingCount = 0;
+            }
+            writeGroup(batch, first, count);
+            batch.clear().position(GROUP_HEADER_SIZE);
+            spare = batch;
+        }
+    }
+
+    /**
+     * Сохраняет снимок состояния и обрезает журнал, не возвращаясь до их
+     * завершения. Автоматические снимки каждые snapshotInterval записей
+     * пишутся в фоне; этот метод вызывается при закрытии. Вызывать из пишущего потока.
+     * @throws IOException если снимок не удалось записать (журнал остается целым)
+     */
+    public void snapshot() throws IOException {
+        synchronized (syncLock) {
+            requestSnapshot();
+            completeSnapshot();
+        }
+    }
+
+    /**
+     * Останавливает фоновую фиксацию, сохраняет снимок и закрывает журнал.
+     * @throws IOException если запись сессии завершалась ошибкой
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        syncExecutor.shutdown();
+        try {
+            syncExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sync();
+            if (failure == null) {
+                snapshot();
+            }
+        } finally {
+            wal.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Начинает кодирование записи в буфер пишущего потока.
+     */
+    private ByteBuffer startRecord(int size) {
+        IOException error = failure;
+        if (error != null) {
+            throw new UncheckedIOException("Ошибка записи сессии", error);
+        }
+        if (closed) {
+            throw new IllegalStateException("Хранилище сессии закрыто");
+        }
+        if (record.capacity() < size) {
+            record = ByteBuffer.allocate(Math.max(size, record.capacity() * 2));
+        }
+        record.clear();
+        return record;
+    }
+
+    private void recordName(char code, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Слишком длинное имя контрольной точки");
+        }
+        startRecord(3 + bytes.length).put((byte) code).putShort((short) bytes.length).put(bytes);
+        append();
+    }
+
+    /**
+     * Переносит закодированную запись в текущую группу и при необходимости
+     * сохраняет снимок.
+     */
+    private void append() {
+        record.flip();
+        synchronized (this) {
+            if (pending.remaining() < record.remaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                    pending.position() + record.remaining()));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            if (pendingCount == 0) {
+                pendingFirst = sequence + 1;
+            }
+            pending.put(record);
+            pendingCount++;
+            sequence++;
+        }
+        if (++sinceSnapshot >= snapshotInterval && !snapshotInFlight) {
+            requestSnapshot();
+            syncExecutor.execute(this::backgroundSync); // Ошибка сообщается следующей записью
+        }
+    }
+
+    /**
+     * Запоминает состояние для снимка в пишущем потоке: значение памяти,
+     * изменения истории (в historyCopy) и еще не переданные в журнал записи,
+     * которые снимок покрывает. Копия истории меняется, только когда снимок
+     * не пишется: либо предыдущий завершен (snapshotInFlight сброшен), либо
+     * вызывающий держит syncLock.
+     */
+    private void requestSnapshot() {
+        byte kind = OPERAND_DOUBLE;
+        long exactLong = 0;
+        byte[] decimal = null;
+        boolean first = calculator.isFirstOperation();
+        if (exact != null && !first) {
+            BigDecimal value = exact.getValue();
+            if (exact.isBigMode()) {
+                kind = OPERAND_DECIMAL;
+                decimal = value.toString().getBytes(StandardCharsets.US_ASCII);
+            } else {
+                kind = OPERAND_LONG;
+                exactLong = value.longValueExact();
+            }
+        }
+        if (history != null) {
+            history.copyChangesTo(historyCopy);
+        }
+        synchronized (this) {
+            SnapshotState state = new SnapshotState(sequence, radix, first, calculator.getMemory(),
+                kind, exactLong, decimal);
+            if (handoff == null) {
+                handoff = pending;
+                handoffFirst = pendingFirst;
+                handoffCount = pendingCount;
+                pending = ByteBuffer.allocate(pending.capacity());
+                pending.position(GROUP_HEADER_SIZE);
+            } else if (pendingCount > 0) {
+                // Предыдущий запрос еще не записан: его записи и новые идут подряд
+                pending.flip().position(GROUP_HEADER_SIZE);
+                if (handoff.remaining() < pending.remaining()) {
+                    ByteBuffer grown = ByteBuffer.allocate(handoff.position() + pending.remaining());
+                    handoff.flip();
+                    grown.put(handoff);
+                    handoff = grown;
+                }
+                handoff.put(pending);
+                handoffCount += pendingCount;
+                pending.clear().position(GROUP_HEADER_SIZE);
+            }
+            pendingCount = 0;
+            requested = state;
+        }
+        snapshotInFlight = true;
+        sinceSnapshot = 0;
+    }
+
+    /**
+     * Записывает запрошенный снимок (под syncLock): сначала в журнал -
+     * покрываемые им записи (на случай ошибки снимка), затем снимок,
+     * затем журнал обрезается. Записи после снимка ждут в pending.
+     */
+    private void completeSnapshot() throws IOException {
+        SnapshotState state;
+        ByteBuffer batch;
+        long first;
+        int count;
+        synchronized (this) {
+            state = requested;
+            if (state == null) {
+                return;
+            }
+            batch = handoff;
+            first = handoffFirst;
+            count = handoffCount;
+        }
+        try {
+            if (count > 0) {
+                writeGroup(batch, first, count);
+            }
+            writeSnapshot(state);
+            wal.truncate(FILE_HEADER_SIZE);
+            wal.force(true);
+            walSize = FILE_HEADER_SIZE;
+        } finally {
+            synchronized (this) {
+                requested = null;
+                handoff = null;
+                handoffCount = 0;
+            }
+            snapshotInFlight = false;
+        }
+    }
+
+    private void backgroundSync() {
+        try {
+            sync();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Дополняет заголовок группы, дописывает ее в конец журнала и сбрасывает на диск.
+     */
+    private void writeGroup(ByteBuffer batch, long first, int count) throws IOException {
+        int end = batch.position();
+        batch.putInt(0, GROUP_MAGIC);
+        batch.putInt(8, end - GROUP_HEADER_SIZE);
+        batch.putLong(12, first);
+        batch.putInt(20, count);
+        crc.reset();
+        crc.update(batch.array(), 8, end - 8);
+        batch.putInt(4, (int) crc.getValue());
+        batch.flip();
+        long offset = walSize;
+        while (batch.hasRemaining()) {
+            offset += wal.write(batch, offset);
+        }
+        wal.force(false);
+        walSize = offset;
+    }
+
+    /**
+     * Записывает снимок состояния во временный файл и атомарно переименовывает его.
+     */
+    private void writeSnapshot(SnapshotState state) throws IOException {
+        ByteBuffer historyBytes = historyCopy == null ? null : historyCopy.encode();
+        byte kind = state.kind;
+        byte[] decimal = state.decimal;
+        long size = FILE_HEADER_SIZE + 8 + 2 + 9 + 8 + (decimal == null ? 0 : 4 + decimal.length)
+            + 4 + (historyBytes == null ? 0 : historyBytes.remaining()) + 4;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Сессия слишком велика для снимка");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(SNAPSHOT_MAGIC).put(VERSION).put(new byte[3]);
+        buffer.putLong(state.covered).put((byte) state.radix).put((byte) (state.first ? 1 : 0));
+        buffer.put(kind).putDouble(state.memory);
+        if (kind == OPERAND_LONG) {
+            buffer.putLong(state.exactLong);
+        } else if (kind == OPERAND_DECIMAL) {
+            buffer.putInt(decimal.length).put(decimal);
+        }
+        if (historyBytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(historyBytes.remaining()).put(historyBytes);
+        }
+        crc.reset();
+        crc.update(buffer.array(), FILE_HEADER_SIZE, buffer.position() - FILE_HEADER_SIZE);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        Path temp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Загружает снимок, если он есть, в калькулятор и историю.
+     * @return номер последней учтенной в снимке записи (0 - снимка нет)
+     */
+    private long readSnapshot() throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        if (buffer.remaining() < FILE_HEADER_SIZE + 4 || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Файл не является снимком сессии: " + snapshotFile);
+        }
+        if (buffer.get() != VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка сессии: " + snapshotFile);
+        }
+        int end = buffer.limit() - 4;
+        CRC32C check = new CRC32C();
+        check.update(buffer.array(), FILE_HEADER_SIZE, end - FILE_HEADER_SIZE);
+        if ((int) check.getValue() != buffer.getInt(end)) {
+            throw new IOException("Снимок сессии поврежден: " + snapshotFile);
+        }
+        buffer.limit(end);
+
+        try {
+            buffer.position(FILE_HEADER_SIZE);
+            long covered = buffer.getLong();
+            int savedRadix = buffer.get();
+            boolean first = buffer.get() != 0;
+            readOperand(buffer);
+            int historyLength = buffer.getInt();
+            if (covered < 0 || historyLength < -1) {
+                throw new IOException("Снимок сессии поврежден: " + snapshotFile);
+            }
+            if (historyLength >= 0) {
+                byte[] bytes = new byte[historyLength];
+                buffer.get(bytes);
+                if (history != null) {
+                    history.decode(ByteBuffer.wrap(bytes), snapshotFile.toString());
+                }
+            }
+            // История переводит калькулятор по снимкам в double - точное значение берется из снимка сессии
+            if (first) {
+                calculator.reset();
+            } else {
+                applyOperation('=', false);
+            }
+            calculator.setRadix(savedRadix);
+            radix = savedRadix;
+            return covered;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, NumberFormatException и т.п.
+            throw new IOException("Снимок сессии поврежден: " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Повторяет записи журнала после снимка; обрезает недописанный хвост.
+     * @return номер последней записи
+     */
+    private long replay(Path file) throws IOException {
+        long size = wal.size();
+        if (size < FILE_HEADER_SIZE) {
+            // Новый журнал (или сбой при его создании)
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(WAL_MAGIC).put(VERSION).flip();
+            wal.truncate(0);
+            while (header.hasRemaining()) {
+                wal.write(header, header.position());
+            }
+            wal.force(true);
+            walSize = FILE_HEADER_SIZE;
+            return snapshotSequence;
+        }
+        ByteBuffer header = readFully(0, FILE_HEADER_SIZE);
+        if (header.getInt() != WAL_MAGIC) {
+            throw new IOException("Файл не является журналом сессии: " + file);
+        }
+        if (header.get() != VERSION) {
+            throw new IOException("Неподдерживаемая версия журнала сессии: " + file);
+        }
+
+        long last = snapshotSequence;
+        long offset = FILE_HEADER_SIZE;
+        while (offset + GROUP_HEADER_SIZE <= size) {
+            ByteBuffer groupHeader = readFully(offset, GROUP_HEADER_SIZE);
+            int length = groupHeader.getInt(8);
+            if (groupHeader.getInt(0) != GROUP_MAGIC || length < 0 || length > size - offset - GROUP_HEADER_SIZE) {
+                break;
+            }
+            ByteBuffer group = readFully(offset, GROUP_HEADER_SIZE + length);
+            crc.reset();
+            crc.update(group.array(), 8, group.limit() - 8);
+            long first = group.getLong(12);
+            int count = group.getInt(20);
+            if ((int) crc.getValue() != group.getInt(4) || count < 0 || first > last + 1) {
+                break; // Недописанная группа или разрыв в нумерации - конец целого журнала
+            }
+            group.position(GROUP_HEADER_SIZE);
+            try {
+                for (int i = 0; i < count; i++) {
+                    long number = first + i;
+                    replayRecord(group, number > last);
+                    if (number > last) {
+                        last = number;
+                        recoveredRecords++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Журнал сессии поврежден: " + file, e);
+            }
+            offset += GROUP_HEADER_SIZE + length;
+        }
+        if (offset < size) {
+            wal.truncate(offset);
+            wal.force(true);
+        }
+        walSize = offset;
+        return last;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (wal.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец журнала сессии");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Разбирает запись журнала и, если apply, применяет ее.
+     */
+    private void replayRecord(ByteBuffer in, boolean apply) throws IOException {
+        char code = (char) in.get();
+        switch (code) {
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '=':
+                readOperand(in);
+                if (apply) {
+                    applyOperation(code, true);
+                }
+                break;
+            case 'c':
+                if (apply) {
+                    calculator.reset();
+                    if (history != null) {
+                        history.record('c', 0);
+                    }
+                }
+                break;
+            case 'i':
+                int newRadix = in.get();
+                if (apply) {
+                    calculator.setRadix(newRadix);
+                    radix = newRadix;
+                }
+                break;
+            case 'u':
+                if (apply && history != null) {
+                    history.undo();
+                }
+                break;
+            case 'r':
+                if (apply && history != null) {
+                    history.redo();
+                }
+                break;
+            case 'k':
+            case 'g':
+                byte[] name = new byte[in.getShort() & 0xFFFF];
+                in.get(name);
+                if (apply && history != null) {
+                    if (code == 'k') {
+                        history.checkpoint(new String(name, StandardCharsets.UTF_8));
+                    } else {
+                        history.restore(new String(name, StandardCharsets.UTF_8));
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Неизвестная запись журнала сессии: " + (int) code);
+        }
+    }
+
+    /**
+     * Читает операнд в поля read*.
+     */
+    private void readOperand(ByteBuffer in) {
+        readKind = in.get();
+        readDouble = in.getDouble();
+        if (readKind == OPERAND_LONG) {
+            readLong = in.getLong();
+        } else if (readKind == OPERAND_DECIMAL) {
+            byte[] text = new byte[in.getInt()];
+            in.get(text);
+            readDecimal = new BigDecimal(new String(text, StandardCharsets.US_ASCII));
+        } else if (readKind != OPERAND_DOUBLE) {
+            throw new IllegalStateException("Неизвестный вид операнда: " + readKind);
+        }
+    }
+
+    /**
+     * Применяет прочитанный операнд к калькулятору; при record - записывает
+     * операцию в историю, как это сделала исходная сессия.
+     */
+    private void applyOperation(char operation, boolean record) {
+        if (exact != null && readKind == OPERAND_LONG) {
+            switch (operation) {
+                case '+':
+                    exact.add(readLong);
+                    break;
+                case '-':
+                    exact.subtract(readLong);
+                    break;
+                case '*':
+                    exact.multiply(readLong);
+                    break;
+                case '/':
+                    exact.divide(readLong);
+                    break;
+                default:
+                    exact.setMemory(readLong);
+                    break;
+            }
+        } else if (exact != null && readKind == OPERAND_DECIMAL) {
+            switch (operation) {
+                case '+':
+                    exact.add(readDecimal);
+                    break;
+                case '-':
+                    exact.subtract(readDecimal);
+                    break;
+                case '*':
+                    exact.multiply(readDecimal);
+                    break;
+                case '/':
+                    exact.divide(readDecimal);
+                    break;
+                default:
+                    exact.setMemory(readDecimal);
+                    break;
+            }
+        } else {
+            switch (operation) {
+                case '+':
+                    calculator.add(readDouble);
+                    break;
+                case '-':
+                    calculator.subtract(readDouble);
+                    break;
+                case '*':
+                    calculator.multiply(readDouble);
+                    break;
+                case '/':
+                    calculator.divide(readDouble);
+                    break;
+                default:
+                    calculator.setMemory(readDouble);
+                    break;
+            }
+        }
+        if (record && history != null) {
+            if (exact != null && readKind == OPERAND_LONG) {
+                history.record(operation, readDouble, readLong);
+            } else if (exact != null && readKind == OPERAND_DECIMAL) {
+                history.record(operation, readDouble, readDecimal);
+            } else {
+                history.record(operation, readDouble);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс BenchmarkRunner - минимальный измерительный стенд для горячих путей калькулятора.
+ * Для каждого замера выполняет прогревочные и измерительные раунды заданной длительности
+ * и сообщает пропускную способность, среднее время операции, объем выделенной памяти
+ * на операцию (по счетчику потока) и активность сборщика мусора. Результаты выводятся
+ * таблицей и могут быть сохранены в JSON для сравнения между версиями.
+ */
+public final class BenchmarkRunner {
+    /**
+     * Замеряемый фрагмент кода.
+     */
+    public interface Benchmark {
+        /**
+         * Выполняет заданное число операций.
+         * @param operations число операций
+         * @return контрольное значение, не дающее JIT удалить вычисления
+         */
+        long run(int operations) throws Exception;
+    }
+
+    /**
+     * Результат одного замера.
+     */
+    public static final class Result {
+        final String name;
+        final double opsPerSecond;
+        final double nanosPerOp;
+        final double bytesPerOp;
+        final long gcCount;
+        final long gcMillis;
+
+        Result(String name, double opsPerSecond, double nanosPerOp, double bytesPerOp, long gcCount, long gcMillis) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+    }
+
+    private static volatile long blackhole; // Приемник контрольных значений
+
+    private final int warmupRounds;
+    private final int measureRounds;
+    private final long roundNanos;
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * @param warmupRounds число прогревочных раундов
+     * @param measureRounds число измерительных раундов
+     * @param roundMillis длительность одного раунда
+     * @param filter подстрока имени для отбора замеров (null - все)
+     */
+    public BenchmarkRunner(int warmupRounds, int measureRounds, long roundMillis, String filter) {
+        this.warmupRounds = warmupRounds;
+        this.measureRounds = measureRounds;
+        this.roundNanos = roundMillis * 1_000_000L;
+        this.filter = filter;
+    }
+
+    /**
+     * Создает стенд по аргументам командной строки:
+     * --warmup N, --rounds N, --millis N, --filter подстрока.
+     * @param args аргументы командной строки
+     * @return настроенный стенд
+     */
+    public static BenchmarkRunner fromArgs(String[] args) {
+        int warmup = 3;
+        int rounds = 5;
+        long millis = 500;
+        String filter = null;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--rounds":
+                    rounds = Integer.parseInt(args[++i]);
+                    break;
+                case "--millis":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+                case "--filter":
+                    filter = args[++i];
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new BenchmarkRunner(warmup, rounds, millis, filter);
+    }
+
+    /**
+     * Возвращает значение аргумента --json или null.
+     * @param args аргументы командной строки
+     * @return путь к файлу JSON
+     */
+    public static String jsonPath(String[] args) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--json")) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Выполняет замер и печатает строку результата.
+     * @param name имя замера
+     * @param benchmark замеряемый код
+     */
+    public void run(String name, Benchmark benchmark) throws Exception {
+        if (filter != null && !name.contains(filter)) {
+            return;
+        }
+
+        // Калибровка: число операций, укладывающееся в один раунд. Выполняется дважды,
+        // чтобы первый (холодный, с загрузкой классов) проход не занизил оценку.
+        int operations = 1;
+        for (int pass = 0; pass < 2; pass++) {
+            while (true) {
+                long start = System.nanoTime();
+                blackhole += benchmark.run(operations);
+                long elapsed = System.nanoTime() - start;
+                if (elapsed >= roundNanos / 10 || operations >= (1 << 28)) {
+                    operations = scale(operations, elapsed);
+                    break;
+                }
+                operations *= 2;
+            }
+        }
+
+        // Калибровка может попасть на компиляцию или сборку мусора (на одном ядре
+        // компилятор отнимает время у замера) и занизить число операций так, что код
+        // останется в интерпретаторе. Если прогревочный раунд заметно короче
+        // заданного, число операций увеличивается и прогрев начинается заново.
+        int warmed = 0;
+        while (warmed < warmupRounds) {
+            long start = System.nanoTime();
+            blackhole += benchmark.run(operations);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed < roundNanos / 2 && operations < (1 << 28)) {
+                operations = scale(operations, elapsed);
+                warmed = 0;
+            } else {
+                warmed++;
+            }
+        }
+
+        long totalNanos = 0;
+        long totalBytes = 0;
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        for (int i = 0; i < measureRounds; i++) {
+            long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            blackhole += benchmark.run(operations);
+            totalNanos += System.nanoTime() - start;
+            totalBytes += threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        }
+
+        long totalOps = (long) operations * measureRounds;
+        Result result = new Result(name,
+            totalOps * 1e9 / totalNanos,
+            (double) totalNanos / totalOps,
+            (double) totalBytes / totalOps,
+            gcCount() - gcCountBefore,
+            gcMillis() - gcMillisBefore);
+        results.add(result);
+        System.out.printf("%-40s %14.0f оп/с %10.1f нс/оп %10.2f байт/оп  GC: %d (%d мс)%n",
+            result.name, result.opsPerSecond, result.nanosPerOp, result.bytesPerOp,
+            result.gcCount, result.gcMillis);
+    }
+
+    /**
+     * Пересчитывает число операций так, чтобы прогон занимал один раунд.
+     * Отношение вычисляется в double: целочисленное деление округляло бы
+     * множитель вниз (обычно до 1) и не позволяло уменьшить число операций.
+     * @param operations число операций последнего прогона
+     * @param elapsed время последнего прогона в наносекундах
+     * @return новое число операций, от 1 до Integer.MAX_VALUE
+     */
+    private int scale(int operations, long elapsed) {
+        double scaled = operations * ((double) roundNanos / Math.max(elapsed, 1));
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, scaled));
+    }
+
+    /**
+     * Сохраняет результаты всех замеров в файл JSON.
+     * @param path путь к файлу
+     * @throws IOException если произошла ошибка при записи в файл
+     */
+    public void writeJson(String path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.write(String.format(java.util.Locale.ROOT,
+                    "  {\"benchmark\": \"%s\", \"opsPerSecond\": %.1f, \"nanosPerOp\": %.3f, "
+                        + "\"bytesPerOp\": %.3f, \"gcCount\": %d, \"gcMillis\": %d}%s%n",
+                    r.name.replace("\\", "\\\\").replace("\"", "\\\""),
+                    r.opsPerSecond, r.nanosPerOp, r.bytesPerOp, r.gcCount, r.gcMillis,
+                    i + 1 < results.size() ? "," : ""));
+            }
+            out.write("]\n");
+        }
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(gc.getCollectionTime(), 0);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,87 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+/**
+ * Сравнение BulkCalculator с поэлементным применением цепочки операций
+ * через NumberSystemConverter (скалярный цикл). Перед замером проверяется,
+ * что результаты и отметки деления на ноль совпадают.
+ * Запуск: bench/run.sh BulkBenchmark [--json файл]
+ */
+public class BulkBenchmark {
+    private static final int SIZE = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+        Random random = new Random(7);
+        double[] input = new double[SIZE];
+        double[] divisors = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            input[i] = random.nextDouble() * 1000;
+            divisors[i] = random.nextInt(100) == 0 ? 0 : 1 + random.nextInt(9);
+        }
+        BulkCalculator chain = new BulkCalculator().add(5).multiply(2).divideEach(divisors).subtract(1);
+        double[] output = new double[SIZE];
+        boolean[] errors = new boolean[SIZE];
+
+        // Проверка совпадения со скалярной реализацией
+        scalar(input, divisors, output, errors);
+        double[] bulk = input.clone();
+        long[] mask = chain.apply(bulk);
+        for (int i = 0; i < SIZE; i++) {
+            if (bulk[i] != output[i] || BulkCalculator.isError(mask, i) != errors[i]) {
+                throw new IllegalStateException("Расхождение в элементе " + i);
+            }
+        }
+
+        runner.run("скалярный NumberSystemConverter (1M)", ops -> {
+            for (int i = 0; i < ops; i++) {
+                scalar(input, divisors, output, errors);
+            }
+            return (long) output[ops & (SIZE - 1)];
+        });
+        runner.run("BulkCalculator double[] (1M)", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += chain.apply(input, 0, output, 0, SIZE).length;
+            }
+            return sink;
+        });
+        DoubleBuffer direct = ByteBuffer.allocateDirect(SIZE * Double.BYTES)
+            .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        runner.run("BulkCalculator direct DoubleBuffer (1M)", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                direct.clear();
+                direct.put(input).flip();
+                sink += chain.apply(direct).length;
+            }
+            return sink;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+
+    /**
+     * Поэлементная цепочка +5, *2, /divisors[i], -1 через NumberSystemConverter.
+     */
+    private static void scalar(double[] input, double[] divisors, double[] output, boolean[] errors) {
+        NumberSystemConverter calculator = new NumberSystemConverter();
+        for (int i = 0; i < input.length; i++) {
+            calculator.setMemory(input[i]);
+            calculator.add(5);
+            calculator.multiply(2);
+            errors[i] = false;
+            try {
+                calculator.divide(divisors[i]);
+            } catch (ArithmeticException e) {
+                errors[i] = true;
+            }
+            output[i] = calculator.subtract(1);
+        }
+    }
+}
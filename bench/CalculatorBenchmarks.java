@@ -0,0 +1,126 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Набор замеров горячих путей калькулятора: разбор чисел, форматирование
+ * в каждой системе счисления, цепочка арифметических операций, разбор строки
+ * ввода CalculatorUI и запись лога CustomFileWriter.
+ *
+ * Запуск (см. bench/run.sh):
+ * java -cp out/bench CalculatorBenchmarks [--filter подстрока] [--json результаты.json]
+ *      [--warmup N] [--rounds N] [--millis N]
+ */
+public class CalculatorBenchmarks {
+    private static final int[] RADIXES = {2, 8, 10, 16};
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+
+        String[] decimal = {"5", "123.25", "-42", "1e3", "99999.5", "0.125", "7", "2048"};
+        String[] hex = {"5", "7B", "FF", "3E8", "1869F", "A", "7", "800"};
+
+        runner.run("parseNumber radix=10", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += (long) NumberSystemConverter.parseNumber(decimal[i & 7], 10);
+            }
+            return sink;
+        });
+        runner.run("parseNumber radix=16", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += (long) NumberSystemConverter.parseNumber(hex[i & 7], 16);
+            }
+            return sink;
+        });
+
+        double[] values = {5, 123.25, -42, 1000, 99999.5, 0.125, 7, 2048};
+        for (int radix : RADIXES) {
+            runner.run("formatNumber radix=" + radix, ops -> {
+                long sink = 0;
+                for (int i = 0; i < ops; i++) {
+                    sink += NumberSystemConverter.formatNumber(values[i & 7], radix).length();
+                }
+                return sink;
+            });
+        }
+
+        NumberCache cache = new NumberCache(4096, 1 << 20);
+        runner.run("NumberCache.format (попадания)", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += cache.format(values[i & 7], RADIXES[i & 3]).length();
+            }
+            return sink;
+        });
+
+        runner.run("Calculator add/subtract/multiply/divide", ops -> {
+            NumberSystemConverter calculator = new NumberSystemConverter();
+            calculator.setMemory(1);
+            for (int i = 0; i < ops; i++) {
+                calculator.add(3);
+                calculator.subtract(1);
+                calculator.multiply(1.5);
+                calculator.divide(1.5);
+            }
+            return (long) calculator.getMemory();
+        });
+
+        OperatorRegistry operators = OperatorRegistry.standard();
+        NumberParser parser = new NumberParser();
+        String[] inputs = {"+5", "-3", "*2", "/4", "+ 12.5", "17", "*-1", "/ 8"};
+        runner.run("разбор строки ввода (OperatorRegistry + NumberParser)", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                String input = inputs[i & 7];
+                OperatorRegistry.Operator operator = operators.get(input.charAt(0));
+                int start = operator != null ? 1 : 0;
+                if (parser.parse(input, start, input.length() - start, 10) == NumberParser.OK) {
+                    sink += (long) parser.value();
+                }
+                sink += operator != null ? operator.getSymbol() : '+';
+            }
+            return sink;
+        });
+
+        String line = "Операция: сложение, Число: 5,00, Результат: 10,00 (BIN: 1010, OCT: 12, DEC: 10, HEX: A)";
+        File syncLog = File.createTempFile("bench-sync", ".log");
+        syncLog.deleteOnExit();
+        CustomFileWriter syncWriter = new CustomFileWriter(syncLog.getPath());
+        runner.run("CustomFileWriter.writeLine (простой)", ops -> {
+            for (int i = 0; i < ops; i++) {
+                syncWriter.writeLine(line);
+            }
+            return ops;
+        });
+
+        File asyncLog = File.createTempFile("bench-async", ".log");
+        asyncLog.deleteOnExit();
+        CustomFileWriter asyncWriter = CustomFileWriter.openAsync(asyncLog.getPath());
+        runner.run("CustomFileWriter.writeLine (асинхронный)", ops -> {
+            for (int i = 0; i < ops; i++) {
+                asyncWriter.writeLine(line);
+            }
+            asyncWriter.flush();
+            return ops;
+        });
+        asyncWriter.close();
+
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(line);
+        }
+        runner.run("CustomFileWriter.writeLines x1000", ops -> {
+            for (int i = 0; i < ops; i++) {
+                syncWriter.writeLines(lines);
+            }
+            return ops;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
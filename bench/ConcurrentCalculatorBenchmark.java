@@ -0,0 +1,84 @@
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Нагрузочная проверка ConcurrentCalculator: несколько потоков одновременно
+ * прибавляют единицы к общему калькулятору. Для каждого числа потоков выводится
+ * пропускная способность и проверяется, что ни одно обновление не потеряно.
+ * Для сравнения замеряется NumberSystemConverter под общей блокировкой.
+ * Запуск: bench/run.sh ConcurrentCalculatorBenchmark [операций на поток]
+ */
+public class ConcurrentCalculatorBenchmark {
+    private interface Worker {
+        void run(int operations);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            NumberSystemConverter locked = new NumberSystemConverter();
+            measure("synchronized NumberSystemConverter", threads, operations, n -> {
+                for (int i = 0; i < n; i++) {
+                    synchronized (locked) {
+                        locked.add(1);
+                    }
+                }
+            }, () -> locked.getMemory());
+
+            ConcurrentCalculator cas = new ConcurrentCalculator();
+            measure("ConcurrentCalculator.add (CAS)", threads, operations, n -> {
+                for (int i = 0; i < n; i++) {
+                    cas.add(1);
+                }
+            }, () -> cas.snapshot().getMemory());
+
+            ConcurrentCalculator striped = new ConcurrentCalculator();
+            measure("ConcurrentCalculator.accumulate", threads, operations, n -> {
+                for (int i = 0; i < n; i++) {
+                    striped.accumulate(1);
+                }
+            }, () -> striped.snapshot().getMemory());
+
+            // Смешанные операции: умножение на 1 не меняет сумму, но конкурирует со сложением
+            ConcurrentCalculator mixed = new ConcurrentCalculator();
+            measure("ConcurrentCalculator add+multiply", threads, operations, n -> {
+                for (int i = 0; i < n; i++) {
+                    if ((i & 7) == 0) {
+                        mixed.multiply(1);
+                    }
+                    mixed.accumulate(1);
+                }
+            }, () -> mixed.snapshot().getMemory());
+            System.out.println();
+        }
+    }
+
+    private static void measure(String name, int threads, int operations, Worker worker,
+                                java.util.function.DoubleSupplier result) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] pool = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            pool[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                worker.run(operations);
+            });
+            pool[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : pool) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        double expected = (double) threads * operations;
+        double actual = result.getAsDouble();
+        System.out.printf("%-36s потоков: %2d %14.0f оп/с  %s%n", name, threads,
+            expected * 1e9 / elapsed, actual == expected ? "OK" : "ПОТЕРЯНЫ ОБНОВЛЕНИЯ: " + actual);
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Консольный ввод-вывод интерактивного режима при вводе из канала: чтение
+ * строки с подсказкой и пять строк результата на операцию, как в CalculatorUI.
+ * Сравниваются Scanner + PrintStream.printf (прежний KeyboardInput) и
+ * KeyboardInput на байтовом буфере + ConsoleOutput. Вывод отбрасывается,
+ * поэтому замер показывает накладные расходы самих классов.
+ * Запуск: bench/run.sh ConsoleBenchmark [--json файл]
+ */
+public class ConsoleBenchmark {
+    private static final int LINES = 1024;
+    private static final String PROMPT = "\nВведите операцию и число (например: +5, -3, *2) или команду (c/i/q): ";
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINES; i++) {
+            text.append(i % 2 == 0 ? "+" : "*").append(i % 100 + 1).append('\n');
+        }
+        byte[] input = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        PrintStream printStream = new PrintStream(OutputStream.nullOutputStream(), true, StandardCharsets.UTF_8);
+        runner.run("Scanner + PrintStream.printf", ops -> {
+            long sink = 0;
+            Scanner scanner = null;
+            for (int i = 0; i < ops; i++) {
+                if (i % LINES == 0) {
+                    scanner = new Scanner(new ByteArrayInputStream(input), StandardCharsets.UTF_8.name());
+                }
+                printStream.print(PROMPT);
+                sink += scanner.nextLine().length();
+                printResult(printStream, i);
+            }
+            return sink;
+        });
+
+        ConsoleOutput console = new ConsoleOutput(OutputStream.nullOutputStream(), 8192);
+        runner.run("KeyboardInput + ConsoleOutput", ops -> {
+            long sink = 0;
+            KeyboardInput keyboard = null;
+            for (int i = 0; i < ops; i++) {
+                if (i % LINES == 0) {
+                    keyboard = new KeyboardInput(new ByteArrayInputStream(input), console);
+                }
+                sink += keyboard.readLine(PROMPT).length();
+                // Как CalculatorUI.displayResult: строки собираются без Formatter
+                console.println("\nРезультат в разных системах счисления:");
+                console.print("Десятичная");
+                console.print(": ");
+                console.println(Integer.toString(i));
+                console.print("Двоичная: ");
+                console.println(Integer.toBinaryString(i));
+                console.print("Восьмеричная: ");
+                console.println(Integer.toOctalString(i));
+                console.print("Шестнадцатеричная: ");
+                console.println(Integer.toHexString(i));
+            }
+            console.flush();
+            return sink;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+
+    private static void printResult(PrintStream out, int i) {
+        out.println("\nРезультат в разных системах счисления:");
+        out.printf("%s: %s%n", "Десятичная", Integer.toString(i));
+        out.printf("Двоичная: %s%n", Integer.toBinaryString(i));
+        out.printf("Восьмеричная: %s%n", Integer.toOctalString(i));
+        out.printf("Шестнадцатеричная: %s%n", Integer.toHexString(i));
+    }
+}
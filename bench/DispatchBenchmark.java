@@ -0,0 +1,149 @@
+/**
+ * Выбор и выполнение операции по строке ввода: прежний путь CalculatorUI
+ * (разбиение строки на массив из операции и числа через substring, switch
+ * по строке операции, разбор числа через NumberCache) против таблицы
+ * {@link OperatorRegistry} (обращение к массиву по первому символу и разбор
+ * числа NumberParser по смещению). Отдельно замеряется только выбор операции
+ * и смесь со всеми стандартными операциями. Перед каждой операцией память
+ * устанавливается в 1000, чтобы все прогоны выполняли одни и те же вычисления.
+ * Запуск: bench/run.sh DispatchBenchmark [--json файл]
+ */
+public class DispatchBenchmark {
+    private static final String[] BASIC = {"+5", "-3", "*2", "/4", "+12.5", "17", "*-1", "/8"};
+    private static final String[] MIXED = {"+5", "-3", "*2", "/4", "%7", "^2", "&255", "|1", "x3", "<2", ">1", "sqrt"};
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+        NumberSystemConverter calculator = new NumberSystemConverter();
+        NumberCache cache = new NumberCache(4096, 1 << 20);
+        OperatorRegistry operators = OperatorRegistry.standard();
+        NumberParser parser = new NumberParser();
+
+        runner.run("прежний путь: parseInput + switch по строке + NumberCache", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                calculator.setMemory(1000);
+                String[] parts = parseInput(BASIC[i & 7]);
+                double number = cache.parse(parts[1], 10);
+                switch (parts[0]) {
+                    case "+":
+                        sink += (long) calculator.add(number);
+                        break;
+                    case "-":
+                        sink += (long) calculator.subtract(number);
+                        break;
+                    case "*":
+                        sink += (long) calculator.multiply(number);
+                        break;
+                    case "/":
+                        sink += (long) calculator.divide(number);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return sink;
+        });
+
+        runner.run("OperatorRegistry + NumberParser", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                calculator.setMemory(1000);
+                sink += (long) execute(operators, parser, calculator, BASIC[i & 7]);
+            }
+            return sink;
+        });
+
+        runner.run("только выбор: substring + switch по строке", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                calculator.setMemory(1000);
+                String input = BASIC[i & 7];
+                String operation = input.startsWith("+") || input.startsWith("-")
+                    || input.startsWith("*") || input.startsWith("/") ? input.substring(0, 1) : "+";
+                switch (operation) {
+                    case "+":
+                        sink += (long) calculator.add(3);
+                        break;
+                    case "-":
+                        sink += (long) calculator.subtract(3);
+                        break;
+                    case "*":
+                        sink += (long) calculator.multiply(3);
+                        break;
+                    case "/":
+                        sink += (long) calculator.divide(3);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return sink;
+        });
+
+        runner.run("только выбор: OperatorRegistry.get", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                calculator.setMemory(1000);
+                OperatorRegistry.Operator operator = operators.get(BASIC[i & 7].charAt(0));
+                if (operator == null) {
+                    operator = operators.get('+');
+                }
+                sink += (long) operator.apply(calculator, 3);
+            }
+            return sink;
+        });
+
+        runner.run("OperatorRegistry, все стандартные операции", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                calculator.setMemory(1000);
+                sink += (long) execute(operators, parser, calculator, MIXED[i % MIXED.length]);
+            }
+            return sink;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+
+    /**
+     * Выполняет строку так же, как цикл CalculatorUI.run.
+     */
+    private static double execute(OperatorRegistry operators, NumberParser parser,
+                                  NumberSystemConverter calculator, String input) {
+        OperatorRegistry.Operator operator = operators.get(input.charAt(0));
+        int start = 1;
+        if (operator == null) {
+            operator = operators.get('+');
+            start = 0;
+        }
+        double number = 0;
+        if (!operator.isUnary()) {
+            if (parser.parse(input, start, input.length() - start, 10) != NumberParser.OK) {
+                throw new IllegalStateException("Некорректное число: " + input);
+            }
+            number = parser.value();
+        }
+        return operator.apply(calculator, number);
+    }
+
+    /**
+     * Прежний разбор строки ввода CalculatorUI: массив из операции и числа.
+     */
+    private static String[] parseInput(String input) {
+        input = input.trim();
+        String operation = "+";
+        String number = input;
+
+        if (input.startsWith("+") || input.startsWith("-") ||
+            input.startsWith("*") || input.startsWith("/")) {
+            operation = input.substring(0, 1);
+            number = input.substring(1).trim();
+        }
+
+        return new String[]{operation, number};
+    }
+}
@@ -0,0 +1,58 @@
+import java.math.BigDecimal;
+
+/**
+ * Стоимость операций в режимах калькулятора: double (NumberSystemConverter),
+ * точный long (ExactCalculator до переполнения) и BigDecimal (ExactCalculator
+ * после переполнения). Режим long не должен выделять память.
+ * Запуск: bench/run.sh ExactCalculatorBenchmark [--json файл]
+ */
+public class ExactCalculatorBenchmark {
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+
+        NumberSystemConverter plain = new NumberSystemConverter();
+        runner.run("double: +3 *2 -5 /2", ops -> {
+            long sum = 0;
+            for (int i = 0; i < ops; i++) {
+                plain.setMemory(i);
+                plain.add(3);
+                plain.multiply(2);
+                plain.subtract(5);
+                sum += (long) plain.divide(2);
+            }
+            return sum;
+        });
+
+        ExactCalculator exact = new ExactCalculator();
+        runner.run("ExactCalculator long: +3 *2 -5 -1", ops -> {
+            long sum = 0;
+            for (int i = 0; i < ops; i++) {
+                exact.setMemory(i);
+                exact.add(3);
+                exact.multiply(2);
+                exact.subtract(5);
+                exact.subtract(1);
+                sum += (long) exact.getMemory(); // Результат используется - цикл не выбрасывается JIT
+            }
+            return sum;
+        });
+
+        ExactCalculator big = new ExactCalculator();
+        BigDecimal huge = new BigDecimal("1e30");
+        runner.run("ExactCalculator BigDecimal: +3 *2 -5 /2", ops -> {
+            for (int i = 0; i < ops; i++) {
+                big.setMemory(huge);
+                big.add(3);
+                big.multiply(2);
+                big.subtract(5);
+                big.divide(2);
+            }
+            return big.getValue().signum();
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Замер вычисления повторяющейся формулы: разбор и вычисление при каждом
+ * обращении против однократной компиляции Expression и многократного вычисления.
+ * Запуск: bench/run.sh ExpressionBenchmark [--json файл]
+ */
+public class ExpressionBenchmark {
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+        String formula = "(a + b) * c / d - 0x1F + 0b101 * a";
+
+        runner.run("compile + evaluate", ops -> {
+            double sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += Expression.compile(formula).evaluate(i, 2, 3, 4);
+            }
+            return (long) sink;
+        });
+
+        runner.run("compileCached + evaluate", ops -> {
+            double sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += Expression.compileCached(formula).evaluate(i, 2, 3, 4);
+            }
+            return (long) sink;
+        });
+
+        Expression compiled = Expression.compile(formula);
+        double[] values = {0, 2, 3, 4};
+        runner.run("compiled evaluate", ops -> {
+            double sink = 0;
+            for (int i = 0; i < ops; i++) {
+                values[0] = i;
+                sink += compiled.evaluate(values);
+            }
+            return (long) sink;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Пропускная способность потокового интерфейса {@link CalculatorProcessor}
+ * в сравнении с прямыми вызовами калькулятора: разбор строки операции
+ * и арифметика напрямую, через CalculatorSession и через процессор
+ * с синхронным издателем (накладные расходы Flow и обратного давления)
+ * и с асинхронным SubmissionPublisher.
+ * Запуск: bench/run.sh FlowBenchmark [--json файл]
+ */
+public class FlowBenchmark {
+    private static final String[] LINES = {"+3", "*2", "-3", "/2", "+1.5", "-1.5"};
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+
+        NumberSystemConverter direct = new NumberSystemConverter();
+        runner.run("прямые вызовы: parseNumber + операция", ops -> {
+            direct.setMemory(1); // Каждый прогон выполняет одни и те же вычисления
+            for (int i = 0; i < ops; i++) {
+                String line = LINES[i % LINES.length];
+                double number = NumberSystemConverter.parseNumber(line.substring(1), 10);
+                switch (line.charAt(0)) {
+                    case '+':
+                        direct.add(number);
+                        break;
+                    case '-':
+                        direct.subtract(number);
+                        break;
+                    case '*':
+                        direct.multiply(number);
+                        break;
+                    default:
+                        direct.divide(number);
+                        break;
+                }
+            }
+            return (long) direct.getMemory();
+        });
+
+        CalculatorSession session = new CalculatorSession();
+        runner.run("CalculatorSession.execute", ops -> {
+            session.getCalculator().setMemory(1);
+            for (int i = 0; i < ops; i++) {
+                session.execute(LINES[i % LINES.length]);
+            }
+            return (long) session.getResult();
+        });
+
+        runner.run("CalculatorProcessor, синхронный издатель", ops -> runSync(ops, false));
+        runner.run("CalculatorProcessor, синхронный издатель, форматирование", ops -> runSync(ops, true));
+        runner.run("CalculatorProcessor, SubmissionPublisher", FlowBenchmark::runAsync);
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+
+    /**
+     * Прогоняет ops строк через процессор в текущем потоке.
+     */
+    private static long runSync(int ops, boolean format) {
+        CalculatorProcessor processor = newProcessor(format);
+        new ArrayPublisher(ops).subscribe(processor);
+        SummingSubscriber subscriber = new SummingSubscriber();
+        processor.subscribe(subscriber);
+        if (subscriber.count != ops) {
+            throw new IllegalStateException("Получено " + subscriber.count + " из " + ops);
+        }
+        return subscriber.sum;
+    }
+
+    /**
+     * Прогоняет ops строк через SubmissionPublisher (строки потребляются в общем пуле).
+     */
+    private static long runAsync(int ops) throws InterruptedException {
+        CalculatorProcessor processor = newProcessor(false);
+        SummingSubscriber subscriber = new SummingSubscriber();
+        processor.subscribe(subscriber);
+        try (SubmissionPublisher<CharSequence> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            for (int i = 0; i < ops; i++) {
+                publisher.submit(LINES[i % LINES.length]); // Блокируется при заполненном буфере
+            }
+        }
+        subscriber.finished.await();
+        return subscriber.sum;
+    }
+
+    private static CalculatorProcessor newProcessor(boolean format) {
+        NumberSystemConverter calculator = new NumberSystemConverter();
+        calculator.setMemory(1);
+        return new CalculatorProcessor(calculator, 10, format, CalculatorProcessor.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Синхронный издатель: выдает строки в потоке запроса не больше запрошенного.
+     */
+    private static final class ArrayPublisher implements Flow.Publisher<CharSequence> {
+        private final int count;
+
+        ArrayPublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super CharSequence> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private long requested;
+                private int sent;
+                private boolean emitting;  // Повторный вход из onNext только увеличивает запрос
+                private boolean cancelled;
+
+                @Override
+                public void request(long n) {
+                    requested += n;
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (requested > 0 && sent < count && !cancelled) {
+                        requested--;
+                        subscriber.onNext(LINES[sent++ % LINES.length]);
+                    }
+                    if (sent == count && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                    emitting = false;
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Подписчик, запрашивающий результаты пачками по 64 и суммирующий значения.
+     */
+    private static final class SummingSubscriber implements Flow.Subscriber<CalculatorProcessor.Result> {
+        private static final int BATCH = 64;
+
+        final CountDownLatch finished = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+        private int received;
+        long count;
+        long sum;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(BATCH);
+        }
+
+        @Override
+        public void onNext(CalculatorProcessor.Result result) {
+            count++;
+            sum += (long) result.getValue();
+            if (result.getFormatted() != null) {
+                sum += result.getFormatted().length();
+            }
+            if (++received == BATCH) {
+                received = 0;
+                subscription.request(BATCH);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            finished.countDown();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ * Замер форматирования NumberSystemConverter: строковый API против записи
+ * в массив символов (последний не должен выделять память в установившемся режиме).
+ * Запуск: bench/run.sh FormatBenchmark [--json файл]
+ */
+public class FormatBenchmark {
+    private static final int[] RADIXES = {2, 8, 10, 16};
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+        double[] values = new double[1024];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 7919 % 200003) - 100000 + (i % 4) * 0.25;
+        }
+        char[] buffer = new char[NumberSystemConverter.MAX_FORMATTED_LENGTH];
+
+        runner.run("formatNumber(double, int)", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += NumberSystemConverter.formatNumber(values[i & 1023], RADIXES[i & 3]).length();
+            }
+            return sink;
+        });
+        runner.run("formatNumber(double, int, char[], int)", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += NumberSystemConverter.formatNumber(values[i & 1023], RADIXES[i & 3], buffer, 0);
+            }
+            return sink;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Стоимость записи одной операции: строка текстового лога (форматирование
+ * четырех систем счисления и кодирование UTF-8) против записи двоичного
+ * журнала OperationJournal в файл. Выводит также размер записи в байтах.
+ * Запуск: bench/run.sh JournalBenchmark [--json файл]
+ */
+public class JournalBenchmark {
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+        double[] values = new double[1024];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 7919 % 200003) - 100000 + (i % 4) * 0.25;
+        }
+        // Без кэша: в логе результаты почти не повторяются
+        NumberCache cache = new NumberCache(1, 1);
+
+        String line = CalculatorUI.formatLogRecord("сложение", values[1], values[2], cache);
+        System.out.printf("Размер записи: текст %d байт, журнал %d байт%n",
+            line.getBytes(StandardCharsets.UTF_8).length + 1, 25);
+
+        runner.run("текстовая строка лога", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += CalculatorUI.formatLogRecord("сложение", values[i & 1023], values[(i + 1) & 1023], cache)
+                    .getBytes(StandardCharsets.UTF_8).length;
+            }
+            return sink;
+        });
+
+        File file = File.createTempFile("journal", ".bin");
+        file.deleteOnExit();
+        try (OperationJournal journal = new OperationJournal(file.toPath())) {
+            runner.run("OperationJournal.append", ops -> {
+                for (int i = 0; i < ops; i++) {
+                    journal.append('+', values[i & 1023], values[(i + 1) & 1023], i);
+                }
+                return journal.getRecordCount();
+            });
+        }
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
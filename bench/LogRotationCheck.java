@@ -0,0 +1,289 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Проверка ротации лога: пакетный режим Main с крошечными сегментами
+ * (--log-segment-mb 1) и тот же ввод без ротации (--log-segment-mb 0,
+ * эталонный лог). После каждого запуска сверяются:
+ * <ul>
+ *   <li>индекс: номера возрастают, смещения и времена сегментов стыкуются,
+ *       хранится не больше 16 сегментов (политика Main), более старые удалены;</li>
+ *   <li>сжатие: все хранимые сегменты сжаты, размер после распаковки равен
+ *       размеру из индекса;</li>
+ *   <li>содержимое: хранимые сегменты и текущий файл подряд совпадают с
+ *       эталонным логом начиная со смещения первого сегмента;</li>
+ *   <li>поиск: {@link LogRotation#findByOffset} и {@link LogRotation#findByTime}
+ *       на границах каждого сегмента и за ними.</li>
+ * </ul>
+ * Между запусками в каталоге создается сегмент со следующим номером, которого
+ * нет в индексе (как после сбоя между переименованием и записью индекса):
+ * второй запуск не должен его перезаписать, а новые сегменты должны получить
+ * номера больше.
+ *
+ * Запуск: bench/run.sh LogRotationCheck [--operations 150000] [--seed N] [--dir каталог]
+ */
+public class LogRotationCheck {
+    private static final int SEGMENT_MB = 1;
+    private static final int MAX_SEGMENTS = 16;          // Хранимых сегментов у политики Main
+    private static final String ORPHAN = "сегмент вне индекса\n";
+
+    private final Path dir;
+    private final Path log;
+    private final Path reference;
+    private final List<String> failures = new ArrayList<>();
+    private long orphanNumber;   // Номер сегмента вне индекса (0 - нет)
+
+    LogRotationCheck(Path dir) {
+        this.dir = dir;
+        this.log = dir.resolve("calculator_log.txt");
+        this.reference = dir.resolve("reference_log.txt");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int operations = 150_000;
+        long seed = 1;
+        Path dir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--operations":
+                    operations = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--dir":
+                    dir = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("неизвестный аргумент " + args[i]);
+            }
+        }
+        boolean temporary = dir == null;
+        if (temporary) {
+            dir = Files.createTempDirectory("calculator-rotation");
+        } else {
+            Files.createDirectories(dir);
+        }
+
+        LogRotationCheck check = new LogRotationCheck(dir);
+        boolean passed;
+        try {
+            passed = check.run(operations, seed);
+        } finally {
+            if (temporary) {
+                deleteTree(dir);
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Выполняет два запуска с проверками после каждого.
+     * @return true если расхождений нет
+     */
+    boolean run(int operations, long seed) throws IOException, InterruptedException {
+        System.out.printf("каталог: %s, операций за запуск: %d, сегмент: %d МБ%n", dir, operations, SEGMENT_MB);
+
+        Path input = writeInput(operations, seed, "input-1.txt");
+        runMain(input, log, SEGMENT_MB);
+        runMain(input, reference, 0);
+        List<LogRotation.Segment> first = verify("запуск 1");
+
+        orphanNumber = first.isEmpty() ? 1 : first.get(first.size() - 1).getNumber() + 1;
+        Path orphan = dir.resolve(String.format("%s.%06d", log.getFileName(), orphanNumber));
+        Files.write(orphan, ORPHAN.getBytes(StandardCharsets.UTF_8));
+
+        input = writeInput(operations, seed + 1, "input-2.txt");
+        runMain(input, log, SEGMENT_MB);
+        runMain(input, reference, 0);
+        List<LogRotation.Segment> second = verify("запуск 2");
+
+        if (!Files.exists(orphan) || !ORPHAN.equals(new String(Files.readAllBytes(orphan), StandardCharsets.UTF_8))) {
+            fail("запуск 2: сегмент вне индекса " + orphan.getFileName() + " перезаписан или удален");
+        }
+        for (LogRotation.Segment segment : second) {
+            if (segment.getNumber() == orphanNumber) {
+                fail("запуск 2: номер сегмента вне индекса " + orphanNumber + " использован повторно");
+            }
+        }
+        if (!second.isEmpty() && second.get(second.size() - 1).getNumber() <= orphanNumber) {
+            fail("запуск 2: новые сегменты не получили номера больше " + orphanNumber);
+        }
+
+        System.out.printf("сегментов: %d после первого запуска, %d после второго, расхождений: %d%n",
+            first.size(), second.size(), failures.size());
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        return failures.isEmpty();
+    }
+
+    /**
+     * Сверяет индекс, файлы сегментов и поиск с эталонным логом.
+     * @return сегменты из индекса
+     */
+    private List<LogRotation.Segment> verify(String stage) throws IOException {
+        List<LogRotation.Segment> segments = LogRotation.readIndex(log);
+        byte[] expected = Files.readAllBytes(reference);
+        if (segments.isEmpty()) {
+            fail(stage + ": ни одного закрытого сегмента - ввод слишком мал для ротации");
+            return segments;
+        }
+        if (segments.size() > MAX_SEGMENTS) {
+            fail(stage + ": хранится " + segments.size() + " сегментов вместо " + MAX_SEGMENTS);
+        }
+        LogRotation.Segment oldest = segments.get(0);
+        if (oldest.getNumber() > 1 && segments.size() != MAX_SEGMENTS) {
+            fail(stage + ": старые сегменты удалены, хотя хранится только " + segments.size());
+        }
+        for (long number = 1; number < oldest.getNumber(); number++) {
+            if (number == orphanNumber) {
+                continue;
+            }
+            Path plain = dir.resolve(String.format("%s.%06d", log.getFileName(), number));
+            if (Files.exists(plain) || Files.exists(plain.resolveSibling(plain.getFileName() + ".gz"))) {
+                fail(stage + ": сегмент " + number + " вне хранимых не удален");
+            }
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < segments.size(); i++) {
+            LogRotation.Segment segment = segments.get(i);
+            if (i > 0) {
+                LogRotation.Segment previous = segments.get(i - 1);
+                long expectedNumber = previous.getNumber() + 1 == orphanNumber ? orphanNumber + 1 : previous.getNumber() + 1;
+                if (segment.getNumber() != expectedNumber) {
+                    fail(stage + ": после сегмента " + previous.getNumber() + " идет " + segment.getNumber());
+                }
+                if (segment.getStartOffset() != previous.getStartOffset() + previous.getSize()) {
+                    fail(stage + ": сегмент " + segment.getNumber() + " начинается со смещения "
+                        + segment.getStartOffset() + " вместо " + (previous.getStartOffset() + previous.getSize()));
+                }
+                if (segment.getStartTime() != previous.getEndTime()) {
+                    fail(stage + ": сегмент " + segment.getNumber() + " начат не при закрытии предыдущего");
+                }
+            }
+            if (segment.getEndTime() < segment.getStartTime()) {
+                fail(stage + ": сегмент " + segment.getNumber() + " закрыт раньше начала");
+            }
+            if (!segment.isCompressed()) {
+                fail(stage + ": сегмент " + segment.getNumber() + " не сжат после закрытия лога");
+            }
+            byte[] bytes = readSegment(segment);
+            if (bytes.length != segment.getSize()) {
+                fail(stage + ": сегмент " + segment.getNumber() + ": " + bytes.length + " байт вместо "
+                    + segment.getSize() + " по индексу");
+            }
+            stream.write(bytes);
+            checkLookup(stage, segments, segment);
+        }
+        stream.write(Files.readAllBytes(log));
+
+        long start = oldest.getStartOffset();
+        byte[] actual = stream.toByteArray();
+        if (start + actual.length != expected.length) {
+            fail(stage + ": смещение первого сегмента и размеры дают " + (start + actual.length)
+                + " байт вместо " + expected.length + " в эталонном логе");
+        } else if (!Arrays.equals(actual, 0, actual.length, expected, (int) start, expected.length)) {
+            fail(stage + ": содержимое сегментов и текущего файла расходится с эталонным логом");
+        }
+
+        LogRotation.Segment last = segments.get(segments.size() - 1);
+        if (LogRotation.findByOffset(segments, last.getStartOffset() + last.getSize()) != null) {
+            fail(stage + ": findByOffset нашел закрытый сегмент для смещения текущего файла");
+        }
+        if (start > 0 && LogRotation.findByOffset(segments, start - 1) != null) {
+            fail(stage + ": findByOffset нашел сегмент для смещения удаленного");
+        }
+        if (LogRotation.findByTime(segments, last.getEndTime() + 1) != null) {
+            fail(stage + ": findByTime нашел закрытый сегмент для времени после всех");
+        }
+        return segments;
+    }
+
+    /**
+     * Проверяет поиск на границах сегмента.
+     */
+    private void checkLookup(String stage, List<LogRotation.Segment> segments, LogRotation.Segment segment) {
+        long first = segment.getStartOffset();
+        long last = first + segment.getSize() - 1;
+        if (LogRotation.findByOffset(segments, first) != segment || LogRotation.findByOffset(segments, last) != segment) {
+            fail(stage + ": findByOffset не находит сегмент " + segment.getNumber() + " по его границам");
+        }
+        // По времени - первый сегмент, закрытый не раньше (у соседних сегментов время может совпадать)
+        LogRotation.Segment expected = null;
+        for (LogRotation.Segment candidate : segments) {
+            if (candidate.getEndTime() >= segment.getEndTime()) {
+                expected = candidate;
+                break;
+            }
+        }
+        if (LogRotation.findByTime(segments, segment.getEndTime()) != expected) {
+            fail(stage + ": findByTime(" + segment.getEndTime() + ") не находит сегмент " + expected.getNumber());
+        }
+    }
+
+    private static byte[] readSegment(LogRotation.Segment segment) throws IOException {
+        try (InputStream in = segment.isCompressed()
+                ? new GZIPInputStream(Files.newInputStream(segment.getPath()))
+                : Files.newInputStream(segment.getPath())) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Записывает сгенерированный поток операций в файл.
+     */
+    private Path writeInput(int operations, long seed, String name) throws IOException {
+        Path input = dir.resolve(name);
+        OperationGenerator generator = new OperationGenerator(seed);
+        try (Writer writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < operations; i++) {
+                writer.write(generator.next().getLine());
+                writer.write('\n');
+            }
+        }
+        return input;
+    }
+
+    /**
+     * Запускает Main в пакетном режиме с записью лога в отдельной JVM.
+     */
+    private void runMain(Path input, Path logFile, int segmentMb) throws IOException, InterruptedException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+            "Main", "--batch", input.toString(), "--log", "--log-file", logFile.toString(),
+            "--log-segment-mb", Integer.toString(segmentMb))
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        int code = process.waitFor();
+        if (code != 0) {
+            throw new IOException("Main завершился с кодом " + code);
+        }
+    }
+
+    private void fail(String description) {
+        failures.add(description);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
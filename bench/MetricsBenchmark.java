@@ -0,0 +1,61 @@
+import java.util.Random;
+
+/**
+ * Стоимость метрик горячего пути. Флаг CalculatorMetrics.ENABLED читается один
+ * раз при загрузке класса, поэтому выключенный и включенный режимы сравниваются
+ * двумя запусками:
+ * <pre>
+ * bench/run.sh MetricsBenchmark --json metrics-off.json
+ * JAVA_OPTS=-Dcalculator.metrics=true bench/run.sh MetricsBenchmark --json metrics-on.json
+ * </pre>
+ * Замер "CalculatorSession.execute" показывает полную цену точек замера на
+ * операцию (разбор + арифметика); остальные - цену отдельных составляющих
+ * независимо от флага.
+ */
+public class MetricsBenchmark {
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+        System.out.println("Метрики " + (CalculatorMetrics.ENABLED ? "включены" : "выключены"));
+
+        Random random = new Random(42);
+        String[] lines = new String[1024];
+        String operations = "+-*";
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = operations.charAt(i % 3) + Integer.toString(1 + random.nextInt(1000));
+        }
+        CalculatorSession session = new CalculatorSession();
+        session.execute("1");
+
+        runner.run("CalculatorSession.execute", ops -> {
+            long sink = 0;
+            for (int i = 0; i < ops; i++) {
+                sink += session.execute(lines[i & 1023]);
+                if ((i & 1023) == 1023) {
+                    session.execute("c"); // Держим значение в разумных пределах
+                    session.execute("1");
+                }
+            }
+            return sink;
+        });
+
+        LatencyHistogram histogram = new LatencyHistogram("bench");
+        runner.run("LatencyHistogram.record", ops -> {
+            for (int i = 0; i < ops; i++) {
+                histogram.record(i & 0xFFFFF);
+            }
+            return histogram.getMaxNanos();
+        });
+        runner.run("System.nanoTime x2 + record", ops -> {
+            for (int i = 0; i < ops; i++) {
+                long start = System.nanoTime();
+                histogram.record(System.nanoTime() - start);
+            }
+            return histogram.getMaxNanos();
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
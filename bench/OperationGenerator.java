@@ -0,0 +1,303 @@
+import java.util.SplittableRandom;
+
+/**
+ * Генератор воспроизводимых случайных потоков строк операций калькулятора
+ * (грамматика {@link CalculatorSession} и пакетного режима). При одинаковых
+ * зерне и настройках выдается одна и та же последовательность.
+ *
+ * Настраиваются доли операций (+, -, *, /, =выражение, c, i), набор систем
+ * счисления, доля некорректного ввода и доля деления на ноль. Числа
+ * записываются в текущей системе счисления ввода; дробные части кратны 1/8,
+ * поэтому записываются конечно во всех системах и разбираются без округления.
+ *
+ * Каждая выданная операция сразу применяется к эталону {@link ReferenceCalculator},
+ * который вычисляет ожидаемый результат по числовому смыслу операции, а не по
+ * ее тексту. Генератор по эталону держит значения в разумном диапазоне:
+ * при большой памяти умножение и сложение заменяются делением. Часть чисел
+ * лежит около 2^31, так что значения пересекают границу ±2^31, где
+ * меняется ветвь форматирования.
+ */
+public final class OperationGenerator {
+    public static final int INITIAL = 0;        // Начальное число
+    public static final int ADD = 1;
+    public static final int SUBTRACT = 2;
+    public static final int MULTIPLY = 3;
+    public static final int DIVIDE = 4;
+    public static final int EXPRESSION = 5;     // =(m+a)*b
+    public static final int RESET = 6;          // c
+    public static final int RADIX = 7;          // i<основание>
+    public static final int INVALID = 8;        // Некорректная строка
+    public static final int DIVIDE_BY_ZERO = 9; // /0
+
+    /**
+     * Символы операций в порядке весов смеси.
+     */
+    public static final String MIX_KEYS = "+-*/=ci";
+
+    /**
+     * Смесь по умолчанию: + 30, - 25, * 15, / 15, = 5, c 5, i 5.
+     */
+    public static final int[] DEFAULT_MIX = {30, 25, 15, 15, 5, 5, 5};
+
+    private static final double LARGE = 1e12; // Граница, после которой память уменьшается
+    private static final double INT_LIMIT = 0x1p31; // Граница int в форматировании целой части
+    private static final String[] INVALID_FORMS = {"+1z", "z", "*", "5.5.5", "/", "1 2", "i7", "+.", "k"};
+
+    /**
+     * Сгенерированная операция.
+     */
+    public static final class Operation {
+        final int kind;
+        final String line;
+        final double operand;  // Число операции, значение начального числа или a в =(m+a)*b
+        final double factor;   // b в =(m+a)*b
+        final int radix;       // Основание для RADIX
+
+        Operation(int kind, String line, double operand, double factor, int radix) {
+            this.kind = kind;
+            this.line = line;
+            this.operand = operand;
+            this.factor = factor;
+            this.radix = radix;
+        }
+
+        /**
+         * @return вид операции (INITIAL, ADD, ... DIVIDE_BY_ZERO)
+         */
+        public int getKind() {
+            return kind;
+        }
+
+        /**
+         * @return строка для калькулятора
+         */
+        public String getLine() {
+            return line;
+        }
+
+        @Override
+        public String toString() {
+            return line;
+        }
+    }
+
+    private final SplittableRandom random;
+    private final int[] cumulative;         // Накопленные веса смеси
+    private final int[] radixes;
+    private final double invalidRatio;
+    private final double divideByZeroRatio;
+    private final ReferenceCalculator reference = new ReferenceCalculator();
+    private final StringBuilder text = new StringBuilder(64);
+    private long generated;
+
+    /**
+     * Создает генератор со смесью по умолчанию, всеми системами счисления,
+     * 2% некорректного ввода и 1% деления на ноль.
+     * @param seed зерно
+     */
+    public OperationGenerator(long seed) {
+        this(seed, DEFAULT_MIX, new int[]{2, 8, 10, 16}, 0.02, 0.01);
+    }
+
+    /**
+     * Создает генератор.
+     * @param seed зерно
+     * @param mix веса операций в порядке {@link #MIX_KEYS}
+     * @param radixes системы счисления, между которыми переключается i
+     * @param invalidRatio доля некорректных строк (0..1)
+     * @param divideByZeroRatio доля строк деления на ноль (0..1)
+     * @throws IllegalArgumentException если настройки некорректны
+     */
+    public OperationGenerator(long seed, int[] mix, int[] radixes, double invalidRatio, double divideByZeroRatio) {
+        if (mix.length != MIX_KEYS.length()) {
+            throw new IllegalArgumentException("Нужно " + MIX_KEYS.length() + " весов смеси");
+        }
+        if (!(invalidRatio >= 0 && divideByZeroRatio >= 0 && invalidRatio + divideByZeroRatio <= 1)) {
+            throw new IllegalArgumentException("Доли некорректного ввода и деления на ноль должны быть от 0 до 1");
+        }
+        if (radixes.length == 0) {
+            throw new IllegalArgumentException("Нужна хотя бы одна система счисления");
+        }
+        for (int radix : radixes) {
+            if (radix != 2 && radix != 8 && radix != 10 && radix != 16) {
+                throw new IllegalArgumentException("Неподдерживаемая система счисления: " + radix);
+            }
+        }
+        this.cumulative = new int[mix.length];
+        int total = 0;
+        for (int i = 0; i < mix.length; i++) {
+            if (mix[i] < 0) {
+                throw new IllegalArgumentException("Вес смеси не может быть отрицательным");
+            }
+            total += mix[i];
+            cumulative[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("Сумма весов смеси должна быть положительной");
+        }
+        this.random = new SplittableRandom(seed);
+        this.radixes = radixes.clone();
+        this.invalidRatio = invalidRatio;
+        this.divideByZeroRatio = divideByZeroRatio;
+    }
+
+    /**
+     * Разбирает смесь вида "+:30,-:25,*:15,/:15,=:5,c:5,i:5"; не указанные операции получают вес 0.
+     * @param spec описание смеси
+     * @return веса в порядке {@link #MIX_KEYS}
+     * @throws IllegalArgumentException если описание некорректно
+     */
+    public static int[] parseMix(String spec) {
+        int[] mix = new int[MIX_KEYS.length()];
+        for (String part : spec.split(",")) {
+            int colon = part.indexOf(':');
+            int index = colon == 1 ? MIX_KEYS.indexOf(part.charAt(0)) : -1;
+            if (index < 0) {
+                throw new IllegalArgumentException("Некорректный элемент смеси: " + part);
+            }
+            mix[index] = Integer.parseInt(part.substring(colon + 1).trim());
+        }
+        return mix;
+    }
+
+    /**
+     * Генерирует следующую операцию и применяет ее к эталону.
+     * @return операция
+     */
+    public Operation next() {
+        Operation operation = generate();
+        reference.apply(operation);
+        generated++;
+        return operation;
+    }
+
+    /**
+     * @return эталон, к которому применены все выданные операции
+     */
+    public ReferenceCalculator getReference() {
+        return reference;
+    }
+
+    /**
+     * @return число выданных операций
+     */
+    public long getGenerated() {
+        return generated;
+    }
+
+    private Operation generate() {
+        double roll = random.nextDouble();
+        if (roll < invalidRatio) {
+            return invalid();
+        }
+        if (roll < invalidRatio + divideByZeroRatio && !reference.isFirst()) {
+            return new Operation(DIVIDE_BY_ZERO, pad("/0"), 0, 0, 0);
+        }
+        if (reference.isFirst()) {
+            double value = number();
+            boolean negative = random.nextInt(4) == 0;
+            text.setLength(0);
+            if (negative) {
+                text.append('-');
+            }
+            appendNumber(value, reference.getRadix());
+            if (text.length() == 1 && Character.toLowerCase(text.charAt(0)) == 'c') {
+                text.insert(0, '0'); // Одиночная "c" - команда сброса, а не число 12
+            }
+            return new Operation(INITIAL, pad(text.toString()), negative ? -value : value, 0, 0);
+        }
+
+        char key = pickKey();
+        double memory = Math.abs(reference.getMemory());
+        if (memory > LARGE && (key == '+' || key == '*')) {
+            key = '/'; // Держим значения в разумном диапазоне
+        }
+        switch (key) {
+            case 'c':
+                return new Operation(RESET, pad(random.nextBoolean() ? "c" : "C"), 0, 0, 0);
+            case 'i':
+                int radix = radixes[random.nextInt(radixes.length)];
+                return new Operation(RADIX, pad("i" + radix), 0, 0, radix);
+            case '=':
+                int a = random.nextInt(100);
+                int b = 1 + random.nextInt(4);
+                return new Operation(EXPRESSION, pad("=(m+" + a + ")*" + b), a, b, 0);
+            default:
+                double value = number();
+                if (key == '/' && value == 0) {
+                    value = 1;
+                }
+                if (key == '/' && memory > LARGE) {
+                    value += 1000; // Деление уменьшает память
+                }
+                text.setLength(0);
+                text.append(key);
+                appendNumber(value, reference.getRadix());
+                return new Operation(MIX_KEYS.indexOf(key) + ADD, pad(text.toString()), value, 0, 0);
+        }
+    }
+
+    private char pickKey() {
+        int roll = random.nextInt(cumulative[cumulative.length - 1]);
+        int i = 0;
+        while (roll >= cumulative[i]) {
+            i++;
+        }
+        return MIX_KEYS.charAt(i);
+    }
+
+    /**
+     * Неотрицательное число: целое до 1000 (иногда до 10^6 или в окрестности 2^31,
+     * чтобы память переходила границу int в обе стороны), в трети случаев
+     * с дробной частью, кратной 1/8.
+     */
+    private double number() {
+        int size = random.nextInt(20);
+        double value;
+        if (size == 0) {
+            value = INT_LIMIT + random.nextInt(-1024, 1024);
+        } else {
+            value = size < 3 ? random.nextInt(1_000_000) : random.nextInt(1000);
+        }
+        if (random.nextInt(3) == 0) {
+            value += random.nextInt(1, 8) / 8.0;
+        }
+        return value;
+    }
+
+    /**
+     * Записывает неотрицательное число в системе счисления; буквы
+     * шестнадцатеричных цифр - в случайном регистре.
+     */
+    private void appendNumber(double value, int radix) {
+        long whole = (long) value;
+        String digits = Long.toString(whole, radix);
+        text.append(random.nextBoolean() ? digits : digits.toUpperCase());
+        double fraction = value - whole;
+        if (fraction != 0) {
+            text.append('.');
+            while (fraction != 0) {
+                fraction *= radix;
+                int digit = (int) fraction;
+                text.append(Character.forDigit(digit, radix));
+                fraction -= digit;
+            }
+        }
+    }
+
+    private Operation invalid() {
+        String line = INVALID_FORMS[random.nextInt(INVALID_FORMS.length)];
+        if (reference.getRadix() != 16 && random.nextBoolean()) {
+            // Цифра, недопустимая в текущей системе счисления
+            line = "+" + Character.forDigit(reference.getRadix(), 16);
+        }
+        return new Operation(INVALID, pad(line), 0, 0, 0);
+    }
+
+    /**
+     * Иногда окружает строку пробелами (проверка обрезки).
+     */
+    private String pad(String line) {
+        return random.nextInt(16) == 0 ? "  " + line + " " : line;
+    }
+}
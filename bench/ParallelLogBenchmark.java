@@ -0,0 +1,49 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Масштабирование ParallelLogEvaluator по числу потоков на синтетическом файле
+ * операций в сравнении с последовательным пакетным режимом.
+ * Запуск: bench/run.sh ParallelLogBenchmark [число строк]
+ */
+public class ParallelLogBenchmark {
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        File file = File.createTempFile("operations", ".txt");
+        file.deleteOnExit();
+        Random random = new Random(11);
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("1000\n");
+            for (int i = 0; i < lines; i++) {
+                int kind = random.nextInt(4);
+                out.write(kind == 0 ? "+" + random.nextInt(100)
+                    : kind == 1 ? "-" + random.nextInt(100)
+                    : kind == 2 ? "*1.000001" : "/1.000001");
+                out.write('\n');
+            }
+        }
+
+        long start = System.nanoTime();
+        CalculatorSession session = new CalculatorSession();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            session.execute(line);
+        }
+        double expected = session.getResult();
+        System.out.printf("последовательно: %8.1f мс, результат %.6f%n", (System.nanoTime() - start) / 1e6, expected);
+
+        for (int threads = 1; threads <= Runtime.getRuntime().availableProcessors(); threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelLogEvaluator evaluator = new ParallelLogEvaluator(pool, 1 << 20);
+            evaluator.evaluate(file.toPath(), 10); // Прогрев
+            start = System.nanoTime();
+            double result = evaluator.evaluate(file.toPath(), 10).getMemory();
+            System.out.printf("потоков: %2d    %8.1f мс, отн. расхождение %.2e%n", threads,
+                (System.nanoTime() - start) / 1e6, Math.abs(result - expected) / Math.abs(expected));
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.Random;
+
+/**
+ * Замер разбора чисел смешанных систем счисления: NumberParser против
+ * выделения подстроки и Double.parseDouble/Integer.parseInt.
+ * Запуск: bench/run.sh ParseBenchmark [--json файл]
+ */
+public class ParseBenchmark {
+    private static final int[] RADIXES = {2, 8, 10, 16};
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner runner = BenchmarkRunner.fromArgs(args);
+
+        // Строки операций вида "+123" в разных системах счисления
+        Random random = new Random(42);
+        String[] lines = new String[1024];
+        for (int i = 0; i < lines.length; i++) {
+            int radix = RADIXES[i & 3];
+            String number = radix == 10
+                ? Integer.toString(random.nextInt(100_000)) + "." + random.nextInt(100)
+                : Integer.toString(random.nextInt(1_000_000), radix);
+            lines[i] = "+" + number;
+        }
+        NumberParser parser = new NumberParser();
+
+        runner.run("substring + JDK parse", ops -> {
+            double sink = 0;
+            for (int i = 0; i < ops; i++) {
+                int radix = RADIXES[i & 3];
+                String number = lines[i & 1023].substring(1); // Как в CalculatorUI.parseInput
+                sink += radix == 10 ? Double.parseDouble(number) : Integer.parseInt(number, radix);
+            }
+            return (long) sink;
+        });
+        runner.run("NumberParser (смещение и длина)", ops -> {
+            double sink = 0;
+            for (int i = 0; i < ops; i++) {
+                String line = lines[i & 1023];
+                if (parser.parse(line, 1, line.length() - 1, RADIXES[i & 3]) == NumberParser.OK) {
+                    sink += parser.value();
+                }
+            }
+            return (long) sink;
+        });
+
+        String json = BenchmarkRunner.jsonPath(args);
+        if (json != null) {
+            runner.writeJson(json);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Эталонный калькулятор для проверок под нагрузкой: применяет операции
+ * {@link OperationGenerator} по их числовому смыслу (без разбора текста)
+ * той же арифметикой double и предсказывает код состояния
+ * {@link CalculatorSession}. Эталонное форматирование строится на
+ * BigDecimal, BigInteger и String.format, независимо от кода
+ * NumberSystemConverter (ни быстрого, ни медленного пути).
+ */
+public final class ReferenceCalculator {
+    private static final BigInteger TWO_TO_32 = BigInteger.ONE.shiftLeft(32);
+
+    private double memory;
+    private boolean first = true;
+    private int radix = 10;
+    private int lastStatus = CalculatorSession.EMPTY;
+
+    /**
+     * Применяет операцию.
+     * @param operation сгенерированная операция
+     * @return ожидаемый код состояния CalculatorSession
+     */
+    public int apply(OperationGenerator.Operation operation) {
+        switch (operation.kind) {
+            case OperationGenerator.INITIAL:
+                memory = operation.operand;
+                first = false;
+                return status(CalculatorSession.INITIAL);
+            case OperationGenerator.ADD:
+                memory += operation.operand;
+                return status(CalculatorSession.OPERATION);
+            case OperationGenerator.SUBTRACT:
+                memory -= operation.operand;
+                return status(CalculatorSession.OPERATION);
+            case OperationGenerator.MULTIPLY:
+                memory *= operation.operand;
+                return status(CalculatorSession.OPERATION);
+            case OperationGenerator.DIVIDE:
+                memory /= operation.operand;
+                return status(CalculatorSession.OPERATION);
+            case OperationGenerator.EXPRESSION:
+                memory = (memory + operation.operand) * operation.factor;
+                first = false;
+                return status(CalculatorSession.OPERATION);
+            case OperationGenerator.RESET:
+                memory = 0;
+                first = true;
+                return status(CalculatorSession.COMMAND);
+            case OperationGenerator.RADIX:
+                radix = operation.radix;
+                return status(CalculatorSession.COMMAND);
+            default:
+                return status(CalculatorSession.ERROR); // Некорректный ввод и деление на ноль не меняют состояние
+        }
+    }
+
+    /**
+     * @return ожидаемое значение памяти
+     */
+    public double getMemory() {
+        return memory;
+    }
+
+    /**
+     * @return true если следующей строкой ожидается начальное число
+     */
+    public boolean isFirst() {
+        return first;
+    }
+
+    /**
+     * @return текущая система счисления ввода
+     */
+    public int getRadix() {
+        return radix;
+    }
+
+    /**
+     * @return ожидаемый код состояния последней операции
+     */
+    public int getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Форматирует число так, как его выводит калькулятор: целая часть,
+     * помещающаяся в int, в системах 2, 8 и 16 - в дополнительном коде
+     * 32 бит (-5 в шестнадцатеричной - FFFFFFFB), большая по модулю - со
+     * знаком и модулем; дробная часть - как ".%.4f". Целая часть NaN и
+     * бесконечностей - приведение к int: NaN - "0.NaN",
+     * -Infinity в шестнадцатеричной - "80000000.-Infinity".
+     * @param number число
+     * @param radix система счисления
+     * @return ожидаемое представление
+     */
+    public static String format(double number, int radix) {
+        BigInteger whole = Double.isFinite(number)
+            ? new BigDecimal(number).setScale(0, RoundingMode.DOWN).toBigInteger()
+            : BigInteger.valueOf((int) number);
+        double fraction = number - whole.doubleValue();
+        if (radix != 10 && whole.signum() < 0 && whole.bitLength() < 32) {
+            whole = whole.add(TWO_TO_32); // Дополнительный код: от -2^31 до -1
+        }
+        String text = whole.toString(radix).toUpperCase();
+        return fraction != 0 ? text + String.format(".%.4f", fraction) : text;
+    }
+
+    /**
+     * Выполняет целочисленную операцию точного режима над long - эталон для
+     * целых больше 2^53, которые double уже не различает.
+     * @param operation символ операции: +, -, %, &amp;, |, x, &lt; или &gt;
+     * @param memory значение памяти
+     * @param operand число операции
+     * @return ожидаемое значение памяти
+     */
+    public static long applyInteger(char operation, long memory, long operand) {
+        switch (operation) {
+            case '+':
+                return memory + operand;
+            case '-':
+                return memory - operand;
+            case '%':
+                return memory % operand;
+            case '&':
+                return memory & operand;
+            case '|':
+                return memory | operand;
+            case 'x':
+                return memory ^ operand;
+            case '<':
+                return memory << operand;
+            default:
+                return memory >> operand;
+        }
+    }
+
+    private int status(int status) {
+        lastStatus = status;
+        return status;
+    }
+}
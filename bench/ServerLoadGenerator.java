@@ -0,0 +1,123 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Генератор нагрузки для CalculatorServer. Открывает заданное число активных
+ * клиентов, каждый из которых последовательно отправляет операции и ждет ответа,
+ * а также (по желанию) множество простаивающих подключений. Выводит
+ * пропускную способность и перцентили задержки p50/p99/p99.9.
+ *
+ * Запуск: bench/run.sh ServerLoadGenerator порт|unix:путь [--clients N]
+ *         [--requests N] [--idle N]
+ */
+public class ServerLoadGenerator {
+    private static final String[] OPERATIONS = {"+5", "-3", "*2", "/4", "+17", "*1.5", "-0.25", "/2"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Использование: ServerLoadGenerator порт|unix:путь [--clients N] [--requests N] [--idle N]");
+            System.exit(2);
+        }
+        SocketAddress address = CalculatorServer.parseAddress(args[0]);
+        int clients = 16;
+        int requests = 20_000;
+        int idle = 0;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients":
+                    clients = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--requests":
+                    requests = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--idle":
+                    idle = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("неизвестный аргумент " + args[i]);
+            }
+        }
+
+        // Простаивающие сессии: подключены, задали начальное число и молчат
+        List<SocketChannel> idleChannels = new ArrayList<>();
+        for (int i = 0; i < idle; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.write(StandardCharsets.UTF_8.encode("1\n"));
+            idleChannels.add(channel);
+        }
+
+        long[][] latencies = new long[clients][requests];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[clients];
+        int perClient = requests;
+        for (int c = 0; c < clients; c++) {
+            long[] samples = latencies[c];
+            threads[c] = new Thread(() -> runClient(address, perClient, samples, start));
+            threads[c].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        long[] all = new long[clients * requests];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requests, requests);
+        }
+        Arrays.sort(all);
+        System.out.printf("клиентов: %d, простаивающих: %d, запросов: %d%n", clients, idle, all.length);
+        System.out.printf("пропускная способность: %.0f оп/с%n", all.length * 1e9 / elapsed);
+        System.out.printf("задержка p50: %.1f мкс, p99: %.1f мкс, p99.9: %.1f мкс, макс: %.1f мкс%n",
+            percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3,
+            percentile(all, 0.999) / 1e3, all[all.length - 1] / 1e3);
+
+        for (SocketChannel channel : idleChannels) {
+            channel.close();
+        }
+    }
+
+    private static void runClient(SocketAddress address, int requests, long[] samples, CountDownLatch start) {
+        try (SocketChannel channel = SocketChannel.open(address);
+             BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(
+                 new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8))) {
+            writer.write("1\n");
+            writer.flush();
+            reader.readLine();
+            start.await();
+            for (int i = 0; i < requests; i++) {
+                long t0 = System.nanoTime();
+                writer.write(OPERATIONS[i & 7]);
+                writer.write('\n');
+                writer.flush();
+                String response = reader.readLine();
+                samples[i] = System.nanoTime() - t0;
+                if (response == null || !response.startsWith("OK")) {
+                    throw new IllegalStateException("Неожиданный ответ сервера: " + response);
+                }
+            }
+            writer.write("q\n");
+            writer.flush();
+        } catch (Exception e) {
+            System.err.println("Ошибка клиента: " + e.getMessage());
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+    }
+}
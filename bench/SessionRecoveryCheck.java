@@ -0,0 +1,471 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Проверка восстановления {@link SessionStore} после сбоя. Каждое испытание
+ * запускает в отдельной JVM сессию с историей и хранилищем (частые снимки,
+ * фиксация раз в 5 мс) над детерминированным потоком строк и повреждает
+ * результат одним из способов:
+ * <ul>
+ *   <li>kill: процесс убивается (SIGKILL) в случайный момент, в том числе
+ *       посреди записи группы или снимка;</li>
+ *   <li>обрыв: журнал обрезается по случайному смещению (недописанный хвост);</li>
+ *   <li>CRC: в журнале меняется случайный байт;</li>
+ *   <li>снимок без обрезки: журнал до снимка возвращается на место, как при
+ *       сбое между переименованием снимка и обрезкой журнала, и к нему
+ *       дописываются группы, записанные после снимка.</li>
+ * </ul>
+ * Иногда рядом остается мусорный session.snap.tmp (сбой до переименования).
+ *
+ * После восстановления номер последней записи сверяется с ожидаемым: для
+ * обрыва и CRC - точно (снимок или последняя целая группа до повреждения),
+ * для kill - не меньше последнего явного sync, для снимка - все записи.
+ * Состояние (память побитово, система счисления, признак первой операции,
+ * записи истории, позиция, контрольные точки и значения при отмене до начала)
+ * сверяется с эталонной сессией без хранилища, выполнившей столько же
+ * записывающих строк; без команд истории память сверяется также с
+ * {@link ReferenceCalculator}. Затем хранилище закрывается и открывается
+ * еще раз - состояние должно сохраниться.
+ *
+ * Запуск: bench/run.sh SessionRecoveryCheck [--trials 40] [--seed N] [--dir каталог]
+ */
+public class SessionRecoveryCheck {
+    private static final long SYNC_MILLIS = 5;
+    private static final int HISTORY_SNAPSHOTS = 64;     // Интервал снимков истории
+    private static final int HISTORY_SIZE = 2_000;       // Длина истории: старые записи отбрасываются
+    private static final int SYNC_EVERY = 2_000;         // Строк между явными sync в дочернем процессе
+    private static final int KILL_LINES = 5_000_000;     // Строк для kill: процесс убивается раньше
+    private static final String PRESNAP = "session.wal.presnap";
+    private static final String CHILD_OUTPUT = "child.out";
+    private static final String[] SCENARIOS = {"kill", "обрыв", "CRC", "снимок без обрезки"};
+
+    private final Path root;
+    private final List<String> failures = new ArrayList<>();
+
+    SessionRecoveryCheck(Path root) {
+        this.root = root;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            child(args);
+            return;
+        }
+        int trials = 40;
+        long seed = 1;
+        Path dir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--trials":
+                    trials = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--dir":
+                    dir = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("неизвестный аргумент " + args[i]);
+            }
+        }
+        boolean temporary = dir == null;
+        if (temporary) {
+            dir = Files.createTempDirectory("calculator-recovery");
+        } else {
+            Files.createDirectories(dir);
+        }
+
+        SessionRecoveryCheck check = new SessionRecoveryCheck(dir);
+        boolean passed;
+        try {
+            passed = check.run(trials, seed);
+        } finally {
+            if (temporary) {
+                deleteTree(dir);
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Выполняет испытания по очереди всех видов сбоя.
+     * @return true если расхождений нет
+     */
+    boolean run(int trials, long seed) throws IOException, InterruptedException {
+        System.out.printf("каталог: %s, испытаний: %d%n", root, trials);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int trial = 0; trial < trials; trial++) {
+            String scenario = SCENARIOS[trial % SCENARIOS.length];
+            long trialSeed = random.nextLong();
+            boolean historyCommands = random.nextBoolean();
+            int snapshotInterval = random.nextInt(100, 3_000);
+            Path dir = root.resolve("trial-" + trial);
+            Files.createDirectories(dir);
+            String name = String.format("испытание %d (%s, зерно %d, команды истории: %s, снимок каждые %d)",
+                trial, scenario, trialSeed, historyCommands ? "да" : "нет", snapshotInterval);
+            int before = failures.size();
+            trial(name, scenario, dir, trialSeed, historyCommands, snapshotInterval, random);
+            System.out.printf("  %s: %s%n", name, failures.size() == before ? "ok" : "РАСХОЖДЕНИЕ");
+            deleteTree(dir);
+        }
+        System.out.printf("испытаний: %d, расхождений: %d%n", trials, failures.size());
+        for (String failure : failures) {
+            System.out.println("  " + failure);
+        }
+        return failures.isEmpty();
+    }
+
+    private void trial(String name, String scenario, Path dir, long seed, boolean historyCommands,
+                       int snapshotInterval, SplittableRandom random) throws IOException, InterruptedException {
+        Path wal = dir.resolve(SessionStore.WAL_FILE);
+        long minimum;   // Наименьший допустимый номер записи после восстановления
+        long maximum;   // Наибольший допустимый номер (Long.MAX_VALUE - любой из выполненных)
+        if (scenario.equals("kill")) {
+            minimum = runChild(dir, seed, historyCommands, snapshotInterval, KILL_LINES, "kill", 0,
+                random.nextInt(20, 600));
+            maximum = Long.MAX_VALUE;
+        } else if (scenario.equals("снимок без обрезки")) {
+            int lines = random.nextInt(2_000, 30_000);
+            int extra = random.nextInt(3) == 0 ? 0 : random.nextInt(1, 3_000);
+            minimum = runChild(dir, seed, historyCommands, snapshotInterval, lines, "snapshot", extra, 0);
+            maximum = minimum;
+            // Журнал до снимка и группы после него - файл, который остался бы без обрезки
+            byte[] before = Files.readAllBytes(dir.resolve(PRESNAP));
+            byte[] after = Files.readAllBytes(wal);
+            byte[] joined = new byte[before.length + after.length - SessionStore.FILE_HEADER_SIZE];
+            System.arraycopy(before, 0, joined, 0, before.length);
+            System.arraycopy(after, SessionStore.FILE_HEADER_SIZE, joined, before.length,
+                after.length - SessionStore.FILE_HEADER_SIZE);
+            Files.write(wal, joined);
+        } else {
+            long synced = runChild(dir, seed, historyCommands, snapshotInterval, random.nextInt(2_000, 30_000),
+                "halt", 0, 0);
+            byte[] bytes = Files.readAllBytes(wal);
+            if (bytes.length <= SessionStore.FILE_HEADER_SIZE) {
+                minimum = synced; // Все записи уже в снимке - повреждать нечего
+            } else {
+                int offset = random.nextInt(SessionStore.FILE_HEADER_SIZE, bytes.length);
+                if (scenario.equals("обрыв")) {
+                    Files.write(wal, Arrays.copyOf(bytes, offset));
+                } else {
+                    bytes[offset] ^= (byte) random.nextInt(1, 256);
+                    Files.write(wal, bytes);
+                }
+                minimum = Math.max(snapshotCovered(dir), lastIntactRecord(bytes, offset));
+            }
+            maximum = minimum;
+        }
+        if (random.nextBoolean()) {
+            byte[] garbage = new byte[random.nextInt(1, 4_096)];
+            for (int i = 0; i < garbage.length; i++) {
+                garbage[i] = (byte) random.nextInt(256);
+            }
+            Files.write(dir.resolve(SessionStore.SNAPSHOT_FILE + ".tmp"), garbage);
+        }
+        recover(name, dir, seed, historyCommands, snapshotInterval, minimum, maximum);
+    }
+
+    /**
+     * Восстанавливает сессию, сверяет ее с эталоном, закрывает и открывает еще раз.
+     */
+    private void recover(String name, Path dir, long seed, boolean historyCommands, int snapshotInterval,
+                         long minimum, long maximum) throws IOException {
+        NumberSystemConverter calculator = new NumberSystemConverter();
+        OperationHistory history = new OperationHistory(calculator, HISTORY_SNAPSHOTS, HISTORY_SIZE);
+        long sequence;
+        try (SessionStore store = new SessionStore(dir, calculator, history, SYNC_MILLIS, snapshotInterval)) {
+            sequence = store.getSequence();
+            if (sequence < minimum || sequence > maximum) {
+                fail(name + ": восстановлено записей " + sequence + ", ожидалось "
+                    + (minimum == maximum ? String.valueOf(minimum) : "не меньше " + minimum));
+                return;
+            }
+            Reference reference = new Reference(seed, historyCommands, sequence);
+            if (!reference.reached) {
+                fail(name + ": восстановлено записей " + sequence + ", больше, чем выполнил поток строк");
+                return;
+            }
+            compare(name, "после восстановления", calculator, history, store.getRadix(), reference);
+        } catch (IOException | RuntimeException e) {
+            fail(name + ": восстановление не удалось: " + e);
+            return;
+        }
+
+        // Закрытие записало снимок и обрезало журнал - второе открытие идет по нему
+        NumberSystemConverter reopened = new NumberSystemConverter();
+        OperationHistory reopenedHistory = new OperationHistory(reopened, HISTORY_SNAPSHOTS, HISTORY_SIZE);
+        try (SessionStore store = new SessionStore(dir, reopened, reopenedHistory, SYNC_MILLIS, snapshotInterval)) {
+            if (store.getSequence() != sequence) {
+                fail(name + ": после повторного открытия записей " + store.getSequence() + " вместо " + sequence);
+            }
+            compare(name, "после повторного открытия", reopened, reopenedHistory, store.getRadix(),
+                new Reference(seed, historyCommands, sequence));
+        } catch (IOException | RuntimeException e) {
+            fail(name + ": повторное открытие не удалось: " + e);
+            return;
+        }
+        // Хранилище закрыто: отмена до начала меняет только память
+        Reference reference = new Reference(seed, historyCommands, sequence);
+        int step = 0;
+        while (reopenedHistory.canUndo()) {
+            reopenedHistory.undo();
+            reference.history.undo();
+            step++;
+            if (!sameBits(reopened.getMemory(), reference.calculator.getMemory())) {
+                fail(name + ": отмена " + step + ": память " + reopened.getMemory() + " вместо "
+                    + reference.calculator.getMemory());
+                return;
+            }
+        }
+    }
+
+    private void compare(String name, String stage, NumberSystemConverter calculator, OperationHistory history,
+                         int radix, Reference reference) {
+        String prefix = name + ": " + stage + ": ";
+        if (!sameBits(calculator.getMemory(), reference.calculator.getMemory())) {
+            fail(prefix + "память " + calculator.getMemory() + " вместо " + reference.calculator.getMemory());
+        }
+        if (reference.independent != null && !sameBits(calculator.getMemory(), reference.independent.getMemory())) {
+            fail(prefix + "память " + calculator.getMemory() + " вместо " + reference.independent.getMemory()
+                + " по ReferenceCalculator");
+        }
+        if (calculator.isFirstOperation() != reference.calculator.isFirstOperation()) {
+            fail(prefix + "признак первой операции " + calculator.isFirstOperation());
+        }
+        if (radix != reference.session.getRadix() || calculator.getRadix() != reference.session.getRadix()) {
+            fail(prefix + "система счисления " + radix + " вместо " + reference.session.getRadix());
+        }
+        OperationHistory expected = reference.history;
+        if (history.size() != expected.size() || history.getPosition() != expected.getPosition()) {
+            fail(prefix + "история " + history.getPosition() + "/" + history.size() + " вместо "
+                + expected.getPosition() + "/" + expected.size());
+            return;
+        }
+        for (int i = 0; i < history.size(); i++) {
+            if (history.getOperation(i) != expected.getOperation(i)
+                    || !sameBits(history.getOperand(i), expected.getOperand(i))) {
+                fail(prefix + "запись истории " + i + ": " + history.getOperation(i) + history.getOperand(i)
+                    + " вместо " + expected.getOperation(i) + expected.getOperand(i));
+                return;
+            }
+        }
+        if (!history.getCheckpoints().equals(expected.getCheckpoints())) {
+            fail(prefix + "контрольные точки " + history.getCheckpoints() + " вместо " + expected.getCheckpoints());
+        }
+    }
+
+    /**
+     * Эталон: сессия без хранилища, выполнившая строки потока до заданного
+     * числа записей журнала (строки, изменившие состояние), и без команд
+     * истории - эталонный калькулятор генератора.
+     */
+    private static final class Reference {
+        final NumberSystemConverter calculator = new NumberSystemConverter();
+        final OperationHistory history = new OperationHistory(calculator, HISTORY_SNAPSHOTS, HISTORY_SIZE);
+        final CalculatorSession session = new CalculatorSession(calculator, 10);
+        final ReferenceCalculator independent;
+        final boolean reached;
+
+        Reference(long seed, boolean historyCommands, long records) {
+            session.setHistory(history);
+            Workload workload = new Workload(seed, historyCommands);
+            independent = historyCommands ? null : workload.generator.getReference();
+            long count = 0;
+            for (int i = 0; i < KILL_LINES && count < records; i++) {
+                if (records(session.execute(workload.next()))) {
+                    count++;
+                }
+            }
+            reached = count == records;
+        }
+    }
+
+    /**
+     * Детерминированный поток строк: операции {@link OperationGenerator} и,
+     * если включено, 10% команд истории u, r, k имя и g имя.
+     */
+    private static final class Workload {
+        final OperationGenerator generator;
+        final SplittableRandom random;
+        final boolean historyCommands;
+
+        Workload(long seed, boolean historyCommands) {
+            this.generator = new OperationGenerator(seed);
+            this.random = new SplittableRandom(seed ^ 0x5DEECE66DL);
+            this.historyCommands = historyCommands;
+        }
+
+        String next() {
+            if (historyCommands && random.nextInt(10) == 0) {
+                switch (random.nextInt(4)) {
+                    case 0:
+                        return "u";
+                    case 1:
+                        return "r";
+                    case 2:
+                        return "k p" + random.nextInt(8);
+                    default:
+                        return "g p" + random.nextInt(8);
+                }
+            }
+            return generator.next().getLine();
+        }
+    }
+
+    /**
+     * Запускает дочерний процесс и дожидается его завершения (для kill - убивает
+     * через killAfter мс после начала работы).
+     * @return номер последней записи, сброшенной явным sync
+     */
+    private long runChild(Path dir, long seed, boolean historyCommands, int snapshotInterval, int lines,
+                          String finish, int extra, int killAfter) throws IOException, InterruptedException {
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Path output = dir.resolve(CHILD_OUTPUT); // Файл, а не канал: kill закрывает потоки процесса
+        Process process = new ProcessBuilder(java.toString(), "-cp", System.getProperty("java.class.path"),
+            "SessionRecoveryCheck", "--child", dir.toString(), Long.toString(seed), Boolean.toString(historyCommands),
+            Integer.toString(snapshotInterval), Integer.toString(lines), finish, Integer.toString(extra))
+            .redirectOutput(output.toFile())
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+        if (finish.equals("kill")) {
+            while (process.isAlive() && Files.size(output) == 0) {
+                Thread.sleep(1); // Ждем "started": JVM запущена, хранилище открыто
+            }
+            Thread.sleep(killAfter);
+            process.destroyForcibly();
+        }
+        if (!process.waitFor(60, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            throw new IOException("дочерний процесс не завершился");
+        }
+        if (!finish.equals("kill") && process.exitValue() != 0) {
+            throw new IOException("дочерний процесс завершился с кодом " + process.exitValue());
+        }
+        long synced = 0;
+        for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+            if (line.startsWith("synced ")) {
+                synced = Long.parseLong(line.substring(7));
+            }
+        }
+        Files.delete(output);
+        return synced;
+    }
+
+    /**
+     * Дочерний процесс: --child каталог зерно команды-истории интервал-снимков
+     * строк завершение дополнительных-строк. Завершение: kill - работать, пока
+     * не убьют; halt - sync и остановка без закрытия хранилища; snapshot -
+     * sync, копия журнала, снимок (с обрезкой журнала), еще extra строк, sync
+     * и остановка.
+     */
+    private static void child(String[] args) throws IOException {
+        Path dir = Paths.get(args[1]);
+        long seed = Long.parseLong(args[2]);
+        boolean historyCommands = Boolean.parseBoolean(args[3]);
+        int snapshotInterval = Integer.parseInt(args[4]);
+        int lines = Integer.parseInt(args[5]);
+        String finish = args[6];
+        int extra = Integer.parseInt(args[7]);
+
+        NumberSystemConverter calculator = new NumberSystemConverter();
+        OperationHistory history = new OperationHistory(calculator, HISTORY_SNAPSHOTS, HISTORY_SIZE);
+        SessionStore store = new SessionStore(dir, calculator, history, SYNC_MILLIS, snapshotInterval);
+        CalculatorSession session = new CalculatorSession(calculator, store.getRadix());
+        session.setHistory(history);
+        session.setStore(store);
+        Workload workload = new Workload(seed, historyCommands);
+        System.out.println("started");
+        System.out.flush();
+        for (int i = 0; i < lines; i++) {
+            session.execute(workload.next());
+            if ((i + 1) % SYNC_EVERY == 0) {
+                store.sync();
+                System.out.println("synced " + store.getSequence());
+                System.out.flush();
+            }
+        }
+        if (finish.equals("snapshot")) {
+            store.sync();
+            Files.copy(dir.resolve(SessionStore.WAL_FILE), dir.resolve(PRESNAP), StandardCopyOption.REPLACE_EXISTING);
+            store.snapshot();
+            for (int i = 0; i < extra; i++) {
+                session.execute(workload.next());
+            }
+        }
+        store.sync();
+        System.out.println("synced " + store.getSequence());
+        System.out.flush();
+        if (finish.equals("kill")) {
+            try {
+                Thread.sleep(Long.MAX_VALUE); // Поток строк кончился раньше - ждем kill
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Runtime.getRuntime().halt(0); // Без close: снимок при закрытии не пишется
+    }
+
+    /**
+     * @return номер последней записи, учтенной в снимке (0 - снимка нет)
+     */
+    private static long snapshotCovered(Path dir) throws IOException {
+        Path snapshot = dir.resolve(SessionStore.SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(snapshot)).getLong(SessionStore.FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Разбирает заголовки групп неповрежденного журнала.
+     * @return номер последней записи в группах, целиком лежащих до смещения повреждения
+     */
+    private static long lastIntactRecord(byte[] wal, int damaged) {
+        ByteBuffer buffer = ByteBuffer.wrap(wal);
+        long last = 0;
+        int offset = SessionStore.FILE_HEADER_SIZE;
+        while (offset + SessionStore.GROUP_HEADER_SIZE <= wal.length) {
+            int end = offset + SessionStore.GROUP_HEADER_SIZE + buffer.getInt(offset + 8);
+            if (end > damaged) {
+                break;
+            }
+            last = buffer.getLong(offset + 12) + buffer.getInt(offset + 20) - 1;
+            offset = end;
+        }
+        return last;
+    }
+
+    private static boolean records(int status) {
+        return status == CalculatorSession.INITIAL || status == CalculatorSession.OPERATION
+            || status == CalculatorSession.COMMAND;
+    }
+
+    private static boolean sameBits(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    private void fail(String description) {
+        failures.add(description);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
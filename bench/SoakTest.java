@@ -0,0 +1,542 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Длительная проверка калькулятора под нагрузкой. Потоки операций
+ * {@link OperationGenerator} (воспроизводимые по зерну) выполняются без
+ * консоли порциями, попеременно двумя путями:
+ * <ul>
+ *   <li>ядро: {@link CalculatorSession} над NumberSystemConverter - после каждой
+ *       строки сверяются код состояния и побитовое значение памяти с
+ *       {@link ReferenceCalculator}, периодически - форматирование;</li>
+ *   <li>точный режим (каждая вторая порция ядра): CalculatorSession над
+ *       ExactCalculator с целыми больше 2^53 и операциями +, -, %, битовыми
+ *       и сдвигами - точное значение памяти сверяется с
+ *       {@link ReferenceCalculator#applyInteger};</li>
+ *   <li>пакетный режим: {@link CalculatorUI#runBatch} с записью лога в файл -
+ *       сверяются число операций, число строк ошибок, итоговый вывод и число
+ *       строк лога. Каждая вторая такая порция идет без сбросов (сброс
+ *       разрывает цепочку пересчета), и ее лог дополнительно проверяется
+ *       {@link CalculatorLogReader#verify()}: расхождений быть не должно.
+ *       Дробные числа генератора кратны 1/8, то есть в логе (%.2f) операнды
+ *       умножения и деления записываются с округлением.</li>
+ * </ul>
+ * Периодически выводятся пропускная способность за интервал, число
+ * расхождений, паузы сборщика мусора, занятая куча после сборки и рост
+ * лог-файлов. При расхождениях печатаются первые из них с зерном порции и
+ * номером операции, код завершения - 1.
+ *
+ * Запуск: bench/run.sh SoakTest [--duration 2h] [--seed N] [--mix +:30,-:25,*:15,/:15,=:5,c:5,i:5]
+ *         [--radixes 2,8,10,16] [--invalid 0.02] [--div-zero 0.01] [--chunk N]
+ *         [--report секунд] [--log-dir каталог]
+ */
+public class SoakTest {
+    private static final int FORMAT_CHECK_MASK = 255;  // Форматирование сверяется раз в 256 операций
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+    private static final String INTEGER_OPERATIONS = "+-%&|x<>"; // Операции порции точного режима
+    private static final long EXACT_LIMIT = 1L << 53;            // Граница точных целых в double
+
+    private final long seed;
+    private final int[] mix;
+    private final int[] auditMix;   // Смесь без сбросов для проверки аудита лога или null
+    private final int[] radixes;
+    private final double invalidRatio;
+    private final double divideByZeroRatio;
+    private final int chunk;
+    private final Path logDir;
+
+    private final List<String> mismatches = new ArrayList<>();
+    private long mismatchCount;
+    private long operations;
+    private long expectedErrors;
+    private long logBytes;
+    private long logLines;
+
+    // Сборщик мусора: обновляются потоком уведомлений JMX
+    private final Set<String> heapPools = new HashSet<>();
+    private long gcCount;
+    private long gcMillis;
+    private long gcMaxPause;
+    private long heapAfterGc;
+
+    SoakTest(long seed, int[] mix, int[] radixes, double invalidRatio, double divideByZeroRatio,
+             int chunk, Path logDir) {
+        this.seed = seed;
+        this.mix = mix;
+        this.auditMix = withoutReset(mix);
+        this.radixes = radixes;
+        this.invalidRatio = invalidRatio;
+        this.divideByZeroRatio = divideByZeroRatio;
+        this.chunk = chunk;
+        this.logDir = logDir;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long durationSeconds = 60;
+        long seed = 1;
+        int[] mix = OperationGenerator.DEFAULT_MIX;
+        int[] radixes = {2, 8, 10, 16};
+        double invalid = 0.02;
+        double divideByZero = 0.01;
+        int chunk = 100_000;
+        long reportSeconds = 10;
+        Path logDir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--duration":
+                    durationSeconds = parseDuration(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--mix":
+                    mix = OperationGenerator.parseMix(value);
+                    break;
+                case "--radixes":
+                    String[] parts = value.split(",");
+                    radixes = new int[parts.length];
+                    for (int r = 0; r < parts.length; r++) {
+                        radixes[r] = Integer.parseInt(parts[r].trim());
+                    }
+                    break;
+                case "--invalid":
+                    invalid = Double.parseDouble(value);
+                    break;
+                case "--div-zero":
+                    divideByZero = Double.parseDouble(value);
+                    break;
+                case "--chunk":
+                    chunk = Integer.parseInt(value);
+                    break;
+                case "--report":
+                    reportSeconds = parseDuration(value);
+                    break;
+                case "--log-dir":
+                    logDir = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("неизвестный аргумент " + args[i]);
+            }
+        }
+        if (chunk <= 0 || durationSeconds <= 0 || reportSeconds <= 0) {
+            throw new IllegalArgumentException("Длительность, интервал отчета и размер порции должны быть положительными");
+        }
+        new OperationGenerator(seed, mix, radixes, invalid, divideByZero); // Проверка настроек до запуска
+        boolean temporary = logDir == null;
+        if (temporary) {
+            logDir = Files.createTempDirectory("calculator-soak");
+        } else {
+            Files.createDirectories(logDir);
+        }
+
+        SoakTest test = new SoakTest(seed, mix, radixes, invalid, divideByZero, chunk, logDir);
+        boolean passed;
+        try {
+            passed = test.run(durationSeconds * 1_000_000_000L, reportSeconds * 1_000_000_000L);
+        } finally {
+            if (temporary) {
+                Files.deleteIfExists(logDir);
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Разбирает длительность: число секунд или число с суффиксом s, m или h.
+     */
+    static long parseDuration(String text) {
+        char unit = Character.toLowerCase(text.charAt(text.length() - 1));
+        long multiplier = unit == 'h' ? 3600 : unit == 'm' ? 60 : 1;
+        String number = Character.isDigit(unit) ? text : text.substring(0, text.length() - 1);
+        return Long.parseLong(number) * multiplier;
+    }
+
+    /**
+     * Выполняет порции до истечения времени.
+     * @return true если расхождений нет
+     */
+    boolean run(long durationNanos, long reportNanos) throws IOException {
+        installGcListeners();
+        System.out.printf("зерно: %d, порция: %d операций, логи: %s%n", seed, chunk, logDir);
+        System.out.println("время,с  операций      оп/с (интервал)  расхождений  ошибок ввода  "
+            + "сборок  сборки,мс  макс.пауза,мс  куча после сборки,МБ  лог,МБ  лог,байт/оп");
+
+        long start = System.nanoTime();
+        long nextReport = start + reportNanos;
+        long intervalStart = start;
+        long intervalOperations = 0;
+        long chunkIndex = 0;
+        while (System.nanoTime() - start < durationNanos) {
+            long chunkSeed = seed + chunkIndex;
+            if ((chunkIndex & 3) == 2) {
+                runExact(chunkSeed, chunkIndex);
+            } else if ((chunkIndex & 1) == 0) {
+                runCore(chunkSeed, chunkIndex);
+            } else {
+                runBatch(chunkSeed, chunkIndex, (chunkIndex & 3) == 3 && auditMix != null);
+            }
+            chunkIndex++;
+            long now = System.nanoTime();
+            if (now >= nextReport) {
+                report(now - start, operations - intervalOperations, now - intervalStart);
+                intervalStart = now;
+                intervalOperations = operations;
+                nextReport = now + reportNanos;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (operations != intervalOperations) {
+            report(elapsed, operations - intervalOperations, System.nanoTime() - intervalStart);
+        }
+
+        System.out.printf("итого: %d операций за %.1f с (%.0f оп/с), порций: %d, расхождений: %d%n",
+            operations, elapsed / 1e9, operations * 1e9 / elapsed, chunkIndex, mismatchCount);
+        for (String mismatch : mismatches) {
+            System.out.println("  " + mismatch);
+        }
+        return mismatchCount == 0;
+    }
+
+    /**
+     * Порция через CalculatorSession: сверка после каждой строки.
+     */
+    private void runCore(long chunkSeed, long chunkIndex) {
+        OperationGenerator generator = newGenerator(chunkSeed);
+        ReferenceCalculator reference = generator.getReference();
+        CalculatorSession session = new CalculatorSession();
+        NumberSystemConverter calculator = session.getCalculator();
+        for (int i = 0; i < chunk; i++) {
+            OperationGenerator.Operation operation = generator.next();
+            int status = session.execute(operation.getLine());
+            int expected = reference.getLastStatus();
+            if (expected == CalculatorSession.ERROR) {
+                expectedErrors++;
+            }
+            double memory = calculator.getMemory();
+            if (status != expected
+                || Double.doubleToLongBits(memory) != Double.doubleToLongBits(reference.getMemory())
+                || session.getRadix() != reference.getRadix()) {
+                mismatch(chunkIndex, chunkSeed, i, "ядро: строка \"" + operation.getLine() + "\": состояние "
+                    + status + " вместо " + expected + ", память " + memory + " вместо " + reference.getMemory()
+                    + (status == CalculatorSession.ERROR ? " (" + session.getError() + ")" : ""));
+                return; // Дальше состояние расходится, порция прерывается
+            }
+            if ((i & FORMAT_CHECK_MASK) == 0) {
+                String actual = NumberSystemConverter.formatNumber(memory, session.getRadix());
+                String formatted = ReferenceCalculator.format(reference.getMemory(), reference.getRadix());
+                if (!actual.equals(formatted)) {
+                    mismatch(chunkIndex, chunkSeed, i, "форматирование " + memory + " в системе "
+                        + session.getRadix() + ": \"" + actual + "\" вместо \"" + formatted + "\"");
+                }
+            }
+            operations++;
+        }
+    }
+
+    /**
+     * Порция точного режима: целые больше 2^53; когда значение становится
+     * меньше, калькулятор сбрасывается и получает новое начальное число.
+     */
+    private void runExact(long chunkSeed, long chunkIndex) {
+        SplittableRandom random = new SplittableRandom(chunkSeed);
+        ExactCalculator calculator = new ExactCalculator();
+        CalculatorSession session = new CalculatorSession(calculator, 10);
+        long expected = 0;
+        for (int i = 0; i < chunk; i++) {
+            String line;
+            int expectedStatus;
+            if (calculator.isFirstOperation()) {
+                expected = random.nextLong(EXACT_LIMIT, 1L << 62);
+                if (random.nextBoolean()) {
+                    expected = -expected;
+                }
+                line = Long.toString(expected);
+                expectedStatus = CalculatorSession.INITIAL;
+            } else if (Math.abs(expected) < EXACT_LIMIT) {
+                line = "c";
+                expectedStatus = CalculatorSession.COMMAND;
+            } else {
+                char operation = INTEGER_OPERATIONS.charAt(random.nextInt(INTEGER_OPERATIONS.length()));
+                long operand;
+                switch (operation) {
+                    case '+':
+                    case '-':
+                        operand = random.nextLong(1, 1L << 20);
+                        if (Math.abs(expected) >= 1L << 62) {
+                            operation = '>'; // Без переполнения long: в точном режиме оно переводит в BigDecimal
+                            operand = 1;
+                        }
+                        break;
+                    case '%':
+                        operand = random.nextLong(1, 1L << 40);
+                        break;
+                    case '<':
+                    case '>':
+                        operand = random.nextInt(4);
+                        break;
+                    default:
+                        operand = random.nextLong(EXACT_LIMIT, 1L << 62);
+                        break;
+                }
+                line = operation + Long.toString(operand);
+                expected = ReferenceCalculator.applyInteger(operation, expected, operand);
+                expectedStatus = CalculatorSession.OPERATION;
+            }
+            int status = session.execute(line);
+            if (status != expectedStatus || (status != CalculatorSession.COMMAND
+                    && calculator.getValue().compareTo(BigDecimal.valueOf(expected)) != 0)) {
+                mismatch(chunkIndex, chunkSeed, i, "точный режим: строка \"" + line + "\": состояние " + status
+                    + " вместо " + expectedStatus + ", память " + calculator.getValue() + " вместо " + expected
+                    + (status == CalculatorSession.ERROR ? " (" + session.getError() + ")" : ""));
+                return;
+            }
+            operations++;
+        }
+    }
+
+    /**
+     * Порция через пакетный режим CalculatorUI с записью лога в файл.
+     * @param audit без сбросов и с проверкой лога CalculatorLogReader.verify
+     */
+    private void runBatch(long chunkSeed, long chunkIndex, boolean audit) throws IOException {
+        Path log = logDir.resolve("soak-" + chunkIndex + ".log");
+        OperationGenerator generator = audit
+            ? new OperationGenerator(chunkSeed, auditMix, radixes, invalidRatio, divideByZeroRatio)
+            : newGenerator(chunkSeed);
+        GeneratorReader input = new GeneratorReader(generator, chunk);
+        StringWriter output = new StringWriter();
+        CountingStream errors = new CountingStream();
+        PrintStream stderr = System.err;
+        long executed;
+        System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8.name()));
+        try {
+            CalculatorUI ui = new CalculatorUI(log.toString(), null, new NumberSystemConverter());
+            executed = ui.runBatch(new BufferedReader(input, 1 << 16), output, 0, true);
+        } finally {
+            System.setErr(stderr);
+        }
+        operations += chunk;
+        expectedErrors += input.errors;
+
+        ReferenceCalculator reference = input.generator.getReference();
+        String expectedOutput = ReferenceCalculator.format(reference.getMemory(), reference.getRadix())
+            + System.lineSeparator();
+        long lines = countLines(log);
+        if (executed != input.operations) {
+            mismatch(chunkIndex, chunkSeed, chunk, "пакетный режим: " + executed + " операций вместо " + input.operations);
+        }
+        if (errors.lines != input.errors) {
+            mismatch(chunkIndex, chunkSeed, chunk, "пакетный режим: " + errors.lines + " строк ошибок вместо " + input.errors);
+        }
+        if (!output.toString().equals(expectedOutput)) {
+            mismatch(chunkIndex, chunkSeed, chunk, "пакетный режим: вывод \"" + output.toString().trim()
+                + "\" вместо \"" + expectedOutput.trim() + "\"");
+        }
+        if (lines != input.operations) {
+            mismatch(chunkIndex, chunkSeed, chunk, "пакетный режим: " + lines + " строк лога вместо " + input.operations);
+        }
+        if (audit && lines > 0) {
+            try (CalculatorLogReader reader = new CalculatorLogReader(log)) {
+                CalculatorLogReader.Verification verification = reader.verify();
+                if (verification.getMismatchCount() != 0) {
+                    CalculatorLogReader.Mismatch first = verification.getMismatches().get(0);
+                    mismatch(chunkIndex, chunkSeed, first.getLine(), "аудит лога: расхождений "
+                        + verification.getMismatchCount() + ", первое: " + first);
+                }
+            }
+        }
+        if (lines > 0) {
+            logBytes += Files.size(log);
+        }
+        logLines += lines;
+        Files.deleteIfExists(log);
+    }
+
+    /**
+     * Смесь без сбросов (c) или null, если других операций в смеси нет.
+     */
+    private static int[] withoutReset(int[] mix) {
+        int[] result = mix.clone();
+        result[OperationGenerator.MIX_KEYS.indexOf('c')] = 0;
+        for (int weight : result) {
+            if (weight > 0) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private OperationGenerator newGenerator(long chunkSeed) {
+        return new OperationGenerator(chunkSeed, mix, radixes, invalidRatio, divideByZeroRatio);
+    }
+
+    private void mismatch(long chunkIndex, long chunkSeed, long operation, String description) {
+        mismatchCount++;
+        if (mismatches.size() < MAX_REPORTED_MISMATCHES) {
+            mismatches.add("порция " + chunkIndex + " (зерно " + chunkSeed + "), операция " + operation + ": " + description);
+        }
+    }
+
+    private static long countLines(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0; // Лог создается при первой записи: порция без операций его не оставляет
+        }
+        long lines = 0;
+        for (byte b : Files.readAllBytes(file)) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private void report(long elapsed, long intervalOperations, long intervalNanos) {
+        long count;
+        long millis;
+        long maxPause;
+        long heap;
+        synchronized (this) {
+            count = gcCount;
+            millis = gcMillis;
+            maxPause = gcMaxPause;
+            heap = heapAfterGc;
+            gcMaxPause = 0; // Максимальная пауза - за интервал
+        }
+        System.out.printf("%7.0f  %12d  %15.0f  %11d  %12d  %6d  %9d  %13d  %20.1f  %6.1f  %10.1f%n",
+            elapsed / 1e9, operations, intervalOperations * 1e9 / Math.max(1, intervalNanos), mismatchCount,
+            expectedErrors, count, millis, maxPause, heap / 1048576.0, logBytes / 1048576.0,
+            logLines == 0 ? 0.0 : (double) logBytes / logLines);
+    }
+
+    /**
+     * Подписывается на уведомления о сборках мусора: число, суммарное время,
+     * максимальная пауза и занятая куча после сборки.
+     */
+    private void installGcListeners() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (java.lang.management.GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(bean instanceof NotificationEmitter)) {
+                continue;
+            }
+            ((NotificationEmitter) bean).addNotificationListener((notification, handback) -> {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    return;
+                }
+                GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long duration = info.getGcInfo().getDuration();
+                long used = 0;
+                for (Map.Entry<String, MemoryUsage> entry : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+                    if (heapPools.contains(entry.getKey())) {
+                        used += entry.getValue().getUsed();
+                    }
+                }
+                synchronized (this) {
+                    gcCount++;
+                    gcMillis += duration;
+                    gcMaxPause = Math.max(gcMaxPause, duration);
+                    heapAfterGc = used;
+                }
+            }, null, null);
+        }
+    }
+
+    /**
+     * Поток символов из строк генератора; считает ожидаемые операции и ошибки.
+     */
+    private static final class GeneratorReader extends Reader {
+        final OperationGenerator generator;
+        private final int count;
+        private String line = "";
+        private int position;
+        private int produced;
+        long operations;
+        long errors;
+
+        GeneratorReader(OperationGenerator generator, int count) {
+            this.generator = generator;
+            this.count = count;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            int written = 0;
+            while (written < length) {
+                if (position == line.length()) {
+                    if (produced == count) {
+                        break;
+                    }
+                    OperationGenerator.Operation operation = generator.next();
+                    int status = generator.getReference().getLastStatus();
+                    if (status == CalculatorSession.OPERATION) {
+                        operations++;
+                    } else if (status == CalculatorSession.ERROR) {
+                        errors++;
+                    }
+                    line = operation.getLine() + "\n";
+                    position = 0;
+                    produced++;
+                }
+                int n = Math.min(length - written, line.length() - position);
+                line.getChars(position, position + n, buffer, offset + written);
+                position += n;
+                written += n;
+            }
+            return written == 0 ? -1 : written;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Поток, считающий строки (байты перевода строки) вместо записи.
+     */
+    private static final class CountingStream extends OutputStream {
+        long lines;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                }
+            }
+        }
+    }
+}
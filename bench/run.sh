@@ -0,0 +1,11 @@
+#!/bin/sh
+# Компилирует калькулятор вместе с замерами и запускает их.
+# Пример: bench/run.sh CalculatorBenchmarks --json bench-results.json
+# Дополнительные параметры JVM: JAVA_OPTS=-Dcalculator.metrics=true bench/run.sh ...
+set -e
+cd "$(dirname "$0")/.."
+mkdir -p out/bench
+javac -encoding UTF-8 -d out/bench *.java bench/*.java
+main="${1:-CalculatorBenchmarks}"
+[ $# -gt 0 ] && shift
+exec java -Xms512m -Xmx512m $JAVA_OPTS -cp out/bench "$main" "$@"
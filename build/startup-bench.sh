@@ -0,0 +1,53 @@
+#!/bin/sh
+# Сравнивает холодный старт калькулятора: время до первого результата
+# (короткий пакет из трех строк) и пиковую RSS для обычного запуска JVM,
+# запускателя с AppCDS и native-image (если собран).
+# Сначала: build/build.sh [--native]. Пример: build/startup-bench.sh 20
+# Пиковая RSS измеряется через GNU time (/usr/bin/time), если он установлен.
+set -e
+cd "$(dirname "$0")/.."
+runs="${1:-10}"
+out="$(pwd)/out/build"
+if [ ! -f "$out/calculator.jar" ]; then
+    echo "Нет $out/calculator.jar: сначала запустите build/build.sh" >&2
+    exit 1
+fi
+
+# Калькулятор пишет лог в текущий каталог - запускаем во временном
+work=$(mktemp -d)
+trap 'rm -rf "$work"' EXIT
+cd "$work"
+printf '1\n+2\n*3\n' > input.txt
+
+measure() {
+    name="$1"
+    shift
+    total=0
+    peak=0
+    i=0
+    while [ "$i" -lt "$runs" ]; do
+        start=$(date +%s%N)
+        if [ -x /usr/bin/time ]; then
+            /usr/bin/time -f %M -o rss.txt "$@" --batch input.txt > result.txt
+            rss=$(cat rss.txt)
+        else
+            "$@" --batch input.txt > result.txt
+            rss=0
+        fi
+        end=$(date +%s%N)
+        total=$((total + end - start))
+        [ "$rss" -gt "$peak" ] && peak=$rss
+        i=$((i + 1))
+    done
+    [ "$peak" -eq 0 ] && peak="н/д"
+    printf '%-16s %8d мс  RSS %8s КБ  результат %s\n' \
+        "$name" $((total / runs / 1000000)) "$peak" "$(cat result.txt)"
+}
+
+echo "Среднее время запуска по $runs прогонам:"
+measure "jvm-classes" java -cp "$out/classes" Main
+measure "jvm-jar" java -jar "$out/calculator.jar"
+measure "appcds" "$out/calculator"
+if [ -x "$out/calculator-native" ]; then
+    measure "native-image" "$out/calculator-native"
+fi